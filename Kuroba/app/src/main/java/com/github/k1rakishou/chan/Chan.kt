@@ -73,6 +73,7 @@ import com.github.k1rakishou.fsaf.FileManager
 import com.github.k1rakishou.fsaf.manager.base_directory.DirectoryManager
 import com.github.k1rakishou.model.ModelModuleInjector
 import com.github.k1rakishou.model.di.NetworkModule
+import com.github.k1rakishou.model.source.cache.thread.ChanThreadsCache
 import com.github.k1rakishou.persist_state.PersistableChanState
 import dagger.Lazy
 import io.reactivex.exceptions.UndeliverableException
@@ -82,6 +83,7 @@ import kotlinx.coroutines.CoroutineName
 import kotlinx.coroutines.CoroutineScope
 import kotlinx.coroutines.Dispatchers
 import kotlinx.coroutines.SupervisorJob
+import kotlinx.coroutines.launch
 import okhttp3.HttpUrl.Companion.toHttpUrl
 import okhttp3.OkHttpClient
 import okhttp3.Protocol
@@ -118,6 +120,8 @@ class Chan : Application(), ActivityLifecycleCallbacks {
   lateinit var reportManager: ReportManager
   @Inject
   lateinit var anrSupervisor: AnrSupervisor
+  @Inject
+  lateinit var chanThreadsCache: Lazy<ChanThreadsCache>
 
   private val normalDnsCreatorFactory: NormalDnsSelectorFactory = object : NormalDnsSelectorFactory {
     override fun createDnsSelector(okHttpClient: OkHttpClient): NormalDnsSelector {
@@ -203,6 +207,20 @@ class Chan : Application(), ActivityLifecycleCallbacks {
     Logger.d(TAG, "Application initialization took " + diff + "ms")
   }
 
+  override fun onTrimMemory(level: Int) {
+    super.onTrimMemory(level)
+
+    if (!::applicationScope.isInitialized || !::chanThreadsCache.isInitialized) {
+      return
+    }
+
+    Logger.d(TAG, "onTrimMemory($level)")
+
+    applicationScope.launch(Dispatchers.Default) {
+      chanThreadsCache.get().onTrimMemory(level)
+    }
+  }
+
   private fun onCreateInternal() {
     registerActivityLifecycleCallbacks(this)
     applicationScope = CoroutineScope(job + Dispatchers.Main + CoroutineName("Chan") + coroutineExceptionHandler)
@@ -277,6 +295,7 @@ class Chan : Application(), ActivityLifecycleCallbacks {
     // We need to start initializing ChanPostRepository first because it deletes old posts during
     // the initialization.
     modelComponent.getChanPostRepository().initialize()
+    modelComponent.getChanPostSearchRepository().initialize()
 
     applicationComponent = DaggerApplicationComponent.builder()
       .application(this)
@@ -0,0 +1,128 @@
+package com.github.k1rakishou.chan.core.base.okhttp
+
+import okhttp3.Call
+import okhttp3.EventListener
+import okhttp3.Handshake
+import okhttp3.Protocol
+import okhttp3.Response
+import java.io.IOException
+import java.net.InetAddress
+import java.net.InetSocketAddress
+import java.net.Proxy
+
+/**
+ * Network phase timings of one OkHttp call. To collect them, attach an instance to a request with
+ * `Request.Builder.tag(NetworkTimings::class.java, networkTimings)`, the [EventListenerFactory]
+ * (installed into the OkHttpClient) will then fill it up while the call is being executed. Calls
+ * without the tag are not tracked at all.
+ *
+ * When a call is retried/redirected the timings of the last attempt are kept. Dns/connect timings
+ * are absent when a pooled connection was reused.
+ * */
+class NetworkTimings {
+  @Volatile private var callStartNanos = 0L
+  @Volatile private var dnsStartNanos = 0L
+  @Volatile private var dnsEndNanos = 0L
+  @Volatile private var connectStartNanos = 0L
+  @Volatile private var connectEndNanos = 0L
+  @Volatile private var secureConnectStartNanos = 0L
+  @Volatile private var secureConnectEndNanos = 0L
+  @Volatile private var requestHeadersStartNanos = 0L
+  @Volatile private var responseHeadersStartNanos = 0L
+  @Volatile private var responseBodyStartNanos = 0L
+  @Volatile private var responseBodyEndNanos = 0L
+
+  /**
+   * False when the call this instance was attached to was never executed (e.g. the response was
+   * shared with another call).
+   * */
+  val isTracked: Boolean
+    get() = callStartNanos != 0L
+
+  fun dnsMs(): Long? = durationMs(dnsStartNanos, dnsEndNanos)
+  fun connectMs(): Long? = durationMs(connectStartNanos, connectEndNanos)
+  fun tlsMs(): Long? = durationMs(secureConnectStartNanos, secureConnectEndNanos)
+  fun timeToFirstByteMs(): Long? = durationMs(requestHeadersStartNanos, responseHeadersStartNanos)
+  fun bodyDownloadMs(): Long? = durationMs(responseBodyStartNanos, responseBodyEndNanos)
+
+  private fun durationMs(startNanos: Long, endNanos: Long): Long? {
+    if (startNanos == 0L || endNanos == 0L || endNanos < startNanos) {
+      return null
+    }
+
+    return (endNanos - startNanos) / 1_000_000L
+  }
+
+  private class TimingsEventListener(
+    private val networkTimings: NetworkTimings
+  ) : EventListener() {
+
+    override fun callStart(call: Call) {
+      networkTimings.callStartNanos = System.nanoTime()
+    }
+
+    override fun dnsStart(call: Call, domainName: String) {
+      networkTimings.dnsStartNanos = System.nanoTime()
+    }
+
+    override fun dnsEnd(call: Call, domainName: String, inetAddressList: List<InetAddress>) {
+      networkTimings.dnsEndNanos = System.nanoTime()
+    }
+
+    override fun connectStart(call: Call, inetSocketAddress: InetSocketAddress, proxy: Proxy) {
+      networkTimings.connectStartNanos = System.nanoTime()
+    }
+
+    override fun secureConnectStart(call: Call) {
+      networkTimings.secureConnectStartNanos = System.nanoTime()
+    }
+
+    override fun secureConnectEnd(call: Call, handshake: Handshake?) {
+      networkTimings.secureConnectEndNanos = System.nanoTime()
+    }
+
+    override fun connectEnd(call: Call, inetSocketAddress: InetSocketAddress, proxy: Proxy, protocol: Protocol?) {
+      networkTimings.connectEndNanos = System.nanoTime()
+    }
+
+    override fun connectFailed(
+      call: Call,
+      inetSocketAddress: InetSocketAddress,
+      proxy: Proxy,
+      protocol: Protocol?,
+      ioe: IOException
+    ) {
+      networkTimings.connectEndNanos = System.nanoTime()
+    }
+
+    override fun requestHeadersStart(call: Call) {
+      networkTimings.requestHeadersStartNanos = System.nanoTime()
+    }
+
+    override fun responseHeadersStart(call: Call) {
+      networkTimings.responseHeadersStartNanos = System.nanoTime()
+    }
+
+    override fun responseHeadersEnd(call: Call, response: Response) {
+      // no-op
+    }
+
+    override fun responseBodyStart(call: Call) {
+      networkTimings.responseBodyStartNanos = System.nanoTime()
+    }
+
+    override fun responseBodyEnd(call: Call, byteCount: Long) {
+      networkTimings.responseBodyEndNanos = System.nanoTime()
+    }
+  }
+
+  object EventListenerFactory : EventListener.Factory {
+    override fun create(call: Call): EventListener {
+      val networkTimings = call.request().tag(NetworkTimings::class.java)
+        ?: return EventListener.NONE
+
+      return TimingsEventListener(networkTimings)
+    }
+  }
+
+}
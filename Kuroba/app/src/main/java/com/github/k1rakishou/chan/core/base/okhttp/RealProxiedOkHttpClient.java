@@ -71,6 +71,7 @@ public class RealProxiedOkHttpClient implements ProxiedOkHttpClient {
                             .writeTimeout(30, SECONDS)
                             .protocols(okHttpProtocols.getProtocols())
                             .proxySelector(kurobaProxySelector)
+                            .eventListenerFactory(NetworkTimings.EventListenerFactory.INSTANCE)
                             .addNetworkInterceptor(interceptor);
 
                     HttpLoggingInterceptorInstaller.install(builder, httpLoggingInterceptorLazy);
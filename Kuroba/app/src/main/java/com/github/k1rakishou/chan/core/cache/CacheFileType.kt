@@ -9,8 +9,10 @@ enum class CacheFileType(
   NavHistoryThumbnail(2, 0.05f),
   SiteIcon(3, 0.05f),
   PostMediaThumbnail(4, 0.05f),
-  PostMediaFull(5, 0.65f),
-  Other(6, 0.1f);
+  PostMediaFull(5, 0.62f),
+  Other(6, 0.1f),
+  // Full images decoded and downsampled to the size of the cells they are displayed in
+  PostMediaDownsampled(7, 0.03f);
 
   fun calculateDiskSize(totalDiskCacheSize: Long): Long {
     return (totalDiskCacheSize.toFloat() * diskSizePercent).toLong()
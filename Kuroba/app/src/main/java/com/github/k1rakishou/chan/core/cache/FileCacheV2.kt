@@ -168,15 +168,25 @@ class FileCacheV2(
       throw IllegalAccessException("Cannot prefetch inlined files! url = $imageUrl")
     }
 
-    val url = imageUrl.toString()
+    // Prefetch downloads always have default extra info (no file size, no file hash)
+    return enqueueMediaPrefetchRequest(
+      cacheFileType = cacheFileType,
+      url = imageUrl.toString(),
+      extraInfo = DownloadRequestExtraInfo()
+    )
+  }
 
+  fun enqueueMediaPrefetchRequest(
+    cacheFileType: CacheFileType,
+    url: String,
+    extraInfo: DownloadRequestExtraInfo
+  ): CancelableDownload? {
     val (alreadyActive, cancelableDownload) = getOrCreateCancelableDownload(
       url = url,
       callback = null,
       isGalleryBatchDownload = true,
       isPrefetchDownload = true,
-      // Prefetch downloads always have default extra info (no file size, no file hash)
-      extraInfo = DownloadRequestExtraInfo(),
+      extraInfo = extraInfo,
       cacheFileType = cacheFileType
     )
 
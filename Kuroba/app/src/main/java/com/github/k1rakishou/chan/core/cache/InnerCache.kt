@@ -2,7 +2,7 @@ package com.github.k1rakishou.chan.core.cache
 
 import android.os.Environment
 import androidx.annotation.GuardedBy
-import com.github.k1rakishou.ChanSettings
+import com.github.k1rakishou.ChanSettingsSnapshot
 import com.github.k1rakishou.chan.utils.AppModuleAndroidUtils
 import com.github.k1rakishou.chan.utils.BackgroundUtils
 import com.github.k1rakishou.chan.utils.ConversionUtils
@@ -804,7 +804,7 @@ internal class InnerCache(
     }
 
     val sizeDiff = (size.get() - fileCacheDiskSizeBytes).coerceAtLeast(0)
-    val calculatedSizeToFree = (currentCacheSizeToUse / (100f / ChanSettings.diskCacheCleanupRemovePercent.get().toFloat())).toLong()
+    val calculatedSizeToFree = (currentCacheSizeToUse / (100f / ChanSettingsSnapshot.get().diskCacheCleanupRemovePercent.toFloat())).toLong()
     val sizeToFree = sizeDiff + calculatedSizeToFree
 
     Logger.d(
@@ -1,6 +1,8 @@
 package com.github.k1rakishou.chan.core.di.module.application
 
 import android.content.Context
+import com.github.k1rakishou.ChanSettings
+import com.github.k1rakishou.chan.core.base.okhttp.ProxiedOkHttpClient
 import com.github.k1rakishou.chan.core.base.okhttp.RealProxiedOkHttpClient
 import com.github.k1rakishou.chan.core.cache.CacheHandler
 import com.github.k1rakishou.chan.core.cache.FileCacheV2
@@ -12,6 +14,8 @@ import com.github.k1rakishou.chan.core.manager.ReplyManager
 import com.github.k1rakishou.chan.core.manager.ThreadDownloadManager
 import com.github.k1rakishou.chan.core.site.SiteResolver
 import com.github.k1rakishou.chan.core.site.loader.ChanThreadLoaderCoordinator
+import com.github.k1rakishou.chan.core.site.loader.LoadPipelineTimings
+import com.github.k1rakishou.chan.core.site.loader.SharedCatalogResponseCache
 import com.github.k1rakishou.chan.core.site.loader.internal.usecase.ParsePostsV1UseCase
 import com.github.k1rakishou.chan.features.media_viewer.helper.ExoPlayerCache
 import com.github.k1rakishou.chan.features.media_viewer.helper.MediaViewerGoToImagePostHelper
@@ -40,10 +44,25 @@ import javax.inject.Singleton
 @Module
 class HelperModule {
 
+  @Provides
+  @Singleton
+  fun provideSharedCatalogResponseCache(
+    applicationScope: CoroutineScope,
+    proxiedOkHttpClient: Lazy<ProxiedOkHttpClient>
+  ): SharedCatalogResponseCache {
+    Logger.deps("SharedCatalogResponseCache")
+    return SharedCatalogResponseCache(
+      ChanSettings.verboseLogs.get(),
+      applicationScope,
+      proxiedOkHttpClient
+    )
+  }
+
   @Provides
   @Singleton
   fun provideChanThreadLoaderCoordinator(
     proxiedOkHttpClient: RealProxiedOkHttpClient,
+    sharedCatalogResponseCache: SharedCatalogResponseCache,
     chanPostRepository: ChanPostRepository,
     chanCatalogSnapshotRepository: ChanCatalogSnapshotRepository,
     appConstants: AppConstants,
@@ -53,11 +72,13 @@ class HelperModule {
     chanThreadsCache: ChanThreadsCache,
     chanCatalogSnapshotCache: ChanCatalogSnapshotCache,
     threadDownloadManager: ThreadDownloadManager,
-    parsePostsV1UseCase: ParsePostsV1UseCase
+    parsePostsV1UseCase: ParsePostsV1UseCase,
+    loadPipelineTimings: LoadPipelineTimings
   ): ChanThreadLoaderCoordinator {
     Logger.deps("ChanThreadLoaderCoordinator")
     return ChanThreadLoaderCoordinator(
       proxiedOkHttpClient,
+      sharedCatalogResponseCache,
       chanPostRepository,
       chanCatalogSnapshotRepository,
       appConstants,
@@ -67,10 +88,18 @@ class HelperModule {
       chanThreadsCache,
       chanCatalogSnapshotCache,
       threadDownloadManager,
-      parsePostsV1UseCase
+      parsePostsV1UseCase,
+      loadPipelineTimings
     )
   }
 
+  @Provides
+  @Singleton
+  fun provideLoadPipelineTimings(): LoadPipelineTimings {
+    Logger.deps("LoadPipelineTimings")
+    return LoadPipelineTimings(LoadPipelineTimings.DEFAULT_CAPACITY)
+  }
+
   @Provides
   @Singleton
   fun provideShareFilePicker(
@@ -121,7 +121,8 @@ public class LoaderModule {
             YoutubeMediaServiceExtraInfoFetcher youtubeMediaServiceExtraInfoFetcher,
             SoundCloudMediaServiceExtraInfoFetcher soundCloudMediaServiceExtraInfoFetcher,
             StreamableMediaServiceExtraInfoFetcher streamableMediaServiceExtraInfoFetcher,
-            ChanThreadManager chanThreadManager
+            ChanThreadManager chanThreadManager,
+            MediaServiceLinkExtraContentRepository mediaServiceLinkExtraContentRepository
     ) {
         Logger.deps("PostExtraContentLoader");
 
@@ -132,6 +133,7 @@ public class LoaderModule {
 
         return new PostExtraContentLoader(
                 chanThreadManager,
+                mediaServiceLinkExtraContentRepository,
                 fetchers
         );
     }
@@ -28,6 +28,7 @@ import com.github.k1rakishou.chan.core.base.okhttp.ProxiedOkHttpClient;
 import com.github.k1rakishou.chan.core.base.okhttp.RealDownloaderOkHttpClient;
 import com.github.k1rakishou.chan.core.base.okhttp.RealProxiedOkHttpClient;
 import com.github.k1rakishou.chan.core.cache.CacheHandler;
+import com.github.k1rakishou.chan.core.helper.CompositeCatalogLoader;
 import com.github.k1rakishou.chan.core.helper.FilterEngine;
 import com.github.k1rakishou.chan.core.helper.FilterWatcherNotificationHelper;
 import com.github.k1rakishou.chan.core.helper.ImageSaverFileManagerWrapper;
@@ -35,6 +36,7 @@ import com.github.k1rakishou.chan.core.helper.LastPageNotificationsHelper;
 import com.github.k1rakishou.chan.core.helper.LastViewedPostNoInfoHolder;
 import com.github.k1rakishou.chan.core.helper.PostHideHelper;
 import com.github.k1rakishou.chan.core.helper.ReplyNotificationsHelper;
+import com.github.k1rakishou.chan.core.helper.ThreadRefreshScheduler;
 import com.github.k1rakishou.chan.core.helper.ThreadDownloaderFileManagerWrapper;
 import com.github.k1rakishou.chan.core.image.ImageLoaderV2;
 import com.github.k1rakishou.chan.core.loader.OnDemandContentLoader;
@@ -87,12 +89,14 @@ import com.github.k1rakishou.chan.core.usecase.ParsePostRepliesUseCase;
 import com.github.k1rakishou.chan.core.usecase.ThreadDataPreloader;
 import com.github.k1rakishou.chan.core.usecase.ThreadDownloaderPersistPostsInDatabaseUseCase;
 import com.github.k1rakishou.chan.features.image_saver.ImageSaverV2ServiceDelegate;
+import com.github.k1rakishou.chan.features.media_viewer.helper.ExoPlayerCache;
 import com.github.k1rakishou.chan.features.posting.LastReplyRepository;
 import com.github.k1rakishou.chan.features.posting.PostingServiceDelegate;
 import com.github.k1rakishou.chan.features.posting.solvers.two_captcha.TwoCaptchaSolver;
 import com.github.k1rakishou.chan.features.thread_downloading.ThreadDownloadProgressNotifier;
 import com.github.k1rakishou.chan.features.thread_downloading.ThreadDownloadingCoordinator;
 import com.github.k1rakishou.chan.features.thread_downloading.ThreadDownloadingDelegate;
+import com.github.k1rakishou.chan.features.thread_downloading.ThreadMediaStore;
 import com.github.k1rakishou.chan.ui.captcha.CaptchaHolder;
 import com.github.k1rakishou.chan.utils.AppModuleAndroidUtils;
 import com.github.k1rakishou.common.AppConstants;
@@ -286,7 +290,8 @@ public class ManagerModule {
             CoroutineScope appScope,
             ChanThreadsCache chanThreadsCache,
             ChanCatalogSnapshotCache chanCatalogSnapshotCache,
-            SeenPostRepository seenPostRepository
+            SeenPostRepository seenPostRepository,
+            Lazy<ApplicationVisibilityManager> applicationVisibilityManager
     ) {
         Logger.deps("SeenPostsManager");
         return new SeenPostsManager(
@@ -294,7 +299,8 @@ public class ManagerModule {
                 ChanSettings.verboseLogs.get(),
                 chanThreadsCache,
                 chanCatalogSnapshotCache,
-                seenPostRepository
+                seenPostRepository,
+                applicationVisibilityManager
         );
     }
 
@@ -389,7 +395,8 @@ public class ManagerModule {
             Lazy<ParsePostRepliesUseCase> parsePostRepliesUseCase,
             Lazy<ReplyNotificationsHelper> replyNotificationsHelper,
             Lazy<LastPageNotificationsHelper> lastPageNotificationsHelper,
-            CurrentOpenedDescriptorStateManager currentOpenedDescriptorStateManager
+            CurrentOpenedDescriptorStateManager currentOpenedDescriptorStateManager,
+            ThreadRefreshScheduler threadRefreshScheduler
     ) {
         Logger.deps("BookmarkWatcherDelegate");
         return new BookmarkWatcherDelegate(
@@ -403,7 +410,8 @@ public class ManagerModule {
                 parsePostRepliesUseCase,
                 replyNotificationsHelper,
                 lastPageNotificationsHelper,
-                currentOpenedDescriptorStateManager
+                currentOpenedDescriptorStateManager,
+                threadRefreshScheduler
         );
     }
 
@@ -460,6 +468,27 @@ public class ManagerModule {
         return new LastViewedPostNoInfoHolder();
     }
 
+    @Provides
+    @Singleton
+    public ThreadRefreshScheduler provideThreadRefreshScheduler() {
+        Logger.deps("ThreadRefreshScheduler");
+        return new ThreadRefreshScheduler(ChanSettings.verboseLogs.get());
+    }
+
+    @Provides
+    @Singleton
+    public CompositeCatalogLoader provideCompositeCatalogLoader(
+            Lazy<ChanThreadManager> chanThreadManager
+    ) {
+        Logger.deps("CompositeCatalogLoader");
+        return new CompositeCatalogLoader(
+                ChanSettings.verboseLogs.get(),
+                CompositeCatalogLoader.DEFAULT_MAX_PARALLELISM,
+                CompositeCatalogLoader.DEFAULT_MAX_CONCURRENT_REQUESTS_PER_SITE,
+                chanThreadManager
+        );
+    }
+
     @Provides
     @Singleton
     public ReplyNotificationsHelper provideReplyNotificationsHelper(
@@ -527,14 +556,16 @@ public class ManagerModule {
     public ChanThreadViewableInfoManager provideChanThreadViewableInfoManager(
             ChanThreadViewableInfoRepository chanThreadViewableInfoRepository,
             CoroutineScope appScope,
-            ChanThreadsCache chanThreadsCache
+            ChanThreadsCache chanThreadsCache,
+            Lazy<ApplicationVisibilityManager> applicationVisibilityManager
     ) {
         Logger.deps("ChanThreadViewableInfoManager");
         return new ChanThreadViewableInfoManager(
                 ChanSettings.verboseLogs.get(),
                 appScope,
                 chanThreadViewableInfoRepository,
-                chanThreadsCache
+                chanThreadsCache,
+                applicationVisibilityManager
         );
     }
 
@@ -725,6 +756,7 @@ public class ManagerModule {
             CoroutineScope appScope,
             AppConstants appConstants,
             Lazy<CacheHandler> cacheHandler,
+            Lazy<ExoPlayerCache> exoPlayerCache,
             Lazy<RealDownloaderOkHttpClient> downloaderOkHttpClient,
             ImageSaverFileManagerWrapper imageSaverFileManagerWrapper,
             SiteResolver siteResolver,
@@ -739,6 +771,7 @@ public class ManagerModule {
                 appScope,
                 appConstants,
                 cacheHandler,
+                exoPlayerCache,
                 downloaderOkHttpClient,
                 NotificationManagerCompat.from(appContext),
                 imageSaverFileManagerWrapper,
@@ -847,7 +880,9 @@ public class ManagerModule {
             ChanPostImageRepository chanPostImageRepository,
             ThreadDownloaderFileManagerWrapper threadDownloaderFileManagerWrapper,
             ThreadDownloadProgressNotifier threadDownloadProgressNotifier,
-            ThreadDownloaderPersistPostsInDatabaseUseCase threadDownloaderPersistPostsInDatabaseUseCase
+            ThreadDownloaderPersistPostsInDatabaseUseCase threadDownloaderPersistPostsInDatabaseUseCase,
+            ThreadMediaStore threadMediaStore,
+            Lazy<CacheHandler> cacheHandler
     ) {
         Logger.deps("ThreadDownloadingDelegate");
         return new ThreadDownloadingDelegate(
@@ -860,10 +895,19 @@ public class ManagerModule {
                 chanPostImageRepository,
                 threadDownloaderFileManagerWrapper,
                 threadDownloadProgressNotifier,
-                threadDownloaderPersistPostsInDatabaseUseCase
+                threadDownloaderPersistPostsInDatabaseUseCase,
+                threadMediaStore,
+                cacheHandler
         );
     }
 
+    @Singleton
+    @Provides
+    public ThreadMediaStore provideThreadMediaStore(AppConstants appConstants) {
+        Logger.deps("ThreadMediaStore");
+        return new ThreadMediaStore(appConstants);
+    }
+
     @Singleton
     @Provides
     public CurrentOpenedDescriptorStateManager provideCurrentOpenedDescriptorStateManager() {
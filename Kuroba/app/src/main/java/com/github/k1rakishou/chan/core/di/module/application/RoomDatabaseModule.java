@@ -10,6 +10,7 @@ import com.github.k1rakishou.model.repository.ChanFilterWatchRepository;
 import com.github.k1rakishou.model.repository.ChanPostHideRepository;
 import com.github.k1rakishou.model.repository.ChanPostImageRepository;
 import com.github.k1rakishou.model.repository.ChanPostRepository;
+import com.github.k1rakishou.model.repository.ChanPostSearchRepository;
 import com.github.k1rakishou.model.repository.ChanSavedReplyRepository;
 import com.github.k1rakishou.model.repository.ChanThreadViewableInfoRepository;
 import com.github.k1rakishou.model.repository.CompositeCatalogRepository;
@@ -176,6 +177,15 @@ public class RoomDatabaseModule {
         return modelComponent.getChanFilterWatchRepository();
     }
 
+    @Provides
+    @Singleton
+    public ChanPostSearchRepository provideChanPostSearchRepository(
+            ModelComponent modelComponent
+    ) {
+        Logger.deps("ChanPostSearchRepository");
+        return modelComponent.getChanPostSearchRepository();
+    }
+
     @Provides
     @Singleton
     public ChanPostImageRepository provideChanPostImageRepository(
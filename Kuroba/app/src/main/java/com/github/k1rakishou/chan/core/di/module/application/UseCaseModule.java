@@ -21,6 +21,7 @@ import com.github.k1rakishou.chan.core.manager.SeenPostsManager;
 import com.github.k1rakishou.chan.core.manager.SiteManager;
 import com.github.k1rakishou.chan.core.manager.ThreadBookmarkGroupManager;
 import com.github.k1rakishou.chan.core.site.loader.ChanThreadLoaderCoordinator;
+import com.github.k1rakishou.chan.core.site.loader.SharedCatalogResponseCache;
 import com.github.k1rakishou.chan.core.site.loader.internal.usecase.ParsePostsV1UseCase;
 import com.github.k1rakishou.chan.core.site.parser.ReplyParser;
 import com.github.k1rakishou.chan.core.site.parser.search.SimpleCommentParser;
@@ -55,6 +56,7 @@ import com.github.k1rakishou.fsaf.FileManager;
 import com.github.k1rakishou.model.repository.ChanCatalogSnapshotRepository;
 import com.github.k1rakishou.model.repository.ChanFilterWatchRepository;
 import com.github.k1rakishou.model.repository.ChanPostRepository;
+import com.github.k1rakishou.model.repository.ChanPostSearchRepository;
 import com.github.k1rakishou.model.repository.ChanSavedReplyRepository;
 import com.github.k1rakishou.model.repository.DatabaseMetaRepository;
 import com.google.gson.Gson;
@@ -158,13 +160,15 @@ public class UseCaseModule {
     public GlobalSearchUseCase provideGlobalSearchUseCase(
             SiteManager siteManager,
             ThemeEngine themeEngine,
-            Lazy<SimpleCommentParser> simpleCommentParser
+            Lazy<SimpleCommentParser> simpleCommentParser,
+            Lazy<ChanPostSearchRepository> chanPostSearchRepository
     ) {
         Logger.deps("GlobalSearchUseCase");
         return new GlobalSearchUseCase(
                 siteManager,
                 themeEngine,
-                simpleCommentParser
+                simpleCommentParser,
+                chanPostSearchRepository
         );
     }
 
@@ -191,7 +195,7 @@ public class UseCaseModule {
             ThreadBookmarkGroupManager threadBookmarkGroupManager,
             ChanFilterManager chanFilterManager,
             SiteManager siteManager,
-            Lazy<ProxiedOkHttpClient> proxiedOkHttpClient,
+            Lazy<SharedCatalogResponseCache> sharedCatalogResponseCache,
             Lazy<SimpleCommentParser> simpleCommentParser,
             FilterEngine filterEngine,
             ChanPostRepository chanPostRepository,
@@ -207,7 +211,7 @@ public class UseCaseModule {
                 chanFilterManager,
                 siteManager,
                 appScope,
-                proxiedOkHttpClient,
+                sharedCatalogResponseCache,
                 simpleCommentParser,
                 filterEngine,
                 chanPostRepository,
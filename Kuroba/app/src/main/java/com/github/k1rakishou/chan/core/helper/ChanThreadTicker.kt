@@ -22,12 +22,15 @@ class ChanThreadTicker(
   private val isDevFlavor: Boolean,
   private val _archivesManager: Lazy<ArchivesManager>,
   private val _chanThreadManager: Lazy<ChanThreadManager>,
+  private val _threadRefreshScheduler: Lazy<ThreadRefreshScheduler>,
   private val action: suspend (ChanDescriptor) -> Unit
 ) {
   private val archivesManager: ArchivesManager
     get() = _archivesManager.get()
   private val chanThreadManager: ChanThreadManager
     get() = _chanThreadManager.get()
+  private val threadRefreshScheduler: ThreadRefreshScheduler
+    get() = _threadRefreshScheduler.get()
 
   private val debouncer = DebouncingCoroutineExecutor(scope)
   private val chanTickerData = ChanTickerData()
@@ -244,6 +247,24 @@ class ChanThreadTicker(
     val postsCount = chanThreadManager.getThreadPostsCount(currentDescriptor)
     val multiplier = (postsCount.toFloat() / POSTS_COUNT_LONG_TIMEOUTS.toFloat()) / LONG_TIMEOUT_DIVIDER
 
+    // Archives are slow and rarely change so we always use the stepped timeouts for them. For
+    // regular threads we try to use the post velocity estimation and only fallback to the stepped
+    // timeouts when there is no estimation for the thread yet. The estimation already includes the
+    // no-change backoff so the posts count multiplier is applied to its base delay (once) and not
+    // to the result.
+    if (!isArchiveDescriptor) {
+      val adaptiveTimeoutSec = threadRefreshScheduler.calculateNextUpdateDelaySeconds(
+        threadDescriptor = currentDescriptor,
+        minDelaySeconds = NORMAL_WATCH_TIMEOUTS_SEC.first(),
+        maxDelaySeconds = MAX_ADAPTIVE_TIMER_TIMEOUT_SEC,
+        baseDelayMultiplier = multiplier.coerceAtLeast(1f).toDouble()
+      )
+
+      if (adaptiveTimeoutSec != null) {
+        return adaptiveTimeoutSec
+      }
+    }
+
     if (multiplier <= 1) {
       return timeoutSec
     }
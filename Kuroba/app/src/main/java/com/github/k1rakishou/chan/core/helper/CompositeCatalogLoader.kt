@@ -0,0 +1,122 @@
+package com.github.k1rakishou.chan.core.helper
+
+import com.github.k1rakishou.chan.core.manager.ChanThreadManager
+import com.github.k1rakishou.chan.core.site.loader.ThreadLoadResult
+import com.github.k1rakishou.core_logger.Logger
+import com.github.k1rakishou.model.data.descriptor.ChanDescriptor
+import com.github.k1rakishou.model.data.descriptor.SiteDescriptor
+import com.github.k1rakishou.model.data.options.ChanCacheOptions
+import com.github.k1rakishou.model.data.options.ChanCacheUpdateOptions
+import com.github.k1rakishou.model.data.options.ChanLoadOptions
+import com.github.k1rakishou.model.data.options.ChanReadOptions
+import dagger.Lazy
+import kotlinx.coroutines.async
+import kotlinx.coroutines.coroutineScope
+import kotlinx.coroutines.sync.Semaphore
+import kotlinx.coroutines.sync.withPermit
+import java.util.concurrent.ConcurrentHashMap
+
+/**
+ * Loads the catalogs of a composite catalog concurrently. At most [maxParallelism] catalogs are
+ * loaded at the same time and at most [maxConcurrentRequestsPerSite] of them may belong to the same
+ * site so that we don't hammer one site when the whole composite catalog consists of its boards.
+ *
+ * The results are delivered in the order of the composite catalog boards as soon as all the
+ * previous boards are loaded, so the first boards can be displayed while the rest are still loading.
+ * */
+class CompositeCatalogLoader(
+  private val verboseLogs: Boolean,
+  private val maxParallelism: Int,
+  private val maxConcurrentRequestsPerSite: Int,
+  private val _chanThreadManager: Lazy<ChanThreadManager>
+) {
+  private val parallelismSemaphore = Semaphore(maxParallelism)
+  private val perSiteSemaphores = ConcurrentHashMap<SiteDescriptor, Semaphore>()
+
+  private val chanThreadManager: ChanThreadManager
+    get() = _chanThreadManager.get()
+
+  init {
+    require(maxParallelism > 0) { "Bad maxParallelism: $maxParallelism" }
+    require(maxConcurrentRequestsPerSite > 0) { "Bad maxConcurrentRequestsPerSite: $maxConcurrentRequestsPerSite" }
+  }
+
+  /**
+   * Loads catalogs of the [compositeCatalogDescriptor] starting with [startPage] (which is the index
+   * of the catalog in the composite catalog). [onCatalogLoaded] is called in the caller's context in
+   * order of the pages. Returns the result of the last catalog or null if there was nothing to load.
+   * */
+  suspend fun loadCatalogs(
+    compositeCatalogDescriptor: ChanDescriptor.CompositeCatalogDescriptor,
+    startPage: Int,
+    onCatalogLoaded: suspend (page: Int, catalogDescriptor: ChanDescriptor.CatalogDescriptor, ThreadLoadResult) -> Unit
+  ): ThreadLoadResult? {
+    val catalogDescriptors = compositeCatalogDescriptor.catalogDescriptors
+    if (startPage < 0 || startPage > catalogDescriptors.lastIndex) {
+      return null
+    }
+
+    return coroutineScope {
+      val pendingLoads = (startPage..catalogDescriptors.lastIndex).map { page ->
+        val catalogDescriptor = catalogDescriptors[page]
+
+        return@map async {
+          loadCatalog(
+            page = page,
+            compositeCatalogDescriptor = compositeCatalogDescriptor,
+            catalogDescriptor = catalogDescriptor
+          )
+        }
+      }
+
+      var lastThreadLoadResult: ThreadLoadResult? = null
+
+      pendingLoads.forEachIndexed { index, pendingLoad ->
+        val page = startPage + index
+        val threadLoadResult = pendingLoad.await()
+
+        onCatalogLoaded(page, catalogDescriptors[page], threadLoadResult)
+        lastThreadLoadResult = threadLoadResult
+      }
+
+      return@coroutineScope lastThreadLoadResult
+    }
+  }
+
+  private suspend fun loadCatalog(
+    page: Int,
+    compositeCatalogDescriptor: ChanDescriptor.CompositeCatalogDescriptor,
+    catalogDescriptor: ChanDescriptor.CatalogDescriptor
+  ): ThreadLoadResult {
+    val siteSemaphore = perSiteSemaphores.getOrPut(catalogDescriptor.siteDescriptor()) {
+      Semaphore(maxConcurrentRequestsPerSite)
+    }
+
+    // The site permit is taken first so that boards waiting for a busy site don't hold global
+    // permits which boards of other sites could use.
+    return siteSemaphore.withPermit {
+      return@withPermit parallelismSemaphore.withPermit {
+        if (verboseLogs) {
+          Logger.d(TAG, "loadCatalog() loading ${catalogDescriptor} (page=$page)")
+        }
+
+        return@withPermit chanThreadManager.loadThreadOrCatalog(
+          page = page,
+          compositeCatalogDescriptor = compositeCatalogDescriptor,
+          chanDescriptor = catalogDescriptor,
+          chanCacheUpdateOptions = ChanCacheUpdateOptions.UpdateCache,
+          chanLoadOptions = ChanLoadOptions.retainAll(),
+          chanCacheOptions = ChanCacheOptions.onlyCacheInMemory(),
+          chanReadOptions = ChanReadOptions.default()
+        )
+      }
+    }
+  }
+
+  companion object {
+    private const val TAG = "CompositeCatalogLoader"
+
+    const val DEFAULT_MAX_PARALLELISM = 4
+    const val DEFAULT_MAX_CONCURRENT_REQUESTS_PER_SITE = 2
+  }
+}
@@ -0,0 +1,251 @@
+package com.github.k1rakishou.chan.core.helper
+
+import androidx.annotation.GuardedBy
+import com.github.k1rakishou.core_logger.Logger
+import com.github.k1rakishou.model.data.descriptor.ChanDescriptor
+import java.util.concurrent.locks.ReentrantReadWriteLock
+import kotlin.concurrent.read
+import kotlin.concurrent.write
+import kotlin.math.max
+import kotlin.math.min
+import kotlin.math.pow
+
+/**
+ * Estimates how fast new posts arrive into every thread we are (or were recently) watching and
+ * uses that estimation to decide when the next update of that thread should happen. The goal is
+ * to have roughly [TARGET_NEW_POSTS_PER_REQUEST] new posts per update request, so fast threads are
+ * updated often while dead threads are barely touched at all. Every server response that brings no
+ * new posts makes the next delay [NO_CHANGE_BACKOFF_MULTIPLIER] times longer.
+ *
+ * Both the currently opened thread updates (ChanThreadTicker) and the bookmark watcher feed their
+ * results into the same per-thread model.
+ * */
+class ThreadRefreshScheduler(
+  private val verboseLogs: Boolean
+) {
+  private val lock = ReentrantReadWriteLock()
+
+  @GuardedBy("lock")
+  private val models = linkedMapOf<ChanDescriptor.ThreadDescriptor, ThreadVelocityModel>()
+
+  /**
+   * Called after the thread was loaded from the server (or from the cache). [lastPostsTimestamps]
+   * are the timestamps (in seconds) of the last posts of the thread in ascending order.
+   *
+   * A load from the cache/database can't bring new posts so it is only used to update the
+   * timestamps based estimation, it must neither grow the backoff nor count as an observation.
+   * */
+  fun onThreadLoaded(
+    threadDescriptor: ChanDescriptor.ThreadDescriptor,
+    lastPostsTimestamps: LongArray,
+    totalPostsCount: Int,
+    newPostsCount: Int,
+    isLoadedFromServer: Boolean,
+    nowMs: Long = System.currentTimeMillis()
+  ) {
+    lock.write {
+      val model = getOrCreateModel(threadDescriptor)
+
+      val postsPerSecond = estimatePostsPerSecond(lastPostsTimestamps, nowMs)
+      if (postsPerSecond != null) {
+        // Timestamps give us the whole picture of the recent thread activity so there is no need
+        // to smooth it out with the previous estimations.
+        model.postsPerSecond = postsPerSecond
+      } else if (isLoadedFromServer) {
+        model.updateFromObservation(totalPostsCount, nowMs)
+      }
+
+      if (!isLoadedFromServer) {
+        if (verboseLogs) {
+          Logger.d(TAG, "onThreadLoaded($threadDescriptor) loaded from the cache, model=$model")
+        }
+
+        return@write
+      }
+
+      model.onUpdateResult(hasNewPosts = newPostsCount > 0)
+      model.lastObservedPostsCount = totalPostsCount
+      model.lastObservedAtMs = nowMs
+
+      if (verboseLogs) {
+        Logger.d(TAG, "onThreadLoaded($threadDescriptor) newPostsCount=$newPostsCount, model=$model")
+      }
+    }
+  }
+
+  /**
+   * Called by the bookmark watcher after it has successfully fetched bookmark info of a thread.
+   * Bookmark info has no post timestamps so we use the difference in posts count between two
+   * observations instead.
+   * */
+  fun onBookmarkFetched(
+    threadDescriptor: ChanDescriptor.ThreadDescriptor,
+    totalPostsCount: Int,
+    nowMs: Long = System.currentTimeMillis()
+  ) {
+    lock.write {
+      val model = getOrCreateModel(threadDescriptor)
+      val hasNewPosts = model.lastObservedPostsCount in 0 until totalPostsCount
+
+      model.updateFromObservation(totalPostsCount, nowMs)
+      model.onUpdateResult(hasNewPosts = hasNewPosts)
+      model.lastObservedPostsCount = totalPostsCount
+      model.lastObservedAtMs = nowMs
+
+      if (verboseLogs) {
+        Logger.d(TAG, "onBookmarkFetched($threadDescriptor) totalPostsCount=$totalPostsCount, model=$model")
+      }
+    }
+  }
+
+  /**
+   * Returns the delay (in seconds) after which the thread should be updated next time or null if
+   * we don't know anything about this thread yet (in which case the caller should fallback to
+   * its own default timeouts). [baseDelayMultiplier] is applied to the velocity based delay before
+   * the no-change backoff.
+   * */
+  fun calculateNextUpdateDelaySeconds(
+    threadDescriptor: ChanDescriptor.ThreadDescriptor,
+    minDelaySeconds: Long,
+    maxDelaySeconds: Long,
+    baseDelayMultiplier: Double = 1.0
+  ): Long? {
+    return lock.read {
+      val model = models[threadDescriptor]
+        ?: return@read null
+
+      return@read model.calculateNextUpdateDelaySeconds(minDelaySeconds, maxDelaySeconds, baseDelayMultiplier)
+    }
+  }
+
+  /**
+   * Whether it's too early to update this thread according to the model. Threads we know nothing
+   * about are always considered ready to be updated.
+   * */
+  fun isTooEarlyToUpdate(
+    threadDescriptor: ChanDescriptor.ThreadDescriptor,
+    minDelaySeconds: Long,
+    maxDelaySeconds: Long,
+    nowMs: Long = System.currentTimeMillis()
+  ): Boolean {
+    return lock.read {
+      val model = models[threadDescriptor]
+        ?: return@read false
+
+      if (model.lastObservedAtMs <= 0L) {
+        return@read false
+      }
+
+      val delaySeconds = model.calculateNextUpdateDelaySeconds(minDelaySeconds, maxDelaySeconds)
+        ?: return@read false
+
+      return@read model.lastObservedAtMs + (delaySeconds * 1000L) > nowMs
+    }
+  }
+
+  fun forget(threadDescriptor: ChanDescriptor.ThreadDescriptor) {
+    lock.write { models.remove(threadDescriptor) }
+  }
+
+  @GuardedBy("lock")
+  private fun getOrCreateModel(threadDescriptor: ChanDescriptor.ThreadDescriptor): ThreadVelocityModel {
+    val model = models.getOrPut(threadDescriptor) { ThreadVelocityModel() }
+
+    if (models.size > MAX_MODELS_COUNT) {
+      // Insertion-ordered map, the first entry is the oldest one
+      val iterator = models.entries.iterator()
+      iterator.next()
+      iterator.remove()
+    }
+
+    return model
+  }
+
+  private fun estimatePostsPerSecond(lastPostsTimestamps: LongArray, nowMs: Long): Double? {
+    if (lastPostsTimestamps.size < MIN_TIMESTAMPS_FOR_ESTIMATION) {
+      return null
+    }
+
+    // Use the current time as the end of the window and not the last post time. Otherwise a thread
+    // which had a burst of posts a couple of hours ago and then died would be considered fast.
+    val oldestTimestampSec = lastPostsTimestamps.first()
+    val newestTimestampSec = lastPostsTimestamps.last()
+    val windowEndSec = max(nowMs / 1000L, newestTimestampSec)
+    val windowSec = max(windowEndSec - oldestTimestampSec, 1L)
+
+    return lastPostsTimestamps.size.toDouble() / windowSec.toDouble()
+  }
+
+  private class ThreadVelocityModel(
+    var postsPerSecond: Double? = null,
+    var lastObservedPostsCount: Int = -1,
+    var lastObservedAtMs: Long = 0L,
+    var consecutiveNoChangeUpdates: Int = 0
+  ) {
+
+    fun updateFromObservation(totalPostsCount: Int, nowMs: Long) {
+      if (lastObservedPostsCount < 0 || lastObservedAtMs <= 0L || nowMs <= lastObservedAtMs) {
+        return
+      }
+
+      // Posts may get deleted between two observations
+      val newPosts = (totalPostsCount - lastObservedPostsCount).coerceAtLeast(0)
+      val elapsedSec = (nowMs - lastObservedAtMs).toDouble() / 1000.0
+      val sample = newPosts.toDouble() / elapsedSec
+
+      val prevPostsPerSecond = postsPerSecond
+      postsPerSecond = if (prevPostsPerSecond == null) {
+        sample
+      } else {
+        (OBSERVATION_SMOOTHING_FACTOR * sample) + ((1.0 - OBSERVATION_SMOOTHING_FACTOR) * prevPostsPerSecond)
+      }
+    }
+
+    fun onUpdateResult(hasNewPosts: Boolean) {
+      consecutiveNoChangeUpdates = if (hasNewPosts) {
+        0
+      } else {
+        min(consecutiveNoChangeUpdates + 1, MAX_BACKOFF_STEPS)
+      }
+    }
+
+    fun calculateNextUpdateDelaySeconds(
+      minDelaySeconds: Long,
+      maxDelaySeconds: Long,
+      baseDelayMultiplier: Double = 1.0
+    ): Long? {
+      val rate = postsPerSecond
+        ?: return null
+
+      val baseDelaySeconds = if (rate <= 0.0) {
+        maxDelaySeconds.toDouble()
+      } else {
+        (TARGET_NEW_POSTS_PER_REQUEST / rate) * baseDelayMultiplier
+      }
+
+      val backoff = NO_CHANGE_BACKOFF_MULTIPLIER.pow(consecutiveNoChangeUpdates)
+      val delaySeconds = (baseDelaySeconds * backoff).coerceAtMost(maxDelaySeconds.toDouble())
+
+      return delaySeconds.toLong().coerceIn(minDelaySeconds, maxDelaySeconds)
+    }
+
+    override fun toString(): String {
+      return "ThreadVelocityModel(postsPerSecond=$postsPerSecond, " +
+        "lastObservedPostsCount=$lastObservedPostsCount, lastObservedAtMs=$lastObservedAtMs, " +
+        "consecutiveNoChangeUpdates=$consecutiveNoChangeUpdates)"
+    }
+  }
+
+  companion object {
+    private const val TAG = "ThreadRefreshScheduler"
+
+    const val TIMESTAMPS_WINDOW_SIZE = 50
+
+    private const val MIN_TIMESTAMPS_FOR_ESTIMATION = 2
+    private const val MAX_MODELS_COUNT = 512
+    private const val TARGET_NEW_POSTS_PER_REQUEST = 3.0
+    private const val NO_CHANGE_BACKOFF_MULTIPLIER = 2.0
+    private const val MAX_BACKOFF_STEPS = 5
+    private const val OBSERVATION_SMOOTHING_FACTOR = 0.4
+  }
+}
@@ -0,0 +1,208 @@
+package com.github.k1rakishou.chan.core.image
+
+import android.graphics.Bitmap
+import android.graphics.BitmapFactory
+import coil.size.PixelSize
+import com.github.k1rakishou.chan.core.cache.CacheFileType
+import com.github.k1rakishou.chan.core.cache.CacheHandler
+import com.github.k1rakishou.chan.utils.BackgroundUtils
+import com.github.k1rakishou.common.isCoroutineCancellationException
+import com.github.k1rakishou.core_logger.Logger
+import dagger.Lazy
+import kotlinx.coroutines.runInterruptible
+import java.io.File
+import kotlin.math.max
+
+/**
+ * A disk tier of images that were already decoded and downsampled to the size of the view they
+ * are displayed in. Used when big images (e.g. full images with highResCells setting turned on) are
+ * displayed as thumbnails. Decoding a 4000x3000 jpeg (even with inSampleSize) every time a cell is
+ * rebound is way slower than decoding a small version of it, which is what we store here.
+ *
+ * The image headers are read first and the image is only stored in this tier when it's at least
+ * [MIN_DOWNSAMPLE_RATIO] times bigger than the target size, otherwise decoding the original file is
+ * cheap enough.
+ * */
+class DownsampledImageCache(
+  private val verboseLogs: Boolean,
+  private val _cacheHandler: Lazy<CacheHandler>
+) {
+  private val cacheHandler: CacheHandler
+    get() = _cacheHandler.get()
+
+  fun getOrNull(url: String, targetSize: PixelSize): File? {
+    BackgroundUtils.ensureBackgroundThread()
+
+    if (!isValidTargetSize(targetSize)) {
+      return null
+    }
+
+    val key = formatKey(url, targetSize)
+    val cacheFile = cacheHandler.getCacheFileOrNull(CACHE_FILE_TYPE, key)
+      ?: return null
+
+    if (!cacheFile.exists() || cacheFile.length() <= 0L) {
+      return null
+    }
+
+    // The file may still be being written into
+    if (!cacheHandler.isAlreadyDownloaded(CACHE_FILE_TYPE, cacheFile)) {
+      return null
+    }
+
+    return cacheFile
+  }
+
+  /**
+   * Decodes [originalFile] with the biggest inSampleSize possible for the [targetSize], scales it
+   * down to the bucketed [targetSize] and stores it on the disk. Returns null when the original
+   * image is small enough or can't be decoded by BitmapFactory, in which case the caller should
+   * use the original file.
+   * */
+  suspend fun decodeAndStore(url: String, originalFile: File, targetSize: PixelSize): File? {
+    BackgroundUtils.ensureBackgroundThread()
+
+    if (!isValidTargetSize(targetSize)) {
+      return null
+    }
+
+    try {
+      return runInterruptible { decodeAndStoreInternal(url, originalFile, targetSize) }
+    } catch (error: Throwable) {
+      if (error.isCoroutineCancellationException()) {
+        throw error
+      }
+
+      Logger.e(TAG, "decodeAndStore('$url', $targetSize) error", error)
+      return null
+    }
+  }
+
+  private fun decodeAndStoreInternal(url: String, originalFile: File, targetSize: PixelSize): File? {
+    val boundsOptions = BitmapFactory.Options().apply { inJustDecodeBounds = true }
+    BitmapFactory.decodeFile(originalFile.absolutePath, boundsOptions)
+
+    val originalWidth = boundsOptions.outWidth
+    val originalHeight = boundsOptions.outHeight
+
+    if (originalWidth <= 0 || originalHeight <= 0 || boundsOptions.outMimeType !in SUPPORTED_MIME_TYPES) {
+      return null
+    }
+
+    val bucketSize = toBucketSize(targetSize)
+
+    // Images are displayed with Scale.FIT so the whole image must fit into the target size
+    val ratio = max(
+      originalWidth.toFloat() / bucketSize.width.toFloat(),
+      originalHeight.toFloat() / bucketSize.height.toFloat()
+    )
+
+    if (ratio < MIN_DOWNSAMPLE_RATIO) {
+      return null
+    }
+
+    val decodeOptions = BitmapFactory.Options().apply {
+      inSampleSize = calculateInSampleSize(ratio)
+      inPreferredConfig = Bitmap.Config.ARGB_8888
+    }
+
+    val sampledBitmap = BitmapFactory.decodeFile(originalFile.absolutePath, decodeOptions)
+      ?: return null
+
+    val resultWidth = (originalWidth / ratio).toInt().coerceAtLeast(1)
+    val resultHeight = (originalHeight / ratio).toInt().coerceAtLeast(1)
+
+    val resultBitmap = if (sampledBitmap.width > resultWidth || sampledBitmap.height > resultHeight) {
+      Bitmap.createScaledBitmap(sampledBitmap, resultWidth, resultHeight, true)
+    } else {
+      sampledBitmap
+    }
+
+    try {
+      return storeBitmap(url, targetSize, resultBitmap)
+    } finally {
+      if (resultBitmap !== sampledBitmap) {
+        resultBitmap.recycle()
+      }
+
+      sampledBitmap.recycle()
+
+      if (verboseLogs) {
+        Logger.d(TAG, "decodeAndStoreInternal('$url') ${originalWidth}x${originalHeight} -> " +
+          "${resultWidth}x${resultHeight}, inSampleSize=${decodeOptions.inSampleSize}")
+      }
+    }
+  }
+
+  private fun storeBitmap(url: String, targetSize: PixelSize, bitmap: Bitmap): File? {
+    val key = formatKey(url, targetSize)
+
+    val cacheFile = cacheHandler.getOrCreateCacheFile(CACHE_FILE_TYPE, key)
+      ?: return null
+
+    val success = try {
+      cacheFile.outputStream().use { outputStream ->
+        if (bitmap.hasAlpha()) {
+          bitmap.compress(Bitmap.CompressFormat.PNG, 100, outputStream)
+        } else {
+          bitmap.compress(Bitmap.CompressFormat.JPEG, JPEG_QUALITY, outputStream)
+        }
+      }
+    } catch (error: Throwable) {
+      cacheHandler.deleteCacheFile(CACHE_FILE_TYPE, cacheFile)
+      throw error
+    }
+
+    if (!success || !cacheHandler.markFileDownloaded(CACHE_FILE_TYPE, cacheFile)) {
+      cacheHandler.deleteCacheFile(CACHE_FILE_TYPE, cacheFile)
+      return null
+    }
+
+    cacheHandler.fileWasAdded(CACHE_FILE_TYPE, cacheFile.length())
+    return cacheFile
+  }
+
+  private fun isValidTargetSize(targetSize: PixelSize): Boolean {
+    return targetSize.width > 0 && targetSize.height > 0
+  }
+
+  private fun formatKey(url: String, targetSize: PixelSize): String {
+    val bucketSize = toBucketSize(targetSize)
+    return "${url}#downsampled_${bucketSize.width}x${bucketSize.height}"
+  }
+
+  companion object {
+    private const val TAG = "DownsampledImageCache"
+    private val CACHE_FILE_TYPE = CacheFileType.PostMediaDownsampled
+
+    // Cells of slightly different sizes (e.g. after rotation or in different grid span counts)
+    // should share the same downsampled image.
+    private const val SIZE_BUCKET_PX = 64
+    private const val MIN_DOWNSAMPLE_RATIO = 2f
+    private const val JPEG_QUALITY = 90
+
+    private val SUPPORTED_MIME_TYPES = setOf("image/jpeg", "image/png", "image/webp")
+
+    internal fun toBucketSize(targetSize: PixelSize): PixelSize {
+      return PixelSize(
+        roundUpToBucket(targetSize.width),
+        roundUpToBucket(targetSize.height)
+      )
+    }
+
+    internal fun calculateInSampleSize(ratio: Float): Int {
+      var inSampleSize = 1
+
+      // The largest power of two that still keeps the decoded image bigger than the target size
+      while (inSampleSize * 2 <= ratio) {
+        inSampleSize *= 2
+      }
+
+      return inSampleSize
+    }
+
+    private fun roundUpToBucket(value: Int): Int {
+      return ((value + SIZE_BUCKET_PX - 1) / SIZE_BUCKET_PX) * SIZE_BUCKET_PX
+    }
+  }
+}
@@ -8,6 +8,7 @@ import android.graphics.ColorFilter
 import android.graphics.Matrix
 import android.graphics.Paint
 import android.graphics.drawable.BitmapDrawable
+import android.os.SystemClock
 import android.util.LruCache
 import android.view.View
 import androidx.annotation.DrawableRes
@@ -32,6 +33,7 @@ import com.github.k1rakishou.chan.core.helper.ImageLoaderFileManagerWrapper
 import com.github.k1rakishou.chan.core.manager.ReplyManager
 import com.github.k1rakishou.chan.core.manager.ThreadDownloadManager
 import com.github.k1rakishou.chan.core.site.SiteResolver
+import com.github.k1rakishou.chan.ui.cell.PostCellStatistics
 import com.github.k1rakishou.chan.ui.widget.FixedViewSizeResolver
 import com.github.k1rakishou.chan.utils.BackgroundUtils
 import com.github.k1rakishou.chan.utils.MediaUtils
@@ -102,6 +104,8 @@ class ImageLoaderV2(
   private val fileManager: FileManager
     get() = imageLoaderFileManagerWrapper.fileManager
 
+  private val downsampledImageCache = DownsampledImageCache(verboseLogs, _cacheHandler)
+
   private var imageNotFoundDrawable: CachedTintedErrorDrawable? = null
   private var imageErrorLoadingDrawable: CachedTintedErrorDrawable? = null
 
@@ -280,6 +284,7 @@ class ImageLoaderV2(
     postDescriptor: PostDescriptor? = null
   ): Disposable {
     val completableDeferred = CompletableDeferred<Unit>()
+    val requestStartNanos = SystemClock.elapsedRealtimeNanos()
 
     val job = appScope.launch(Dispatchers.IO) {
       BackgroundUtils.ensureBackgroundThread()
@@ -311,11 +316,19 @@ class ImageLoaderV2(
           return@launch
         }
 
-        // 2. Check whether we have this bitmap cached on the disk
-        var imageFile = tryLoadFromDiskCacheOrNull(url, cacheFileType, postDescriptor)
+        // 2. Check whether we already have this image decoded and downsampled to this size on the
+        // disk. If we do then we don't need the original file at all.
+        val hasDownsampledImage = hasDownsampledImage(url, cacheFileType, imageSize)
+
+        // 3. Check whether we have this bitmap cached on the disk
+        var imageFile = if (hasDownsampledImage) {
+          null
+        } else {
+          tryLoadFromDiskCacheOrNull(url, cacheFileType, postDescriptor)
+        }
 
-        // 3. Failed to find this bitmap in the disk cache. Load it from the network.
-        if (imageFile == null) {
+        // 4. Failed to find this bitmap in the disk cache. Load it from the network.
+        if (imageFile == null && !hasDownsampledImage) {
           isFromCache = false
 
           imageFile = loadFromNetworkInternal(
@@ -335,7 +348,7 @@ class ImageLoaderV2(
           }
         }
 
-        // 4. We have this image on disk, now we need to reload it from disk, apply transformations
+        // 5. We have this image on disk, now we need to reload it from disk, apply transformations
         // with size and notify all listeners.
         val activeListeners = mutex.withLockNonCancellable {
           val activeRequests = activeRequests.get(url)
@@ -354,6 +367,13 @@ class ImageLoaderV2(
 
         withContext(NonCancellable) {
           activeListeners.forEachIndexed { index, activeListener ->
+            if (imageFile == null && !hasDownsampledImage(url, cacheFileType, activeListener.imageSize)) {
+              // Another listener with a different image size was added to this request and there
+              // is no downsampled image for it so we have to get the original image after all.
+              imageFile = tryLoadFromDiskCacheOrNull(url, cacheFileType, postDescriptor)
+                ?: loadFromNetworkInternal(context, url, cacheFileType, activeListener.imageSize)
+            }
+
             val resultBitmapDrawable = applyTransformationsToDrawable(
               context = context,
               lifecycle = context.getLifecycleFromContext(),
@@ -402,6 +422,11 @@ class ImageLoaderV2(
             }
           }
         }
+
+        PostCellStatistics.onImageRequestCompleted(
+          fromCache = isFromCache,
+          timeNanos = SystemClock.elapsedRealtimeNanos() - requestStartNanos
+        )
       } catch (error: Throwable) {
         notifyListenersFailure(context, url, error)
 
@@ -431,11 +456,14 @@ class ImageLoaderV2(
     url: String,
     cacheFileType: CacheFileType
   ): BitmapDrawable? {
-    val fileLocation = when (imageFile) {
-      is RawFile -> File(imageFile.getFullPath())
-      is ExternalFile -> imageFile.getUri()
-      null -> return null
-      else -> error("Unknown file type: ${imageFile.javaClass.simpleName}")
+    val downsampledImageFile = getOrCreateDownsampledImage(url, cacheFileType, activeListener.imageSize, imageFile)
+
+    val fileLocation = when {
+      downsampledImageFile != null -> downsampledImageFile
+      imageFile is RawFile -> File(imageFile.getFullPath())
+      imageFile is ExternalFile -> imageFile.getUri()
+      imageFile == null -> return null
+      else -> error("Unknown file type: ${imageFile?.javaClass?.simpleName}")
     }
 
     val request = with(ImageRequest.Builder(context)) {
@@ -459,7 +487,9 @@ class ImageLoaderV2(
         Logger.e(TAG, "applyTransformationsToDrawable() error, " +
           "fileLocation=${fileLocation}, error=${result.throwable.errorMessageOrClassName()}")
 
-        if (!fileCacheV2.isRunning(url)) {
+        if (downsampledImageFile != null) {
+          cacheHandler.deleteCacheFile(CacheFileType.PostMediaDownsampled, downsampledImageFile)
+        } else if (!fileCacheV2.isRunning(url)) {
           cacheHandler.deleteCacheFileByUrl(cacheFileType, url)
         }
 
@@ -468,6 +498,53 @@ class ImageLoaderV2(
     }
   }
 
+  private fun hasDownsampledImage(url: String, cacheFileType: CacheFileType, imageSize: ImageSize): Boolean {
+    if (!canBeDownsampled(cacheFileType)) {
+      return false
+    }
+
+    val targetSize = imageSize.sizeIfKnown()
+      ?: return false
+
+    return downsampledImageCache.getOrNull(url, targetSize) != null
+  }
+
+  /**
+   * Returns a small version of the image decoded at the listener's image size (creating it from
+   * [originalImageFile] if it's not created yet) or null if the original image should be used.
+   * */
+  private suspend fun getOrCreateDownsampledImage(
+    url: String,
+    cacheFileType: CacheFileType,
+    imageSize: ImageSize,
+    originalImageFile: AbstractFile?
+  ): File? {
+    if (!canBeDownsampled(cacheFileType)) {
+      return null
+    }
+
+    val targetSize = imageSize.sizeIfKnown()
+      ?: return null
+
+    val downsampledImageFile = downsampledImageCache.getOrNull(url, targetSize)
+    if (downsampledImageFile != null) {
+      return downsampledImageFile
+    }
+
+    // Files from downloaded threads may be located anywhere (SAF), we only downsample images from
+    // the cache.
+    if (originalImageFile !is RawFile) {
+      return null
+    }
+
+    return downsampledImageCache.decodeAndStore(url, File(originalImageFile.getFullPath()), targetSize)
+  }
+
+  // Thumbnails are already small enough, only full images (highResCells) are worth downsampling.
+  private fun canBeDownsampled(cacheFileType: CacheFileType): Boolean {
+    return cacheFileType == CacheFileType.PostMediaFull
+  }
+
   private suspend fun notifyListenersFailure(
     context: Context,
     url: String,
@@ -1289,6 +1366,34 @@ class ImageLoaderV2(
       }
     }
 
+    /**
+     * Same as [size] but doesn't wait for the view to be measured. Returns null if the size is not
+     * known yet.
+     * */
+    fun sizeIfKnown(): PixelSize? {
+      return when (this) {
+        is FixedImageSize -> {
+          if (width > 0 && height > 0) {
+            PixelSize(width, height)
+          } else {
+            null
+          }
+        }
+        is MeasurableImageSize -> {
+          val view = sizeResolver.view
+          val width = view.width - view.paddingLeft - view.paddingRight
+          val height = view.height - view.paddingTop - view.paddingBottom
+
+          if (width > 0 && height > 0) {
+            PixelSize(width, height)
+          } else {
+            null
+          }
+        }
+        is Unspecified -> null
+      }
+    }
+
     object Unspecified : ImageSize()
 
     data class FixedImageSize(val width: Int, val height: Int) : ImageSize() {
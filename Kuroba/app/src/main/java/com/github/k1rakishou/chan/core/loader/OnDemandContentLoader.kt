@@ -9,6 +9,15 @@ abstract class OnDemandContentLoader(
   abstract suspend fun startLoading(postLoaderData: PostLoaderData): LoaderResult
   abstract fun cancelLoading(postLoaderData: PostLoaderData)
 
+  /**
+   * Called with all the posts that are about to start loading at the same time (before
+   * [startLoading] is called for each one of them) so that the loader can load whatever the posts
+   * have in common at once.
+   * */
+  open suspend fun prepareBatch(postLoaderDataList: List<PostLoaderData>) {
+    // Nothing to prepare by default
+  }
+
   protected fun succeeded(needUpdateView: Boolean): LoaderResult {
     return LoaderResult.Succeeded(loaderType, needUpdateView)
   }
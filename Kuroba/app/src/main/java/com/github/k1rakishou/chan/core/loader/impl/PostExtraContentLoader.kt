@@ -19,11 +19,13 @@ import com.github.k1rakishou.core_spannable.PostLinkable
 import com.github.k1rakishou.model.data.media.GenericVideoId
 import com.github.k1rakishou.model.data.post.ChanPost
 import com.github.k1rakishou.model.data.post.LoaderType
+import com.github.k1rakishou.model.repository.MediaServiceLinkExtraContentRepository
 import kotlinx.coroutines.withTimeout
 import java.util.concurrent.TimeUnit
 
 internal class PostExtraContentLoader(
   private val chanThreadManager: ChanThreadManager,
+  private val mediaServiceLinkExtraContentRepository: MediaServiceLinkExtraContentRepository,
   private val linkExtraInfoFetchers: List<ExternalMediaServiceExtraInfoFetcher>
 ) : OnDemandContentLoader(LoaderType.PostExtraContentLoader) {
 
@@ -48,6 +50,39 @@ internal class PostExtraContentLoader(
     return results.all { success -> success }
   }
 
+  /**
+   * Posts that are displayed together often link the same videos (e.g. replies quoting a link) so
+   * the links of the whole batch are looked up at once (every unique link only once), which puts
+   * the results into the cache for [startLoading].
+   * */
+  override suspend fun prepareBatch(postLoaderDataList: List<PostLoaderData>) {
+    BackgroundUtils.ensureBackgroundThread()
+
+    val requests = mutableListOf<MediaServiceLinkExtraContentRepository.LinkExtraContentRequest>()
+
+    postLoaderDataList.forEach { postLoaderData ->
+      if (chanThreadManager.isContentLoadedForLoader(postLoaderData.postDescriptor, loaderType)) {
+        return@forEach
+      }
+
+      extractRequests(postLoaderData).forEach { (requestUrl, linkInfoRequest) ->
+        requests += MediaServiceLinkExtraContentRepository.LinkExtraContentRequest(
+          requestUrl = requestUrl,
+          videoId = linkInfoRequest.videoId,
+          mediaServiceType = linkInfoRequest.mediaServiceType
+        )
+      }
+    }
+
+    if (requests.isEmpty()) {
+      return
+    }
+
+    mediaServiceLinkExtraContentRepository.getLinkExtraContentBatch(requests)
+      .peekError { error -> Logger.e(TAG, "getLinkExtraContentBatch(${requests.size}) error", error) }
+      .ignore()
+  }
+
   override suspend fun startLoading(postLoaderData: PostLoaderData): LoaderResult {
     BackgroundUtils.ensureBackgroundThread()
 
@@ -93,21 +128,25 @@ internal class PostExtraContentLoader(
   }
 
   private fun extractVideoIds(postLoaderData: PostLoaderData): List<GenericVideoId> {
+    return extractRequests(postLoaderData)
+      .map { (_, linkInfoRequest) -> linkInfoRequest.videoId }
+  }
+
+  private fun extractRequests(postLoaderData: PostLoaderData): Map<String, LinkInfoRequest> {
     val post = chanThreadManager.getPost(postLoaderData.postDescriptor)
-      ?: return emptyList()
+      ?: return emptyMap()
 
     val comment = post.postComment.originalComment()
     if (comment.isEmpty() || comment !is Spanned) {
-      return emptyList()
+      return emptyMap()
     }
 
     val postLinkableSpans = parseSpans(comment)
     if (postLinkableSpans.isEmpty()) {
-      return emptyList()
+      return emptyMap()
     }
 
     return createNewRequests(postLinkableSpans)
-      .map { (_, linkInfoRequest) -> linkInfoRequest.videoId }
   }
 
   private suspend fun updateSpans(
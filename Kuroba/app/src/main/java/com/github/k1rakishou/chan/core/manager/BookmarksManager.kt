@@ -1,7 +1,6 @@
 package com.github.k1rakishou.chan.core.manager
 
 import androidx.annotation.GuardedBy
-import com.github.k1rakishou.chan.core.base.DebouncingCoroutineExecutor
 import com.github.k1rakishou.chan.core.base.SerializedCoroutineExecutor
 import com.github.k1rakishou.chan.core.site.SiteRegistry
 import com.github.k1rakishou.common.DoNotStrip
@@ -14,6 +13,7 @@ import com.github.k1rakishou.model.data.bookmark.ThreadBookmark
 import com.github.k1rakishou.model.data.bookmark.ThreadBookmarkView
 import com.github.k1rakishou.model.data.descriptor.ChanDescriptor
 import com.github.k1rakishou.model.repository.BookmarksRepository
+import com.github.k1rakishou.model.util.WriteBehindQueue
 import dagger.Lazy
 import io.reactivex.Flowable
 import io.reactivex.android.schedulers.AndroidSchedulers
@@ -49,7 +49,19 @@ class BookmarksManager(
   private val threadIsFetchingEventsSubject = PublishProcessor.create<ChanDescriptor.ThreadDescriptor>()
 
   private val persistBookmarksExecutor = SerializedCoroutineExecutor(appScope)
-  private val delayedBookmarksChangedExecutor = DebouncingCoroutineExecutor(appScope)
+  // Collects the bookmarks of the threads that are being scrolled so that they are all persisted
+  // (and the listeners are notified about them) at once
+  private val viewedBookmarksWriteQueue = WriteBehindQueue<ChanDescriptor.ThreadDescriptor, Unit>(
+    tag = TAG,
+    scope = appScope,
+    flushDelayMs = VIEWED_BOOKMARKS_FLUSH_DELAY_MS,
+    maxPendingCount = Int.MAX_VALUE,
+    flushFunc = { threadDescriptors ->
+      // Persistence errors are handled by persistBookmarks()
+      persistViewedBookmarks(threadDescriptors.keys)
+      ModularResult.value(Unit)
+    }
+  )
   private val suspendableInitializer = SuspendableInitializer<Unit>("BookmarksManager")
 
   @GuardedBy("lock")
@@ -86,6 +98,7 @@ class BookmarksManager(
         return@addListener
       }
 
+      viewedBookmarksWriteQueue.flushAsync()
       persistBookmarks(eager = true)
     }
   }
@@ -611,17 +624,16 @@ class BookmarksManager(
       threadBookmark.readRepliesUpTo(postNo)
     }
 
-    delayedBookmarksChangedExecutor.post(
-      timeout = 250L,
-      func = {
-        persistBookmarks(
-          eager = false,
-          onBookmarksPersisted = {
-            val bookmarkChange = BookmarkChange.BookmarksUpdated(listOf(threadDescriptor))
-            bookmarksChangeFlow.emit(bookmarkChange)
-          })
-      }
-    )
+    viewedBookmarksWriteQueue.enqueue(threadDescriptor, Unit)
+  }
+
+  private fun persistViewedBookmarks(threadDescriptors: Collection<ChanDescriptor.ThreadDescriptor>) {
+    persistBookmarks(
+      eager = false,
+      onBookmarksPersisted = {
+        val bookmarkChange = BookmarkChange.BookmarksUpdated(threadDescriptors)
+        bookmarksChangeFlow.emit(bookmarkChange)
+      })
   }
 
   suspend fun persistBookmarkManually(threadDescriptor: ChanDescriptor.ThreadDescriptor) {
@@ -775,5 +787,6 @@ class BookmarksManager(
 
   companion object {
     private const val TAG = "BookmarksManager"
+    private const val VIEWED_BOOKMARKS_FLUSH_DELAY_MS = 500L
   }
 }
@@ -24,6 +24,7 @@ import com.github.k1rakishou.model.data.post.ChanPost
 import com.github.k1rakishou.model.data.post.ChanPostImage
 import com.github.k1rakishou.model.data.post.LoaderType
 import com.github.k1rakishou.model.data.thread.ChanThread
+import com.github.k1rakishou.model.data.thread.ThreadSearchIndex
 import com.github.k1rakishou.model.repository.ChanPostRepository
 import com.github.k1rakishou.model.source.cache.thread.ChanThreadsCache
 import com.github.k1rakishou.model.util.ChanPostUtils
@@ -179,6 +180,17 @@ class ChanThreadManager(
     return threadLoadResult
   }
 
+  /**
+   * Returns null if the thread is not cached.
+   * */
+  fun searchThreadPosts(
+    threadDescriptor: ChanDescriptor.ThreadDescriptor,
+    query: String,
+    previousResult: ThreadSearchIndex.SearchResult?
+  ): Pair<List<ChanPost>, ThreadSearchIndex.SearchResult>? {
+    return chanThreadsCache.getThread(threadDescriptor)?.searchPosts(query, previousResult)
+  }
+
   fun iteratePostsWhile(
     chanDescriptor: ChanDescriptor,
     iterator: (ChanPost) -> Boolean
@@ -499,7 +511,7 @@ class ChanThreadManager(
       )
 
       if (result != null) {
-        return ThreadLoadResult.fromModularResult(chanDescriptor, result)
+        return ThreadLoadResult.fromModularResult(chanDescriptor, result, isLoadedFromServer = false)
       }
 
       // fallthrough
@@ -1,7 +1,6 @@
 package com.github.k1rakishou.chan.core.manager
 
 import androidx.annotation.GuardedBy
-import com.github.k1rakishou.chan.core.base.DebouncingCoroutineExecutor
 import com.github.k1rakishou.common.mutableMapWithCap
 import com.github.k1rakishou.core_logger.Logger
 import com.github.k1rakishou.model.data.descriptor.ChanDescriptor
@@ -9,7 +8,9 @@ import com.github.k1rakishou.model.data.thread.ChanThreadViewableInfo
 import com.github.k1rakishou.model.data.thread.ChanThreadViewableInfoView
 import com.github.k1rakishou.model.repository.ChanThreadViewableInfoRepository
 import com.github.k1rakishou.model.source.cache.thread.ChanThreadsCache
+import com.github.k1rakishou.model.util.WriteBehindQueue
 import com.github.k1rakishou.persist_state.IndexAndTop
+import dagger.Lazy
 import kotlinx.coroutines.CoroutineScope
 import java.util.concurrent.locks.ReentrantReadWriteLock
 import kotlin.concurrent.read
@@ -21,15 +22,33 @@ class ChanThreadViewableInfoManager(
   private val verboseLogsEnabled: Boolean,
   private val appScope: CoroutineScope,
   private val chanThreadViewableInfoRepository: ChanThreadViewableInfoRepository,
-  private val chanThreadsCache: ChanThreadsCache
+  private val chanThreadsCache: ChanThreadsCache,
+  private val _applicationVisibilityManager: Lazy<ApplicationVisibilityManager>
 ) {
-  private val suspendDebouncer = DebouncingCoroutineExecutor(appScope)
+  private val chanThreadViewableInfoWriteQueue = WriteBehindQueue<ChanDescriptor.ThreadDescriptor, ChanThreadViewableInfo>(
+    tag = TAG,
+    scope = appScope,
+    flushDelayMs = FLUSH_DELAY_MS,
+    maxPendingCount = MAX_PENDING_INFOS,
+    flushFunc = { chanThreadViewableInfos ->
+      chanThreadViewableInfoRepository.persistMany(chanThreadViewableInfos.values)
+    }
+  )
+
+  private val applicationVisibilityManager: ApplicationVisibilityManager
+    get() = _applicationVisibilityManager.get()
 
   private val lock = ReentrantReadWriteLock()
   @GuardedBy("lock")
   private val chanThreadViewableMap = mutableMapWithCap<ChanDescriptor.ThreadDescriptor, ChanThreadViewableInfo>(16)
 
   init {
+    applicationVisibilityManager.addListener { visibility ->
+      if (visibility == ApplicationVisibility.Background) {
+        chanThreadViewableInfoWriteQueue.flushAsync()
+      }
+    }
+
     chanThreadsCache.addChanThreadDeleteEventListener { threadDeleteEvent ->
       Logger.d(TAG, "chanThreadsCache.chanThreadDeleteEventFlow() " +
         "threadDeleteEvent=${threadDeleteEvent.javaClass.simpleName}")
@@ -188,13 +207,11 @@ class ChanThreadViewableInfoManager(
     )
   }
 
-  private fun persist(chanDescriptor: ChanDescriptor) {
-    suspendDebouncer.post(DEBOUNCE_TIME) {
-      val chanThreadViewableInfo = lock.read { chanThreadViewableMap[chanDescriptor]?.deepCopy() }
-      if (chanThreadViewableInfo != null) {
-        chanThreadViewableInfoRepository.persist(chanThreadViewableInfo)
-      }
-    }
+  private fun persist(chanDescriptor: ChanDescriptor.ThreadDescriptor) {
+    val chanThreadViewableInfo = lock.read { chanThreadViewableMap[chanDescriptor]?.deepCopy() }
+      ?: return
+
+    chanThreadViewableInfoWriteQueue.enqueue(chanDescriptor, chanThreadViewableInfo)
   }
 
   private fun onThreadDeleteEventReceived(threadDeleteEvent: ChanThreadsCache.ThreadDeleteEvent) {
@@ -230,6 +247,8 @@ class ChanThreadViewableInfoManager(
 
   companion object {
     private const val TAG = "ChanThreadViewableInfoManager"
-    private const val DEBOUNCE_TIME = 100L
+    // Scroll position changes all the time while scrolling, only the latest one matters
+    private const val FLUSH_DELAY_MS = 1000L
+    private const val MAX_PENDING_INFOS = 32
   }
 }
\ No newline at end of file
@@ -2,7 +2,6 @@ package com.github.k1rakishou.chan.core.manager
 
 import androidx.annotation.GuardedBy
 import com.github.k1rakishou.ChanSettings
-import com.github.k1rakishou.chan.core.base.RendezvousCoroutineExecutor
 import com.github.k1rakishou.chan.core.helper.OneShotRunnable
 import com.github.k1rakishou.common.ModularResult
 import com.github.k1rakishou.common.mutableListWithCap
@@ -11,6 +10,7 @@ import com.github.k1rakishou.model.data.descriptor.ChanDescriptor
 import com.github.k1rakishou.model.data.navigation.NavHistoryElement
 import com.github.k1rakishou.model.data.navigation.NavHistoryElementInfo
 import com.github.k1rakishou.model.repository.HistoryNavigationRepository
+import com.github.k1rakishou.model.util.WriteBehindQueue
 import dagger.Lazy
 import kotlinx.coroutines.CoroutineScope
 import kotlinx.coroutines.Dispatchers
@@ -34,7 +34,14 @@ class HistoryNavigationManager(
   val navigationStackUpdatesFlow: SharedFlow<UpdateEvent>
     get() = _navigationStackUpdatesFlow.asSharedFlow()
 
-  private val rendezvousCoroutineExecutor = RendezvousCoroutineExecutor(appScope)
+  private val navigationStackWriteQueue = WriteBehindQueue<Unit, Unit>(
+    tag = TAG,
+    scope = appScope,
+    flushDelayMs = FLUSH_DELAY_MS,
+    // There is never more than one pending value, the stack is only persisted after a delay
+    maxPendingCount = Int.MAX_VALUE,
+    flushFunc = { persistNavigationStackInternal() }
+  )
 
   private val mutex = Mutex()
   @GuardedBy("mutex")
@@ -505,27 +512,20 @@ class HistoryNavigationManager(
   }
 
   private fun persistNavigationStack() {
-    rendezvousCoroutineExecutor.post {
-      Logger.d(TAG, "persistNavigationStack async called")
-      persistNavigationStackInternal()
-      Logger.d(TAG, "persistNavigationStack async finished")
-    }
+    // The whole stack is persisted every time so there is only one key
+    navigationStackWriteQueue.enqueue(Unit, Unit)
   }
 
-  private suspend fun persistNavigationStackInternal() {
+  private suspend fun persistNavigationStackInternal(): ModularResult<Unit> {
     if (!initializationRunnable.alreadyRun) {
       Logger.d(TAG, "persistNavigationStackInternal not initialized yet, can't persist")
-      return
+      return ModularResult.value(Unit)
     }
 
     val navStackCopy = mutex.withLock { navigationStack.toList() }
     Logger.d(TAG, "persistNavigationStackInternal navStackCopy.size=${navStackCopy.size}")
 
-    historyNavigationRepository.persist(navStackCopy)
-      .safeUnwrap { error ->
-        Logger.e(TAG, "Error while trying to persist navigation stack", error)
-        return
-      }
+    return historyNavigationRepository.persist(navStackCopy)
   }
 
   private suspend fun ensureInitialized() {
@@ -568,7 +568,7 @@ class HistoryNavigationManager(
         return@addListener
       }
 
-      persistNavigationStack()
+      navigationStackWriteQueue.flushAsync()
     }
   }
 
@@ -615,5 +615,8 @@ class HistoryNavigationManager(
     // Only used when reloading navigation history back from the database.
     // Can grow unlimited until the app restart.
     private const val MAX_NAV_HISTORY_ENTRIES = 256
+
+    // Navigating between threads updates the stack a lot of times in a row
+    private const val FLUSH_DELAY_MS = 1000L
   }
 }
\ No newline at end of file
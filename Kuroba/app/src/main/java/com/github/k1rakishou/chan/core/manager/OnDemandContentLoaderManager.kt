@@ -1,12 +1,12 @@
 package com.github.k1rakishou.chan.core.manager
 
 import androidx.annotation.GuardedBy
-import com.github.k1rakishou.chan.core.base.QueueableConcurrentCoroutineExecutor
 import com.github.k1rakishou.chan.core.loader.LoaderBatchResult
 import com.github.k1rakishou.chan.core.loader.LoaderResult
 import com.github.k1rakishou.chan.core.loader.OnDemandContentLoader
 import com.github.k1rakishou.chan.core.loader.PostLoaderData
 import com.github.k1rakishou.chan.utils.BackgroundUtils
+import com.github.k1rakishou.common.ModularResult
 import com.github.k1rakishou.common.isExceptionImportant
 import com.github.k1rakishou.common.processDataCollectionConcurrently
 import com.github.k1rakishou.core_logger.Logger
@@ -14,17 +14,34 @@ import com.github.k1rakishou.model.data.descriptor.ChanDescriptor
 import com.github.k1rakishou.model.data.descriptor.PostDescriptor
 import kotlinx.coroutines.CoroutineDispatcher
 import kotlinx.coroutines.CoroutineScope
-import kotlinx.coroutines.delay
+import kotlinx.coroutines.channels.Channel
 import kotlinx.coroutines.flow.MutableSharedFlow
 import kotlinx.coroutines.flow.SharedFlow
+import kotlinx.coroutines.launch
 import kotlinx.coroutines.withTimeoutOrNull
 import java.util.*
+import java.util.concurrent.atomic.AtomicBoolean
+import java.util.concurrent.atomic.AtomicInteger
 import java.util.concurrent.locks.ReentrantReadWriteLock
 import kotlin.collections.HashMap
 import kotlin.collections.set
 import kotlin.concurrent.read
 import kotlin.concurrent.write
-
+import kotlin.math.abs
+import kotlin.math.max
+
+/**
+ * Runs the [OnDemandContentLoader]s for the posts that are bound to the screen. Loaders are not
+ * started right away when a post gets bound, instead the post has to stay bound for some time
+ * (the dwell time) while the list is not being scrolled fast. When a fling is decelerating the
+ * posts that are getting bound are the ones the list is going to settle on, so their dwell time
+ * starts at the moment the list slows down (see [onListScrolled]). Posts that only flashed by
+ * during a fling never start any loaders at all.
+ *
+ * Posts that are ready are started together as one batch (so that the loaders can merge their
+ * requests, see [OnDemandContentLoader.prepareBatch]) and there can be at most
+ * [MAX_IN_FLIGHT_POSTS] posts being loaded at the same time.
+ * */
 class OnDemandContentLoaderManager(
   private val scope: CoroutineScope,
   private val dispatcher: CoroutineDispatcher,
@@ -35,60 +52,54 @@ class OnDemandContentLoaderManager(
   private val loaders: HashSet<OnDemandContentLoader>
     get() = loadersLazy.value
 
-  @GuardedBy("rwLock")
+  @GuardedBy("lock")
   private val activeLoaders = HashMap<ChanDescriptor, HashMap<PostDescriptor, PostLoaderData>>()
+  // Bound posts that are waiting for their dwell time to pass
+  @GuardedBy("lock")
+  private val pendingPosts = LinkedHashMap<PostDescriptor, PendingPost>()
 
   private val _postUpdateFlow = MutableSharedFlow<LoaderBatchResult>(extraBufferCapacity = 128)
   val postUpdateFlow: SharedFlow<LoaderBatchResult>
     get() = _postUpdateFlow
 
-  private val executor = QueueableConcurrentCoroutineExecutor(
-    maxConcurrency = 64,
-    dispatcher = dispatcher,
-    scope = scope
-  )
+  private val schedulerStarted = AtomicBoolean(false)
+  private val schedulerWakeups = Channel<Unit>(Channel.CONFLATED)
+  private val inFlightPostsCount = AtomicInteger(0)
+
+  // Only updated on the main thread
+  private var lastScrollEventTimeMs = 0L
+  private var scrollVelocity = 0f
+  @Volatile
+  private var lastFastScrollTimeMs = 0L
 
   fun onPostBind(postDescriptor: PostDescriptor) {
     check(loaders.isNotEmpty()) { "No loaders!" }
 
     val chanDescriptor = postDescriptor.descriptor
 
-    val postLoaderData = lock.write {
+    val added = lock.write {
       if (!activeLoaders.containsKey(chanDescriptor)) {
         activeLoaders[chanDescriptor] = hashMapOf()
       }
 
       if (activeLoaders[chanDescriptor]!!.containsKey(postDescriptor)) {
-        return@write null
+        return@write false
       }
 
       val postLoaderData = PostLoaderData(postDescriptor)
       activeLoaders[chanDescriptor]!![postDescriptor] = postLoaderData
-      return@write postLoaderData
+      pendingPosts[postDescriptor] = PendingPost(postLoaderData, System.currentTimeMillis())
+
+      return@write true
     }
 
-    if (postLoaderData == null) {
+    if (!added) {
       // Already added
       return
     }
 
-    val job = executor.post {
-      val loaderBatchResults = try {
-        onPostBindInternal(postLoaderData)
-      } catch (error: Throwable) {
-        if (error.isExceptionImportant()) {
-          Logger.e(TAG, "onPostBindInternal(${postLoaderData.postDescriptor}) error", error)
-        }
-
-        null
-      }
-
-      if (loaderBatchResults != null) {
-        _postUpdateFlow.emit(loaderBatchResults)
-      }
-    }
-
-    postLoaderData.setJob(job)
+    startSchedulerIfNeeded()
+    schedulerWakeups.trySend(Unit)
   }
 
   fun onPostUnbind(postDescriptor: PostDescriptor, isActuallyRecycling: Boolean) {
@@ -103,6 +114,46 @@ class OnDemandContentLoaderManager(
     removeFromActiveLoaders(postDescriptor)
   }
 
+  /**
+   * Must be called for every scroll event of the posts list with the scrolled distance and the
+   * height of the list, both in pixels.
+   * */
+  fun onListScrolled(dy: Int, viewportHeight: Int) {
+    BackgroundUtils.ensureMainThread()
+
+    val now = System.currentTimeMillis()
+    val elapsedMs = now - lastScrollEventTimeMs
+    lastScrollEventTimeMs = now
+
+    if (viewportHeight <= 0 || elapsedMs <= 0L) {
+      return
+    }
+
+    if (elapsedMs > MAX_SCROLL_EVENTS_GAP_MS) {
+      // First event of a new scroll, there is nothing to calculate the velocity with yet
+      scrollVelocity = 0f
+      return
+    }
+
+    // Viewports per second, smoothed because the distance between the events is pretty jumpy
+    val currentVelocity = (abs(dy).toFloat() / viewportHeight) / (elapsedMs / 1000f)
+    scrollVelocity = (scrollVelocity + currentVelocity) / 2f
+
+    if (scrollVelocity > FAST_SCROLL_VELOCITY) {
+      lastFastScrollTimeMs = now
+    }
+  }
+
+  /**
+   * Must be called when the posts list stops scrolling.
+   * */
+  fun onListScrollStopped() {
+    BackgroundUtils.ensureMainThread()
+
+    scrollVelocity = 0f
+    schedulerWakeups.trySend(Unit)
+  }
+
   fun cancelAllForDescriptor(chanDescriptor: ChanDescriptor) {
     if (chanDescriptor.isCatalogDescriptor()) {
       return
@@ -115,6 +166,7 @@ class OnDemandContentLoaderManager(
         ?: return@write
 
       postLoaderDataList.values.forEach { postLoaderData ->
+        pendingPosts.remove(postLoaderData.postDescriptor)
         loaders.forEach { loader -> loader.cancelLoading(postLoaderData) }
         postLoaderData.disposeAll()
       }
@@ -124,33 +176,170 @@ class OnDemandContentLoaderManager(
     }
   }
 
-  private suspend fun onPostBindInternal(postLoaderData: PostLoaderData): LoaderBatchResult? {
+  private fun startSchedulerIfNeeded() {
+    if (!schedulerStarted.compareAndSet(false, true)) {
+      return
+    }
+
+    scope.launch(dispatcher) {
+      while (true) {
+        val nextWakeupDelayMs = try {
+          schedulePendingPosts()
+        } catch (error: Throwable) {
+          if (error.isExceptionImportant()) {
+            Logger.e(TAG, "schedulePendingPosts() error", error)
+          }
+
+          MIN_SCHEDULER_DELAY_MS
+        }
+
+        withTimeoutOrNull(nextWakeupDelayMs) { schedulerWakeups.receive() }
+      }
+    }
+  }
+
+  /**
+   * Starts the loaders for the posts whose dwell time has passed (as long as there is room for
+   * them). Returns the delay after which this method needs to be called again.
+   * */
+  private suspend fun schedulePendingPosts(): Long {
     BackgroundUtils.ensureBackgroundThread()
-    val postDescriptor = postLoaderData.postDescriptor
 
-    val post = chanThreadManager.getPost(postDescriptor)
-    if (post == null || post.allLoadersCompletedLoading()) {
-      // Everything is done
-      return null
+    val now = System.currentTimeMillis()
+    val freeSlots = MAX_IN_FLIGHT_POSTS - inFlightPostsCount.get()
+    val readyPosts = mutableListOf<PendingPost>()
+    var nextWakeupDelayMs = Long.MAX_VALUE
+
+    lock.write {
+      // Posts bound later are more likely to still be on the screen so they go first
+      pendingPosts.values.reversed().forEach { pendingPost ->
+        val readyTime = max(pendingPost.bindTimeMs, lastFastScrollTimeMs) + pendingPost.dwellTimeMs
+        if (readyTime > now) {
+          nextWakeupDelayMs = minOf(nextWakeupDelayMs, readyTime - now)
+          return@forEach
+        }
+
+        if (readyPosts.size >= freeSlots) {
+          // Will be woken up when one of the loading posts is done
+          return@forEach
+        }
+
+        readyPosts += pendingPost
+      }
+
+      readyPosts.forEach { pendingPost -> pendingPosts.remove(pendingPost.postDescriptor) }
+    }
+
+    if (readyPosts.isNotEmpty()) {
+      val postsToLoad = filterPostsToLoad(readyPosts)
+      if (postsToLoad.isNotEmpty()) {
+        inFlightPostsCount.addAndGet(postsToLoad.size)
+        scope.launch(dispatcher) { startLoading(postsToLoad) }
+      }
+
+      // Some of the posts may have been put back
+      nextWakeupDelayMs = MIN_SCHEDULER_DELAY_MS
+    }
+
+    return nextWakeupDelayMs.coerceAtLeast(MIN_SCHEDULER_DELAY_MS)
+  }
+
+  /**
+   * Posts with everything loaded are removed. Posts that passed the short dwell time but whose
+   * loaders need to load something from the network are put back to wait for the long dwell time
+   * (to avoid visual glitches when quickly scrolling through posts, especially with the fast
+   * scroller).
+   * */
+  private suspend fun filterPostsToLoad(readyPosts: List<PendingPost>): List<PostLoaderData> {
+    val postsToLoad = mutableListOf<PostLoaderData>()
+
+    readyPosts.forEach { pendingPost ->
+      val postLoaderData = pendingPost.postLoaderData
+      val postDescriptor = pendingPost.postDescriptor
+
+      val post = chanThreadManager.getPost(postDescriptor)
+      if (post == null || post.allLoadersCompletedLoading()) {
+        // Everything is done
+        removeFromActiveLoaders(postDescriptor)
+        return@forEach
+      }
+
+      if (pendingPost.dwellTimeMs < LONG_LOADING_DELAY_TIME_MS) {
+        val allLoadersCached = loaders.all { loader -> loader.isCached(postLoaderData) }
+        if (!allLoadersCached) {
+          lock.write {
+            if (activeLoaders[postDescriptor.descriptor]?.containsKey(postDescriptor) == true) {
+              pendingPost.dwellTimeMs = LONG_LOADING_DELAY_TIME_MS
+              pendingPosts[postDescriptor] = pendingPost
+            }
+          }
+
+          return@forEach
+        }
+      }
+
+      postsToLoad += postLoaderData
+    }
+
+    return postsToLoad
+  }
+
+  private suspend fun startLoading(postsToLoad: List<PostLoaderData>) {
+    try {
+      val activePosts = postsToLoad.filter { postLoaderData -> isStillActive(postLoaderData) }
+      if (activePosts.isEmpty()) {
+        return
+      }
+
+      loaders.forEach { loader ->
+        ModularResult.Try { withTimeoutOrNull(MAX_LOADER_LOADING_TIME_MS) { loader.prepareBatch(activePosts) } }
+          .peekError { error ->
+            if (error.isExceptionImportant()) {
+              Logger.e(TAG, "prepareBatch(${loader.loaderType}) error", error)
+            }
+          }
+          .ignore()
+      }
+    } finally {
+      // Each launched job gives its slot back when it completes
+      postsToLoad.forEach { postLoaderData -> launchPostLoaders(postLoaderData) }
     }
+  }
+
+  private fun launchPostLoaders(postLoaderData: PostLoaderData) {
+    val job = scope.launch(dispatcher) {
+      if (!isStillActive(postLoaderData)) {
+        return@launch
+      }
+
+      val loaderBatchResults = try {
+        loadPost(postLoaderData)
+      } catch (error: Throwable) {
+        if (error.isExceptionImportant()) {
+          Logger.e(TAG, "loadPost(${postLoaderData.postDescriptor}) error", error)
+        }
 
-    val allLoadersCached = loaders.all { loader -> loader.isCached(PostLoaderData(postDescriptor)) }
+        null
+      }
 
-    // Add some delay here to avoid visual glitches when quickly scrolling through posts
-    // (Especially when using the fast scroller). In case when the post loader results are not
-    // cached by the loaders we use the long delay, otherwise if everything is already cached,
-    // we use the short delay.
-    if (!allLoadersCached) {
-      delay(LONG_LOADING_DELAY_TIME_MS)
-    } else {
-      delay(SHORT_LOADING_DELAY_TIME_MS)
+      if (loaderBatchResults != null) {
+        _postUpdateFlow.emit(loaderBatchResults)
+      }
     }
 
-    if (!isStillActive(postLoaderData)) {
-      removeFromActiveLoaders(postDescriptor)
-      return null
+    // Called even if the job gets canceled before it starts
+    job.invokeOnCompletion {
+      inFlightPostsCount.decrementAndGet()
+      schedulerWakeups.trySend(Unit)
     }
 
+    postLoaderData.setJob(job)
+  }
+
+  private suspend fun loadPost(postLoaderData: PostLoaderData): LoaderBatchResult {
+    BackgroundUtils.ensureBackgroundThread()
+    val postDescriptor = postLoaderData.postDescriptor
+
     val loaderResults = processDataCollectionConcurrently(loaders) { loader ->
       val result = withTimeoutOrNull(MAX_LOADER_LOADING_TIME_MS) { loader.startLoading(postLoaderData) }
       if (result == null) {
@@ -161,11 +350,12 @@ class OnDemandContentLoaderManager(
       return@processDataCollectionConcurrently result
     }
 
-    return LoaderBatchResult(postLoaderData.postDescriptor, loaderResults)
+    return LoaderBatchResult(postDescriptor, loaderResults)
   }
 
   private fun removeFromActiveLoaders(postDescriptor: PostDescriptor) {
     val postLoaderData = lock.write {
+      pendingPosts.remove(postDescriptor)
       activeLoaders[postDescriptor.descriptor]?.remove(postDescriptor)
     }
 
@@ -180,15 +370,30 @@ class OnDemandContentLoaderManager(
       val chanDescriptor = postLoaderData.postDescriptor.descriptor
       val postDescriptor = postLoaderData.postDescriptor
 
-      return@read activeLoaders[chanDescriptor]?.containsKey(postDescriptor)
-        ?: false
+      return@read activeLoaders[chanDescriptor]?.get(postDescriptor) === postLoaderData
     }
   }
 
+  private class PendingPost(
+    val postLoaderData: PostLoaderData,
+    val bindTimeMs: Long,
+    var dwellTimeMs: Long = SHORT_LOADING_DELAY_TIME_MS
+  ) {
+    val postDescriptor: PostDescriptor
+      get() = postLoaderData.postDescriptor
+  }
+
   companion object {
     private const val TAG = "OnDemandContentLoaderManager"
     const val LONG_LOADING_DELAY_TIME_MS = 1500L
     const val SHORT_LOADING_DELAY_TIME_MS = 500L
     const val MAX_LOADER_LOADING_TIME_MS = 10_000L
+
+    private const val MAX_IN_FLIGHT_POSTS = 8
+    private const val MIN_SCHEDULER_DELAY_MS = 50L
+
+    // Viewports per second
+    private const val FAST_SCROLL_VELOCITY = 2f
+    private const val MAX_SCROLL_EVENTS_GAP_MS = 100L
   }
-}
\ No newline at end of file
+}
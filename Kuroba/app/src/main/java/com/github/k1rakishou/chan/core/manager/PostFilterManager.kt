@@ -2,6 +2,7 @@ package com.github.k1rakishou.chan.core.manager
 
 import androidx.annotation.GuardedBy
 import com.github.k1rakishou.common.DoNotStrip
+import com.github.k1rakishou.common.datastructure.PostNumberMap
 import com.github.k1rakishou.common.mutableIteration
 import com.github.k1rakishou.common.mutableMapWithCap
 import com.github.k1rakishou.common.putIfNotContains
@@ -10,6 +11,10 @@ import com.github.k1rakishou.model.data.descriptor.ChanDescriptor
 import com.github.k1rakishou.model.data.descriptor.PostDescriptor
 import com.github.k1rakishou.model.data.post.PostFilter
 import com.github.k1rakishou.model.source.cache.thread.ChanThreadsCache
+import com.github.k1rakishou.model.util.containsKey
+import com.github.k1rakishou.model.util.get
+import com.github.k1rakishou.model.util.remove
+import com.github.k1rakishou.model.util.set
 import kotlinx.coroutines.CoroutineScope
 import java.util.concurrent.locks.ReentrantReadWriteLock
 import kotlin.concurrent.read
@@ -23,7 +28,7 @@ class PostFilterManager(
 ) {
   private val lock = ReentrantReadWriteLock()
   @GuardedBy("lock")
-  private val filterStorage = mutableMapWithCap<ChanDescriptor.ThreadDescriptor, MutableMap<PostDescriptor, PostFilter>>(16)
+  private val filterStorage = mutableMapWithCap<ChanDescriptor.ThreadDescriptor, PostNumberMap<PostFilter>>(16)
 
   init {
     chanThreadsCache.addChanThreadDeleteEventListener { threadDeleteEvent ->
@@ -56,7 +61,7 @@ class PostFilterManager(
       var postsCount = 0
 
       for (postFilterMap in filterStorage.values) {
-        for ((_, postFilter) in postFilterMap) {
+        postFilterMap.forEach { _, _, postFilter ->
           if (postFilter.ownerFilterId == filterDatabaseId) {
             ++postsCount
           }
@@ -71,7 +76,7 @@ class PostFilterManager(
     lock.write {
       val threadDescriptor = postDescriptor.threadDescriptor()
 
-      filterStorage.putIfNotContains(threadDescriptor, mutableMapWithCap(128))
+      filterStorage.putIfNotContains(threadDescriptor, PostNumberMap(128))
       filterStorage[threadDescriptor]!![postDescriptor] = postFilter
     }
   }
@@ -131,15 +136,15 @@ class PostFilterManager(
   fun update(postDescriptor: PostDescriptor, ownerFilterId: Long?, updateFunc: (PostFilter) -> Unit) {
     lock.write {
       val threadDescriptor = postDescriptor.threadDescriptor()
-      filterStorage.putIfNotContains(threadDescriptor, mutableMapWithCap(128))
+      filterStorage.putIfNotContains(threadDescriptor, PostNumberMap(128))
 
       val postFilter = filterStorage[threadDescriptor]!!.getOrPut(
-        key = postDescriptor,
+        postNo = postDescriptor.postNo,
+        postSubNo = postDescriptor.postSubNo,
         defaultValue = { PostFilter(ownerFilterId = ownerFilterId) }
       )
 
       updateFunc(postFilter)
-      filterStorage[threadDescriptor]!![postDescriptor] = postFilter
     }
   }
 
@@ -311,13 +316,8 @@ class PostFilterManager(
             val innerFilterMap = filterStorage[threadDescriptor]
               ?: return@forEach
 
-            innerFilterMap.mutableIteration { mutableIterator, mapEntry ->
-              if (mapEntry.key != originalPostDescriptor) {
-                ++removedPosts
-                mutableIterator.remove()
-              }
-
-              return@mutableIteration true
+            removedPosts += innerFilterMap.removeIf { postNo, postSubNo, _ ->
+              postNo != originalPostDescriptor.postNo || postSubNo != originalPostDescriptor.postSubNo
             }
           }
 
@@ -3,8 +3,7 @@ package com.github.k1rakishou.chan.core.manager
 import androidx.annotation.GuardedBy
 import com.github.k1rakishou.chan.core.base.SerializedCoroutineExecutor
 import com.github.k1rakishou.common.ModularResult
-import com.github.k1rakishou.common.mutableIteration
-import com.github.k1rakishou.common.mutableMapWithCap
+import com.github.k1rakishou.common.datastructure.PostNumberMap
 import com.github.k1rakishou.common.putIfNotContains
 import com.github.k1rakishou.core_logger.Logger
 import com.github.k1rakishou.model.data.descriptor.ChanDescriptor
@@ -12,6 +11,10 @@ import com.github.k1rakishou.model.data.descriptor.PostDescriptor
 import com.github.k1rakishou.model.data.post.ChanPostHide
 import com.github.k1rakishou.model.repository.ChanPostHideRepository
 import com.github.k1rakishou.model.source.cache.thread.ChanThreadsCache
+import com.github.k1rakishou.model.util.containsKey
+import com.github.k1rakishou.model.util.get
+import com.github.k1rakishou.model.util.remove
+import com.github.k1rakishou.model.util.set
 import kotlinx.coroutines.CoroutineScope
 import java.util.concurrent.locks.ReentrantReadWriteLock
 import kotlin.concurrent.read
@@ -27,7 +30,7 @@ class PostHideManager(
 ) {
   private val lock = ReentrantReadWriteLock()
   @GuardedBy("lock")
-  private val postHideMap = mutableMapOf<ChanDescriptor, MutableMap<PostDescriptor, ChanPostHide>>()
+  private val postHideMap = mutableMapOf<ChanDescriptor, PostNumberMap<ChanPostHide>>()
 
   private val serializedCoroutineExecutor = SerializedCoroutineExecutor(appScope)
 
@@ -109,8 +112,8 @@ class PostHideManager(
       chanPostHides.forEach { chanPostHide ->
         val chanDescriptor = chanPostHide.postDescriptor.descriptor
 
-        postHideMap.putIfNotContains(chanDescriptor, mutableMapWithCap(16))
-        postHideMap[chanDescriptor]!!.put(chanPostHide.postDescriptor, chanPostHide)
+        postHideMap.putIfNotContains(chanDescriptor, PostNumberMap(16))
+        postHideMap[chanDescriptor]!![chanPostHide.postDescriptor] = chanPostHide
       }
     }
 
@@ -132,8 +135,8 @@ class PostHideManager(
       chanPostHides.forEach { chanPostHide ->
         val chanDescriptor = chanPostHide.postDescriptor.descriptor
 
-        postHideMap.putIfNotContains(chanDescriptor, mutableMapWithCap(16))
-        postHideMap[chanDescriptor]!!.put(chanPostHide.postDescriptor, chanPostHide)
+        postHideMap.putIfNotContains(chanDescriptor, PostNumberMap(16))
+        postHideMap[chanDescriptor]!![chanPostHide.postDescriptor] = chanPostHide
       }
     }
 
@@ -150,8 +153,8 @@ class PostHideManager(
       chanPostHideList.forEach { chanPostHide ->
         val chanDescriptor = chanPostHide.postDescriptor.descriptor
 
-        postHideMap.putIfNotContains(chanDescriptor, mutableMapWithCap(16))
-        postHideMap[chanDescriptor]!!.put(chanPostHide.postDescriptor, chanPostHide)
+        postHideMap.putIfNotContains(chanDescriptor, PostNumberMap(16))
+        postHideMap[chanDescriptor]!![chanPostHide.postDescriptor] = chanPostHide
       }
     }
 
@@ -176,8 +179,8 @@ class PostHideManager(
       chanPostHideList.forEach { chanPostHide ->
         val chanDescriptor = chanPostHide.postDescriptor.descriptor
 
-        postHideMap.putIfNotContains(chanDescriptor, mutableMapWithCap(16))
-        postHideMap[chanDescriptor]!!.put(chanPostHide.postDescriptor, chanPostHide)
+        postHideMap.putIfNotContains(chanDescriptor, PostNumberMap(16))
+        postHideMap[chanDescriptor]!![chanPostHide.postDescriptor] = chanPostHide
       }
     }
 
@@ -221,8 +224,8 @@ class PostHideManager(
             copy.forEach { chanPostHide ->
               val chanDescriptor = chanPostHide.postDescriptor.descriptor
 
-              postHideMap.putIfNotContains(chanDescriptor, mutableMapWithCap(16))
-              postHideMap[chanDescriptor]!!.put(chanPostHide.postDescriptor, chanPostHide)
+              postHideMap.putIfNotContains(chanDescriptor, PostNumberMap(16))
+              postHideMap[chanDescriptor]!![chanPostHide.postDescriptor] = chanPostHide
             }
           }
           return@post
@@ -234,7 +237,7 @@ class PostHideManager(
     val chanPostHideList = mutableListOf<ChanPostHide>()
 
     lock.read {
-      postHideMap[threadDescriptor]?.values?.forEach { chanPostHide ->
+      postHideMap[threadDescriptor]?.forEach { _, _, chanPostHide ->
         chanPostHideList += chanPostHide
       }
     }
@@ -249,10 +252,9 @@ class PostHideManager(
       postDescriptorSet.forEach { postDescriptor ->
         val chanDescriptor = postDescriptor.descriptor
 
-        postHideMap[chanDescriptor]?.entries?.forEach { (postDescriptor, chanPostHide) ->
-          if (postDescriptor in postDescriptorSet) {
-            resultMap[postDescriptor] = chanPostHide
-          }
+        val chanPostHide = postHideMap[chanDescriptor]?.get(postDescriptor)
+        if (chanPostHide != null) {
+          resultMap[postDescriptor] = chanPostHide
         }
       }
     }
@@ -294,13 +296,8 @@ class PostHideManager(
             val innerPostHideMap = postHideMap[threadDescriptor]
               ?: return@forEach
 
-            innerPostHideMap.mutableIteration { mutableIterator, mapEntry ->
-              if (mapEntry.key != originalPostDescriptor) {
-                ++removedPosts
-                mutableIterator.remove()
-              }
-
-              return@mutableIteration true
+            removedPosts += innerPostHideMap.removeIf { postNo, postSubNo, _ ->
+              postNo != originalPostDescriptor.postNo || postSubNo != originalPostDescriptor.postSubNo
             }
           }
 
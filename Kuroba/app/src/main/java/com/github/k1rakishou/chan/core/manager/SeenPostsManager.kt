@@ -2,14 +2,12 @@ package com.github.k1rakishou.chan.core.manager
 
 import androidx.annotation.GuardedBy
 import com.github.k1rakishou.ChanSettings
-import com.github.k1rakishou.chan.core.base.DebouncingCoroutineExecutor
+import com.github.k1rakishou.common.ModularResult
+import com.github.k1rakishou.common.datastructure.PostNumberMap
 import com.github.k1rakishou.common.errorMessageOrClassName
 import com.github.k1rakishou.common.hashSetWithCap
 import com.github.k1rakishou.common.linkedMapWithCap
-import com.github.k1rakishou.common.mutableIteration
-import com.github.k1rakishou.common.mutableMapWithCap
 import com.github.k1rakishou.common.putIfNotContains
-import com.github.k1rakishou.common.toHashSetBy
 import com.github.k1rakishou.core_logger.Logger
 import com.github.k1rakishou.model.data.descriptor.ChanDescriptor
 import com.github.k1rakishou.model.data.descriptor.PostDescriptor
@@ -17,6 +15,11 @@ import com.github.k1rakishou.model.data.post.SeenPost
 import com.github.k1rakishou.model.repository.SeenPostRepository
 import com.github.k1rakishou.model.source.cache.ChanCatalogSnapshotCache
 import com.github.k1rakishou.model.source.cache.thread.ChanThreadsCache
+import com.github.k1rakishou.model.util.WriteBehindQueue
+import com.github.k1rakishou.model.util.containsKey
+import com.github.k1rakishou.model.util.get
+import com.github.k1rakishou.model.util.set
+import dagger.Lazy
 import kotlinx.coroutines.CoroutineScope
 import kotlinx.coroutines.flow.MutableSharedFlow
 import kotlinx.coroutines.flow.SharedFlow
@@ -35,13 +38,12 @@ class SeenPostsManager(
   private val verboseLogsEnabled: Boolean,
   private val chanThreadsCache: ChanThreadsCache,
   private val catalogSnapshotCache: ChanCatalogSnapshotCache,
-  private val seenPostsRepository: SeenPostRepository
+  private val seenPostsRepository: SeenPostRepository,
+  private val _applicationVisibilityManager: Lazy<ApplicationVisibilityManager>
 ) {
   private val lock = ReentrantReadWriteLock()
   @GuardedBy("lock")
-  private val seenPostsMap = linkedMapWithCap<ChanDescriptor.ThreadDescriptor, MutableMap<PostDescriptor, SeenPost>>(256)
-  @GuardedBy("lock")
-  private val seenPostsToPersist = mutableMapOf<ChanDescriptor.ThreadDescriptor, MutableMap<PostDescriptor, SeenPost>>()
+  private val seenPostsMap = linkedMapWithCap<ChanDescriptor.ThreadDescriptor, PostNumberMap<SeenPost>>(256)
   @GuardedBy("lock")
   private var lastLoadedCatalogDescriptor: ChanDescriptor.ICatalogDescriptor? = null
   @GuardedBy("lock")
@@ -51,9 +53,25 @@ class SeenPostsManager(
   val seenThreadUpdatesFlow: SharedFlow<ChanDescriptor.ThreadDescriptor>
     get() = _seenThreadUpdatesFlow.asSharedFlow()
 
-  private val debouncingCoroutineExecutor = DebouncingCoroutineExecutor(appScope)
+  private val seenPostsWriteQueue = WriteBehindQueue<PostDescriptor, SeenPost>(
+    tag = TAG,
+    scope = appScope,
+    flushDelayMs = FLUSH_DELAY_MS,
+    maxPendingCount = MAX_PENDING_SEEN_POSTS,
+    mergeFunc = { oldSeenPost, _ -> oldSeenPost },
+    flushFunc = { seenPosts -> persistSeenPosts(seenPosts.values) }
+  )
+
+  private val applicationVisibilityManager: ApplicationVisibilityManager
+    get() = _applicationVisibilityManager.get()
 
   init {
+    applicationVisibilityManager.addListener { visibility ->
+      if (visibility == ApplicationVisibility.Background) {
+        seenPostsWriteQueue.flushAsync()
+      }
+    }
+
     chanThreadsCache.addChanThreadDeleteEventListener { threadDeleteEvent ->
       Logger.d(TAG, "chanThreadsCache.chanThreadDeleteEventFlow() " +
         "threadDeleteEvent=${threadDeleteEvent.javaClass.simpleName}")
@@ -90,7 +108,7 @@ class SeenPostsManager(
         }
 
       lock.write {
-        val resultMap = mutableMapWithCap<PostDescriptor, SeenPost>(seenPosts.size)
+        val resultMap = PostNumberMap<SeenPost>(seenPosts.size)
 
         for (seenPost in seenPosts) {
           resultMap[seenPost.postDescriptor] = seenPost
@@ -137,7 +155,7 @@ class SeenPostsManager(
         "alreadyLoadedDescriptorsForUnlimitedCatalog=${alreadyLoadedDescriptorsForUnlimitedCatalog.size}")
 
       seenPostsGrouped.entries.forEach { (threadDescriptor, seenPosts) ->
-        seenPostsMap.putIfNotContains(threadDescriptor, mutableMapWithCap(seenPosts.size))
+        seenPostsMap.putIfNotContains(threadDescriptor, PostNumberMap(seenPosts.size))
 
         val innerMap = seenPostsMap[threadDescriptor]!!
         seenPosts.forEach { seenPost -> innerMap[seenPost.postDescriptor] = seenPost }
@@ -175,80 +193,43 @@ class SeenPostsManager(
       return
     }
 
-    val needPersist = lock.write {
-      var needPersist = false
-
-      for (seenPost in seenPosts) {
+    val toPersist = lock.read {
+      return@read seenPosts.filter { seenPost ->
         val postDescriptor = seenPost.postDescriptor
-        val threadDescriptor = postDescriptor.threadDescriptor()
-
-        seenPostsToPersist.putIfNotContains(threadDescriptor, mutableMapWithCap(32))
-
-        if (seenPostsMap[threadDescriptor]?.contains(postDescriptor) == true) {
-          continue
-        }
-
-        if (seenPostsToPersist[threadDescriptor]?.contains(postDescriptor) == true) {
-          continue
-        }
-
-        seenPostsToPersist[threadDescriptor]!!.put(postDescriptor, seenPost)
-        needPersist = true
+        return@filter seenPostsMap[postDescriptor.threadDescriptor()]?.containsKey(postDescriptor) != true
       }
-
-      return@write needPersist
     }
 
-    if (!needPersist) {
-      return
-    }
-
-    debouncingCoroutineExecutor.post(DEBOUNCE_TIMEOUT_MS) {
-      val threadDescriptors = seenPosts.toHashSetBy { seenPost -> seenPost.postDescriptor.threadDescriptor() }
-
-      val toPersistMap = lock.write {
-        val toPersistMap = mutableMapOf<ChanDescriptor.ThreadDescriptor, Set<SeenPost>>()
+    // Posts that are already in the queue are merged by the queue (the older SeenPost is kept)
+    toPersist.forEach { seenPost -> seenPostsWriteQueue.enqueue(seenPost.postDescriptor, seenPost) }
+  }
 
-        for (threadDescriptor in threadDescriptors) {
-          val seenPostsMap = seenPostsToPersist.remove(threadDescriptor)
-            ?.toMutableMap()
+  private suspend fun persistSeenPosts(seenPosts: Collection<SeenPost>): ModularResult<Unit> {
+    if (verboseLogsEnabled) {
+      Logger.d(TAG, "persistSeenPosts() persisting ${seenPosts.size} posts")
+    }
 
-          if (seenPostsMap == null || seenPostsMap.values.isEmpty()) {
-            continue
-          }
+    val result = seenPostsRepository.insertMany(seenPosts)
+    if (result is ModularResult.Error) {
+      return result
+    }
 
-          toPersistMap[threadDescriptor] = seenPostsMap.values.toSet()
-        }
+    val threadDescriptors = lock.write {
+      val threadDescriptors = hashSetWithCap<ChanDescriptor.ThreadDescriptor>(4)
 
-        return@write toPersistMap
-      }
+      seenPosts.forEach { seenPost ->
+        val threadDescriptor = seenPost.postDescriptor.threadDescriptor()
+        threadDescriptors += threadDescriptor
 
-      if (toPersistMap.isEmpty()) {
-        return@post
+        seenPostsMap.putIfNotContains(threadDescriptor, PostNumberMap(32))
+        seenPostsMap[threadDescriptor]!![seenPost.postDescriptor] = seenPost
       }
 
-      toPersistMap.forEach { (threadDescriptor, seenPostSet) ->
-        if (verboseLogsEnabled) {
-          Logger.d(TAG, "onPostBind() persisting ${seenPostSet.size} posts")
-        }
-
-        seenPostsRepository.insertMany(threadDescriptor, seenPostSet)
-          .safeUnwrap { error ->
-            Logger.e(TAG, "Error while trying to store new seen post with threadDescriptor " +
-                "($threadDescriptor), error = ${error.errorMessageOrClassName()}")
-            return@post
-          }
-
-        lock.write {
-          seenPostsMap.putIfNotContains(threadDescriptor, mutableMapWithCap(32))
-
-          val innerMap = seenPostsMap[threadDescriptor]!!
-          seenPostSet.forEach { seenPost -> innerMap[seenPost.postDescriptor] = seenPost }
-        }
-
-        _seenThreadUpdatesFlow.emit(threadDescriptor)
-      }
+      return@write threadDescriptors
     }
+
+    threadDescriptors.forEach { threadDescriptor -> _seenThreadUpdatesFlow.emit(threadDescriptor) }
+    return result
   }
 
   private fun isEnabled() = ChanSettings.markUnseenPosts.get()
@@ -274,14 +255,9 @@ class SeenPostsManager(
           var removedPosts = 0
 
           threadDeleteEvent.entries.forEach { (threadDescriptor, originalPostDescriptor) ->
-            seenPostsMap[threadDescriptor]?.keys?.mutableIteration { mutableIterator, postDescriptor ->
-              if (postDescriptor != originalPostDescriptor) {
-                ++removedPosts
-                mutableIterator.remove()
-              }
-
-              return@mutableIteration true
-            }
+            removedPosts += seenPostsMap[threadDescriptor]?.removeIf { postNo, postSubNo, _ ->
+              postNo != originalPostDescriptor.postNo || postSubNo != originalPostDescriptor.postSubNo
+            } ?: 0
           }
 
           Logger.d(TAG, "onThreadDeleteEventReceived.RemoveThreadPostsExceptOP() removed ${removedPosts} posts")
@@ -325,6 +301,8 @@ class SeenPostsManager(
 
   companion object {
     private const val TAG = "SeenPostsManager"
-    private const val DEBOUNCE_TIMEOUT_MS = 250L
+    // Scrolling through a thread binds a lot of posts quickly, persist them in bigger batches
+    private const val FLUSH_DELAY_MS = 1000L
+    private const val MAX_PENDING_SEEN_POSTS = 256
   }
 }
\ No newline at end of file
@@ -4,6 +4,7 @@ import com.github.k1rakishou.ChanSettings
 import com.github.k1rakishou.chan.core.helper.LastPageNotificationsHelper
 import com.github.k1rakishou.chan.core.helper.LastViewedPostNoInfoHolder
 import com.github.k1rakishou.chan.core.helper.ReplyNotificationsHelper
+import com.github.k1rakishou.chan.core.helper.ThreadRefreshScheduler
 import com.github.k1rakishou.chan.core.manager.ArchivesManager
 import com.github.k1rakishou.chan.core.manager.BookmarksManager
 import com.github.k1rakishou.chan.core.manager.CurrentOpenedDescriptorStateManager
@@ -43,7 +44,8 @@ class BookmarkWatcherDelegate(
   private val parsePostRepliesUseCase: Lazy<ParsePostRepliesUseCase>,
   private val replyNotificationsHelper: Lazy<ReplyNotificationsHelper>,
   private val lastPageNotificationsHelper: Lazy<LastPageNotificationsHelper>,
-  private val currentOpenedDescriptorStateManager: CurrentOpenedDescriptorStateManager
+  private val currentOpenedDescriptorStateManager: CurrentOpenedDescriptorStateManager,
+  private val threadRefreshScheduler: ThreadRefreshScheduler
 ) {
 
   suspend fun doWork(
@@ -93,6 +95,7 @@ class BookmarkWatcherDelegate(
     awaitUntilAllDependenciesAreReady()
 
     val watchingBookmarkDescriptors = getWatchingBookmarkDescriptors(
+      isCalledFromForeground,
       updateCurrentlyOpenedThread,
       currentThreadDescriptor
     )
@@ -174,9 +177,14 @@ class BookmarkWatcherDelegate(
   }
 
   private fun getWatchingBookmarkDescriptors(
+    isCalledFromForeground: Boolean,
     updateCurrentlyOpenedThread: Boolean,
     currentThreadDescriptor: ChanDescriptor.ThreadDescriptor?
   ): List<ChanDescriptor.ThreadDescriptor> {
+    val skipSlowThreads = isCalledFromForeground && ChanSettings.watchForegroundAdaptiveInterval.get()
+    val minUpdateDelaySeconds = ChanSettings.watchForegroundInterval.get() / 1000L
+    val nowMs = System.currentTimeMillis()
+
     return bookmarksManager.mapNotNullAllBookmarks { threadBookmarkView ->
       if (!threadBookmarkView.isActive()) {
         return@mapNotNullAllBookmarks null
@@ -204,6 +212,20 @@ class BookmarkWatcherDelegate(
         }
       }
 
+      if (skipSlowThreads && !threadBookmarkView.isFirstFetch()) {
+        val tooEarlyToUpdate = threadRefreshScheduler.isTooEarlyToUpdate(
+          threadDescriptor = threadBookmarkView.threadDescriptor,
+          minDelaySeconds = minUpdateDelaySeconds,
+          maxDelaySeconds = MAX_SLOW_THREAD_UPDATE_DELAY_SECONDS,
+          nowMs = nowMs
+        )
+
+        if (tooEarlyToUpdate) {
+          // This thread is too slow to bother updating it on every foreground watcher tick
+          return@mapNotNullAllBookmarks null
+        }
+      }
+
       return@mapNotNullAllBookmarks threadBookmarkView.threadDescriptor
     }
   }
@@ -246,6 +268,11 @@ class BookmarkWatcherDelegate(
     }.toList()
 
     val updatedBookmarkDescriptors = fetchResultPairsList.mapNotNull { (threadDescriptor, threadBookmarkInfoObject) ->
+      threadRefreshScheduler.onBookmarkFetched(
+        threadDescriptor = threadDescriptor,
+        totalPostsCount = threadBookmarkInfoObject.simplePostObjects.size
+      )
+
       val quotesToMeMap = postsQuotingMe[threadDescriptor] ?: emptyMap()
 
       val originalPost = threadBookmarkInfoObject.simplePostObjects.firstOrNull { postObject ->
@@ -461,5 +488,7 @@ class BookmarkWatcherDelegate(
 
   companion object {
     private const val TAG = "BookmarkWatcherDelegate"
+
+    private const val MAX_SLOW_THREAD_UPDATE_DELAY_SECONDS = 15L * 60L
   }
 }
\ No newline at end of file
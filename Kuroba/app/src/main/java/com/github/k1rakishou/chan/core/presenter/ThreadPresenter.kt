@@ -29,8 +29,10 @@ import com.github.k1rakishou.chan.core.base.ThrottlingCoroutineExecutorWithAccum
 import com.github.k1rakishou.chan.core.helper.ChanLoadProgressEvent
 import com.github.k1rakishou.chan.core.helper.ChanLoadProgressNotifier
 import com.github.k1rakishou.chan.core.helper.ChanThreadTicker
+import com.github.k1rakishou.chan.core.helper.CompositeCatalogLoader
 import com.github.k1rakishou.chan.core.helper.LastViewedPostNoInfoHolder
 import com.github.k1rakishou.chan.core.helper.PostHideHelper
+import com.github.k1rakishou.chan.core.helper.ThreadRefreshScheduler
 import com.github.k1rakishou.chan.core.helper.ThumbnailLongtapOptionsHelper
 import com.github.k1rakishou.chan.core.loader.LoaderBatchResult
 import com.github.k1rakishou.chan.core.loader.LoaderResult.Succeeded
@@ -120,7 +122,9 @@ class ThreadPresenter @Inject constructor(
   private val _postHighlightManager: Lazy<PostHighlightManager>,
   private val _currentOpenedDescriptorStateManager: Lazy<CurrentOpenedDescriptorStateManager>,
   private val _chanCatalogSnapshotCache: Lazy<ChanCatalogSnapshotCache>,
-  private val _compositeCatalogManager: Lazy<CompositeCatalogManager>
+  private val _compositeCatalogManager: Lazy<CompositeCatalogManager>,
+  private val _threadRefreshScheduler: Lazy<ThreadRefreshScheduler>,
+  private val _compositeCatalogLoader: Lazy<CompositeCatalogLoader>
 ) : PostAdapterCallback,
   PostCellCallback,
   ThreadStatusCell.Callback,
@@ -175,6 +179,10 @@ class ThreadPresenter @Inject constructor(
     get() = _chanCatalogSnapshotCache.get()
   private val compositeCatalogManager: CompositeCatalogManager
     get() = _compositeCatalogManager.get()
+  private val threadRefreshScheduler: ThreadRefreshScheduler
+    get() = _threadRefreshScheduler.get()
+  private val compositeCatalogLoader: CompositeCatalogLoader
+    get() = _compositeCatalogLoader.get()
 
   private val chanThreadTicker by lazy {
     ChanThreadTicker(
@@ -182,6 +190,7 @@ class ThreadPresenter @Inject constructor(
       isDevFlavor = isDevBuild(),
       _archivesManager = _archivesManager,
       _chanThreadManager = _chanThreadManager,
+      _threadRefreshScheduler = _threadRefreshScheduler,
       action = this::onChanTickerTick
     )
   }
@@ -617,59 +626,52 @@ class ThreadPresenter @Inject constructor(
         return@launch
       }
 
-      var lastThreadLoadResult: ThreadLoadResult? = null
-
-      while (isActive) {
-        ensureActive()
-
-        val catalogSnapshot = chanCatalogSnapshotCache.get(currentChanDescriptor)
-        if (catalogSnapshot == null) {
-          Logger.d(TAG, "loadWholeCompositeCatalog() catalogSnapshot == null exiting")
-          break
-        }
-
-        if (catalogSnapshot.isEndReached) {
-          Logger.d(TAG, "loadWholeCompositeCatalog() isEndReached == true exiting")
-          break
-        }
+      val catalogSnapshot = chanCatalogSnapshotCache.get(currentChanDescriptor)
+      if (catalogSnapshot == null) {
+        Logger.d(TAG, "loadWholeCompositeCatalog() catalogSnapshot == null exiting")
+        return@launch
+      }
 
-        val catalogPageToLoad = catalogSnapshot.getNextCatalogPage()
-        val totalCatalogPages = (currentChanDescriptor.catalogDescriptors.size - 1)
+      if (catalogSnapshot.isEndReached) {
+        Logger.d(TAG, "loadWholeCompositeCatalog() isEndReached == true exiting")
+        return@launch
+      }
 
-        Logger.d(TAG, "loadWholeCompositeCatalog() loading ${catalogPageToLoad}/${totalCatalogPages}...")
+      val startCatalogPage = catalogSnapshot.getNextCatalogPage() ?: 0
+      val totalCatalogPages = (currentChanDescriptor.catalogDescriptors.size - 1)
 
-        val nextDescriptorToLoad = currentChanDescriptor.catalogDescriptors.getOrNull(catalogPageToLoad ?: 0)
-        if (nextDescriptorToLoad == null) {
-          Logger.d(TAG, "loadWholeCompositeCatalog() nextDescriptorToLoad == null exiting")
-          break
-        }
+      Logger.d(TAG, "loadWholeCompositeCatalog() loading ${startCatalogPage}..${totalCatalogPages}")
 
-        val message = "Loading catalog '${nextDescriptorToLoad.userReadableString()}' " +
-          "${catalogPageToLoad}/${totalCatalogPages}"
-        loadingController?.updateWithText(message)
+      val message = "Loading catalogs ${startCatalogPage}/${totalCatalogPages}"
+      loadingController?.updateWithText(message)
 
-        lastThreadLoadResult = chanThreadManager.loadThreadOrCatalog(
-          page = catalogPageToLoad,
-          compositeCatalogDescriptor = currentChanDescriptor,
-          chanDescriptor = nextDescriptorToLoad,
-          chanCacheUpdateOptions = ChanCacheUpdateOptions.UpdateCache,
-          chanLoadOptions = ChanLoadOptions.retainAll(),
-          chanCacheOptions = ChanCacheOptions.onlyCacheInMemory(),
-          chanReadOptions = ChanReadOptions.default()
-        )
-
-        when (lastThreadLoadResult) {
+      // All the remaining catalogs are loaded concurrently but delivered here in order
+      val lastThreadLoadResult = compositeCatalogLoader.loadCatalogs(
+        compositeCatalogDescriptor = currentChanDescriptor,
+        startPage = startCatalogPage
+      ) { catalogPage, catalogDescriptor, threadLoadResult ->
+        when (threadLoadResult) {
           is ThreadLoadResult.Loaded -> {
-            Logger.d(TAG, "loadWholeCompositeCatalog() ${nextDescriptorToLoad} success")
+            Logger.d(TAG, "loadWholeCompositeCatalog() ${catalogDescriptor} success")
           }
           is ThreadLoadResult.Error -> {
-            Logger.e(TAG, "loadWholeCompositeCatalog() ${nextDescriptorToLoad} error. " +
-              "Reason: ${lastThreadLoadResult.exception.errorMessage}")
+            Logger.e(TAG, "loadWholeCompositeCatalog() ${catalogDescriptor} error. " +
+              "Reason: ${threadLoadResult.exception.errorMessage}")
           }
         }
 
-        catalogSnapshot.onCatalogLoaded(catalogPageToLoad)
-        Logger.d(TAG, "loadWholeCompositeCatalog() loading ${catalogPageToLoad}/${totalCatalogPages}...done")
+        catalogSnapshot.onCatalogLoaded(catalogPage)
+
+        // The last catalog is processed below, display the rest as soon as they are loaded
+        if (catalogPage < totalCatalogPages && threadLoadResult is ThreadLoadResult.Loaded) {
+          onChanLoaderData(threadLoadResult.chanDescriptor, threadLoadResult.isLoadedFromServer)
+        }
+
+        val progressMessage = "Loaded catalog '${catalogDescriptor.userReadableString()}' " +
+          "${catalogPage}/${totalCatalogPages}"
+        loadingController?.updateWithText(progressMessage)
+
+        Logger.d(TAG, "loadWholeCompositeCatalog() loading ${catalogPage}/${totalCatalogPages}...done")
       }
 
       when (lastThreadLoadResult) {
@@ -677,7 +679,10 @@ class ThreadPresenter @Inject constructor(
           onChanLoaderError(lastThreadLoadResult.chanDescriptor, lastThreadLoadResult.exception)
         }
         is ThreadLoadResult.Loaded -> {
-          val successfullyProcessedNewPosts = onChanLoaderData(lastThreadLoadResult.chanDescriptor)
+          val successfullyProcessedNewPosts = onChanLoaderData(
+            loadedChanDescriptor = lastThreadLoadResult.chanDescriptor,
+            isLoadedFromServer = lastThreadLoadResult.isLoadedFromServer
+          )
           if (!successfullyProcessedNewPosts) {
             val error = getPossibleChanLoadError(currentChanDescriptor)
             onChanLoaderError(lastThreadLoadResult.chanDescriptor, error)
@@ -807,7 +812,7 @@ class ThreadPresenter @Inject constructor(
         }
         is ThreadLoadResult.Loaded -> {
           val (successfullyProcessedNewPosts, time) = measureTimedValue {
-            onChanLoaderData(threadLoadResult.chanDescriptor)
+            onChanLoaderData(threadLoadResult.chanDescriptor, threadLoadResult.isLoadedFromServer)
           }
 
           Logger.d(TAG, "onChanLoaderData(${threadLoadResult.chanDescriptor}) end, took $time")
@@ -1050,9 +1055,13 @@ class ThreadPresenter @Inject constructor(
     threadPresenterCallback?.showError(chanDescriptor, error)
   }
 
-  private suspend fun onChanLoaderData(loadedChanDescriptor: ChanDescriptor): Boolean {
+  private suspend fun onChanLoaderData(
+    loadedChanDescriptor: ChanDescriptor,
+    isLoadedFromServer: Boolean
+  ): Boolean {
     BackgroundUtils.ensureMainThread()
-    Logger.d(TAG, "onChanLoaderData() called, loadedChanDescriptor=$loadedChanDescriptor")
+    Logger.d(TAG, "onChanLoaderData() called, loadedChanDescriptor=$loadedChanDescriptor, " +
+      "isLoadedFromServer=$isLoadedFromServer")
 
     if (!isBound) {
       Logger.e(TAG, "onChanLoaderData() not bound!")
@@ -1086,6 +1095,16 @@ class ThreadPresenter @Inject constructor(
       null
     }
 
+    if (localChanDescriptor is ChanDescriptor.ThreadDescriptor && chanThread != null) {
+      threadRefreshScheduler.onThreadLoaded(
+        threadDescriptor = localChanDescriptor,
+        lastPostsTimestamps = chanThread.getLastPostsTimestamps(ThreadRefreshScheduler.TIMESTAMPS_WINDOW_SIZE),
+        totalPostsCount = chanThread.postsCount,
+        newPostsCount = newPostsCount,
+        isLoadedFromServer = isLoadedFromServer
+      )
+    }
+
     if (isWatching()) {
       val shouldResetTimer = newPostsCount > 0
       chanThreadTicker.kickTicker(resetTimer = shouldResetTimer)
@@ -28,6 +28,7 @@ import com.github.k1rakishou.ChanSettings;
 import com.github.k1rakishou.chan.core.manager.ArchivesManager;
 import com.github.k1rakishou.chan.core.site.parser.CommentParser;
 import com.github.k1rakishou.chan.core.site.parser.CommentParserHelper;
+import com.github.k1rakishou.chan.core.site.parser.PostParseContext;
 import com.github.k1rakishou.chan.core.site.parser.PostParser;
 import com.github.k1rakishou.chan.core.site.sites.foolfuuka.FoolFuukaCommentParser;
 import com.github.k1rakishou.common.KotlinExtensionsKt;
@@ -35,7 +36,6 @@ import com.github.k1rakishou.common.data.ArchiveType;
 import com.github.k1rakishou.core_logger.Logger;
 import com.github.k1rakishou.core_parser.comment.HtmlDocument;
 import com.github.k1rakishou.core_parser.comment.HtmlNode;
-import com.github.k1rakishou.core_parser.comment.HtmlParser;
 import com.github.k1rakishou.core_parser.comment.HtmlTag;
 import com.github.k1rakishou.core_spannable.PostLinkable;
 import com.github.k1rakishou.model.data.post.ChanPost;
@@ -54,7 +54,6 @@ public class DefaultPostParser implements PostParser {
     private static final String TAG = "DefaultPostParser";
 
     static final String CHAN4_DEFAULT_POSTER_NAME = "Anonymous";
-    private final ThreadLocal<HtmlParser> htmlParserThreadLocal = new ThreadLocal<>();
     private final CommentParser commentParser;
     private final ArchivesManager archivesManager;
 
@@ -131,37 +130,26 @@ public class DefaultPostParser implements PostParser {
             return SpannableString.valueOf(commentRaw);
         }
 
-        SpannableStringBuilder total = new SpannableStringBuilder("");
+        return PostParseContext.withContext(postParseContext -> {
+            SpannableStringBuilder total = postParseContext.commentBuilder();
 
-        try {
-            String comment = commentRaw.toString().replace("<wbr>", "");
+            try {
+                String comment = commentRaw.toString().replace("<wbr>", "");
+                HtmlDocument document = postParseContext.getHtmlParser().parse(comment);
 
-            HtmlParser htmlParser = htmlParserThreadLocal.get();
-            if (htmlParser == null) {
-                htmlParserThreadLocal.set(new HtmlParser());
-                htmlParser = htmlParserThreadLocal.get();
-            }
-
-            HtmlDocument document = htmlParser.parse(comment);
-
-            List<HtmlNode> nodes = document.getNodes();
-            List<CharSequence> texts = new ArrayList<>(nodes.size());
-
-            for (HtmlNode node : nodes) {
-                CharSequence nodeParsed = parseNode(post, callback, node);
-                if (nodeParsed != null) {
-                    texts.add(nodeParsed);
+                for (HtmlNode node : document.getNodes()) {
+                    CharSequence nodeParsed = parseNode(post, callback, node);
+                    if (nodeParsed != null) {
+                        total.append(nodeParsed);
+                    }
                 }
+            } catch (Throwable e) {
+                Logger.e(TAG, "Error parsing comment html", e);
             }
 
-            for (CharSequence text : texts) {
-                total.append(text);
-            }
-        } catch (Throwable e) {
-            Logger.e(TAG, "Error parsing comment html", e);
-        }
-
-        return SpannableString.valueOf(total);
+            // Copy the result out of the reused builder
+            return new SpannableString(total);
+        });
     }
 
     private CharSequence parseNode(
@@ -8,7 +8,6 @@ import com.github.k1rakishou.chan.core.site.parser.ChanReader
 import com.github.k1rakishou.chan.core.site.parser.CommentParser
 import com.github.k1rakishou.chan.core.site.parser.PostParser
 import com.github.k1rakishou.chan.core.site.parser.processor.AbstractChanReaderProcessor
-import com.github.k1rakishou.chan.core.site.parser.processor.ChanReaderProcessor
 import com.github.k1rakishou.common.ModularResult
 import com.github.k1rakishou.common.isNotNullNorEmpty
 import com.github.k1rakishou.common.mutableListWithCap
@@ -66,7 +65,7 @@ class FutabaChanReader(
   override suspend fun loadThreadFresh(
     requestUrl: String,
     responseBodyStream: InputStream,
-    chanReaderProcessor: ChanReaderProcessor
+    chanReaderProcessor: AbstractChanReaderProcessor
   ) {
     readBodyJson(responseBodyStream) { jsonReader ->
       iteratePostsInThread(jsonReader) { reader ->
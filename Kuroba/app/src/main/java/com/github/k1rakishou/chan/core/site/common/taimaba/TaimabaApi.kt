@@ -6,7 +6,6 @@ import com.github.k1rakishou.chan.core.site.SiteEndpoints
 import com.github.k1rakishou.chan.core.site.common.CommonSite
 import com.github.k1rakishou.chan.core.site.common.CommonSite.CommonApi
 import com.github.k1rakishou.chan.core.site.parser.processor.AbstractChanReaderProcessor
-import com.github.k1rakishou.chan.core.site.parser.processor.ChanReaderProcessor
 import com.github.k1rakishou.common.ModularResult
 import com.github.k1rakishou.common.mutableListWithCap
 import com.github.k1rakishou.core_logger.Logger
@@ -40,7 +39,7 @@ class TaimabaApi(
   override suspend fun loadThreadFresh(
     requestUrl: String,
     responseBodyStream: InputStream,
-    chanReaderProcessor: ChanReaderProcessor
+    chanReaderProcessor: AbstractChanReaderProcessor
   ) {
     readBodyJson(responseBodyStream) { jsonReader ->
       vichanReaderExtensions.iteratePostsInThread(jsonReader) { reader ->
@@ -7,7 +7,6 @@ import com.github.k1rakishou.chan.core.site.common.CommonSite
 import com.github.k1rakishou.chan.core.site.common.CommonSite.CommonApi
 import com.github.k1rakishou.chan.core.site.parser.ChanReader
 import com.github.k1rakishou.chan.core.site.parser.processor.AbstractChanReaderProcessor
-import com.github.k1rakishou.chan.core.site.parser.processor.ChanReaderProcessor
 import com.github.k1rakishou.common.ModularResult
 import com.github.k1rakishou.common.isNotNullNorEmpty
 import com.github.k1rakishou.common.mutableListWithCap
@@ -42,7 +41,7 @@ class VichanApi(
   override suspend fun loadThreadFresh(
     requestUrl: String,
     responseBodyStream: InputStream,
-    chanReaderProcessor: ChanReaderProcessor
+    chanReaderProcessor: AbstractChanReaderProcessor
   ) {
     readBodyJson(responseBodyStream) { jsonReader ->
       vichanReaderExtensions.iteratePostsInThread(jsonReader) { reader ->
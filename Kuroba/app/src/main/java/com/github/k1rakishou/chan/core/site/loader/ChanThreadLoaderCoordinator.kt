@@ -18,6 +18,7 @@ package com.github.k1rakishou.chan.core.site.loader
 
 import com.github.k1rakishou.ChanSettings
 import com.github.k1rakishou.chan.core.base.okhttp.CloudFlareHandlerInterceptor
+import com.github.k1rakishou.chan.core.base.okhttp.NetworkTimings
 import com.github.k1rakishou.chan.core.base.okhttp.ProxiedOkHttpClient
 import com.github.k1rakishou.chan.core.helper.ChanLoadProgressEvent
 import com.github.k1rakishou.chan.core.helper.ChanLoadProgressNotifier
@@ -63,6 +64,7 @@ import kotlinx.coroutines.SupervisorJob
 import kotlinx.coroutines.withContext
 import okhttp3.HttpUrl
 import okhttp3.Request
+import okhttp3.Response
 import java.io.InputStream
 import java.util.*
 import java.util.concurrent.ConcurrentHashMap
@@ -70,6 +72,7 @@ import java.util.concurrent.TimeUnit
 import kotlin.coroutines.CoroutineContext
 import kotlin.time.Duration
 import kotlin.time.ExperimentalTime
+import kotlin.time.measureTime
 import kotlin.time.measureTimedValue
 
 /**
@@ -82,6 +85,7 @@ import kotlin.time.measureTimedValue
  * */
 class ChanThreadLoaderCoordinator(
   private val proxiedOkHttpClient: ProxiedOkHttpClient,
+  private val sharedCatalogResponseCache: SharedCatalogResponseCache,
   private val chanPostRepository: ChanPostRepository,
   private val chanCatalogSnapshotRepository: ChanCatalogSnapshotRepository,
   private val appConstants: AppConstants,
@@ -91,7 +95,8 @@ class ChanThreadLoaderCoordinator(
   private val chanThreadsCache: ChanThreadsCache,
   private val chanCatalogSnapshotCache: ChanCatalogSnapshotCache,
   private val threadDownloadManager: ThreadDownloadManager,
-  private val parsePostsV1UseCase: ParsePostsV1UseCase
+  private val parsePostsV1UseCase: ParsePostsV1UseCase,
+  private val loadPipelineTimings: LoadPipelineTimings
 ) : CoroutineScope {
   private val job = SupervisorJob()
 
@@ -171,14 +176,17 @@ class ChanThreadLoaderCoordinator(
 
           val success = databasePostLoader.loadPosts(chanDescriptor) != null
           if (success) {
-            return@Try ThreadLoadResult.Loaded(chanDescriptor)
+            return@Try ThreadLoadResult.Loaded(chanDescriptor, isLoadedFromServer = false)
           }
 
           // fallthrough
         }
 
+        val networkTimings = NetworkTimings()
+
         val requestBuilder = Request.Builder()
           .url(chanLoadUrl.url)
+          .tag(NetworkTimings::class.java, networkTimings)
           .get()
 
         siteResolver.findSiteForUrl(chanLoadUrl.urlString)?.let { site ->
@@ -209,7 +217,7 @@ class ChanThreadLoaderCoordinator(
         }
 
         val (response, requestDuration) = try {
-          measureTimedValue { proxiedOkHttpClient.okHttpClient().suspendCall(requestBuilder.build()) }
+          measureTimedValue { executeRequest(chanDescriptor, chanLoadOptions, requestBuilder.build()) }
         } catch (error: Throwable) {
           if (error is CloudFlareHandlerInterceptor.CloudFlareDetectedException) {
             throw error
@@ -219,16 +227,14 @@ class ChanThreadLoaderCoordinator(
         }
 
         if (!response.isSuccessful) {
+          response.close()
           return@Try reloadFunc(BadStatusResponseException(response.code))
         }
 
         chanLoadProgressNotifier.sendProgressEvent(ChanLoadProgressEvent.Reading(chanDescriptor))
 
         val (chanReaderProcessor, readPostsDuration) = measureTimedValue {
-          val body = response.body
-            ?: throw EmptyBodyResponseException()
-
-          return@measureTimedValue body.byteStream().use { inputStream ->
+          return@measureTimedValue response.bodyStream().use { inputStream ->
             return@use readPostsFromResponse(
               page = page,
               chanLoadUrl = chanLoadUrl,
@@ -270,39 +276,82 @@ class ChanThreadLoaderCoordinator(
           postParser = postParser,
         )
 
-        if (chanDescriptor is ChanDescriptor.ThreadDescriptor) {
-          chanPostRepository.updateThreadState(
-            threadDescriptor = chanDescriptor,
-            deleted = chanReaderProcessor.deleted && !isThreadDownloaded,
-            archived = chanReaderProcessor.archived || isThreadDownloaded,
-            closed = chanReaderProcessor.closed
-          )
+        val updateThreadStateDuration = measureTime {
+          if (chanDescriptor is ChanDescriptor.ThreadDescriptor) {
+            chanPostRepository.updateThreadState(
+              threadDescriptor = chanDescriptor,
+              deleted = chanReaderProcessor.deleted && !isThreadDownloaded,
+              archived = chanReaderProcessor.archived || isThreadDownloaded,
+              closed = chanReaderProcessor.closed
+            )
+          }
         }
 
         loadRequestStatistics(
           url = chanLoadUrl.url,
           chanDescriptor = chanDescriptor,
           loadTimeInfo = loadTimeInfo,
+          networkTimings = networkTimings,
           requestDuration = requestDuration,
-          readPostsDuration = readPostsDuration
+          readPostsDuration = readPostsDuration,
+          updateThreadStateDuration = updateThreadStateDuration
         )
         return@Try threadLoadResult
       }.mapError { error -> ChanLoaderException(error) }
     }
   }
 
+  private suspend fun executeRequest(
+    chanDescriptor: ChanDescriptor,
+    chanLoadOptions: ChanLoadOptions,
+    request: Request
+  ): LoaderResponse {
+    if (chanDescriptor is ChanDescriptor.CatalogDescriptor) {
+      // Do not reuse recently downloaded catalog when the user explicitly requested a refresh
+      val allowSnapshot = !chanLoadOptions.canClearCache() && !chanLoadOptions.isForceUpdating(null)
+      val catalogResponse = sharedCatalogResponseCache.fetch(request, allowSnapshot)
+
+      return LoaderResponse.Shared(catalogResponse)
+    }
+
+    val response = proxiedOkHttpClient.okHttpClient().suspendCall(request)
+    return LoaderResponse.Network(response)
+  }
+
   @OptIn(ExperimentalTime::class)
   private suspend fun loadRequestStatistics(
     url: HttpUrl,
     chanDescriptor: ChanDescriptor,
     loadTimeInfo: ChanPostPersister.LoadTimeInfo?,
+    networkTimings: NetworkTimings,
     requestDuration: Duration,
-    readPostsDuration: Duration
+    readPostsDuration: Duration,
+    updateThreadStateDuration: Duration
   ) {
     if (loadTimeInfo == null) {
       return
     }
 
+    val databasePersistDuration = loadTimeInfo.catalogSnapshotStoreDuration + updateThreadStateDuration
+    // The response was downloaded by another loader (see SharedCatalogResponseCache)
+    val sharedResponse = !networkTimings.isTracked
+
+    val record = LoadPipelineTimings.Record(chanDescriptor, sharedResponse).apply {
+      setDuration(LoadPipelineTimings.Stage.Dns, networkTimings.dnsMs())
+      setDuration(LoadPipelineTimings.Stage.Connect, networkTimings.connectMs())
+      setDuration(LoadPipelineTimings.Stage.Tls, networkTimings.tlsMs())
+      setDuration(LoadPipelineTimings.Stage.TimeToFirstByte, networkTimings.timeToFirstByteMs())
+      setDuration(LoadPipelineTimings.Stage.BodyDownload, networkTimings.bodyDownloadMs())
+      setDuration(LoadPipelineTimings.Stage.Request, requestDuration.inWholeMilliseconds)
+      setDuration(LoadPipelineTimings.Stage.JsonRead, readPostsDuration.inWholeMilliseconds)
+      setDuration(LoadPipelineTimings.Stage.Parsing, loadTimeInfo.parsingDuration.inWholeMilliseconds)
+      setDuration(LoadPipelineTimings.Stage.FilterProcessing, loadTimeInfo.filterProcessingDuration.inWholeMilliseconds)
+      setDuration(LoadPipelineTimings.Stage.CacheMerge, loadTimeInfo.storeDuration.inWholeMilliseconds)
+      setDuration(LoadPipelineTimings.Stage.DatabasePersist, databasePersistDuration.inWholeMilliseconds)
+    }
+
+    loadPipelineTimings.add(record)
+
     val storeDuration = loadTimeInfo.storeDuration
     val storedPostsCount = loadTimeInfo.storedPostsCount
     val filterProcessingDuration = loadTimeInfo.filterProcessingDuration
@@ -324,9 +373,12 @@ class ChanThreadLoaderCoordinator(
     val logString = buildString {
       appendLine("ChanReaderRequest.readJson() stats:")
       appendLine("url = $url.")
-      appendLine("Network request execution took $requestDuration.")
+      appendLine("Network request execution took $requestDuration (sharedResponse=$sharedResponse, " +
+        "dns=${networkTimings.dnsMs()}ms, connect=${networkTimings.connectMs()}ms, " +
+        "ttfb=${networkTimings.timeToFirstByteMs()}ms, bodyDownload=${networkTimings.bodyDownloadMs()}ms).")
       appendLine("Json reading took $readPostsDuration.")
       appendLine("Store new posts took $storeDuration (stored $storedPostsCount posts).")
+      appendLine("Database persist took $databasePersistDuration.")
       appendLine("Parse posts took $parsingDuration (parsed $parsedPostsCount out of $postsInChanReaderProcessor posts).")
       appendLine("Filter processing took $filterProcessingDuration (filers count: $filtersCount).")
       appendLine("Total in-memory cached posts count: $cachedPostsCount/${appConstants.maxPostsCountInPostsCache}.")
@@ -341,7 +393,8 @@ class ChanThreadLoaderCoordinator(
         "count: ($threadsWithMoreThanOnePostCount/${ChanThreadsCache.immuneThreadsCount(isLowRamDevice)}), " +
         "total cached threads count: ${cachedThreadsCount}.")
 
-      val fullLocalDuration = readPostsDuration + storeDuration + parsingDuration + filterProcessingDuration
+      val fullLocalDuration = readPostsDuration + storeDuration + parsingDuration + filterProcessingDuration +
+        databasePersistDuration
       appendLine("Total local processing time: $fullLocalDuration")
     }
 
@@ -574,7 +627,7 @@ class ChanThreadLoaderCoordinator(
     }
 
     Logger.e(TAG, "Successfully recovered from network error (${error.errorMessageOrClassName()})")
-    return ThreadLoadResult.Loaded(chanDescriptor)
+    return ThreadLoadResult.Loaded(chanDescriptor, isLoadedFromServer = false)
   }
 
   suspend fun readPostsFromResponse(
@@ -732,6 +785,45 @@ class ChanThreadLoaderCoordinator(
     val urlString by lazy { url.toString() }
   }
 
+  private sealed class LoaderResponse {
+    abstract val code: Int
+    abstract val isSuccessful: Boolean
+
+    abstract fun bodyStream(): InputStream
+    abstract fun close()
+
+    class Network(private val response: Response) : LoaderResponse() {
+      override val code: Int
+        get() = response.code
+      override val isSuccessful: Boolean
+        get() = response.isSuccessful
+
+      override fun bodyStream(): InputStream {
+        val body = response.body
+          ?: throw EmptyBodyResponseException()
+
+        return body.byteStream()
+      }
+
+      override fun close() {
+        response.close()
+      }
+    }
+
+    class Shared(private val catalogResponse: SharedCatalogResponseCache.CatalogResponse) : LoaderResponse() {
+      override val code: Int
+        get() = catalogResponse.code
+      override val isSuccessful: Boolean
+        get() = catalogResponse.isSuccessful
+
+      override fun bodyStream(): InputStream = catalogResponse.bodyStream()
+
+      override fun close() {
+        // Nothing to close, the response body is already in memory
+      }
+    }
+  }
+
   companion object {
     private const val TAG = "ChanThreadLoaderCoordinator"
     private val THREE_MINUTES = TimeUnit.MINUTES.toMillis(3)
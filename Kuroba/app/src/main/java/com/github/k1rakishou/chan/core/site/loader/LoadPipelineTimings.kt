@@ -0,0 +1,193 @@
+package com.github.k1rakishou.chan.core.site.loader
+
+import androidx.annotation.GuardedBy
+import com.github.k1rakishou.model.data.descriptor.BoardDescriptor
+import com.github.k1rakishou.model.data.descriptor.ChanDescriptor
+import com.github.k1rakishou.model.data.descriptor.SiteDescriptor
+
+/**
+ * Keeps the timing breakdown of the last [capacity] thread/catalog loads (from the network request
+ * up to the posts being displayed) in a ring buffer so that it's possible to figure out whether a
+ * slow load is caused by the network or by our own processing. The summary with percentiles per
+ * site and per board is available in the developer settings.
+ * */
+class LoadPipelineTimings(
+  private val capacity: Int
+) {
+  private val lock = Any()
+
+  @GuardedBy("lock")
+  private val records = ArrayDeque<Record>(capacity)
+
+  init {
+    require(capacity > 0) { "Bad capacity: $capacity" }
+  }
+
+  fun add(record: Record) {
+    synchronized(lock) {
+      if (records.size >= capacity) {
+        records.removeFirst()
+      }
+
+      records.addLast(record)
+    }
+  }
+
+  /**
+   * Called once the posts of [chanDescriptor] were diffed and submitted to the post list. The
+   * duration is attributed to the latest load of that descriptor (or of one of the catalogs of a
+   * composite catalog) that doesn't have it yet, since posts are also redisplayed without any
+   * loading (e.g. when filters change).
+   * */
+  fun onPostsShown(chanDescriptor: ChanDescriptor, uiDiffMs: Long) {
+    synchronized(lock) {
+      val record = records.lastOrNull { record ->
+        !record.hasDuration(Stage.UiDiff) && record.belongsTo(chanDescriptor)
+      }
+
+      record?.setDuration(Stage.UiDiff, uiDiffMs)
+    }
+  }
+
+  fun clear() {
+    synchronized(lock) { records.clear() }
+  }
+
+  fun formatSummary(): String {
+    val recordsCopy = synchronized(lock) { records.map { record -> record.copy() } }
+    if (recordsCopy.isEmpty()) {
+      return "No loads recorded yet"
+    }
+
+    return buildString {
+      appendLine("Last ${recordsCopy.size} loads, p50/p90/max in ms " +
+        "(${recordsCopy.count { record -> record.sharedResponse }} reused an already downloaded response)")
+      appendLine()
+
+      recordsCopy
+        .groupBy { record -> record.siteDescriptor }
+        .forEach { (siteDescriptor, siteRecords) ->
+          appendGroup("Site ${siteDescriptor.siteName}", siteRecords)
+        }
+
+      recordsCopy
+        .groupBy { record -> record.boardDescriptor }
+        .forEach { (boardDescriptor, boardRecords) ->
+          appendGroup("Board ${boardDescriptor.siteName()}/${boardDescriptor.boardCode}", boardRecords)
+        }
+    }
+  }
+
+  private fun StringBuilder.appendGroup(title: String, groupRecords: List<Record>) {
+    appendLine("$title (${groupRecords.size} loads)")
+
+    Stage.values().forEach { stage ->
+      val durations = groupRecords
+        .mapNotNull { record -> record.durationMs(stage) }
+        .sorted()
+
+      if (durations.isEmpty()) {
+        return@forEach
+      }
+
+      appendLine("  ${stage.title}: ${percentile(durations, 0.5)}/${percentile(durations, 0.9)}/${durations.last()}")
+    }
+
+    appendLine()
+  }
+
+  private fun percentile(sortedDurations: List<Long>, percentile: Double): Long {
+    val index = Math.ceil(sortedDurations.size * percentile).toInt() - 1
+    return sortedDurations[index.coerceIn(0, sortedDurations.lastIndex)]
+  }
+
+  enum class Stage(val title: String, val isLocal: Boolean) {
+    Dns("dns", false),
+    Connect("connect", false),
+    Tls("tls", false),
+    TimeToFirstByte("ttfb", false),
+    BodyDownload("body download", false),
+    Request("request total", false),
+    JsonRead("json read", true),
+    Parsing("comment parsing", true),
+    FilterProcessing("filter processing", true),
+    CacheMerge("cache merge", true),
+    DatabasePersist("db persist", true),
+    UiDiff("ui diff", true),
+    LocalTotal("local total", false)
+  }
+
+  class Record private constructor(
+    val chanDescriptor: ChanDescriptor,
+    val createdAt: Long,
+    val sharedResponse: Boolean,
+    private val durationsMs: LongArray
+  ) {
+    val siteDescriptor: SiteDescriptor
+      get() = chanDescriptor.siteDescriptor()
+    val boardDescriptor: BoardDescriptor
+      get() = chanDescriptor.boardDescriptor()
+
+    constructor(
+      chanDescriptor: ChanDescriptor,
+      sharedResponse: Boolean
+    ) : this(
+      chanDescriptor = chanDescriptor,
+      createdAt = System.currentTimeMillis(),
+      sharedResponse = sharedResponse,
+      durationsMs = LongArray(Stage.values().size) { NO_VALUE }
+    )
+
+    fun hasDuration(stage: Stage): Boolean = durationsMs[stage.ordinal] != NO_VALUE
+
+    fun setDuration(stage: Stage, durationMs: Long?) {
+      require(stage != Stage.LocalTotal) { "LocalTotal is calculated" }
+
+      if (durationMs == null) {
+        return
+      }
+
+      durationsMs[stage.ordinal] = durationMs.coerceAtLeast(0L)
+    }
+
+    fun durationMs(stage: Stage): Long? {
+      if (stage == Stage.LocalTotal) {
+        val localDurations = Stage.values()
+          .filter { localStage -> localStage.isLocal && hasDuration(localStage) }
+
+        if (localDurations.isEmpty()) {
+          return null
+        }
+
+        return localDurations.sumOf { localStage -> durationsMs[localStage.ordinal] }
+      }
+
+      val duration = durationsMs[stage.ordinal]
+      if (duration == NO_VALUE) {
+        return null
+      }
+
+      return duration
+    }
+
+    fun belongsTo(descriptor: ChanDescriptor): Boolean {
+      if (descriptor is ChanDescriptor.CompositeCatalogDescriptor) {
+        return descriptor.catalogDescriptors.any { catalogDescriptor -> catalogDescriptor == chanDescriptor }
+      }
+
+      return descriptor == chanDescriptor
+    }
+
+    fun copy(): Record {
+      return Record(chanDescriptor, createdAt, sharedResponse, durationsMs.copyOf())
+    }
+
+    companion object {
+      private const val NO_VALUE = -1L
+    }
+  }
+
+  companion object {
+    const val DEFAULT_CAPACITY = 200
+  }
+}
@@ -0,0 +1,162 @@
+package com.github.k1rakishou.chan.core.site.loader
+
+import androidx.annotation.GuardedBy
+import com.github.k1rakishou.chan.core.base.okhttp.ProxiedOkHttpClient
+import com.github.k1rakishou.common.EmptyBodyResponseException
+import com.github.k1rakishou.common.suspendCall
+import com.github.k1rakishou.common.withLockNonCancellable
+import com.github.k1rakishou.core_logger.Logger
+import dagger.Lazy
+import kotlinx.coroutines.CoroutineScope
+import kotlinx.coroutines.Deferred
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.async
+import kotlinx.coroutines.runInterruptible
+import kotlinx.coroutines.sync.Mutex
+import okhttp3.Request
+import java.io.ByteArrayInputStream
+import java.io.InputStream
+
+/**
+ * The same board catalog may be requested by multiple parts of the app at the same time: the catalog
+ * itself, composite catalogs that include the board and the filter watcher. This class makes sure
+ * that concurrent requests for the same catalog url share one download and that callers arriving
+ * shortly after a successful download (within [SNAPSHOT_TTL_MS]) reuse its response instead of
+ * downloading the same catalog json again.
+ *
+ * Only the raw response body is shared, every caller parses it with its own reader since they all
+ * need different things from the catalog json.
+ * */
+class SharedCatalogResponseCache(
+  private val verboseLogs: Boolean,
+  private val appScope: CoroutineScope,
+  private val _proxiedOkHttpClient: Lazy<ProxiedOkHttpClient>
+) {
+  private val mutex = Mutex()
+
+  @GuardedBy("mutex")
+  private val activeRequests = mutableMapOf<String, Deferred<CatalogResponse>>()
+  @GuardedBy("mutex")
+  private val snapshots = mutableMapOf<String, CatalogResponse>()
+
+  private val proxiedOkHttpClient: ProxiedOkHttpClient
+    get() = _proxiedOkHttpClient.get()
+
+  /**
+   * [allowSnapshot] must be false when the user explicitly requested a refresh. In this case a
+   * recently downloaded response won't be reused but an already running download will still be
+   * joined since its result is as fresh as the new one would be.
+   * */
+  suspend fun fetch(request: Request, allowSnapshot: Boolean): CatalogResponse {
+    val url = request.url.toString()
+
+    val activeRequest = mutex.withLockNonCancellable {
+      val now = System.currentTimeMillis()
+      removeExpiredSnapshots(now)
+
+      val snapshot = snapshots[url]
+      if (snapshot != null) {
+        if (allowSnapshot) {
+          if (verboseLogs) {
+            Logger.d(TAG, "fetch('$url') using snapshot, age=${now - snapshot.fetchedAt}ms")
+          }
+
+          return@withLockNonCancellable null to snapshot
+        }
+
+        snapshots.remove(url)
+      }
+
+      val existingRequest = activeRequests[url]
+      if (existingRequest != null) {
+        if (verboseLogs) {
+          Logger.d(TAG, "fetch('$url') joining active request")
+        }
+
+        return@withLockNonCancellable existingRequest to null
+      }
+
+      val newRequest = appScope.async(Dispatchers.IO) { download(url, request) }
+      activeRequests[url] = newRequest
+
+      return@withLockNonCancellable newRequest to null
+    }
+
+    val (deferred, snapshot) = activeRequest
+    if (snapshot != null) {
+      return snapshot
+    }
+
+    return deferred!!.await()
+  }
+
+  private suspend fun download(url: String, request: Request): CatalogResponse {
+    var catalogResponse: CatalogResponse? = null
+
+    try {
+      val response = proxiedOkHttpClient.okHttpClient().suspendCall(request)
+
+      catalogResponse = response.use {
+        if (!response.isSuccessful) {
+          return@use CatalogResponse(response.code, null, System.currentTimeMillis())
+        }
+
+        val body = response.body
+          ?: throw EmptyBodyResponseException()
+
+        val bytes = runInterruptible { body.bytes() }
+        return@use CatalogResponse(response.code, bytes, System.currentTimeMillis())
+      }
+
+      return catalogResponse
+    } finally {
+      val result = catalogResponse
+
+      mutex.withLockNonCancellable {
+        activeRequests.remove(url)
+
+        // Only successful responses are reused, errors are only shared with the concurrent callers
+        if (result != null && result.isSuccessful) {
+          snapshots[url] = result
+        }
+      }
+    }
+  }
+
+  @GuardedBy("mutex")
+  private fun removeExpiredSnapshots(now: Long) {
+    if (snapshots.isEmpty()) {
+      return
+    }
+
+    val iterator = snapshots.entries.iterator()
+    while (iterator.hasNext()) {
+      if (iterator.next().value.isExpired(now)) {
+        iterator.remove()
+      }
+    }
+  }
+
+  class CatalogResponse(
+    val code: Int,
+    private val body: ByteArray?,
+    val fetchedAt: Long
+  ) {
+    val isSuccessful: Boolean
+      get() = code in 200..299 && body != null
+
+    fun isExpired(now: Long): Boolean = now - fetchedAt > SNAPSHOT_TTL_MS
+
+    fun bodyStream(): InputStream {
+      val bytes = body
+        ?: throw EmptyBodyResponseException()
+
+      return ByteArrayInputStream(bytes)
+    }
+  }
+
+  companion object {
+    private const val TAG = "SharedCatalogResponseCache"
+    private const val SNAPSHOT_TTL_MS = 5_000L
+  }
+}
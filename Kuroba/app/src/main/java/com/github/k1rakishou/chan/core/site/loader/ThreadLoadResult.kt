@@ -12,15 +12,27 @@ sealed class ThreadLoadResult {
     override fun toString(): String = "ThreadLoadResult.Error{exception=${exception.errorMessageOrClassName()}}"
   }
 
-  data class Loaded(val chanDescriptor: ChanDescriptor) : ThreadLoadResult() {
-    override fun toString(): String = "ThreadLoadResult.Loaded{chanDescriptor=${chanDescriptor}}"
+  /**
+   * [isLoadedFromServer] is false when the posts were only reloaded from the database (the cache
+   * was still fresh, the thread is fully downloaded or the server request failed).
+   * */
+  data class Loaded(
+    val chanDescriptor: ChanDescriptor,
+    val isLoadedFromServer: Boolean
+  ) : ThreadLoadResult() {
+    override fun toString(): String = "ThreadLoadResult.Loaded{chanDescriptor=${chanDescriptor}, " +
+      "isLoadedFromServer=${isLoadedFromServer}}"
   }
 
   companion object {
-    fun fromModularResult(chanDescriptor: ChanDescriptor, modularResult: ModularResult<*>): ThreadLoadResult {
+    fun fromModularResult(
+      chanDescriptor: ChanDescriptor,
+      modularResult: ModularResult<*>,
+      isLoadedFromServer: Boolean
+    ): ThreadLoadResult {
       return when (modularResult) {
         is ModularResult.Error -> Error(chanDescriptor, ChanLoaderException(modularResult.error))
-        is ModularResult.Value -> Loaded(chanDescriptor)
+        is ModularResult.Value -> Loaded(chanDescriptor, isLoadedFromServer)
       }
     }
   }
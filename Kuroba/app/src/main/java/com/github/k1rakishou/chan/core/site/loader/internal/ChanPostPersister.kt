@@ -22,6 +22,7 @@ import com.github.k1rakishou.model.repository.ChanPostRepository
 import com.github.k1rakishou.model.source.cache.ChanCatalogSnapshotCache
 import kotlin.time.Duration
 import kotlin.time.ExperimentalTime
+import kotlin.time.measureTime
 import kotlin.time.measureTimedValue
 
 internal class ChanPostPersister(
@@ -50,6 +51,8 @@ internal class ChanPostPersister(
       Logger.d(TAG, "persistPosts($chanDescriptor, $chanReaderProcessor, $cacheOptions, " +
         "$chanCacheUpdateOptions, ${postParser.javaClass.simpleName})")
 
+      var catalogSnapshotStoreDuration = Duration.ZERO
+
       if (chanDescriptor is ChanDescriptor.ICatalogDescriptor) {
         val isUnlimitedCatalog = boardManager.byCatalogDescriptor(chanDescriptor)
           ?.isUnlimitedCatalog
@@ -63,9 +66,11 @@ internal class ChanPostPersister(
           isUnlimitedCatalog = isUnlimitedCatalog
         ) as IChanCatalogSnapshot<ChanDescriptor.ICatalogDescriptor>
 
-        chanCatalogSnapshotRepository.storeChanCatalogSnapshot(chanCatalogSnapshot)
-          .peekError { error -> Logger.e(TAG, "storeChanCatalogSnapshot() error", error) }
-          .ignore()
+        catalogSnapshotStoreDuration = measureTime {
+          chanCatalogSnapshotRepository.storeChanCatalogSnapshot(chanCatalogSnapshot)
+            .peekError { error -> Logger.e(TAG, "storeChanCatalogSnapshot() error", error) }
+            .ignore()
+        }
 
         if (isUnlimitedOrCompositeCatalog && chanReaderProcessor.endOfUnlimitedCatalogReached) {
           chanCatalogSnapshotCache.get(descriptor)?.onEndOfUnlimitedCatalogReached()
@@ -107,6 +112,7 @@ internal class ChanPostPersister(
       val loadTimeInfo = LoadTimeInfo(
         storeDuration = storeDuration,
         storedPostsCount = storedPostsCount,
+        catalogSnapshotStoreDuration = catalogSnapshotStoreDuration,
         filterProcessingDuration = parsingResult.filterProcessionTime,
         filtersCount = parsingResult.filtersCount,
         parsingDuration = parsingResult.parsingTime,
@@ -115,7 +121,10 @@ internal class ChanPostPersister(
       )
 
       return@Try ThreadResultWithTimeInfo(
-        threadLoadResult = ThreadLoadResult.Loaded(chanDescriptor),
+        threadLoadResult = ThreadLoadResult.Loaded(
+          chanDescriptor = chanDescriptor,
+          isLoadedFromServer = chanCacheUpdateOptions !is ChanCacheUpdateOptions.DoNotUpdateCache
+        ),
         timeInfo = loadTimeInfo
       )
     }.mapErrorToValue { error ->
@@ -134,6 +143,7 @@ internal class ChanPostPersister(
   class LoadTimeInfo @OptIn(ExperimentalTime::class) constructor(
     val storeDuration: Duration,
     val storedPostsCount: Int,
+    val catalogSnapshotStoreDuration: Duration,
     val filterProcessingDuration: Duration,
     val filtersCount: Int,
     val parsingDuration: Duration,
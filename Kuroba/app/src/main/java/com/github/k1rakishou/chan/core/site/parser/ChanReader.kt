@@ -37,7 +37,7 @@ abstract class ChanReader {
   abstract suspend fun loadThreadFresh(
     requestUrl: String,
     responseBodyStream: InputStream,
-    chanReaderProcessor: ChanReaderProcessor
+    chanReaderProcessor: AbstractChanReaderProcessor
   )
 
   @Throws(Exception::class)
@@ -223,7 +223,7 @@ public class CommentParser implements ICommentParser, HasQuotePatterns {
         style = style.replace(" ", "");
 
         if (style.contains("rgb")) {
-            Matcher matcher = colorRgbFgBgPattern.matcher(style);
+            Matcher matcher = PostParseContext.matcher(colorRgbFgBgPattern, style);
 
             if (!matcher.find()) {
                 return text;
@@ -262,7 +262,7 @@ public class CommentParser implements ICommentParser, HasQuotePatterns {
 
         }
 
-        Matcher matcher = colorPattern.matcher(style);
+        Matcher matcher = PostParseContext.matcher(colorPattern, style);
         if (!matcher.find()) {
             return text;
         }
@@ -293,7 +293,7 @@ public class CommentParser implements ICommentParser, HasQuotePatterns {
             CharSequence text,
             HtmlTag anchorTag
     ) {
-        Matcher matcher = deadQuotePattern.matcher(text);
+        Matcher matcher = PostParseContext.matcher(deadQuotePattern, text);
         if (!matcher.matches()) {
             // Something unknown
             return text;
@@ -731,11 +731,11 @@ public class CommentParser implements ICommentParser, HasQuotePatterns {
     }
 
     private Matcher matchInternalQuote(String href, ChanPostBuilder post) {
-        return getQuotePattern().matcher(href);
+        return PostParseContext.matcher(getQuotePattern(), href);
     }
 
     private Matcher matchExternalQuote(String href, ChanPostBuilder post) {
-        return getFullQuotePattern().matcher(href);
+        return PostParseContext.matcher(getFullQuotePattern(), href);
     }
 
     protected String extractQuote(@Nullable String href, @NonNull ChanPostBuilder post) {
@@ -743,7 +743,7 @@ public class CommentParser implements ICommentParser, HasQuotePatterns {
             return "";
         }
 
-        if (defaultQuoteRegex.matcher(href).matches()) {
+        if (PostParseContext.matcher(defaultQuoteRegex, href).matches()) {
             // gets us something like /board/ or /thread/postno#quoteno
             // hacky fix for 4chan having two domains but the same API
             return href.substring(2).substring(href.indexOf('/'));
@@ -31,6 +31,8 @@ object CommentParserHelper {
   private const val TAG = "CommentParserHelper"
   private const val HTTP_SCHEME = "http://"
   private const val HTTPS_SCHEME = "https://"
+  // LinkType.URL links always have a scheme
+  private const val URL_SCHEME_SEPARATOR = "://"
 
   val LINK_EXTRACTOR = LinkExtractor.builder().linkTypes(EnumSet.of(LinkType.URL)).build()
 
@@ -41,6 +43,11 @@ object CommentParserHelper {
     forceHttpsScheme: Boolean,
     linkHandler: Function1<CharSequence, PostLinkable?>?
   ): SpannableString {
+    // Most of the text nodes have no links at all, don't build a new spanned string for them
+    if (!text.contains(URL_SCHEME_SEPARATOR)) {
+      return SpannableString.valueOf(text)
+    }
+
     val ranges = splitTextIntoRanges(text)
     if (ranges.isEmpty()) {
       return SpannableString.valueOf(text)
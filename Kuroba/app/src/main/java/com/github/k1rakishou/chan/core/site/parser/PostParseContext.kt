@@ -0,0 +1,91 @@
+package com.github.k1rakishou.chan.core.site.parser
+
+import android.text.SpannableStringBuilder
+import com.github.k1rakishou.core_parser.comment.HtmlParser
+import java.util.*
+import java.util.regex.Matcher
+import java.util.regex.Pattern
+
+/**
+ * Per thread state that is reused by post parsing (which happens concurrently on multiple
+ * threads, see [PostParseWorker]) so that we don't allocate a new html parser, comment buffer and
+ * regex matchers for every parsed post. [HtmlParser] and [Matcher] are not thread safe so every
+ * thread has its own context which is handed out for the duration of one comment parsing via
+ * [withContext]. If the context of the current thread is already in use (parsing is reentered)
+ * then a temporary context is created.
+ * */
+class PostParseContext private constructor() {
+  private var inUse = false
+
+  val htmlParser = HtmlParser()
+
+  private val commentBuilder = SpannableStringBuilder()
+  private val matchers = IdentityHashMap<Pattern, Matcher>()
+
+  /**
+   * Returns an empty SpannableStringBuilder. The result must be copied out of it before the
+   * context is released.
+   * */
+  fun commentBuilder(): SpannableStringBuilder {
+    commentBuilder.clearSpans()
+    commentBuilder.clear()
+
+    return commentBuilder
+  }
+
+  companion object {
+    private const val MAX_COMMENT_BUILDER_CAPACITY_TO_KEEP = 16 * 1024
+
+    private val threadLocalContext = ThreadLocal<PostParseContext>()
+
+    @JvmStatic
+    fun <T> withContext(func: (PostParseContext) -> T): T {
+      var context = threadLocalContext.get()
+      if (context == null) {
+        context = PostParseContext()
+        threadLocalContext.set(context)
+      }
+
+      if (context.inUse) {
+        return func(PostParseContext())
+      }
+
+      context.inUse = true
+
+      try {
+        return func(context)
+      } finally {
+        context.inUse = false
+
+        // Don't keep huge buffers around after parsing some extraordinary long comment
+        if (context.commentBuilder.length > MAX_COMMENT_BUILDER_CAPACITY_TO_KEEP) {
+          threadLocalContext.set(PostParseContext())
+        }
+      }
+    }
+
+    /**
+     * Returns a [Matcher] of [pattern] reset to [input]. Matchers are cached per thread so the
+     * result must not be used after another call with the same pattern on the same thread.
+     * */
+    @JvmStatic
+    fun matcher(pattern: Pattern, input: CharSequence): Matcher {
+      var context = threadLocalContext.get()
+      if (context == null) {
+        context = PostParseContext()
+        threadLocalContext.set(context)
+      }
+
+      val matcher = context.matchers[pattern]
+      if (matcher != null) {
+        return matcher.reset(input)
+      }
+
+      val newMatcher = pattern.matcher(input)
+      context.matchers[pattern] = newMatcher
+
+      return newMatcher
+    }
+  }
+
+}
@@ -22,7 +22,6 @@ import com.github.k1rakishou.chan.core.site.parser.ChanReader
 import com.github.k1rakishou.chan.core.site.parser.CommentParserType
 import com.github.k1rakishou.chan.core.site.parser.PostParser
 import com.github.k1rakishou.chan.core.site.parser.processor.AbstractChanReaderProcessor
-import com.github.k1rakishou.chan.core.site.parser.processor.ChanReaderProcessor
 import com.github.k1rakishou.common.AppConstants
 import com.github.k1rakishou.common.ModularResult
 import com.github.k1rakishou.model.data.board.ChanBoard
@@ -135,7 +134,7 @@ class CompositeCatalogSite : Site {
     override suspend fun loadThreadFresh(
       requestUrl: String,
       responseBodyStream: InputStream,
-      chanReaderProcessor: ChanReaderProcessor
+      chanReaderProcessor: AbstractChanReaderProcessor
     ) {
     }
 
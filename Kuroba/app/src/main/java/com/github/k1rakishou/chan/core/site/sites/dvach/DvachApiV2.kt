@@ -41,7 +41,7 @@ class DvachApiV2(
   override suspend fun loadThreadFresh(
     requestUrl: String,
     responseBodyStream: InputStream,
-    chanReaderProcessor: ChanReaderProcessor
+    chanReaderProcessor: AbstractChanReaderProcessor
   ) {
     Logger.d(TAG, "loadThreadFresh($requestUrl)")
 
@@ -3,7 +3,6 @@ package com.github.k1rakishou.chan.core.site.sites.foolfuuka
 import com.github.k1rakishou.chan.core.site.common.CommonClientException
 import com.github.k1rakishou.chan.core.site.common.CommonSite
 import com.github.k1rakishou.chan.core.site.parser.processor.AbstractChanReaderProcessor
-import com.github.k1rakishou.chan.core.site.parser.processor.ChanReaderProcessor
 import com.github.k1rakishou.chan.utils.extractFileNameExtension
 import com.github.k1rakishou.chan.utils.fixImageUrlIfNecessary
 import com.github.k1rakishou.chan.utils.removeExtensionIfPresent
@@ -30,7 +29,7 @@ class FoolFuukaApi(
   override suspend fun loadThreadFresh(
     requestUrl: String,
     responseBodyStream: InputStream,
-    chanReaderProcessor: ChanReaderProcessor
+    chanReaderProcessor: AbstractChanReaderProcessor
   ) {
     readBodyJson(responseBodyStream) { jsonReader ->
       val chanDescriptor = chanReaderProcessor.chanDescriptor
@@ -73,14 +72,14 @@ class FoolFuukaApi(
 
   private suspend fun readOriginalPost(
     reader: JsonReader,
-    chanReaderProcessor: ChanReaderProcessor
+    chanReaderProcessor: AbstractChanReaderProcessor
   ) {
     reader.jsonObject { readPostObject(reader, chanReaderProcessor, true) }
   }
 
   private suspend fun readRegularPosts(
     reader: JsonReader,
-    chanReaderProcessor: ChanReaderProcessor
+    chanReaderProcessor: AbstractChanReaderProcessor
   ) {
     if (!reader.hasNext()) {
       return
@@ -98,7 +97,7 @@ class FoolFuukaApi(
 
   private suspend fun readPostObject(
     reader: JsonReader,
-    chanReaderProcessor: ChanReaderProcessor,
+    chanReaderProcessor: AbstractChanReaderProcessor,
     expectedOp: Boolean
   ) {
     val chanDescriptor = chanReaderProcessor.chanDescriptor
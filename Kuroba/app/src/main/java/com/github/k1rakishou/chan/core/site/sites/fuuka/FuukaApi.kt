@@ -4,7 +4,6 @@ import com.github.k1rakishou.ChanSettings
 import com.github.k1rakishou.chan.core.site.common.CommonClientException
 import com.github.k1rakishou.chan.core.site.common.CommonSite
 import com.github.k1rakishou.chan.core.site.parser.processor.AbstractChanReaderProcessor
-import com.github.k1rakishou.chan.core.site.parser.processor.ChanReaderProcessor
 import com.github.k1rakishou.common.ModularResult
 import com.github.k1rakishou.core_logger.Logger
 import com.github.k1rakishou.core_parser.html.KurobaHtmlParserCollector
@@ -30,7 +29,7 @@ class FuukaApi(
   override suspend fun loadThreadFresh(
     requestUrl: String,
     responseBodyStream: InputStream,
-    chanReaderProcessor: ChanReaderProcessor
+    chanReaderProcessor: AbstractChanReaderProcessor
   ) {
     readBodyHtml(requestUrl, responseBodyStream) { document ->
       require(chanReaderProcessor.chanDescriptor is ChanDescriptor.ThreadDescriptor) {
@@ -6,4 +6,6 @@ enum class SiteGlobalSearchType {
   SimpleQueryBoardSearch,
   FuukaSearch,
   FoolFuukaSearch,
+  // Search over the posts stored in the local database, not bound to any site
+  LocalSearch,
 }
\ No newline at end of file
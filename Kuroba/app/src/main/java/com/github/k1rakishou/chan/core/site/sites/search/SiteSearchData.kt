@@ -56,6 +56,28 @@ data class FuukaSearchParams(
     get() = boardDescriptor.siteDescriptor
 }
 
+/**
+ * Search over the posts that are stored in the local database (see ChanPostSearchRepository).
+ * Not an actual site, [siteDescriptor] is a fake one that is only used for displaying purposes.
+ * [boardDescriptor] null means all boards, [threadNo] is only used together with [boardDescriptor].
+ * */
+data class LocalSearchParams(
+  val boardDescriptor: BoardDescriptor?,
+  val threadNo: Long?,
+  override val query: String,
+  val page: Int?
+) : SearchParams {
+
+  fun getCurrentPage(): Int = page ?: 0
+
+  override val siteDescriptor: SiteDescriptor
+    get() = LOCAL_SEARCH_SITE_DESCRIPTOR
+
+  companion object {
+    val LOCAL_SEARCH_SITE_DESCRIPTOR = SiteDescriptor.create("Local posts")
+  }
+}
+
 sealed class SearchResult {
   data class Success(
     val searchParams: SearchParams,
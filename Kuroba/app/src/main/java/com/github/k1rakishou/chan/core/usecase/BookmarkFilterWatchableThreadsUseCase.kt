@@ -1,22 +1,20 @@
 package com.github.k1rakishou.chan.core.usecase
 
 import com.github.k1rakishou.ChanSettings
-import com.github.k1rakishou.chan.core.base.okhttp.ProxiedOkHttpClient
 import com.github.k1rakishou.chan.core.helper.FilterEngine
 import com.github.k1rakishou.chan.core.manager.BoardManager
 import com.github.k1rakishou.chan.core.manager.BookmarksManager
 import com.github.k1rakishou.chan.core.manager.ChanFilterManager
 import com.github.k1rakishou.chan.core.manager.SiteManager
 import com.github.k1rakishou.chan.core.manager.ThreadBookmarkGroupManager
+import com.github.k1rakishou.chan.core.site.loader.SharedCatalogResponseCache
 import com.github.k1rakishou.chan.core.site.parser.ChanReader
 import com.github.k1rakishou.chan.core.site.parser.search.SimpleCommentParser
 import com.github.k1rakishou.common.AppConstants
-import com.github.k1rakishou.common.EmptyBodyResponseException
 import com.github.k1rakishou.common.ModularResult
 import com.github.k1rakishou.common.errorMessageOrClassName
 import com.github.k1rakishou.common.isNotNullNorEmpty
 import com.github.k1rakishou.common.processDataCollectionConcurrently
-import com.github.k1rakishou.common.suspendCall
 import com.github.k1rakishou.core_logger.Logger
 import com.github.k1rakishou.model.data.bookmark.BookmarkGroupMatchFlag
 import com.github.k1rakishou.model.data.bookmark.SimpleThreadBookmarkGroupToCreate
@@ -53,7 +51,7 @@ class BookmarkFilterWatchableThreadsUseCase(
   private val chanFilterManager: ChanFilterManager,
   private val siteManager: SiteManager,
   private val appScope: CoroutineScope,
-  private val proxiedOkHttpClient: Lazy<ProxiedOkHttpClient>,
+  private val sharedCatalogResponseCache: Lazy<SharedCatalogResponseCache>,
   private val simpleCommentParser: Lazy<SimpleCommentParser>,
   private val filterEngine: FilterEngine,
   private val chanPostRepository: ChanPostRepository,
@@ -494,8 +492,9 @@ class BookmarkFilterWatchableThreadsUseCase(
 
     val request = requestBilder.build()
 
-    val response = try {
-      proxiedOkHttpClient.get().okHttpClient().suspendCall(request)
+    // The catalog may have just been loaded (or is being loaded right now) by the catalog screen
+    val catalogResponse = try {
+      sharedCatalogResponseCache.get().fetch(request, allowSnapshot = true)
     } catch (exception: IOException) {
       val error = IOException("Failed to execute network request " +
         "error=${exception.errorMessageOrClassName()}, catalogJsonEndpoint=$catalogJsonEndpoint")
@@ -503,19 +502,14 @@ class BookmarkFilterWatchableThreadsUseCase(
       return CatalogFetchResult.Error(error)
     }
 
-    if (!response.isSuccessful) {
-      val error = IOException("Bad status code: code=${response.code}, " +
+    if (!catalogResponse.isSuccessful) {
+      val error = IOException("Bad status code: code=${catalogResponse.code}, " +
         "catalogJsonEndpoint=$catalogJsonEndpoint")
 
       return CatalogFetchResult.Error(error)
     }
 
-    val responseBody = response.body
-    if (responseBody == null) {
-      return CatalogFetchResult.Error(EmptyBodyResponseException())
-    }
-
-    val filterWatchCatalogInfoObjectResult = responseBody.byteStream().use { inputStream ->
+    val filterWatchCatalogInfoObjectResult = catalogResponse.bodyStream().use { inputStream ->
       return@use chanReader.readFilterWatchCatalogInfoObject(
         boardDescriptor,
         request.url.toString(),
@@ -2,8 +2,10 @@ package com.github.k1rakishou.chan.core.usecase
 
 import android.content.Context
 import android.net.Uri
+import android.os.SystemClock
 import com.github.k1rakishou.chan.R
 import com.github.k1rakishou.chan.features.thread_downloading.ThreadDownloadingDelegate
+import com.github.k1rakishou.chan.features.thread_downloading.ThreadMediaDownloadJournal
 import com.github.k1rakishou.common.AppConstants
 import com.github.k1rakishou.common.ModularResult
 import com.github.k1rakishou.common.extractFileName
@@ -15,15 +17,24 @@ import com.github.k1rakishou.model.data.post.ChanPost
 import com.github.k1rakishou.model.repository.ChanPostRepository
 import com.github.k1rakishou.model.util.ChanPostUtils
 import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.channels.Channel
+import kotlinx.coroutines.coroutineScope
+import kotlinx.coroutines.ensureActive
+import kotlinx.coroutines.launch
 import kotlinx.coroutines.withContext
 import org.joda.time.DateTimeZone
 import org.joda.time.format.DateTimeFormatterBuilder
 import org.joda.time.format.ISODateTimeFormat
+import java.io.BufferedOutputStream
 import java.io.File
+import java.io.OutputStreamWriter
 import java.util.*
 import java.util.regex.Pattern
+import java.util.zip.CRC32
+import java.util.zip.Deflater
 import java.util.zip.ZipEntry
 import java.util.zip.ZipOutputStream
+import kotlin.coroutines.coroutineContext
 
 class ExportDownloadedThreadAsHtmlUseCase(
   private val appContext: Context,
@@ -39,7 +50,7 @@ class ExportDownloadedThreadAsHtmlUseCase(
 
       withContext(Dispatchers.IO) {
         try {
-          exportThreadAsHtml(outputFileUri, threadDescriptor)
+          exportThreadAsHtml(outputFileUri, threadDescriptor, parameter.onProgress)
         } catch (error: Throwable) {
           fileManager.fromUri(outputFileUri)?.let { file ->
             if (fileManager.isFile(file)) {
@@ -53,7 +64,11 @@ class ExportDownloadedThreadAsHtmlUseCase(
     }
   }
 
-  private suspend fun exportThreadAsHtml(outputFileUri: Uri, threadDescriptor: ChanDescriptor.ThreadDescriptor) {
+  private suspend fun exportThreadAsHtml(
+    outputFileUri: Uri,
+    threadDescriptor: ChanDescriptor.ThreadDescriptor,
+    onProgress: ((ExportProgress) -> Unit)?
+  ) {
     val postsLoadResult = chanPostRepository.getThreadPostsFromDatabase(threadDescriptor)
 
     val chanPosts = if (postsLoadResult is ModularResult.Error) {
@@ -71,7 +86,16 @@ class ExportDownloadedThreadAsHtmlUseCase(
       throw ThreadExportException("First post is not OP")
     }
 
-    Logger.d(TAG, "exportThreadAsHtml exporting ${chanPosts.size} posts into file '$outputFileUri'")
+    val threadMediaDirName = ThreadDownloadingDelegate.formatDirectoryName(threadDescriptor)
+    val threadMediaDir = File(appConstants.threadDownloaderCacheDir, threadMediaDirName)
+
+    val mediaFiles = threadMediaDir.listFiles()
+      ?.filter { mediaFile -> mediaFile.isFile && mediaFile.name != ThreadMediaDownloadJournal.FILE_NAME }
+      ?.sortedBy { mediaFile -> mediaFile.name }
+      ?: emptyList()
+
+    Logger.d(TAG, "exportThreadAsHtml exporting ${chanPosts.size} posts and ${mediaFiles.size} media files " +
+      "into file '$outputFileUri'")
 
     val outputFile = fileManager.fromUri(outputFileUri)
     if (outputFile == null) {
@@ -83,54 +107,178 @@ class ExportDownloadedThreadAsHtmlUseCase(
       throw ThreadExportException("Failed to open output stream for file '${outputFileUri}'")
     }
 
+    val progressReporter = ProgressReporter(
+      onProgress = onProgress,
+      totalPosts = chanPosts.size,
+      totalMediaFiles = mediaFiles.size,
+      totalMediaBytes = mediaFiles.sumOf { mediaFile -> mediaFile.length() }
+    )
+
     outputStream.use { os ->
-      ZipOutputStream(os).use { zos ->
+      ZipOutputStream(BufferedOutputStream(os, COPY_BUFFER_SIZE)).use { zos ->
         appContext.resources.openRawResource(R.raw.tomorrow).use { cssFileInputStream ->
           zos.putNextEntry(ZipEntry("tomorrow.css"))
           cssFileInputStream.copyTo(zos)
+          zos.closeEntry()
         }
 
-        kotlin.run {
-          zos.putNextEntry(ZipEntry("thread_data.html"))
-          HTML_TEMPLATE_START.byteInputStream().use { templateStartStream ->
-            templateStartStream.copyTo(zos)
-          }
+        writeThreadHtml(zos, chanPosts, progressReporter)
+        writeMediaFiles(zos, mediaFiles, progressReporter)
+      }
+    }
 
-          chanPosts.forEach { chanPost ->
-            formatPost(chanPost).byteInputStream().use { formattedPostStream ->
-              formattedPostStream.copyTo(zos)
-            }
-          }
+    progressReporter.reportNow()
+    Logger.d(TAG, "exportThreadAsHtml done")
+  }
+
+  /**
+   * Renders posts in batches of [POSTS_BATCH_SIZE] into one reused StringBuilder and writes every
+   * batch straight into the zip entry so that the whole html never has to be kept in memory.
+   * */
+  private suspend fun writeThreadHtml(
+    zos: ZipOutputStream,
+    chanPosts: List<ChanPost>,
+    progressReporter: ProgressReporter
+  ) {
+    zos.putNextEntry(ZipEntry("thread_data.html"))
+
+    // Not closed on purpose, closing it would close the zip stream as well
+    val writer = OutputStreamWriter(zos, Charsets.UTF_8)
+    val batchBuilder = StringBuilder(POSTS_BATCH_SIZE * 1024)
+
+    writer.write(HTML_TEMPLATE_START)
+
+    chanPosts.chunked(POSTS_BATCH_SIZE).forEach { postsBatch ->
+      coroutineContext.ensureActive()
+      batchBuilder.setLength(0)
+
+      postsBatch.forEach { chanPost -> formatPost(chanPost, batchBuilder) }
+
+      writer.append(batchBuilder)
+      writer.flush()
+
+      progressReporter.onPostsExported(postsBatch.size)
+    }
 
-          HTML_TEMPLATE_END.byteInputStream().use { templateEndStream ->
-            templateEndStream.copyTo(zos)
+    writer.write(HTML_TEMPLATE_END)
+    writer.flush()
+
+    zos.closeEntry()
+  }
+
+  /**
+   * Media files are read on a separate coroutine while the previous ones are being written into
+   * the zip. Small files are read fully into memory (at most [MEDIA_PIPELINE_CAPACITY] of them may
+   * wait in the queue) which also allows storing them without compression since the CRC can be
+   * calculated beforehand. Big files are streamed with compression level set to none. Media files
+   * are already compressed so trying to compress them again is just a waste of CPU.
+   * */
+  private suspend fun writeMediaFiles(
+    zos: ZipOutputStream,
+    mediaFiles: List<File>,
+    progressReporter: ProgressReporter
+  ) {
+    if (mediaFiles.isEmpty()) {
+      return
+    }
+
+    coroutineScope {
+      val preparedMediaFiles = Channel<PreparedMediaFile>(MEDIA_PIPELINE_CAPACITY)
+
+      launch(Dispatchers.IO) {
+        try {
+          for (mediaFile in mediaFiles) {
+            ensureActive()
+            preparedMediaFiles.send(prepareMediaFile(mediaFile))
           }
+        } finally {
+          preparedMediaFiles.close()
+        }
+      }
+
+      val copyBuffer = ByteArray(COPY_BUFFER_SIZE)
+
+      for (preparedMediaFile in preparedMediaFiles) {
+        ensureActive()
+
+        when (preparedMediaFile) {
+          is PreparedMediaFile.Loaded -> writeLoadedMediaFile(zos, preparedMediaFile)
+          is PreparedMediaFile.Streamed -> writeStreamedMediaFile(zos, preparedMediaFile, copyBuffer)
         }
 
-        val threadMediaDirName = ThreadDownloadingDelegate.formatDirectoryName(threadDescriptor)
-        val threadMediaDir = File(appConstants.threadDownloaderCacheDir, threadMediaDirName)
+        progressReporter.onMediaFileExported(preparedMediaFile.file.length())
+      }
+    }
+  }
+
+  private fun prepareMediaFile(mediaFile: File): PreparedMediaFile {
+    if (mediaFile.length() > MAX_LOADED_MEDIA_FILE_SIZE || !isAlreadyCompressed(mediaFile)) {
+      return PreparedMediaFile.Streamed(mediaFile)
+    }
 
-        threadMediaDir.listFiles()?.forEach { mediaFile ->
-          zos.putNextEntry(ZipEntry(mediaFile.name))
+    val bytes = mediaFile.readBytes()
+    val crc32 = CRC32()
+    crc32.update(bytes)
 
-          mediaFile.inputStream().use { mediaFileSteam ->
-            mediaFileSteam.copyTo(zos)
+    return PreparedMediaFile.Loaded(mediaFile, bytes, crc32.value)
+  }
+
+  private fun writeLoadedMediaFile(zos: ZipOutputStream, loadedMediaFile: PreparedMediaFile.Loaded) {
+    val zipEntry = ZipEntry(loadedMediaFile.file.name).apply {
+      method = ZipEntry.STORED
+      size = loadedMediaFile.bytes.size.toLong()
+      compressedSize = loadedMediaFile.bytes.size.toLong()
+      crc = loadedMediaFile.crc32
+    }
+
+    zos.putNextEntry(zipEntry)
+    zos.write(loadedMediaFile.bytes)
+    zos.closeEntry()
+  }
+
+  private fun writeStreamedMediaFile(
+    zos: ZipOutputStream,
+    streamedMediaFile: PreparedMediaFile.Streamed,
+    copyBuffer: ByteArray
+  ) {
+    val compress = !isAlreadyCompressed(streamedMediaFile.file)
+    if (!compress) {
+      zos.setLevel(Deflater.NO_COMPRESSION)
+    }
+
+    try {
+      zos.putNextEntry(ZipEntry(streamedMediaFile.file.name))
+
+      streamedMediaFile.file.inputStream().use { mediaFileSteam ->
+        while (true) {
+          val read = mediaFileSteam.read(copyBuffer)
+          if (read < 0) {
+            break
           }
+
+          zos.write(copyBuffer, 0, read)
         }
       }
+
+      zos.closeEntry()
+    } finally {
+      if (!compress) {
+        zos.setLevel(Deflater.DEFAULT_COMPRESSION)
+      }
     }
+  }
 
-    Logger.d(TAG, "exportThreadAsHtml done")
+  private fun isAlreadyCompressed(mediaFile: File): Boolean {
+    return mediaFile.extension.lowercase(Locale.ENGLISH) in ALREADY_COMPRESSED_EXTENSIONS
   }
 
-  private fun formatPost(chanPost: ChanPost): String {
+  private fun formatPost(chanPost: ChanPost, outputBuilder: StringBuilder) {
     val template = if (chanPost is ChanOriginalPost) {
       OP_POST_TEMPLATE
     } else {
       REGULAR_POST_TEMPLATE
     }
 
-    val templateBuilder = StringBuilder(template.length)
     val matcher = TEMPLATE_PARAMETER_PATTERN.matcher(template)
 
     var offset = 0
@@ -139,49 +287,43 @@ class ExportDownloadedThreadAsHtmlUseCase(
       val startIndex = matcher.start(0)
       val endIndex = matcher.end(0)
 
-      templateBuilder.append(template.substring(offset, startIndex))
+      outputBuilder.append(template, offset, startIndex)
 
       val templateParam = template.substring(startIndex, endIndex)
         .removePrefix("{{")
         .removeSuffix("}}")
 
-      val templateValue = when (templateParam) {
-        "POST_NO" -> chanPost.postDescriptor.postNo.toString()
+      when (templateParam) {
+        "POST_NO" -> outputBuilder.append(chanPost.postDescriptor.postNo)
         "ORIGINAL_POST_FILES",
-        "REGULAR_POST_FILES" -> formatPostFiles(chanPost)
+        "REGULAR_POST_FILES" -> formatPostFiles(chanPost, outputBuilder)
         "THREAD_SUBJECT" -> {
-          chanPost.subject ?: ""
+          outputBuilder.append(chanPost.subject ?: "")
         }
         "POSTER_NAME" -> {
-          chanPost.tripcode ?: ""
+          outputBuilder.append(chanPost.tripcode ?: "")
         }
         "DATE_TIME_FORMATTED" -> {
-          DATE_TIME_PRINTER.print(chanPost.timestamp * 1000L)
+          DATE_TIME_PRINTER.printTo(outputBuilder, chanPost.timestamp * 1000L)
         }
         "POST_COMMENT" -> {
-          chanPost.postComment.originalUnparsedComment ?: ""
+          outputBuilder.append(chanPost.postComment.originalUnparsedComment ?: "")
         }
         else -> error("Unknown template parameter: ${templateParam}")
       }
 
-      templateBuilder
-        .append(templateValue)
-
       offset = endIndex
     }
 
-    templateBuilder.append(template.substring(offset, template.length))
-
-    return templateBuilder.toString()
+    outputBuilder.append(template, offset, template.length)
   }
 
-  private fun formatPostFiles(chanPost: ChanPost): String {
+  private fun formatPostFiles(chanPost: ChanPost, outputBuilder: StringBuilder) {
     if (chanPost.postImages.isEmpty()) {
-      return ""
+      return
     }
 
-    val templateBuilder = StringBuilder(128)
-    templateBuilder
+    outputBuilder
       .append("<div class=\"files_container\">")
 
     chanPost.iteratePostImages { chanPostImage ->
@@ -199,7 +341,7 @@ class ExportDownloadedThreadAsHtmlUseCase(
         val startIndex = matcher.start(0)
         val endIndex = matcher.end(0)
 
-        templateBuilder.append(template.substring(offset, startIndex))
+        outputBuilder.append(template, offset, startIndex)
 
         val templateParam = template.substring(startIndex, endIndex)
           .removePrefix("{{")
@@ -220,27 +362,94 @@ class ExportDownloadedThreadAsHtmlUseCase(
           else -> error("Unknown template parameter: ${templateParam}")
         }
 
-        templateBuilder
+        outputBuilder
           .append(templateValue)
 
         offset = endIndex
       }
 
-      templateBuilder
-        .append(template.substring(offset, template.length))
+      outputBuilder
+        .append(template, offset, template.length)
     }
 
-    templateBuilder
+    outputBuilder
       .append("</div>")
+  }
 
-    return templateBuilder.toString()
+  private sealed class PreparedMediaFile(val file: File) {
+    class Loaded(file: File, val bytes: ByteArray, val crc32: Long) : PreparedMediaFile(file)
+    class Streamed(file: File) : PreparedMediaFile(file)
+  }
+
+  /**
+   * Reports the progress at most once per [PROGRESS_REPORT_INTERVAL_MS].
+   * */
+  private class ProgressReporter(
+    private val onProgress: ((ExportProgress) -> Unit)?,
+    private val totalPosts: Int,
+    private val totalMediaFiles: Int,
+    private val totalMediaBytes: Long
+  ) {
+    private var exportedPosts = 0
+    private var exportedMediaFiles = 0
+    private var exportedMediaBytes = 0L
+    private var lastReportTime = 0L
+
+    fun onPostsExported(count: Int) {
+      exportedPosts += count
+      reportThrottled()
+    }
+
+    fun onMediaFileExported(fileSize: Long) {
+      ++exportedMediaFiles
+      exportedMediaBytes += fileSize
+      reportThrottled()
+    }
+
+    fun reportNow() {
+      if (onProgress == null) {
+        return
+      }
+
+      lastReportTime = SystemClock.elapsedRealtime()
+
+      val exportProgress = ExportProgress(
+        exportedPosts = exportedPosts,
+        totalPosts = totalPosts,
+        exportedMediaFiles = exportedMediaFiles,
+        totalMediaFiles = totalMediaFiles,
+        exportedMediaBytes = exportedMediaBytes,
+        totalMediaBytes = totalMediaBytes
+      )
+
+      onProgress.invoke(exportProgress)
+    }
+
+    private fun reportThrottled() {
+      if (SystemClock.elapsedRealtime() - lastReportTime < PROGRESS_REPORT_INTERVAL_MS) {
+        return
+      }
+
+      reportNow()
+    }
   }
 
   class ThreadExportException(message: String) : Exception(message)
 
   data class Params(
     val outputFileUri: Uri,
-    val threadDescriptor: ChanDescriptor.ThreadDescriptor
+    val threadDescriptor: ChanDescriptor.ThreadDescriptor,
+    // Called on a background thread
+    val onProgress: ((ExportProgress) -> Unit)? = null
+  )
+
+  data class ExportProgress(
+    val exportedPosts: Int,
+    val totalPosts: Int,
+    val exportedMediaFiles: Int,
+    val totalMediaFiles: Int,
+    val exportedMediaBytes: Long,
+    val totalMediaBytes: Long
   )
 
   companion object {
@@ -248,6 +457,17 @@ class ExportDownloadedThreadAsHtmlUseCase(
 
     private val TEMPLATE_PARAMETER_PATTERN = Pattern.compile("\\{\\{\\w+\\}\\}")
 
+    private const val POSTS_BATCH_SIZE = 64
+    private const val COPY_BUFFER_SIZE = 64 * 1024
+    private const val MEDIA_PIPELINE_CAPACITY = 2
+    private const val MAX_LOADED_MEDIA_FILE_SIZE = 8L * 1024 * 1024
+    private const val PROGRESS_REPORT_INTERVAL_MS = 250L
+
+    private val ALREADY_COMPRESSED_EXTENSIONS = setOf(
+      "jpg", "jpeg", "png", "gif", "webp", "webm", "mp4", "mp3", "ogg", "opus", "m4a", "mkv", "avi",
+      "mov", "zip", "rar", "7z", "pdf", "swf"
+    )
+
     private val DATE_TIME_PRINTER = DateTimeFormatterBuilder()
       .append(ISODateTimeFormat.date())
       .appendLiteral(' ')
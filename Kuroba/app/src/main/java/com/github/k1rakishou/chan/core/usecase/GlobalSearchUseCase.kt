@@ -1,6 +1,7 @@
 package com.github.k1rakishou.chan.core.usecase
 
 import android.text.SpannableString
+import android.text.SpannableStringBuilder
 import com.github.k1rakishou.chan.core.base.okhttp.CloudFlareHandlerInterceptor
 import com.github.k1rakishou.chan.core.manager.SiteManager
 import com.github.k1rakishou.chan.core.site.parser.CommentParserHelper
@@ -9,6 +10,10 @@ import com.github.k1rakishou.chan.core.site.sites.search.Chan4SearchParams
 import com.github.k1rakishou.chan.core.site.sites.search.DvachSearchParams
 import com.github.k1rakishou.chan.core.site.sites.search.FoolFuukaSearchParams
 import com.github.k1rakishou.chan.core.site.sites.search.FuukaSearchParams
+import com.github.k1rakishou.chan.core.site.sites.search.LocalSearchParams
+import com.github.k1rakishou.chan.core.site.sites.search.PageCursor
+import com.github.k1rakishou.chan.core.site.sites.search.SearchEntry
+import com.github.k1rakishou.chan.core.site.sites.search.SearchEntryPost
 import com.github.k1rakishou.chan.core.site.sites.search.SearchError
 import com.github.k1rakishou.chan.core.site.sites.search.SearchParams
 import com.github.k1rakishou.chan.core.site.sites.search.SearchResult
@@ -20,15 +25,19 @@ import com.github.k1rakishou.core_logger.Logger
 import com.github.k1rakishou.core_spannable.ForegroundColorSpanHashed
 import com.github.k1rakishou.core_themes.ChanTheme
 import com.github.k1rakishou.core_themes.ThemeEngine
+import com.github.k1rakishou.model.data.post.ChanPostSearchQuery
+import com.github.k1rakishou.model.repository.ChanPostSearchRepository
 import dagger.Lazy
 import kotlinx.coroutines.Dispatchers
 import kotlinx.coroutines.withContext
+import org.joda.time.DateTime
 import java.util.regex.Pattern
 
 class GlobalSearchUseCase(
   private val siteManager: SiteManager,
   private val themeEngine: ThemeEngine,
-  private val simpleCommentParser: Lazy<SimpleCommentParser>
+  private val simpleCommentParser: Lazy<SimpleCommentParser>,
+  private val chanPostSearchRepository: Lazy<ChanPostSearchRepository>
 ) : ISuspendUseCase<SearchParams, SearchResult> {
 
   override suspend fun execute(parameter: SearchParams): SearchResult {
@@ -41,6 +50,10 @@ class GlobalSearchUseCase(
 
   @Suppress("MoveVariableDeclarationIntoWhen")
   private suspend fun doSearch(parameter: SearchParams): SearchResult {
+    if (parameter is LocalSearchParams) {
+      return searchLocalPosts(parameter)
+    }
+
     siteManager.awaitUntilInitialized()
 
     val site = siteManager.bySiteDescriptor(parameter.siteDescriptor)
@@ -80,13 +93,68 @@ class GlobalSearchUseCase(
     }
   }
 
+  private suspend fun searchLocalPosts(searchParams: LocalSearchParams): SearchResult {
+    val currentPage = searchParams.getCurrentPage()
+
+    val searchQuery = ChanPostSearchQuery(
+      query = searchParams.query,
+      boardDescriptor = searchParams.boardDescriptor,
+      threadNo = searchParams.threadNo,
+      page = currentPage,
+      pageSize = LOCAL_SEARCH_PAGE_SIZE
+    )
+
+    val chanPostSearchResult = when (val result = chanPostSearchRepository.get().search(searchQuery)) {
+      is ModularResult.Value -> result.value
+      is ModularResult.Error -> {
+        Logger.e(TAG, "searchLocalPosts() error", result.error)
+        return SearchResult.Failure(SearchError.UnknownError(result.error))
+      }
+    }
+
+    val searchEntries = chanPostSearchResult.foundPosts.map { foundPost ->
+      val searchEntryPost = SearchEntryPost(
+        isOp = foundPost.isOp,
+        name = foundPost.name?.let { name -> SpannableStringBuilder(name) },
+        subject = foundPost.subject?.let { subject -> SpannableStringBuilder(subject) },
+        postDescriptor = foundPost.postDescriptor,
+        dateTime = DateTime(foundPost.timestampSeconds * 1000L),
+        postImageUrlRawList = foundPost.thumbnailUrls,
+        commentRaw = foundPost.comment?.let { comment -> SpannableStringBuilder(comment) }
+      )
+
+      return@map SearchEntry(listOf(searchEntryPost))
+    }
+
+    val nextPageCursor = if (chanPostSearchResult.hasMorePages) {
+      PageCursor.Page(currentPage + 1)
+    } else {
+      PageCursor.End
+    }
+
+    val searchResult = SearchResult.Success(
+      searchParams = searchParams,
+      searchEntries = searchEntries,
+      nextPageCursor = nextPageCursor,
+      totalFoundEntries = chanPostSearchResult.totalFound
+    )
+
+    return processFoundSearchEntries(searchResult)
+  }
+
   private fun processFoundSearchEntries(searchResult: SearchResult.Success): SearchResult {
     val theme = themeEngine.chanTheme
 
     searchResult.searchEntries.forEach { searchEntry ->
       searchEntry.posts.forEach { searchEntryPost ->
         searchEntryPost.commentRaw?.let { commentRaw ->
-          val parsedComment = simpleCommentParser.get().parseComment(commentRaw.toString()) ?: ""
+          // Comments of the local posts are already parsed (they are stored as plain text)
+          val parsedComment = if (searchResult.searchParams is LocalSearchParams) {
+            commentRaw.toString()
+          } else {
+            simpleCommentParser.get().parseComment(commentRaw.toString()) ?: ""
+          }
+
           val spannedComment = SpannableString(parsedComment)
 
           SpannableHelper.findAllQueryEntriesInsideSpannableStringAndMarkThem(
@@ -178,6 +246,12 @@ class GlobalSearchUseCase(
           queries += searchParams.subject
         }
       }
+      is LocalSearchParams -> {
+        // Words of the query are matched separately and in any order
+        queries += searchParams.query
+          .split(LOCAL_QUERY_SEPARATOR_PATTERN)
+          .filter { word -> word.isNotEmpty() }
+      }
       else -> throw IllegalStateException("Unknown searchParams type: ${searchParams.javaClass.simpleName}")
     }
 
@@ -187,6 +261,9 @@ class GlobalSearchUseCase(
   companion object {
     private const val TAG = "GlobalSearchUseCase"
 
+    private const val LOCAL_SEARCH_PAGE_SIZE = 50
+
     private val SIMPLE_QUOTE_PATTERN = Pattern.compile(">>\\d+")
+    private val LOCAL_QUERY_SEPARATOR_PATTERN = Regex("[^\\p{L}\\p{N}]+")
   }
 }
\ No newline at end of file
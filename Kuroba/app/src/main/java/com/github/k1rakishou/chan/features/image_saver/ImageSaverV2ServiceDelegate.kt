@@ -11,6 +11,7 @@ import com.github.k1rakishou.chan.core.helper.ImageSaverFileManagerWrapper
 import com.github.k1rakishou.chan.core.manager.ChanThreadManager
 import com.github.k1rakishou.chan.core.manager.ThreadDownloadManager
 import com.github.k1rakishou.chan.core.site.SiteResolver
+import com.github.k1rakishou.chan.features.media_viewer.helper.ExoPlayerCache
 import com.github.k1rakishou.chan.utils.AppModuleAndroidUtils
 import com.github.k1rakishou.chan.utils.BackgroundUtils
 import com.github.k1rakishou.common.AppConstants
@@ -36,31 +37,42 @@ import com.github.k1rakishou.model.data.post.ChanPostImage
 import com.github.k1rakishou.model.repository.ChanPostImageRepository
 import com.github.k1rakishou.model.repository.ImageDownloadRequestRepository
 import com.github.k1rakishou.persist_state.ImageSaverV2Options
+import com.google.android.exoplayer2.upstream.DataSourceInputStream
+import com.google.android.exoplayer2.upstream.DataSpec
+import com.google.android.exoplayer2.upstream.cache.CacheDataSource
+import com.google.android.exoplayer2.upstream.cache.ContentMetadata
 import dagger.Lazy
 import kotlinx.coroutines.CoroutineScope
 import kotlinx.coroutines.Dispatchers
 import kotlinx.coroutines.Job
 import kotlinx.coroutines.ObsoleteCoroutinesApi
-import kotlinx.coroutines.async
-import kotlinx.coroutines.awaitAll
 import kotlinx.coroutines.channels.BufferOverflow
 import kotlinx.coroutines.delay
 import kotlinx.coroutines.flow.MutableSharedFlow
 import kotlinx.coroutines.flow.SharedFlow
 import kotlinx.coroutines.flow.asSharedFlow
 import kotlinx.coroutines.isActive
+import kotlinx.coroutines.joinAll
 import kotlinx.coroutines.launch
 import kotlinx.coroutines.runInterruptible
 import kotlinx.coroutines.supervisorScope
 import kotlinx.coroutines.sync.Mutex
+import kotlinx.coroutines.sync.Semaphore
 import kotlinx.coroutines.sync.withLock
+import kotlinx.coroutines.sync.withPermit
 import kotlinx.coroutines.withContext
 import okhttp3.HttpUrl
 import okhttp3.Request
 import okhttp3.ResponseBody
 import okhttp3.internal.closeQuietly
+import java.io.File
+import java.io.FileNotFoundException
+import java.io.FileInputStream
+import java.io.FileOutputStream
 import java.io.IOException
 import java.io.InputStream
+import java.io.OutputStream
+import java.nio.channels.FileChannel
 import java.util.*
 import java.util.concurrent.ConcurrentHashMap
 import java.util.concurrent.atomic.AtomicBoolean
@@ -75,6 +87,7 @@ class ImageSaverV2ServiceDelegate(
   private val appScope: CoroutineScope,
   private val appConstants: AppConstants,
   private val cacheHandler: Lazy<CacheHandler>,
+  private val exoPlayerCache: Lazy<ExoPlayerCache>,
   private val downloaderOkHttpClient: Lazy<RealDownloaderOkHttpClient>,
   private val notificationManagerCompat: NotificationManagerCompat,
   private val imageSaverFileManager: ImageSaverFileManagerWrapper,
@@ -94,6 +107,9 @@ class ImageSaverV2ServiceDelegate(
 
   private val serializedCoroutineExecutor = SerializedCoroutineExecutor(appScope)
 
+  // Shared by all download requests
+  private val writerSemaphore = Semaphore(MAX_CONCURRENT_WRITES)
+
   private val fileManager: FileManager
     get() = imageSaverFileManager.fileManager
 
@@ -244,71 +260,125 @@ class ImageSaverV2ServiceDelegate(
         hasRequestsThatCanBeRetried = hasRequestsThatCanBeRetried.get()
       )
 
+      deleteStaleTempFiles()
+
+      val resultDirectoryCache = ResultDirectoryCache()
+      val hostDownloadPermits = HostDownloadPermits()
+      val inFlightRequests = Semaphore(appConstants.processorsCount * 2)
+      val processedRequests = ArrayList<ImageDownloadRequest>(DB_UPDATE_BATCH_SIZE)
+      val processedRequestsLock = Mutex()
+
       supervisorScope {
-        imageDownloadRequests
-          .chunked(appConstants.processorsCount * 2)
-          .forEach { imageDownloadRequestBatch ->
-            val updatedImageDownloadRequestBatch = imageDownloadRequestBatch.map { imageDownloadRequest ->
-              return@map appScope.async(Dispatchers.IO) {
-                val (outImageDownloadRequest, duration) = measureTimedValue {
-                  return@measureTimedValue downloadSingleImage(
-                    imageDownloadInputData = imageDownloadInputData,
-                    imageDownloadRequest = imageDownloadRequest,
-                    hasResultDirAccessErrors = hasResultDirAccessErrors,
-                    hasOutOfDiskSpaceErrors = hasOutOfDiskSpaceErrors,
-                    hasRequestsThatCanBeRetried = hasRequestsThatCanBeRetried,
-                    currentChanPostImage = currentChanPostImage,
-                    canceledRequests = canceledRequests,
-                    duplicates = duplicates,
-                    failedRequests = failedRequests,
-                    outputDirUri = outputDirUri,
-                    completedRequests = completedRequests
-                  )
-                }
+        // Progress events are emitted at a fixed rate instead of after every image
+        val progressJob = launch {
+          var lastProcessedCount = -1
 
-                if (verboseLogs) {
-                  Logger.d(TAG, "downloadSingleImage(${imageDownloadRequest.imageFullUrl}) took $duration")
-                }
+          while (isActive) {
+            delay(NOTIFICATION_UPDATE_INTERVAL_MS)
 
-                return@async outImageDownloadRequest
-              }
-            }.awaitAll()
+            val processedCount = canceledRequests.get() + completedRequests.get() + duplicates.get() +
+              failedRequests.get()
+
+            if (processedCount == lastProcessedCount) {
+              continue
+            }
 
-            imageDownloadRequestRepository.completeMany(updatedImageDownloadRequestBatch)
-              .peekError { error -> Logger.e(TAG, "imageDownloadRequestRepository.updateMany() error", error) }
-              .ignore()
+            lastProcessedCount = processedCount
 
             val canceledNow = (getDownloadContext(imageDownloadInputData)?.isCanceled() ?: true)
               || hasResultDirAccessErrors.get() || hasOutOfDiskSpaceErrors.get()
 
-            if (!canceledNow) {
-              val notificationSummary = extractNotificationSummaryText(
-                imageDownloadInputData = imageDownloadInputData,
-                currentChanPostImage = currentChanPostImage,
-                imageDownloadRequests = imageDownloadRequests,
-                isCompleted = false
-              )
+            if (canceledNow) {
+              continue
+            }
 
-              // Progress event
-              emitNotificationUpdate(
-                uniqueId = imageDownloadInputData.uniqueId,
-                imageSaverOptionsJson = imageDownloadInputData.imageSaverOptionsJson,
-                completed = false,
-                notificationSummary = notificationSummary,
-                totalImagesCount = imageDownloadInputData.requestsCount(),
-                canceledRequests = canceledRequests.get(),
-                completedRequests = completedRequestsToDownloadedImagesResult(
-                  completedRequests = completedRequests,
-                  outputDirUri = outputDirUri
-                ),
-                duplicates = duplicates.get(),
-                failedRequests = failedRequests.get(),
-                hasResultDirAccessErrors = hasResultDirAccessErrors.get(),
-                hasOutOfDiskSpaceErrors = hasOutOfDiskSpaceErrors.get(),
-                hasRequestsThatCanBeRetried = hasRequestsThatCanBeRetried.get()
-              )
+            val notificationSummary = extractNotificationSummaryText(
+              imageDownloadInputData = imageDownloadInputData,
+              currentChanPostImage = currentChanPostImage,
+              imageDownloadRequests = imageDownloadRequests,
+              isCompleted = false
+            )
+
+            // Progress event
+            emitNotificationUpdate(
+              uniqueId = imageDownloadInputData.uniqueId,
+              imageSaverOptionsJson = imageDownloadInputData.imageSaverOptionsJson,
+              completed = false,
+              notificationSummary = notificationSummary,
+              totalImagesCount = imageDownloadInputData.requestsCount(),
+              canceledRequests = canceledRequests.get(),
+              completedRequests = completedRequestsToDownloadedImagesResult(
+                completedRequests = completedRequests,
+                outputDirUri = outputDirUri
+              ),
+              duplicates = duplicates.get(),
+              failedRequests = failedRequests.get(),
+              hasResultDirAccessErrors = hasResultDirAccessErrors.get(),
+              hasOutOfDiskSpaceErrors = hasOutOfDiskSpaceErrors.get(),
+              hasRequestsThatCanBeRetried = hasRequestsThatCanBeRetried.get()
+            )
+          }
+        }
+
+        // Unlike fixed batches, a slow image doesn't hold back the rest of the requests. The network
+        // part is limited per host and the output writes by the writer pool (see
+        // downloadFileIntoFile()).
+        val downloadJobs = imageDownloadRequests.map { imageDownloadRequest ->
+          inFlightRequests.acquire()
+
+          return@map appScope.launch(Dispatchers.IO) {
+            try {
+              val (outImageDownloadRequest, duration) = measureTimedValue {
+                return@measureTimedValue downloadSingleImage(
+                  imageDownloadInputData = imageDownloadInputData,
+                  imageDownloadRequest = imageDownloadRequest,
+                  resultDirectoryCache = resultDirectoryCache,
+                  hostDownloadPermits = hostDownloadPermits,
+                  hasResultDirAccessErrors = hasResultDirAccessErrors,
+                  hasOutOfDiskSpaceErrors = hasOutOfDiskSpaceErrors,
+                  hasRequestsThatCanBeRetried = hasRequestsThatCanBeRetried,
+                  currentChanPostImage = currentChanPostImage,
+                  canceledRequests = canceledRequests,
+                  duplicates = duplicates,
+                  failedRequests = failedRequests,
+                  outputDirUri = outputDirUri,
+                  completedRequests = completedRequests
+                )
+              }
+
+              if (verboseLogs) {
+                Logger.d(TAG, "downloadSingleImage(${imageDownloadRequest.imageFullUrl}) took $duration")
+              }
+
+              val toUpdate = processedRequestsLock.withLock {
+                processedRequests += outImageDownloadRequest
+
+                if (processedRequests.size < DB_UPDATE_BATCH_SIZE) {
+                  return@withLock null
+                }
+
+                val toUpdate = processedRequests.toList()
+                processedRequests.clear()
+
+                return@withLock toUpdate
+              }
+
+              if (toUpdate != null) {
+                completeImageDownloadRequests(toUpdate)
+              }
+            } finally {
+              inFlightRequests.release()
             }
           }
+        }
+
+        downloadJobs.joinAll()
+        progressJob.cancel()
+
+        val toUpdate = processedRequestsLock.withLock { processedRequests.toList() }
+        if (toUpdate.isNotEmpty()) {
+          completeImageDownloadRequests(toUpdate)
+        }
       }
     } finally {
       val notificationSummary = extractNotificationSummaryText(
@@ -343,6 +413,28 @@ class ImageSaverV2ServiceDelegate(
     return mutex.withLock { activeDownloads.size }
   }
 
+  private suspend fun completeImageDownloadRequests(imageDownloadRequests: List<ImageDownloadRequest>) {
+    imageDownloadRequestRepository.completeMany(imageDownloadRequests)
+      .peekError { error -> Logger.e(TAG, "imageDownloadRequestRepository.updateMany() error", error) }
+      .ignore()
+  }
+
+  /**
+   * Temp files are deleted right after they are copied into the output file so the only files left
+   * in the temp directory are the ones from the app being killed in the middle of a download.
+   * */
+  private suspend fun deleteStaleTempFiles() {
+    withContext(Dispatchers.IO) {
+      val now = System.currentTimeMillis()
+
+      appConstants.imageSaverTempDir.listFiles()?.forEach { tempFile ->
+        if (now - tempFile.lastModified() > STALE_TEMP_FILE_AGE_MS) {
+          tempFile.delete()
+        }
+      }
+    }
+  }
+
   private fun extractNotificationSummaryText(
     imageDownloadInputData: ImageSaverV2Service.ImageDownloadInputData,
     currentChanPostImage: AtomicReference<ChanPostImage>,
@@ -390,6 +482,8 @@ class ImageSaverV2ServiceDelegate(
   private suspend fun downloadSingleImage(
     imageDownloadInputData: ImageSaverV2Service.ImageDownloadInputData,
     imageDownloadRequest: ImageDownloadRequest,
+    resultDirectoryCache: ResultDirectoryCache,
+    hostDownloadPermits: HostDownloadPermits,
     hasResultDirAccessErrors: AtomicBoolean,
     hasOutOfDiskSpaceErrors: AtomicBoolean,
     hasRequestsThatCanBeRetried: AtomicBoolean,
@@ -408,6 +502,8 @@ class ImageSaverV2ServiceDelegate(
     }
 
     val downloadImageResult = downloadSingleImageInternal(
+      resultDirectoryCache,
+      hostDownloadPermits,
       hasResultDirAccessErrors,
       hasOutOfDiskSpaceErrors,
       currentChanPostImage,
@@ -599,7 +695,8 @@ class ImageSaverV2ServiceDelegate(
   }
 
   @Suppress("MoveVariableDeclarationIntoWhen")
-  private fun getFullFileUri(
+  private suspend fun getFullFileUri(
+    resultDirectoryCache: ResultDirectoryCache,
     chanPostImage: ChanPostImage,
     imageSaverV2Options: ImageSaverV2Options,
     imageDownloadRequest: ImageDownloadRequest,
@@ -608,8 +705,9 @@ class ImageSaverV2ServiceDelegate(
   ): ResultFile {
     val rootDirectoryUri = Uri.parse(checkNotNull(imageSaverV2Options.rootDirectoryUri))
 
-    val rootDirectory = fileManager.fromUri(rootDirectoryUri)
-      ?: return ResultFile.FailedToOpenResultDir(rootDirectoryUri.toString())
+    val rootDirectory = resultDirectoryCache.getOrResolve(rootDirectoryUri.toString()) {
+      fileManager.fromUri(rootDirectoryUri)
+    } ?: return ResultFile.FailedToOpenResultDir(rootDirectoryUri.toString())
 
     val segments = mutableListOf<Segment>()
 
@@ -647,7 +745,13 @@ class ImageSaverV2ServiceDelegate(
       }
     }
 
-    val resultDir = fileManager.create(rootDirectory, segments)
+    val resultDirKey = rootDirectory.clone(segments).getFullPath()
+
+    // Resolving (and creating) directories through SAF is slow so we do it once per directory
+    val resultDir = resultDirectoryCache.getOrResolve(resultDirKey) {
+      fileManager.create(rootDirectory, segments)
+    }
+
     if (resultDir == null) {
       return ResultFile.FailedToOpenResultDir(rootDirectory.clone(segments).getFullPath())
     }
@@ -731,7 +835,46 @@ class ImageSaverV2ServiceDelegate(
     ) : ResultFile()
   }
 
+  /**
+   * Directory handles resolved during one download request. Resolution is serialized so that the
+   * same directory is never created twice by concurrent downloads.
+   * */
+  class ResultDirectoryCache {
+    private val mutex = Mutex()
+    @GuardedBy("mutex")
+    private val directories = hashMapOf<String, AbstractFile>()
+
+    suspend fun getOrResolve(key: String, resolver: () -> AbstractFile?): AbstractFile? {
+      return mutex.withLock {
+        val cached = directories[key]
+        if (cached != null) {
+          return@withLock cached
+        }
+
+        val resolved = resolver()
+          ?: return@withLock null
+
+        directories[key] = resolved
+        return@withLock resolved
+      }
+    }
+  }
+
+  /**
+   * Limits the amount of concurrent downloads from the same host. Created per download request so
+   * that the hosts of the already finished requests are not kept around.
+   * */
+  class HostDownloadPermits {
+    private val semaphores = ConcurrentHashMap<String, Semaphore>()
+
+    fun get(host: String): Semaphore {
+      return semaphores.getOrPut(host) { Semaphore(MAX_CONCURRENT_DOWNLOADS_PER_HOST) }
+    }
+  }
+
   private suspend fun downloadSingleImageInternal(
+    resultDirectoryCache: ResultDirectoryCache,
+    hostDownloadPermits: HostDownloadPermits,
     hasResultDirAccessErrors: AtomicBoolean,
     hasOutOfDiskSpaceErrors: AtomicBoolean,
     currentChanPostImage: AtomicReference<ChanPostImage>,
@@ -787,6 +930,7 @@ class ImageSaverV2ServiceDelegate(
       )
 
       val outputFileResult = getFullFileUri(
+        resultDirectoryCache = resultDirectoryCache,
         chanPostImage = chanPostImage!!,
         imageSaverV2Options = imageSaverV2Options,
         imageDownloadRequest = imageDownloadRequest,
@@ -842,7 +986,7 @@ class ImageSaverV2ServiceDelegate(
       try {
         doIoTaskWithAttempts(MAX_IO_ERROR_RETRIES_COUNT) {
           try {
-            downloadFileIntoFile(imageUrl, actualOutputFile, threadDescriptor)
+            downloadFileIntoFile(imageUrl, actualOutputFile, threadDescriptor, hostDownloadPermits)
           } catch (error: IOException) {
             if (error.isOutOfDiskSpaceError()) {
               throw OutOfDiskSpaceException()
@@ -875,47 +1019,199 @@ class ImageSaverV2ServiceDelegate(
   suspend fun downloadFileIntoFile(
     imageUrl: HttpUrl,
     outputFile: AbstractFile,
-    threadDescriptor: ChanDescriptor.ThreadDescriptor?
+    threadDescriptor: ChanDescriptor.ThreadDescriptor?,
+    hostDownloadPermits: HostDownloadPermits = HostDownloadPermits()
   ) {
     BackgroundUtils.ensureBackgroundThread()
 
-    val fileUrl = imageUrl.toString()
-    val cacheFileType = CacheFileType.PostMediaFull
     var localInputStream: InputStream? = null
+    var tempFile: File? = null
 
     try {
-      if (cacheHandler.get().cacheFileExists(cacheFileType, fileUrl)) {
-        val cachedFile = cacheHandler.get().getCacheFileOrNull(cacheFileType, fileUrl)
-        if (cachedFile != null && cachedFile.canRead() && cachedFile.length() > 0) {
-          localInputStream = cachedFile.inputStream()
-        }
-      }
-
-      if (localInputStream == null
-        && threadDescriptor != null
-        && threadDownloadManager.canUseThreadDownloaderCache(threadDescriptor)
-      ) {
-        localInputStream = threadDownloadManager.findDownloadedFile(imageUrl, threadDescriptor)
-          ?.let { file -> fileManager.getInputStream(file) }
-      }
+      localInputStream = openLocalSourceOrNull(imageUrl, threadDescriptor)
 
       if (localInputStream == null) {
-        localInputStream = downloadAndGetResponseBody(imageUrl).source().inputStream()
+        // Download into a temp file first so that slow output directories (e.g. an SD card) do not
+        // hold the connection (and the per-host download slot) for longer than needed
+        tempFile = downloadIntoTempFileOrNull(imageUrl, hostDownloadPermits)
+
+        if (tempFile == null) {
+          // The temp directory is on the internal storage which may be full while the output
+          // directory is not. Not being able to use it must not stop the whole batch.
+          downloadDirectlyIntoFile(imageUrl, outputFile, hostDownloadPermits)
+          return
+        }
+
+        localInputStream = tempFile.inputStream()
       }
 
-      val outputFileStream = fileManager.getOutputStream(outputFile)
-        ?: throw ResultFileAccessError(outputFile.getFullPath())
+      writerSemaphore.withPermit {
+        val outputFileStream = fileManager.getOutputStream(outputFile)
+          ?: throw ResultFileAccessError(outputFile.getFullPath())
 
-      runInterruptible {
-        localInputStream!!.use { inputStream ->
-          outputFileStream.use { outputStream ->
-            inputStream.copyTo(outputStream)
+        runInterruptible {
+          localInputStream!!.use { inputStream ->
+            outputFileStream.use { outputStream ->
+              copyStream(inputStream, outputStream)
+            }
           }
         }
       }
     } finally {
       localInputStream?.closeQuietly()
       localInputStream = null
+
+      tempFile?.delete()
+    }
+  }
+
+  /**
+   * Looks for an already downloaded copy of the file so that we don't have to download it again.
+   * Checked in order: the file cache (full media that was viewed or prefetched), the thread
+   * downloader storage and the ExoPlayer cache (videos that were fully played).
+   * */
+  private suspend fun openLocalSourceOrNull(
+    imageUrl: HttpUrl,
+    threadDescriptor: ChanDescriptor.ThreadDescriptor?
+  ): InputStream? {
+    val fileUrl = imageUrl.toString()
+    val cacheFileType = CacheFileType.PostMediaFull
+
+    val cachedFile = cacheHandler.get().getCacheFileOrNull(cacheFileType, fileUrl)
+    if (cachedFile != null
+      && cachedFile.canRead()
+      && cachedFile.length() > 0
+      && cacheHandler.get().isAlreadyDownloaded(cacheFileType, cachedFile)
+    ) {
+      if (verboseLogs) {
+        Logger.d(TAG, "openLocalSourceOrNull($fileUrl) using file cache")
+      }
+
+      return cachedFile.inputStream()
+    }
+
+    if (threadDescriptor != null && threadDownloadManager.canUseThreadDownloaderCache(threadDescriptor)) {
+      val inputStream = threadDownloadManager.findDownloadedFile(imageUrl, threadDescriptor)
+        ?.let { file -> fileManager.getInputStream(file) }
+
+      if (inputStream != null) {
+        if (verboseLogs) {
+          Logger.d(TAG, "openLocalSourceOrNull($fileUrl) using thread downloader storage")
+        }
+
+        return inputStream
+      }
+    }
+
+    val inputStream = openExoPlayerCacheInputStreamOrNull(fileUrl)
+    if (inputStream != null) {
+      if (verboseLogs) {
+        Logger.d(TAG, "openLocalSourceOrNull($fileUrl) using ExoPlayer cache")
+      }
+
+      return inputStream
+    }
+
+    return null
+  }
+
+  private fun openExoPlayerCacheInputStreamOrNull(fileUrl: String): InputStream? {
+    val cache = exoPlayerCache.get().actualCache
+
+    // ExoPlayer uses the url as the cache key
+    val contentLength = ContentMetadata.getContentLength(cache.getContentMetadata(fileUrl))
+    if (contentLength <= 0 || !cache.isCached(fileUrl, 0, contentLength)) {
+      return null
+    }
+
+    // No upstream data source so that it can only be read from the cache. If it gets evicted in the
+    // meantime the read will fail and we will download the file on the next attempt.
+    val dataSource = CacheDataSource(cache, null)
+    val dataSpec = DataSpec(Uri.parse(fileUrl))
+
+    return DataSourceInputStream(dataSource, dataSpec)
+  }
+
+  /**
+   * Uses [FileChannel.transferTo] when both streams are backed by file descriptors (a local file
+   * copied into a raw file or a SAF document) so that the data doesn't go through a userspace buffer.
+   * */
+  private fun copyStream(inputStream: InputStream, outputStream: OutputStream) {
+    if (inputStream !is FileInputStream || outputStream !is FileOutputStream) {
+      inputStream.copyTo(outputStream)
+      return
+    }
+
+    val inputChannel = inputStream.channel
+    val outputChannel = outputStream.channel
+    val size = inputChannel.size()
+    var position = inputChannel.position()
+
+    while (position < size) {
+      val transferred = inputChannel.transferTo(position, size - position, outputChannel)
+      if (transferred <= 0) {
+        throw IOException("Failed to transfer file, position=$position, size=$size")
+      }
+
+      position += transferred
+    }
+  }
+
+  /**
+   * Returns null when the temp file could not be created or written (e.g. there is no space left in
+   * the app's cache directory). Errors of the network request itself are rethrown.
+   * */
+  private suspend fun downloadIntoTempFileOrNull(imageUrl: HttpUrl, hostDownloadPermits: HostDownloadPermits): File? {
+    return hostDownloadPermits.get(imageUrl.host).withPermit {
+      val tempFile = File(appConstants.imageSaverTempDir, "${UUID.randomUUID()}.tmp")
+
+      try {
+        val responseBody = downloadAndGetResponseBody(imageUrl)
+
+        runInterruptible {
+          responseBody.use { body ->
+            tempFile.outputStream().use { outputStream ->
+              body.byteStream().copyTo(outputStream)
+            }
+          }
+        }
+
+        return@withPermit tempFile
+      } catch (error: IOException) {
+        tempFile.delete()
+
+        if (error is FileNotFoundException || error.isOutOfDiskSpaceError()) {
+          Logger.e(TAG, "downloadIntoTempFileOrNull($imageUrl) failed to write temp file " +
+            "'${tempFile.absolutePath}'", error)
+          return@withPermit null
+        }
+
+        throw error
+      } catch (error: Throwable) {
+        tempFile.delete()
+        throw error
+      }
+    }
+  }
+
+  private suspend fun downloadDirectlyIntoFile(
+    imageUrl: HttpUrl,
+    outputFile: AbstractFile,
+    hostDownloadPermits: HostDownloadPermits
+  ) {
+    hostDownloadPermits.get(imageUrl.host).withPermit {
+      downloadAndGetResponseBody(imageUrl).use { responseBody ->
+        writerSemaphore.withPermit {
+          val outputFileStream = fileManager.getOutputStream(outputFile)
+            ?: throw ResultFileAccessError(outputFile.getFullPath())
+
+          runInterruptible {
+            outputFileStream.use { outputStream ->
+              responseBody.byteStream().copyTo(outputStream)
+            }
+          }
+        }
+      }
     }
   }
 
@@ -1072,6 +1368,12 @@ class ImageSaverV2ServiceDelegate(
     private const val MAX_VISIBLE_NOTIFICATIONS_PROD = 12
     private const val MAX_VISIBLE_NOTIFICATIONS_TEST = 3
 
+    private const val MAX_CONCURRENT_DOWNLOADS_PER_HOST = 4
+    private const val MAX_CONCURRENT_WRITES = 2
+    private const val DB_UPDATE_BATCH_SIZE = 32
+    private const val NOTIFICATION_UPDATE_INTERVAL_MS = 1000L
+    private const val STALE_TEMP_FILE_AGE_MS = 60L * 60L * 1000L
+
     const val MAX_IO_ERROR_RETRIES_COUNT = 3
   }
 }
\ No newline at end of file
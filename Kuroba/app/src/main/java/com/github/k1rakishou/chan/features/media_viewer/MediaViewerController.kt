@@ -13,6 +13,8 @@ import com.github.k1rakishou.ChanSettings
 import com.github.k1rakishou.chan.R
 import com.github.k1rakishou.chan.controller.Controller
 import com.github.k1rakishou.chan.core.cache.CacheFileType
+import com.github.k1rakishou.chan.core.cache.CacheHandler
+import com.github.k1rakishou.chan.core.cache.FileCacheV2
 import com.github.k1rakishou.chan.core.di.component.activity.ActivityComponent
 import com.github.k1rakishou.chan.core.image.ImageLoaderV2
 import com.github.k1rakishou.chan.core.manager.Chan4CloudFlareImagePreloaderManager
@@ -27,6 +29,7 @@ import com.github.k1rakishou.chan.features.media_viewer.helper.ExoPlayerWrapper
 import com.github.k1rakishou.chan.features.media_viewer.helper.MediaLongClickMenuHelper
 import com.github.k1rakishou.chan.features.media_viewer.helper.MediaViewerMenuHelper
 import com.github.k1rakishou.chan.features.media_viewer.helper.MediaViewerOpenAlbumHelper
+import com.github.k1rakishou.chan.features.media_viewer.helper.MediaViewerPrefetchPlanner
 import com.github.k1rakishou.chan.features.media_viewer.helper.MediaViewerScrollerHelper
 import com.github.k1rakishou.chan.features.media_viewer.media_view.MediaViewContract
 import com.github.k1rakishou.chan.ui.view.AppearTransitionImageView
@@ -92,6 +95,10 @@ class MediaViewerController(
   lateinit var mediaViewerOpenAlbumHelper: MediaViewerOpenAlbumHelper
   @Inject
   lateinit var fileChooser: FileChooser
+  @Inject
+  lateinit var fileCacheV2: Lazy<FileCacheV2>
+  @Inject
+  lateinit var cacheHandler: Lazy<CacheHandler>
 
   private var chanDescriptor: ChanDescriptor? = null
   private var autoSwipeJob: Job? = null
@@ -126,6 +133,7 @@ class MediaViewerController(
   }
 
   private val transitionAnimationAwaitable = CompletableDeferred<Unit>()
+  private var mediaViewerPrefetchPlanner: MediaViewerPrefetchPlanner? = null
 
   private val mediaViewerAdapter: MediaViewerAdapter?
     get() = pager.adapter as? MediaViewerAdapter
@@ -193,6 +201,9 @@ class MediaViewerController(
 
     globalWindowInsetsManager.removeInsetsUpdatesListener(this)
 
+    mediaViewerPrefetchPlanner?.cancelAll()
+    mediaViewerPrefetchPlanner = null
+
     mediaViewerAdapter?.onDestroy()
     mediaLongClickMenuHelper.onDestroy()
     mediaViewerToolbar.onDestroy()
@@ -231,6 +242,10 @@ class MediaViewerController(
       adapter.doBind(position)
       viewModel.updateLastViewedIndex(position)
     }
+
+    viewModel.mediaViewerState.value?.loadedMedia?.let { loadedMedia ->
+      mediaViewerPrefetchPlanner?.onPageSelected(position, loadedMedia.toList())
+    }
   }
 
   override fun onPageScrolled(position: Int, positionOffset: Float, positionOffsetPixels: Int) {
@@ -485,6 +500,17 @@ class MediaViewerController(
     val previewThumbnailLocation =
       mediaViewerState.loadedMedia[mediaViewerState.initialPagerIndex].mediaLocation
 
+    val cacheDataSourceFactory = createCacheDataSourceFactory(mediaViewerState.loadedMedia)
+
+    mediaViewerPrefetchPlanner?.cancelAll()
+    mediaViewerPrefetchPlanner = MediaViewerPrefetchPlanner(
+      scope = mainScope,
+      fileCacheV2 = fileCacheV2.get(),
+      cacheHandler = cacheHandler.get(),
+      cacheDataSourceFactory = cacheDataSourceFactory,
+      offscreenPageLimit = MediaViewerControllerViewModel.offscreenPageLimit()
+    )
+
     val adapter = MediaViewerAdapter(
       context = context,
       appConstants = appConstants,
@@ -495,7 +521,7 @@ class MediaViewerController(
       viewableMediaList = mediaViewerState.loadedMedia,
       previewThumbnailLocation = previewThumbnailLocation,
       mediaViewerScrollerHelper = mediaViewerScrollerHelper,
-      cachedHttpDataSourceFactory = createCacheDataSourceFactory(mediaViewerState.loadedMedia),
+      cachedHttpDataSourceFactory = cacheDataSourceFactory,
       fileDataSourceFactory = FileDataSource.Factory(),
       contentDataSourceFactory = DataSource.Factory { ContentDataSource(context) },
       chan4CloudFlareImagePreloaderManager = chan4CloudFlareImagePreloaderManager,
@@ -520,7 +546,7 @@ class MediaViewerController(
         "initialPagerIndex=${mediaViewerState.initialPagerIndex}")
   }
 
-  private fun createCacheDataSourceFactory(viewableMedia: List<ViewableMedia>): DataSource.Factory {
+  private fun createCacheDataSourceFactory(viewableMedia: List<ViewableMedia>): CacheDataSource.Factory {
     val defaultDataSourceFactory = DefaultHttpDataSource.Factory()
       .setUserAgent(appConstants.userAgent)
       .setDefaultRequestProperties(createRequestProperties(viewableMedia))
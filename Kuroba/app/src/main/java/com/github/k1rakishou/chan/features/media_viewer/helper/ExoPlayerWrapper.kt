@@ -4,6 +4,8 @@ import android.content.Context
 import android.net.Uri
 import com.github.k1rakishou.ChanSettings
 import com.github.k1rakishou.chan.core.base.KurobaCoroutineScope
+import com.github.k1rakishou.chan.core.cache.CacheFileType
+import com.github.k1rakishou.chan.core.cache.CacheHandler
 import com.github.k1rakishou.chan.core.manager.ThreadDownloadManager
 import com.github.k1rakishou.chan.features.media_viewer.MediaLocation
 import com.github.k1rakishou.chan.features.media_viewer.ViewableMedia
@@ -22,6 +24,7 @@ import com.google.android.exoplayer2.source.MergingMediaSource
 import com.google.android.exoplayer2.source.ProgressiveMediaSource
 import com.google.android.exoplayer2.upstream.DataSource
 import kotlinx.coroutines.CompletableDeferred
+import kotlinx.coroutines.Dispatchers
 import kotlinx.coroutines.Job
 import kotlinx.coroutines.coroutineScope
 import kotlinx.coroutines.delay
@@ -31,6 +34,7 @@ import kotlinx.coroutines.flow.asStateFlow
 import kotlinx.coroutines.isActive
 import kotlinx.coroutines.launch
 import kotlinx.coroutines.suspendCancellableCoroutine
+import kotlinx.coroutines.withContext
 import kotlinx.coroutines.withTimeout
 import kotlin.coroutines.resume
 import kotlin.coroutines.resumeWithException
@@ -39,6 +43,7 @@ import kotlin.coroutines.resumeWithException
 class ExoPlayerWrapper(
   private val context: Context,
   private val threadDownloadManager: ThreadDownloadManager,
+  private val cacheHandler: CacheHandler,
   private val cachedHttpDataSourceFactory: DataSource.Factory,
   private val fileDataSourceFactory: DataSource.Factory,
   private val contentDataSourceFactory: DataSource.Factory,
@@ -140,22 +145,32 @@ class ExoPlayerWrapper(
           else -> error("Unknown file type: ${file.javaClass.simpleName}")
         }
 
-        // Check whether there is sound post link
-        val urlRaw = (soundPostActualSoundMedia?.mediaLocation as? MediaLocation.Remote)?.urlRaw
-        if (urlRaw == null) {
-          // There is no link, use only the video source
-          return videoSource
-        }
+        return mergeWithSoundPostAudio(videoSource, soundPostActualSoundMedia)
+      }
 
-        // There is, merge local video with remote audio (since we don't download sound posts' audio
-        // locally)
-        val audioSource = ProgressiveMediaSource.Factory(cachedHttpDataSourceFactory)
-          .createMediaSource(MediaItem.fromUri(Uri.parse(urlRaw)))
+      // fallthrough
+    }
 
-        return MergingMediaSource(videoSource, audioSource)
+    // Check whether the video was already fully downloaded into the file cache (by the prefetcher
+    // or because it was opened before). There is no need to stream it again in this case.
+    val cacheFile = withContext(Dispatchers.IO) {
+      val url = mediaLocation.url.toString()
+
+      val file = cacheHandler.getCacheFileOrNull(CacheFileType.PostMediaFull, url)
+        ?: return@withContext null
+
+      if (!cacheHandler.isAlreadyDownloaded(CacheFileType.PostMediaFull, file)) {
+        return@withContext null
       }
 
-      // fallthrough
+      return@withContext file
+    }
+
+    if (cacheFile != null) {
+      val videoSource = ProgressiveMediaSource.Factory(fileDataSourceFactory)
+        .createMediaSource(MediaItem.fromUri(Uri.fromFile(cacheFile)))
+
+      return mergeWithSoundPostAudio(videoSource, soundPostActualSoundMedia)
     }
 
     // Thread is not downloaded or the file is not cached, check for the sound post link and use
@@ -177,6 +192,25 @@ class ExoPlayerWrapper(
       .createMediaSource(MediaItem.fromUri(Uri.parse(mediaLocation.url.toString())))
   }
 
+  private fun mergeWithSoundPostAudio(
+    videoSource: MediaSource,
+    soundPostActualSoundMedia: ViewableMedia?
+  ): MediaSource {
+    // Check whether there is sound post link
+    val urlRaw = (soundPostActualSoundMedia?.mediaLocation as? MediaLocation.Remote)?.urlRaw
+    if (urlRaw == null) {
+      // There is no link, use only the video source
+      return videoSource
+    }
+
+    // There is, merge local video with remote audio (since we don't download sound posts' audio
+    // locally)
+    val audioSource = ProgressiveMediaSource.Factory(cachedHttpDataSourceFactory)
+      .createMediaSource(MediaItem.fromUri(Uri.parse(urlRaw)))
+
+    return MergingMediaSource(videoSource, audioSource)
+  }
+
   suspend fun startAndAwaitFirstFrame() {
     start()
 
@@ -0,0 +1,314 @@
+package com.github.k1rakishou.chan.features.media_viewer.helper
+
+import android.net.ConnectivityManager
+import android.net.Uri
+import android.os.SystemClock
+import com.github.k1rakishou.ChanSettings
+import com.github.k1rakishou.chan.core.cache.CacheFileType
+import com.github.k1rakishou.chan.core.cache.CacheHandler
+import com.github.k1rakishou.chan.core.cache.FileCacheV2
+import com.github.k1rakishou.chan.core.cache.downloader.CancelableDownload
+import com.github.k1rakishou.chan.core.cache.downloader.DownloadRequestExtraInfo
+import com.github.k1rakishou.chan.features.media_viewer.MediaLocation
+import com.github.k1rakishou.chan.features.media_viewer.ViewableMedia
+import com.github.k1rakishou.chan.utils.AppModuleAndroidUtils
+import com.github.k1rakishou.chan.utils.BackgroundUtils
+import com.github.k1rakishou.common.isExceptionImportant
+import com.github.k1rakishou.core_logger.Logger
+import com.google.android.exoplayer2.upstream.DataSpec
+import com.google.android.exoplayer2.upstream.cache.CacheDataSource
+import com.google.android.exoplayer2.upstream.cache.CacheWriter
+import kotlinx.coroutines.CoroutineScope
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.Job
+import kotlinx.coroutines.NonCancellable
+import kotlinx.coroutines.launch
+import kotlinx.coroutines.withContext
+import kotlin.math.abs
+
+/**
+ * Prefetches the media the user is going to swipe to next, beyond the pages that the ViewPager
+ * already preloads by itself (see [offscreenPageLimit]). How far ahead we go depends on:
+ * - The swipe direction. Everything that is being prefetched gets canceled when it changes.
+ * - The swipe speed. When the user is quickly going through the media we prefetch more.
+ * - The network type. On a metered network only the next small image is prefetched (and only when
+ *   the auto-loading of the media is allowed on any network).
+ * - The file sizes and the free space of the media cache.
+ *
+ * Images and gifs are fully downloaded into the [FileCacheV2] cache. For videos only the first
+ * chunk is downloaded into the ExoPlayer cache (which is where the video player streams them from)
+ * so that they start playing right away.
+ * */
+class MediaViewerPrefetchPlanner(
+  private val scope: CoroutineScope,
+  private val fileCacheV2: FileCacheV2,
+  private val cacheHandler: CacheHandler,
+  private val cacheDataSourceFactory: CacheDataSource.Factory,
+  private val offscreenPageLimit: Int
+) {
+  private val activePrefetches = mutableMapOf<String, ActivePrefetch>()
+
+  private var prevPosition = -1
+  private var prevDirection = 0
+  private var lastPageSelectedTimeMs = 0L
+  private var avgPageIntervalMs = SLOW_SWIPE_INTERVAL_MS.toFloat()
+  private var planJob: Job? = null
+
+  fun onPageSelected(position: Int, viewableMediaList: List<ViewableMedia>) {
+    BackgroundUtils.ensureMainThread()
+
+    val now = SystemClock.elapsedRealtime()
+    val direction = if (prevPosition < 0) 1 else Integer.signum(position - prevPosition)
+    val pageIntervalMs = now - lastPageSelectedTimeMs
+
+    if (prevPosition >= 0 && abs(position - prevPosition) == 1) {
+      // Smoothed because the first swipe after a pause would look very slow otherwise
+      avgPageIntervalMs = (avgPageIntervalMs + pageIntervalMs.coerceAtMost(SLOW_SWIPE_INTERVAL_MS)) / 2f
+    }
+
+    prevPosition = position
+    lastPageSelectedTimeMs = now
+
+    if (direction == 0) {
+      return
+    }
+
+    if (direction != prevDirection) {
+      // The user changed their mind, whatever is being prefetched is not needed anymore
+      cancelAll()
+      prevDirection = direction
+    }
+
+    val isFastSwiping = avgPageIntervalMs < FAST_SWIPE_INTERVAL_MS
+
+    planJob?.cancel()
+    planJob = scope.launch {
+      val plannedMedia = withContext(Dispatchers.Default) {
+        planPrefetches(position, direction, isFastSwiping, viewableMediaList)
+      }
+
+      startPrefetches(plannedMedia)
+    }
+  }
+
+  fun cancelAll() {
+    BackgroundUtils.ensureMainThread()
+
+    planJob?.cancel()
+    planJob = null
+
+    activePrefetches.values.forEach { activePrefetch -> activePrefetch.cancel() }
+    activePrefetches.clear()
+  }
+
+  private fun planPrefetches(
+    position: Int,
+    direction: Int,
+    isFastSwiping: Boolean,
+    viewableMediaList: List<ViewableMedia>
+  ): List<PlannedPrefetch> {
+    BackgroundUtils.ensureBackgroundThread()
+
+    val isOnWifi = AppModuleAndroidUtils.isConnected(ConnectivityManager.TYPE_WIFI)
+    val canPrefetchImages = AppModuleAndroidUtils.shouldLoadForNetworkType(ChanSettings.imageAutoLoadNetwork.get())
+    val canPrefetchVideos = AppModuleAndroidUtils.shouldLoadForNetworkType(ChanSettings.videoAutoLoadNetwork.get())
+
+    if (!canPrefetchImages && !canPrefetchVideos) {
+      return emptyList()
+    }
+
+    val maxCount: Int
+    val maxFileSize: Long
+    var budgetBytes: Long
+
+    if (isOnWifi) {
+      maxCount = if (isFastSwiping) WIFI_MAX_PREFETCHES_FAST_SWIPING else WIFI_MAX_PREFETCHES
+      maxFileSize = WIFI_MAX_FILE_SIZE
+      budgetBytes = WIFI_MAX_BUDGET
+    } else {
+      maxCount = METERED_MAX_PREFETCHES
+      maxFileSize = METERED_MAX_FILE_SIZE
+      budgetBytes = METERED_MAX_BUDGET
+    }
+
+    // Don't make the cache evict the media that was just viewed to store the media that may never
+    // be viewed
+    val cacheMaxSize = cacheHandler.getMaxSize(CacheFileType.PostMediaFull)
+    val cacheFreeSpace = cacheMaxSize - cacheHandler.getSize(CacheFileType.PostMediaFull)
+    budgetBytes = budgetBytes.coerceAtMost(cacheFreeSpace.coerceAtLeast(cacheMaxSize / MIN_CACHE_BUDGET_DIVIDER))
+
+    val plannedPrefetches = mutableListOf<PlannedPrefetch>()
+    // The pages right next to the current one are preloaded by the ViewPager
+    var index = position + direction * (offscreenPageLimit + 1)
+
+    while (index in viewableMediaList.indices && plannedPrefetches.size < maxCount && budgetBytes > 0) {
+      val viewableMedia = viewableMediaList[index]
+      index += direction
+
+      val mediaLocation = viewableMedia.mediaLocation as? MediaLocation.Remote
+        ?: continue
+      val url = mediaLocation.url.toString()
+
+      if (viewableMedia.viewableMediaMeta.isSpoiler) {
+        continue
+      }
+
+      val mediaSize = viewableMedia.viewableMediaMeta.mediaSize
+        ?.takeIf { mediaSize -> mediaSize > 0 }
+
+      val plannedPrefetch = when (viewableMedia) {
+        is ViewableMedia.Image,
+        is ViewableMedia.Gif -> {
+          if (!canPrefetchImages || mediaSize == null || mediaSize > maxFileSize) {
+            continue
+          }
+
+          if (cacheHandler.isAlreadyDownloaded(CacheFileType.PostMediaFull, url)) {
+            continue
+          }
+
+          PlannedPrefetch.FullMedia(url, viewableMedia, mediaSize)
+        }
+        is ViewableMedia.Video -> {
+          if (!canPrefetchVideos || !isOnWifi) {
+            continue
+          }
+
+          val chunkSize = mediaSize?.coerceAtMost(VIDEO_FIRST_CHUNK_SIZE) ?: VIDEO_FIRST_CHUNK_SIZE
+          PlannedPrefetch.VideoFirstChunk(url, chunkSize)
+        }
+        is ViewableMedia.Audio,
+        is ViewableMedia.Unsupported -> continue
+      }
+
+      if (plannedPrefetch.sizeBytes > budgetBytes) {
+        continue
+      }
+
+      budgetBytes -= plannedPrefetch.sizeBytes
+      plannedPrefetches += plannedPrefetch
+    }
+
+    return plannedPrefetches
+  }
+
+  private fun startPrefetches(plannedPrefetches: List<PlannedPrefetch>) {
+    BackgroundUtils.ensureMainThread()
+
+    val plannedUrls = plannedPrefetches.map { plannedPrefetch -> plannedPrefetch.url }.toSet()
+
+    // Out of the window now (e.g. the user jumped somewhere else)
+    val iterator = activePrefetches.entries.iterator()
+    while (iterator.hasNext()) {
+      val (url, activePrefetch) = iterator.next()
+
+      if (url !in plannedUrls) {
+        activePrefetch.cancel()
+        iterator.remove()
+      }
+    }
+
+    plannedPrefetches.forEach { plannedPrefetch ->
+      if (activePrefetches.containsKey(plannedPrefetch.url)) {
+        return@forEach
+      }
+
+      val activePrefetch = when (plannedPrefetch) {
+        is PlannedPrefetch.FullMedia -> startFullMediaPrefetch(plannedPrefetch)
+        is PlannedPrefetch.VideoFirstChunk -> startVideoFirstChunkPrefetch(plannedPrefetch)
+      } ?: return@forEach
+
+      activePrefetches[plannedPrefetch.url] = activePrefetch
+    }
+  }
+
+  private fun startFullMediaPrefetch(plannedPrefetch: PlannedPrefetch.FullMedia): ActivePrefetch? {
+    val extraInfo = DownloadRequestExtraInfo(
+      fileSize = plannedPrefetch.sizeBytes,
+      fileHash = plannedPrefetch.viewableMedia.viewableMediaMeta.mediaHash
+    )
+
+    // Null means the file is already being downloaded (e.g. by the MediaView itself)
+    val cancelableDownload = fileCacheV2.enqueueMediaPrefetchRequest(
+      cacheFileType = CacheFileType.PostMediaFull,
+      url = plannedPrefetch.url,
+      extraInfo = extraInfo
+    ) ?: return null
+
+    return ActivePrefetch.Download(cancelableDownload)
+  }
+
+  private fun startVideoFirstChunkPrefetch(plannedPrefetch: PlannedPrefetch.VideoFirstChunk): ActivePrefetch {
+    val dataSpec = DataSpec.Builder()
+      .setUri(Uri.parse(plannedPrefetch.url))
+      .setPosition(0)
+      .setLength(plannedPrefetch.sizeBytes)
+      .build()
+
+    val cacheWriter = CacheWriter(cacheDataSourceFactory.createDataSource(), dataSpec, null, null)
+
+    val activePrefetch = ActivePrefetch.VideoChunk(cacheWriter)
+
+    activePrefetch.job = scope.launch(Dispatchers.IO) {
+      try {
+        // Does nothing for the parts that are already cached
+        cacheWriter.cache()
+      } catch (error: Throwable) {
+        if (error.isExceptionImportant()) {
+          Logger.e(TAG, "Failed to prefetch the first chunk of ${plannedPrefetch.url}", error)
+        }
+      } finally {
+        withContext(Dispatchers.Main + NonCancellable) {
+          if (activePrefetches[plannedPrefetch.url] === activePrefetch) {
+            activePrefetches.remove(plannedPrefetch.url)
+          }
+        }
+      }
+    }
+
+    return activePrefetch
+  }
+
+  private sealed class PlannedPrefetch(val url: String, val sizeBytes: Long) {
+    class FullMedia(url: String, val viewableMedia: ViewableMedia, sizeBytes: Long) : PlannedPrefetch(url, sizeBytes)
+    class VideoFirstChunk(url: String, sizeBytes: Long) : PlannedPrefetch(url, sizeBytes)
+  }
+
+  private sealed class ActivePrefetch {
+    abstract fun cancel()
+
+    class Download(val cancelableDownload: CancelableDownload) : ActivePrefetch() {
+      override fun cancel() {
+        cancelableDownload.cancelPrefetch()
+      }
+    }
+
+    class VideoChunk(val cacheWriter: CacheWriter) : ActivePrefetch() {
+      var job: Job? = null
+
+      override fun cancel() {
+        cacheWriter.cancel()
+        job?.cancel()
+      }
+    }
+  }
+
+  companion object {
+    private const val TAG = "MediaViewerPrefetchPlanner"
+
+    private const val FAST_SWIPE_INTERVAL_MS = 1000L
+    private const val SLOW_SWIPE_INTERVAL_MS = 5000L
+
+    private const val WIFI_MAX_PREFETCHES = 3
+    private const val WIFI_MAX_PREFETCHES_FAST_SWIPING = 6
+    private const val WIFI_MAX_FILE_SIZE = 10L * 1024 * 1024
+    private const val WIFI_MAX_BUDGET = 40L * 1024 * 1024
+
+    private const val METERED_MAX_PREFETCHES = 1
+    private const val METERED_MAX_FILE_SIZE = 1L * 1024 * 1024
+    private const val METERED_MAX_BUDGET = 1L * 1024 * 1024
+
+    private const val VIDEO_FIRST_CHUNK_SIZE = 1L * 1024 * 1024
+    private const val MIN_CACHE_BUDGET_DIVIDER = 10
+  }
+}
@@ -73,6 +73,7 @@ class AudioPlayerView @JvmOverloads constructor(
     ExoPlayerWrapper(
       context = context,
       threadDownloadManager = threadDownloadManager,
+      cacheHandler = cacheHandler,
       cachedHttpDataSourceFactory = cachedHttpDataSourceFactory,
       fileDataSourceFactory = fileDataSourceFactory,
       contentDataSourceFactory = contentDataSourceFactory,
@@ -74,6 +74,7 @@ class ExoPlayerVideoMediaView(
     ExoPlayerWrapper(
       context = context,
       threadDownloadManager = threadDownloadManager,
+      cacheHandler = cacheHandler.get(),
       cachedHttpDataSourceFactory = cachedHttpDataSourceFactory,
       fileDataSourceFactory = fileDataSourceFactory,
       contentDataSourceFactory = contentDataSourceFactory,
@@ -46,9 +46,11 @@ import com.github.k1rakishou.fsaf.file.RawFile
 import com.google.android.exoplayer2.ui.DefaultTimeBar
 import com.google.android.exoplayer2.ui.TimeBar
 import com.google.android.exoplayer2.upstream.DataSource
+import kotlinx.coroutines.Dispatchers
 import kotlinx.coroutines.Job
 import kotlinx.coroutines.delay
 import kotlinx.coroutines.launch
+import kotlinx.coroutines.withContext
 
 @SuppressLint("ViewConstructor", "ClickableViewAccessibility")
 class MpvVideoMediaView(
@@ -660,6 +662,22 @@ class MpvVideoMediaView(
           }
         }
 
+        // No need to stream the video again when it's already fully downloaded into the file cache
+        val cacheFile = withContext(Dispatchers.IO) {
+          val file = cacheHandler.get().getCacheFileOrNull(CacheFileType.PostMediaFull, mediaLocation.url.toString())
+            ?: return@withContext null
+
+          if (!cacheHandler.get().isAlreadyDownloaded(CacheFileType.PostMediaFull, file)) {
+            return@withContext null
+          }
+
+          return@withContext file
+        }
+
+        if (cacheFile != null) {
+          return cacheFile.absolutePath
+        }
+
         return mediaLocation.urlRaw
       }
     }
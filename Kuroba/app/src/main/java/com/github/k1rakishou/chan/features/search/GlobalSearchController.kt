@@ -32,6 +32,7 @@ import com.github.k1rakishou.chan.utils.AppModuleAndroidUtils.inflate
 import com.github.k1rakishou.common.AndroidUtils
 import com.github.k1rakishou.common.updatePaddings
 import com.github.k1rakishou.core_themes.ThemeEngine
+import com.github.k1rakishou.model.data.descriptor.BoardDescriptor
 import com.github.k1rakishou.model.data.descriptor.SiteDescriptor
 import java.lang.ref.WeakReference
 import javax.inject.Inject
@@ -200,6 +201,9 @@ class GlobalSearchController(
       SiteGlobalSearchType.FoolFuukaSearch -> {
         renderFoolFuukaSearch(dataState)
       }
+      SiteGlobalSearchType.LocalSearch -> {
+        renderLocalSearch(dataState)
+      }
       SiteGlobalSearchType.SearchNotSupported -> false
     }
 
@@ -236,6 +240,7 @@ class GlobalSearchController(
         SiteGlobalSearchType.SearchNotSupported,
         SiteGlobalSearchType.SimpleQuerySearch,
         SiteGlobalSearchType.SimpleQueryBoardSearch,
+        SiteGlobalSearchType.LocalSearch,
         SiteGlobalSearchType.FuukaSearch -> {
           return SearchParameters.FuukaSearchParameters(
             query = query,
@@ -450,6 +455,97 @@ class GlobalSearchController(
     ).isValid()
   }
 
+  private fun EpoxyController.renderLocalSearch(dataState: GlobalSearchControllerStateData): Boolean {
+    val sitesWithSearch = dataState.sitesWithSearch
+    val searchParameters = dataState.searchParameters as SearchParameters.LocalSearchParameters
+
+    var searchQuery = searchParameters.query
+    var selectedBoard = searchParameters.searchBoard
+    var threadNo = searchParameters.threadNo
+
+    if (resetSearchParameters) {
+      searchQuery = ""
+      selectedBoard = SearchBoard.AllBoards
+      threadNo = null
+
+      resetSearchParameters = false
+    }
+
+    epoxySearchInputView {
+      id("global_search_local_search_query_view")
+      initialQuery(searchQuery)
+      hint(context.getString(R.string.post_comment_search_query_hint))
+      onTextEnteredListener { query ->
+        val updatedSearchParameters = SearchParameters.LocalSearchParameters(
+          query = query,
+          searchBoard = selectedBoard,
+          threadNo = threadNo
+        )
+
+        presenter.reloadWithSearchParameters(updatedSearchParameters, sitesWithSearch)
+      }
+      onBind { _, view, _ -> addViewToInputViewRefSet(view) }
+      onUnbind { _, view -> removeViewFromInputViewRefSet(view) }
+    }
+
+    epoxyBoardSelectionButtonView {
+      id("global_search_local_search_board_selection_button_view")
+      boardCode(selectedBoard?.boardCode())
+      bindClickCallback {
+        val activeBoardDescriptors = mutableListOf<BoardDescriptor>()
+
+        boardManager.viewAllActiveBoards { chanBoard ->
+          activeBoardDescriptors += chanBoard.boardDescriptor
+        }
+
+        val activeBoards = activeBoardDescriptors
+          .sortedWith(compareBy<BoardDescriptor> { bd -> bd.siteName() }.thenBy { bd -> bd.boardCode })
+          .map { boardDescriptor -> SearchBoard.SingleBoard(boardDescriptor) }
+
+        val controller = SelectBoardForSearchController(
+          context = context,
+          supportsAllBoardsSearch = true,
+          prevSelectedBoard = selectedBoard,
+          searchBoardProvider = { activeBoards },
+          onBoardSelected = { searchBoard ->
+            val updatedSearchParameters = SearchParameters.LocalSearchParameters(
+              query = searchQuery,
+              searchBoard = searchBoard,
+              threadNo = threadNo
+            )
+
+            presenter.reloadWithSearchParameters(updatedSearchParameters, sitesWithSearch)
+          }
+        )
+
+        requireNavController().presentController(controller)
+      }
+    }
+
+    epoxySearchInputView {
+      id("global_search_local_search_thread_no_view")
+      initialQuery(threadNo?.toString() ?: "")
+      hint(context.getString(R.string.local_search_thread_no_hint))
+      onTextEnteredListener { threadNoText ->
+        val updatedSearchParameters = SearchParameters.LocalSearchParameters(
+          query = searchQuery,
+          searchBoard = selectedBoard,
+          threadNo = threadNoText.trim().toLongOrNull()
+        )
+
+        presenter.reloadWithSearchParameters(updatedSearchParameters, sitesWithSearch)
+      }
+      onBind { _, view, _ -> addViewToInputViewRefSet(view) }
+      onUnbind { _, view -> removeViewFromInputViewRefSet(view) }
+    }
+
+    return SearchParameters.LocalSearchParameters(
+      query = searchQuery,
+      searchBoard = selectedBoard,
+      threadNo = threadNo
+    ).isValid()
+  }
+
   private fun EpoxyController.renderSearchButton(
     sitesWithSearch: SitesWithSearch,
     searchParameters: SearchParameters
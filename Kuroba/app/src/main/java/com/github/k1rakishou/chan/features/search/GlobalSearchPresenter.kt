@@ -3,6 +3,7 @@ package com.github.k1rakishou.chan.features.search
 import com.github.k1rakishou.chan.core.base.BasePresenter
 import com.github.k1rakishou.chan.core.base.RendezvousCoroutineExecutor
 import com.github.k1rakishou.chan.core.manager.SiteManager
+import com.github.k1rakishou.chan.core.site.sites.search.LocalSearchParams
 import com.github.k1rakishou.chan.core.site.sites.search.SearchBoard
 import com.github.k1rakishou.chan.core.site.sites.search.SiteGlobalSearchType
 import com.github.k1rakishou.chan.features.search.data.GlobalSearchControllerState
@@ -153,32 +154,38 @@ internal class GlobalSearchPresenter(
       return@viewActiveSitesOrderedWhile true
     }
 
+    // Posts stored in the database can always be searched
+    sitesSupportingSearch += LocalSearchParams.LOCAL_SEARCH_SITE_DESCRIPTOR
+
     if (loadingStateCancellationJob != null && !loadingStateCancellationJob.isCancelled) {
       loadingStateCancellationJob.cancel()
     }
 
-    if (sitesSupportingSearch.isEmpty()) {
-      setState(GlobalSearchControllerState.Empty)
-      return
-    }
-
     val selectedSiteDescriptor = selectedSiteDescriptor
       ?: sitesSupportingSearch.first()
 
-    val site = siteManager.bySiteDescriptor(selectedSiteDescriptor)
-    if (site == null) {
-      setState(GlobalSearchControllerState.Error("Failed to find site for descriptor: ${selectedSiteDescriptor}"))
-      return
-    }
-
     val searchParameters = getDefaultSearchParameters(selectedSiteDescriptor)
     if (searchParameters == null) {
       setState(GlobalSearchControllerState.Error("Failed to create search parameters for site: ${selectedSiteDescriptor}"))
       return
     }
 
-    val siteIconUrl = site.icon().url?.toString()
-    val searchType = site.siteGlobalSearchType()
+    val siteIconUrl: String?
+    val searchType: SiteGlobalSearchType
+
+    if (selectedSiteDescriptor == LocalSearchParams.LOCAL_SEARCH_SITE_DESCRIPTOR) {
+      siteIconUrl = null
+      searchType = SiteGlobalSearchType.LocalSearch
+    } else {
+      val site = siteManager.bySiteDescriptor(selectedSiteDescriptor)
+      if (site == null) {
+        setState(GlobalSearchControllerState.Error("Failed to find site for descriptor: ${selectedSiteDescriptor}"))
+        return
+      }
+
+      siteIconUrl = site.icon().url?.toString()
+      searchType = site.siteGlobalSearchType()
+    }
 
     val dataState = GlobalSearchControllerStateData(
       currentTheme = themeEngine.chanTheme.fullCopy(),
@@ -197,8 +204,12 @@ internal class GlobalSearchPresenter(
   }
 
   private fun getDefaultSearchParameters(siteDescriptor: SiteDescriptor): SearchParameters? {
-    val searchType = siteManager.bySiteDescriptor(siteDescriptor)?.siteGlobalSearchType()
-      ?: return null
+    val searchType = if (siteDescriptor == LocalSearchParams.LOCAL_SEARCH_SITE_DESCRIPTOR) {
+      SiteGlobalSearchType.LocalSearch
+    } else {
+      siteManager.bySiteDescriptor(siteDescriptor)?.siteGlobalSearchType()
+        ?: return null
+    }
 
     when (searchType) {
       SiteGlobalSearchType.SearchNotSupported -> {
@@ -234,6 +245,13 @@ internal class GlobalSearchPresenter(
           searchBoard = null
         )
       }
+      SiteGlobalSearchType.LocalSearch -> {
+        return SearchParameters.LocalSearchParameters(
+          query = "",
+          searchBoard = SearchBoard.AllBoards,
+          threadNo = null
+        )
+      }
     }
   }
 
@@ -258,6 +258,20 @@ internal class SearchResultsPresenter(
           else -> throw IllegalStateException("Unknown params: ${params.javaClass.simpleName}")
         }
       }
+      is SearchParameters.LocalSearchParameters -> {
+        val boardDescriptor = when (val searchBoard = params.searchBoard) {
+          is SearchBoard.SingleBoard -> searchBoard.boardDescriptor
+          SearchBoard.AllBoards -> null
+          null -> null
+        }
+
+        LocalSearchParams(
+          boardDescriptor = boardDescriptor,
+          threadNo = params.threadNo,
+          query = params.query,
+          page = currentPage
+        )
+      }
     }.exhaustive
 
     return globalSearchUseCase.execute(requestSearchParams)
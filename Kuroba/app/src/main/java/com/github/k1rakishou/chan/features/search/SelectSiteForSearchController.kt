@@ -5,6 +5,7 @@ import androidx.constraintlayout.widget.ConstraintLayout
 import com.github.k1rakishou.chan.R
 import com.github.k1rakishou.chan.core.di.component.activity.ActivityComponent
 import com.github.k1rakishou.chan.core.manager.SiteManager
+import com.github.k1rakishou.chan.core.site.sites.search.LocalSearchParams
 import com.github.k1rakishou.chan.core.site.sites.search.SiteGlobalSearchType
 import com.github.k1rakishou.chan.features.search.epoxy.epoxySearchSiteView
 import com.github.k1rakishou.chan.ui.controller.BaseFloatingController
@@ -70,10 +71,11 @@ internal class SelectSiteForSearchController(
       return@viewActiveSitesOrderedWhile true
     }
 
-    if (sites.isEmpty()) {
-      pop()
-      return
-    }
+    sites += SiteSupportingSearchData(
+      siteDescriptor = LocalSearchParams.LOCAL_SEARCH_SITE_DESCRIPTOR,
+      siteIconUrl = null,
+      isSelected = LocalSearchParams.LOCAL_SEARCH_SITE_DESCRIPTOR == selectedSite
+    )
 
     val backColor = themeEngine.chanTheme.backColor
 
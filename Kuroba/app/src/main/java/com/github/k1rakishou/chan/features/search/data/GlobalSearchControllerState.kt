@@ -196,6 +196,63 @@ sealed class SearchParameters {
     searchBoard: SearchBoard?
   ) : AdvancedSearchParameters(query, subject, searchBoard)
 
+  /**
+   * Search over the posts stored in the local database. [threadNo] can only be used when a single
+   * board is selected.
+   * */
+  data class LocalSearchParameters(
+    override val query: String,
+    val searchBoard: SearchBoard?,
+    val threadNo: Long?
+  ) : SearchParameters() {
+
+    override fun getCurrentQuery(): String {
+      return buildString {
+        if (searchBoard != null) {
+          append("/${searchBoard.boardCode()}/")
+        }
+
+        if (threadNo != null) {
+          if (isNotEmpty()) {
+            append(" ")
+          }
+
+          append("Thread: ${threadNo}")
+        }
+
+        if (query.isNotEmpty()) {
+          if (isNotEmpty()) {
+            append(" ")
+          }
+
+          append("Comment: '$query'")
+        }
+      }
+    }
+
+    override fun isValid(): Boolean {
+      if (query.length < MIN_SEARCH_QUERY_LENGTH) {
+        return false
+      }
+
+      if (threadNo != null && searchBoard !is SearchBoard.SingleBoard) {
+        return false
+      }
+
+      return true
+    }
+
+    override fun assertValid() {
+      if (isValid()) {
+        return
+      }
+
+      throw IllegalStateException("LocalSearchParameters are not valid! " +
+        "query='$query', searchBoard='$searchBoard', threadNo=$threadNo")
+    }
+
+  }
+
   companion object {
     const val MIN_SEARCH_QUERY_LENGTH = 2
   }
@@ -11,6 +11,7 @@ import com.github.k1rakishou.chan.core.helper.DialogFactory
 import com.github.k1rakishou.chan.core.helper.ProxyStorage
 import com.github.k1rakishou.chan.core.manager.*
 import com.github.k1rakishou.chan.core.repository.ImportExportRepository
+import com.github.k1rakishou.chan.core.site.loader.LoadPipelineTimings
 import com.github.k1rakishou.chan.core.usecase.InstallMpvNativeLibrariesFromGithubUseCase
 import com.github.k1rakishou.chan.core.usecase.InstallMpvNativeLibrariesFromLocalDirectoryUseCase
 import com.github.k1rakishou.chan.core.usecase.TwoCaptchaCheckBalanceUseCase
@@ -90,6 +91,8 @@ class SettingsCoordinator(
   @Inject
   lateinit var dialogFactory: DialogFactory
   @Inject
+  lateinit var loadPipelineTimings: Lazy<LoadPipelineTimings>
+  @Inject
   lateinit var proxyStorage: ProxyStorage
   @Inject
   lateinit var importExportRepository: ImportExportRepository
@@ -174,7 +177,8 @@ class SettingsCoordinator(
       fileCacheV2,
       themeEngine,
       appConstants,
-      dialogFactory
+      dialogFactory,
+      loadPipelineTimings
     )
   }
 
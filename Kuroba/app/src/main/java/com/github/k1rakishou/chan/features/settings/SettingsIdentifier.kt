@@ -168,6 +168,7 @@ sealed class DeveloperScreen(
     object EnableDisableVerboseLogs : MainGroup("enable_disable_verbose_logs")
     object CrashApp : MainGroup("crash_the_app")
     object ShowDatabaseSummary : MainGroup("show_database_summary")
+    object ShowLoadPipelineTimings : MainGroup("show_load_pipeline_timings")
     object ResetThreadOpenCounter : MainGroup("reset_thread_open_counter")
     object CrashOnSafeThrow : MainGroup("crash_on_safe_throw")
     object SimulateAppUpdated : MainGroup("simulate_app_updated")
@@ -177,6 +178,9 @@ sealed class DeveloperScreen(
     object ForceHalloween : MainGroup("force_halloween")
     object ForceSnow : MainGroup("force_snow")
     object ForceChristmas : MainGroup("force_christmas")
+    object CollectPostCellStatistics : MainGroup("collect_post_cell_statistics")
+    object CopyPostCellStatistics : MainGroup("copy_post_cell_statistics")
+    object ResetPostCellStatistics : MainGroup("reset_post_cell_statistics")
 
     companion object : IGroupIdentifier() {
       override fun getScreenIdentifier(): ScreenIdentifier = DeveloperScreen.getScreenIdentifier()
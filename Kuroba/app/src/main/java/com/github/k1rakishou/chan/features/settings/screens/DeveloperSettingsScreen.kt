@@ -9,18 +9,21 @@ import com.github.k1rakishou.chan.core.cache.CacheFileType
 import com.github.k1rakishou.chan.core.cache.CacheHandler
 import com.github.k1rakishou.chan.core.cache.FileCacheV2
 import com.github.k1rakishou.chan.core.helper.DialogFactory
+import com.github.k1rakishou.chan.core.site.loader.LoadPipelineTimings
 import com.github.k1rakishou.chan.features.settings.DatabaseSummaryScreen
 import com.github.k1rakishou.chan.features.settings.DeveloperScreen
 import com.github.k1rakishou.chan.features.settings.SettingClickAction
 import com.github.k1rakishou.chan.features.settings.SettingsGroup
 import com.github.k1rakishou.chan.features.settings.setting.BooleanSettingV2
 import com.github.k1rakishou.chan.features.settings.setting.LinkSettingV2
+import com.github.k1rakishou.chan.ui.cell.PostCellStatistics
 import com.github.k1rakishou.chan.ui.controller.LogsController
 import com.github.k1rakishou.chan.ui.controller.navigation.NavigationController
 import com.github.k1rakishou.chan.utils.AppModuleAndroidUtils
 import com.github.k1rakishou.chan.utils.AppModuleAndroidUtils.getString
 import com.github.k1rakishou.chan.utils.AppModuleAndroidUtils.showToast
 import com.github.k1rakishou.chan.utils.IOUtils
+import com.github.k1rakishou.common.AndroidUtils
 import com.github.k1rakishou.common.AppConstants
 import com.github.k1rakishou.core_logger.Logger
 import com.github.k1rakishou.core_themes.ThemeEngine
@@ -38,7 +41,8 @@ class DeveloperSettingsScreen(
   private val fileCacheV2: FileCacheV2,
   private val themeEngine: ThemeEngine,
   private val appConstants: AppConstants,
-  private val dialogFactory: DialogFactory
+  private val dialogFactory: DialogFactory,
+  private val loadPipelineTimings: Lazy<LoadPipelineTimings>
 ) : BaseSettingsScreen(
   context,
   DeveloperScreen,
@@ -134,6 +138,12 @@ class DeveloperSettingsScreen(
                   }
                 }
 
+                for (file in appConstants.threadDownloaderMediaStoreDir.listFiles() ?: emptyArray()) {
+                  if (!file.delete()) {
+                    Logger.d(TAG, "Failed to delete ${file.absolutePath}")
+                  }
+                }
+
                 showToast(context, "Thread downloader cached cleared")
               }
             )
@@ -222,6 +232,20 @@ class DeveloperSettingsScreen(
           }
         )
 
+        group += LinkSettingV2.createBuilder(
+          context = context,
+          identifier = DeveloperScreen.MainGroup.ShowLoadPipelineTimings,
+          topDescriptionIdFunc = { R.string.settings_load_pipeline_timings },
+          bottomDescriptionIdFunc = { R.string.settings_load_pipeline_timings_description },
+          callback = {
+            dialogFactory.createSimpleInformationDialog(
+              context = context,
+              titleText = getString(R.string.settings_load_pipeline_timings),
+              descriptionText = loadPipelineTimings.get().formatSummary()
+            )
+          }
+        )
+
         group += LinkSettingV2.createBuilder(
           context = context,
           identifier = DeveloperScreen.MainGroup.ResetThreadOpenCounter,
@@ -333,6 +357,35 @@ class DeveloperSettingsScreen(
           )
         }
 
+        group += BooleanSettingV2.createBuilder(
+          context = context,
+          identifier = DeveloperScreen.MainGroup.CollectPostCellStatistics,
+          topDescriptionIdFunc = { R.string.settings_collect_post_cell_statistics },
+          bottomDescriptionIdFunc = { R.string.settings_collect_post_cell_statistics_description },
+          setting = ChanSettings.collectPostCellStatistics,
+        )
+
+        group += LinkSettingV2.createBuilder(
+          context = context,
+          identifier = DeveloperScreen.MainGroup.CopyPostCellStatistics,
+          topDescriptionIdFunc = { R.string.settings_copy_post_cell_statistics },
+          bottomDescriptionIdFunc = { R.string.settings_copy_post_cell_statistics_description },
+          callback = {
+            AndroidUtils.setClipboardContent("Post cell statistics", PostCellStatistics.dumpJson())
+            showToast(context, "Copied to clipboard")
+          }
+        )
+
+        group += LinkSettingV2.createBuilder(
+          context = context,
+          identifier = DeveloperScreen.MainGroup.ResetPostCellStatistics,
+          topDescriptionIdFunc = { R.string.settings_reset_post_cell_statistics },
+          callback = {
+            PostCellStatistics.reset()
+            showToast(context, "Post cell statistics reset")
+          }
+        )
+
         group
       }
     )
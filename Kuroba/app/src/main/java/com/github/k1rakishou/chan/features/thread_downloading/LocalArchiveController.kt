@@ -70,6 +70,7 @@ import com.github.k1rakishou.chan.core.helper.StartActivityStartupHandlerHelper
 import com.github.k1rakishou.chan.core.image.ImageLoaderV2
 import com.github.k1rakishou.chan.core.manager.GlobalWindowInsetsManager
 import com.github.k1rakishou.chan.core.manager.WindowInsetsListener
+import com.github.k1rakishou.chan.core.usecase.ExportDownloadedThreadAsHtmlUseCase
 import com.github.k1rakishou.chan.features.drawer.MainControllerCallbacks
 import com.github.k1rakishou.chan.ui.compose.ComposeHelpers.simpleVerticalScrollbar
 import com.github.k1rakishou.chan.ui.compose.ImageLoaderRequest
@@ -782,11 +783,19 @@ class LocalArchiveController(
   }
 
   private fun onFileSelected(uri: Uri, threadDescriptor: ChanDescriptor.ThreadDescriptor) {
-    val loadingViewController = LoadingViewController(context, true)
+    val loadingViewController = LoadingViewController(context, false)
 
     val job = mainScope.launch(start = CoroutineStart.LAZY) {
       try {
-        when (val result = viewModel.exportThreadAsHtml(uri, threadDescriptor)) {
+        val result = viewModel.exportThreadAsHtml(uri, threadDescriptor) { exportProgress ->
+          mainScope.launch {
+            if (loadingViewController.alive) {
+              loadingViewController.updateWithText(formatExportProgress(exportProgress))
+            }
+          }
+        }
+
+        when (result) {
           is ModularResult.Error -> showToast("Failed to export. Error: ${result.error.errorMessageOrClassName()}")
           is ModularResult.Value -> showToast("Successfully exported")
         }
@@ -805,6 +814,15 @@ class LocalArchiveController(
     job.start()
   }
 
+  private fun formatExportProgress(exportProgress: ExportDownloadedThreadAsHtmlUseCase.ExportProgress): String {
+    val exportedMediaSize = ChanPostUtils.getReadableFileSize(exportProgress.exportedMediaBytes)
+    val totalMediaSize = ChanPostUtils.getReadableFileSize(exportProgress.totalMediaBytes)
+
+    return "Posts: ${exportProgress.exportedPosts}/${exportProgress.totalPosts}\n" +
+      "Media: ${exportProgress.exportedMediaFiles}/${exportProgress.totalMediaFiles} " +
+      "(${exportedMediaSize}/${totalMediaSize})"
+  }
+
   private fun onNewSelectionEvent(selectionEvent: BaseSelectionHelper.SelectionEvent?) {
     when (selectionEvent) {
       BaseSelectionHelper.SelectionEvent.EnteredSelectionMode,
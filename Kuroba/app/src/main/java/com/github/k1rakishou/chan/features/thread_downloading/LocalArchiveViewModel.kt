@@ -479,9 +479,10 @@ class LocalArchiveViewModel : BaseViewModel() {
 
   suspend fun exportThreadAsHtml(
     outputFileUri: Uri,
-    threadDescriptor: ChanDescriptor.ThreadDescriptor
+    threadDescriptor: ChanDescriptor.ThreadDescriptor,
+    onProgress: (ExportDownloadedThreadAsHtmlUseCase.ExportProgress) -> Unit
   ): ModularResult<Unit> {
-    val params = ExportDownloadedThreadAsHtmlUseCase.Params(outputFileUri, threadDescriptor)
+    val params = ExportDownloadedThreadAsHtmlUseCase.Params(outputFileUri, threadDescriptor, onProgress)
     return exportDownloadedThreadAsHtmlUseCase.execute(params)
       .peekError { error -> Logger.e(TAG, "exportDownloadedThreadAsHtmlUseCase() error", error) }
   }
@@ -3,6 +3,8 @@ package com.github.k1rakishou.chan.features.thread_downloading
 import android.net.ConnectivityManager
 import com.github.k1rakishou.ChanSettings
 import com.github.k1rakishou.chan.core.base.okhttp.RealDownloaderOkHttpClient
+import com.github.k1rakishou.chan.core.cache.CacheFileType
+import com.github.k1rakishou.chan.core.cache.CacheHandler
 import com.github.k1rakishou.chan.core.helper.ThreadDownloaderFileManagerWrapper
 import com.github.k1rakishou.chan.core.manager.SiteManager
 import com.github.k1rakishou.chan.core.manager.ThreadDownloadManager
@@ -16,7 +18,6 @@ import com.github.k1rakishou.common.errorMessageOrClassName
 import com.github.k1rakishou.common.extractFileName
 import com.github.k1rakishou.common.isNotNullNorEmpty
 import com.github.k1rakishou.common.isOutOfDiskSpaceError
-import com.github.k1rakishou.common.processDataCollectionConcurrently
 import com.github.k1rakishou.common.suspendCall
 import com.github.k1rakishou.core_logger.Logger
 import com.github.k1rakishou.fsaf.FileManager
@@ -30,8 +31,11 @@ import com.github.k1rakishou.model.repository.ChanPostImageRepository
 import com.github.k1rakishou.model.repository.ChanPostRepository
 import dagger.Lazy
 import kotlinx.coroutines.CancellationException
-import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.CompletableDeferred
 import kotlinx.coroutines.Job
+import kotlinx.coroutines.coroutineScope
+import kotlinx.coroutines.joinAll
+import kotlinx.coroutines.launch
 import kotlinx.coroutines.runInterruptible
 import kotlinx.coroutines.sync.Mutex
 import kotlinx.coroutines.sync.withLock
@@ -39,7 +43,9 @@ import okhttp3.HttpUrl
 import okhttp3.OkHttpClient
 import okhttp3.Request
 import okhttp3.internal.closeQuietly
+import java.io.File
 import java.util.concurrent.atomic.AtomicBoolean
+import java.util.concurrent.atomic.AtomicInteger
 import kotlin.coroutines.coroutineContext
 import kotlin.time.ExperimentalTime
 import kotlin.time.measureTimedValue
@@ -54,13 +60,16 @@ class ThreadDownloadingDelegate(
   private val chanPostImageRepository: ChanPostImageRepository,
   private val threadDownloaderFileManagerWrapper: ThreadDownloaderFileManagerWrapper,
   private val threadDownloadProgressNotifier: ThreadDownloadProgressNotifier,
-  private val threadDownloaderPersistPostsInDatabaseUseCase: ThreadDownloaderPersistPostsInDatabaseUseCase
+  private val threadDownloaderPersistPostsInDatabaseUseCase: ThreadDownloaderPersistPostsInDatabaseUseCase,
+  private val threadMediaStore: ThreadMediaStore,
+  private val cacheHandler: Lazy<CacheHandler>
 ) {
   private val fileManager: FileManager
     get() = threadDownloaderFileManagerWrapper.fileManager
   private val okHttpClient: OkHttpClient
     get() = downloaderOkHttpClient.get().okHttpClient()
-  private val batchCount = appConstants.processorsCount
+  private val globalMediaConcurrency = (appConstants.processorsCount * 2)
+    .coerceIn(PER_HOST_MEDIA_CONCURRENCY, MAX_GLOBAL_MEDIA_CONCURRENCY)
 
   private val _running = AtomicBoolean(false)
   val running: Boolean
@@ -78,6 +87,9 @@ class ThreadDownloadingDelegate(
         try {
           doWorkInternal()
         } finally {
+          // Remove media that is not referenced by any downloaded thread anymore (their
+          // directories were deleted since the last run)
+          threadMediaStore.collectGarbage()
           _running.set(false)
         }
       }
@@ -99,7 +111,7 @@ class ThreadDownloadingDelegate(
 
     val threadDownloads = threadDownloadManager.getAllActiveThreadDownloads()
 
-    Logger.d(TAG, "doWorkInternal() start, batchCount=$batchCount")
+    Logger.d(TAG, "doWorkInternal() start, globalMediaConcurrency=$globalMediaConcurrency")
     threadDownloads.forEach { threadDownload ->
       Logger.d(TAG, "doWorkInternal() threadDownload=$threadDownload")
     }
@@ -107,37 +119,41 @@ class ThreadDownloadingDelegate(
     val outOfDiskSpaceError = AtomicBoolean(false)
     val outputDirError = AtomicBoolean(false)
 
-    threadDownloads.forEachIndexed { index, threadDownload ->
-      try {
-        if (outOfDiskSpaceError.get()) {
-          return@forEachIndexed
-        }
-
-        threadDownloadProgressNotifier.notifyProgressEvent(
-          threadDownload.threadDescriptor,
-          ThreadDownloadProgressNotifier.Event.Progress(0.1f)
-        )
-
-        processThread(
-          threadDownload = threadDownload,
-          index = index + 1,
-          total = threadDownloads.size,
-          outOfDiskSpaceError = outOfDiskSpaceError,
-          outputDirError = outputDirError
-        )
+    val mediaDownloadEngine = ThreadMediaDownloadEngine(
+      globalConcurrency = globalMediaConcurrency,
+      perHostConcurrency = PER_HOST_MEDIA_CONCURRENCY
+    )
 
-        threadDownloadProgressNotifier.notifyProgressEvent(
-          threadDownload.threadDescriptor,
-          ThreadDownloadProgressNotifier.Event.Progress(1f)
-        )
+    // Posts of the threads are loaded one by one (in order, the mutex is fair), while the media of
+    // all the threads goes into one shared queue so that we can download from multiple hosts at
+    // the same time without sending too many requests to any one of them.
+    val postsLoadMutex = Mutex()
+
+    coroutineScope {
+      launch { mediaDownloadEngine.run() }
+
+      threadDownloads
+        .mapIndexed { index, threadDownload ->
+          launch {
+            try {
+              processThread(
+                threadDownload = threadDownload,
+                index = index + 1,
+                total = threadDownloads.size,
+                postsLoadMutex = postsLoadMutex,
+                mediaDownloadEngine = mediaDownloadEngine,
+                outOfDiskSpaceError = outOfDiskSpaceError,
+                outputDirError = outputDirError
+              )
+            } catch (error: CancellationException) {
+              Logger.e(TAG, "doWorkInternal() ${threadDownload.threadDescriptor} canceled")
+              throw error
+            }
+          }
+        }
+        .joinAll()
 
-        threadDownloadProgressNotifier.notifyProgressEvent(
-          threadDownload.threadDescriptor,
-          ThreadDownloadProgressNotifier.Event.Empty
-        )
-      } catch (error: CancellationException) {
-        Logger.e(TAG, "doWorkInternal() ${threadDownload.threadDescriptor} canceled")
-      }
+      mediaDownloadEngine.close()
     }
 
     coroutineContext[Job.Key]?.invokeOnCompletion { cause ->
@@ -159,65 +175,67 @@ class ThreadDownloadingDelegate(
     threadDownload: ThreadDownload,
     index: Int,
     total: Int,
+    postsLoadMutex: Mutex,
+    mediaDownloadEngine: ThreadMediaDownloadEngine,
     outOfDiskSpaceError: AtomicBoolean,
     outputDirError: AtomicBoolean,
   ) {
     val threadDescriptor = threadDownload.threadDescriptor
-    Logger.d(TAG, "processThread($index/$total) loadThreadOrCatalog($threadDescriptor) start")
-
-    val params = DownloadParams(threadDownload.ownerThreadDatabaseId, threadDescriptor)
-    val executionResult = threadDownloaderPersistPostsInDatabaseUseCase.execute(params)
-
-    threadDownloadProgressNotifier.notifyProgressEvent(
-      threadDownload.threadDescriptor,
-      ThreadDownloadProgressNotifier.Event.Progress(POSTS_PROCESSED_PROGRESS)
-    )
 
-    val downloadResult = if (executionResult is ModularResult.Error) {
-      Logger.e(TAG, "processThread($index/$total) loadThreadOrCatalog($threadDescriptor)", executionResult.error)
+    val threadMedia = postsLoadMutex.withLock {
+      if (outOfDiskSpaceError.get()) {
+        return
+      }
 
-      threadDownloadManager.onDownloadProcessed(
-        threadDescriptor = threadDescriptor,
-        resultMessage = executionResult.error.message
-          ?: executionResult.error.errorMessageOrClassName()
+      threadDownloadProgressNotifier.notifyProgressEvent(
+        threadDescriptor,
+        ThreadDownloadProgressNotifier.Event.Progress(0.1f)
       )
 
-      return
-    } else {
-      executionResult as ModularResult.Value
-      executionResult.value
-    }
+      Logger.d(TAG, "processThread($index/$total) loadThreadOrCatalog($threadDescriptor) start")
 
-    val ownerThreadDatabaseId = threadDownload.ownerThreadDatabaseId
+      val params = DownloadParams(threadDownload.ownerThreadDatabaseId, threadDescriptor)
+      val executionResult = threadDownloaderPersistPostsInDatabaseUseCase.execute(params)
 
-    val isNetworkGoodForMediaDownload = if (ChanSettings.threadDownloaderDownloadMediaOnMeteredNetwork.get()) {
-      true
-    } else {
-      AppModuleAndroidUtils.isConnected(ConnectivityManager.TYPE_WIFI)
-    }
+      threadDownloadProgressNotifier.notifyProgressEvent(
+        threadDescriptor,
+        ThreadDownloadProgressNotifier.Event.Progress(POSTS_PROCESSED_PROGRESS)
+      )
 
-    val canProcessThreadMedia = threadDownload.downloadMedia
-      && !outOfDiskSpaceError.get()
-      && isNetworkGoodForMediaDownload
+      val downloadResult = if (executionResult is ModularResult.Error) {
+        Logger.e(TAG, "processThread($index/$total) loadThreadOrCatalog($threadDescriptor)", executionResult.error)
+
+        threadDownloadManager.onDownloadProcessed(
+          threadDescriptor = threadDescriptor,
+          resultMessage = executionResult.error.message
+            ?: executionResult.error.errorMessageOrClassName()
+        )
 
-    if (canProcessThreadMedia) {
-      val chanPostImages = chanPostImageRepository.selectPostImagesByOwnerThreadDatabaseId(ownerThreadDatabaseId)
-        .peekError { error -> Logger.e(TAG, "Failed to select images by threadId: ${ownerThreadDatabaseId}", error) }
-        .mapErrorToValue { emptyList<ChanPostImage>() }
+        notifyThreadProcessed(threadDescriptor)
+        return
+      } else {
+        executionResult as ModularResult.Value
+        executionResult.value
+      }
 
-      processThreadMedia(
+      val threadMedia = enqueueThreadMedia(
+        threadDownload = threadDownload,
         index = index,
         total = total,
-        chanPostImages = chanPostImages,
-        threadDescriptor = threadDescriptor,
+        mediaDownloadEngine = mediaDownloadEngine,
         outOfDiskSpaceError = outOfDiskSpaceError,
         outputDirError = outputDirError
       )
-    } else {
-      Logger.d(TAG, "processThread($index/$total) " +
-        "isNetworkGoodForMediaDownload=$isNetworkGoodForMediaDownload, " +
-        "downloadMedia=${threadDownload.downloadMedia}, " +
-        "outOfDiskSpaceError=${outOfDiskSpaceError.get()}")
+
+      return@withLock downloadResult to threadMedia
+    }
+
+    val (downloadResult, threadMediaDownload) = threadMedia
+
+    try {
+      threadMediaDownload?.awaitCompletion()
+    } finally {
+      threadMediaDownload?.journal?.close()
     }
 
     val resultMessage = when {
@@ -235,6 +253,8 @@ class ThreadDownloadingDelegate(
       threadDownloadManager.completeDownloading(threadDescriptor)
     }
 
+    notifyThreadProcessed(threadDescriptor)
+
     val status = "archived: ${downloadResult.archived}, " +
       "closed: ${downloadResult.closed}, " +
       "deleted: ${downloadResult.deleted}, " +
@@ -244,24 +264,52 @@ class ThreadDownloadingDelegate(
     Logger.d(TAG, "processThread($index/$total) loadThreadOrCatalog($threadDescriptor) end, status: $status")
   }
 
-  private suspend fun processThreadMedia(
+  private fun notifyThreadProcessed(threadDescriptor: ChanDescriptor.ThreadDescriptor) {
+    threadDownloadProgressNotifier.notifyProgressEvent(
+      threadDescriptor,
+      ThreadDownloadProgressNotifier.Event.Progress(1f)
+    )
+
+    threadDownloadProgressNotifier.notifyProgressEvent(
+      threadDescriptor,
+      ThreadDownloadProgressNotifier.Event.Empty
+    )
+  }
+
+  private suspend fun enqueueThreadMedia(
+    threadDownload: ThreadDownload,
     index: Int,
     total: Int,
-    chanPostImages: List<ChanPostImage>,
-    threadDescriptor: ChanDescriptor.ThreadDescriptor,
+    mediaDownloadEngine: ThreadMediaDownloadEngine,
     outOfDiskSpaceError: AtomicBoolean,
     outputDirError: AtomicBoolean,
-  ) {
+  ): ThreadMediaDownload? {
+    val threadDescriptor = threadDownload.threadDescriptor
+    val ownerThreadDatabaseId = threadDownload.ownerThreadDatabaseId
+
+    val canProcessThreadMedia = threadDownload.downloadMedia
+      && !outOfDiskSpaceError.get()
+      && isNetworkGoodForMediaDownload()
+
+    if (!canProcessThreadMedia) {
+      Logger.d(TAG, "enqueueThreadMedia($index/$total) " +
+        "isNetworkGoodForMediaDownload=${isNetworkGoodForMediaDownload()}, " +
+        "downloadMedia=${threadDownload.downloadMedia}, " +
+        "outOfDiskSpaceError=${outOfDiskSpaceError.get()}")
+      return null
+    }
+
+    val chanPostImages = chanPostImageRepository.selectPostImagesByOwnerThreadDatabaseId(ownerThreadDatabaseId)
+      .peekError { error -> Logger.e(TAG, "Failed to select images by threadId: ${ownerThreadDatabaseId}", error) }
+      .mapErrorToValue { emptyList<ChanPostImage>() }
+
     if (chanPostImages.isEmpty()) {
-      Logger.d(TAG, "processThreadMedia($index/$total) threadDescriptor=${threadDescriptor}, " +
+      Logger.d(TAG, "enqueueThreadMedia($index/$total) threadDescriptor=${threadDescriptor}, " +
         "chanPostImages=${chanPostImages.size}, nothing to process")
-      return
+      return null
     }
 
     val rootDir = fileManager.fromRawFile(appConstants.threadDownloaderCacheDir)
-    Logger.d(TAG, "processThreadMedia($index/$total) threadDescriptor=${threadDescriptor}, " +
-      "chanPostImages=${chanPostImages.size}")
-
     val directoryName = formatDirectoryName(threadDescriptor)
 
     var outputDirectory = fileManager.findFile(rootDir, directoryName)
@@ -270,10 +318,10 @@ class ThreadDownloadingDelegate(
     }
 
     if (outputDirectory == null) {
-      Logger.d(TAG, "processThreadMedia($index/$total) " +
+      Logger.d(TAG, "enqueueThreadMedia($index/$total) " +
         "chanThread=${threadDescriptor} failure! outputDirectory is null")
       outputDirError.set(true)
-      return
+      return null
     }
 
     val noMediaFile = outputDirectory.clone(FileSegment(NO_MEDIA_FILE_NAME))
@@ -282,82 +330,130 @@ class ThreadDownloadingDelegate(
       fileManager.create(noMediaFile)
     }
 
-    // "* 2" because thumbnails and full images
-    val progressIncrement = (1f - POSTS_PROCESSED_PROGRESS) / (chanPostImages.size.toFloat() * 2)
-    val mutex = Mutex()
-    var totalProgress = POSTS_PROCESSED_PROGRESS
+    val threadDirectory = File(appConstants.threadDownloaderCacheDir, directoryName)
+    val journal = ThreadMediaDownloadJournal(File(threadDirectory, ThreadMediaDownloadJournal.FILE_NAME))
 
-    processDataCollectionConcurrently(
-      dataList = chanPostImages,
-      batchCount = batchCount,
-      dispatcher = Dispatchers.IO
-    ) { postImage ->
-      val isNetworkGoodForMediaDownload = if (ChanSettings.threadDownloaderDownloadMediaOnMeteredNetwork.get()) {
-        true
-      } else {
-        AppModuleAndroidUtils.isConnected(ConnectivityManager.TYPE_WIFI)
-      }
-
-      if (!isNetworkGoodForMediaDownload) {
-        return@processDataCollectionConcurrently
-      }
+    // Without the journal we can't tell which files were fully downloaded so every existing file
+    // has to be checked (this is only the case for downloads started before the journal existed)
+    val checkExistingFiles = !journal.exists()
+    val completedFileNames = journal.load()
 
-      if (outOfDiskSpaceError.get()) {
-        return@processDataCollectionConcurrently
-      }
-
-      if (outputDirError.get()) {
-        return@processDataCollectionConcurrently
-      }
+    val mediaFiles = mutableListOf<MediaFile>()
+    val seenFileNames = mutableSetOf<String>()
+    var totalFiles = 0
 
+    chanPostImages.forEach { postImage ->
       val thumbnailUrl = postImage.actualThumbnailUrl
       val thumbnailName = postImage.actualThumbnailUrl?.extractFileName()
 
-      if (thumbnailUrl != null && thumbnailName.isNotNullNorEmpty()) {
-        downloadImage(
-          outputDirectory = outputDirectory,
-          isThumbnail = true,
-          name = thumbnailName,
-          imageUrl = thumbnailUrl,
-          outOfDiskSpaceError = outOfDiskSpaceError,
-          outputDirError = outputDirError
-        )
-      }
+      if (thumbnailUrl != null && thumbnailName.isNotNullNorEmpty() && seenFileNames.add(thumbnailName)) {
+        ++totalFiles
 
-      val newProgress1 = mutex.withLock {
-        totalProgress += progressIncrement
-        totalProgress
+        if (thumbnailName !in completedFileNames) {
+          mediaFiles += MediaFile(isThumbnail = true, name = thumbnailName, url = thumbnailUrl, storeKey = null)
+        }
       }
-      threadDownloadProgressNotifier.notifyProgressEvent(
-        threadDescriptor,
-        ThreadDownloadProgressNotifier.Event.Progress(newProgress1)
-      )
 
       val fullImageUrl = postImage.imageUrl
       val fullImageName = postImage.imageUrl?.extractFileName()
 
-      if (fullImageUrl != null && fullImageName.isNotNullNorEmpty()) {
-        downloadImage(
-          outputDirectory = outputDirectory,
-          isThumbnail = false,
-          name = fullImageName,
-          imageUrl = fullImageUrl,
-          outOfDiskSpaceError = outOfDiskSpaceError,
-          outputDirError = outputDirError
-        )
+      if (fullImageUrl != null && fullImageName.isNotNullNorEmpty() && seenFileNames.add(fullImageName)) {
+        ++totalFiles
+
+        if (fullImageName !in completedFileNames) {
+          mediaFiles += MediaFile(
+            isThumbnail = false,
+            name = fullImageName,
+            url = fullImageUrl,
+            storeKey = threadMediaStore.storeKey(postImage.fileHash, fullImageName)
+          )
+        }
       }
+    }
 
-      val newProgress2 = mutex.withLock {
-        totalProgress += progressIncrement
-        totalProgress
+    Logger.d(TAG, "enqueueThreadMedia($index/$total) threadDescriptor=${threadDescriptor}, " +
+      "chanPostImages=${chanPostImages.size}, totalFiles=${totalFiles}, " +
+      "alreadyDownloaded=${totalFiles - mediaFiles.size}, checkExistingFiles=${checkExistingFiles}")
+
+    val threadMediaDownload = ThreadMediaDownload(
+      journal = journal,
+      totalFiles = totalFiles,
+      alreadyProcessedFiles = totalFiles - mediaFiles.size
+    )
+
+    if (mediaFiles.isEmpty()) {
+      threadMediaDownload.onFinished()
+      return threadMediaDownload
+    }
+
+    val tasks = mediaFiles.map { mediaFile ->
+      ThreadMediaDownloadEngine.Task(host = mediaFile.url.host) {
+        try {
+          if (isNetworkGoodForMediaDownload() && !outOfDiskSpaceError.get() && !outputDirError.get()) {
+            val outputFile = File(threadDirectory, mediaFile.name)
+
+            if (mediaFile.storeKey != null && reuseStoredMedia(mediaFile.storeKey, mediaFile.url, outputFile)) {
+              journal.markCompleted(mediaFile.name)
+              return@Task
+            }
+
+            val downloaded = downloadImage(
+              outputDirectory = outputDirectory,
+              isThumbnail = mediaFile.isThumbnail,
+              name = mediaFile.name,
+              imageUrl = mediaFile.url,
+              journal = journal,
+              checkExistingFile = checkExistingFiles,
+              outOfDiskSpaceError = outOfDiskSpaceError,
+              outputDirError = outputDirError
+            )
+
+            if (downloaded && mediaFile.storeKey != null) {
+              threadMediaStore.addToStore(mediaFile.storeKey, outputFile)
+            }
+          }
+        } finally {
+          val progress = threadMediaDownload.onFileProcessed()
+
+          threadDownloadProgressNotifier.notifyProgressEvent(
+            threadDescriptor,
+            ThreadDownloadProgressNotifier.Event.Progress(progress)
+          )
+        }
       }
-      threadDownloadProgressNotifier.notifyProgressEvent(
-        threadDescriptor,
-        ThreadDownloadProgressNotifier.Event.Progress(newProgress2)
-      )
     }
 
-    Logger.d(TAG, "processThreadMedia($index/$total) chanThread=${threadDescriptor} success")
+    mediaDownloadEngine.enqueue(tasks)
+    return threadMediaDownload
+  }
+
+  private fun isNetworkGoodForMediaDownload(): Boolean {
+    if (ChanSettings.threadDownloaderDownloadMediaOnMeteredNetwork.get()) {
+      return true
+    }
+
+    return AppModuleAndroidUtils.isConnected(ConnectivityManager.TYPE_WIFI)
+  }
+
+  /**
+   * Tries to get the file from the media store (when it was downloaded as a part of another
+   * thread) or from the file cache (when it was opened in the media viewer) instead of
+   * downloading it again.
+   * */
+  private fun reuseStoredMedia(storeKey: String, imageUrl: HttpUrl, outputFile: File): Boolean {
+    if (threadMediaStore.linkFromStore(storeKey, outputFile)) {
+      return true
+    }
+
+    val cacheHandler = cacheHandler.get()
+
+    val cacheFile = cacheHandler.getCacheFileOrNull(CacheFileType.PostMediaFull, imageUrl.toString())
+    if (cacheFile == null || !cacheHandler.isAlreadyDownloaded(CacheFileType.PostMediaFull, cacheFile)) {
+      return false
+    }
+
+    return threadMediaStore.addToStore(storeKey, cacheFile)
+      && threadMediaStore.linkFromStore(storeKey, outputFile)
   }
 
   private suspend fun downloadImage(
@@ -365,22 +461,32 @@ class ThreadDownloadingDelegate(
     isThumbnail: Boolean,
     name: String,
     imageUrl: HttpUrl,
+    journal: ThreadMediaDownloadJournal,
+    checkExistingFile: Boolean,
     outOfDiskSpaceError: AtomicBoolean,
     outputDirError: AtomicBoolean,
-  ) {
+  ): Boolean {
     var outputFile = fileManager.findFile(outputDirectory, name)
+    if (outputFile != null && !checkExistingFile) {
+      // The file is not in the journal so it's either partially downloaded or it may be a link
+      // into the media store, never write into it in place.
+      fileManager.delete(outputFile)
+      outputFile = null
+    }
+
     if (outputFile == null) {
       outputFile = fileManager.create(outputDirectory, listOf(FileSegment(name)))
     }
 
     if (outputFile == null) {
       outputDirError.set(true)
-      return
+      return false
     }
 
-    if (fileManager.exists(outputFile) && fileManager.getLength(outputFile) > 0L) {
+    if (checkExistingFile && fileManager.exists(outputFile) && fileManager.getLength(outputFile) > 0L) {
       // Already downloaded, nothing to do
-      return
+      journal.markCompleted(name)
+      return true
     }
 
     val site = siteResolver.findSiteForUrl(imageUrl.toString())
@@ -402,13 +508,13 @@ class ThreadDownloadingDelegate(
     if (!response.isSuccessful) {
       Logger.e(TAG, "downloadImage(isThumbnail=$isThumbnail, name=$name, imageUrl=$imageUrl) " +
         "bad response code: ${response.code}")
-      return
+      return false
     }
 
     val responseBody = if (response.body == null) {
       Logger.e(TAG, "downloadImage(isThumbnail=$isThumbnail, name=$name, imageUrl=$imageUrl) " +
         "response body is null")
-      return
+      return false
     } else {
       response.body!!
     }
@@ -418,7 +524,7 @@ class ThreadDownloadingDelegate(
       if (outputStream == null) {
         Logger.e(TAG, "downloadImage(isThumbnail=$isThumbnail, name=$name, imageUrl=$imageUrl) " +
           "failed to get output stream for file '${outputFile.getFullPath()}'")
-        return
+        return false
       }
 
       runInterruptible {
@@ -428,6 +534,9 @@ class ThreadDownloadingDelegate(
           }
         }
       }
+
+      journal.markCompleted(name)
+      return true
     } catch (error: Throwable) {
       if (error.isOutOfDiskSpaceError()) {
         outOfDiskSpaceError.set(true)
@@ -436,15 +545,52 @@ class ThreadDownloadingDelegate(
       Logger.e(TAG, "Failed to store image into file '$outputFile', deleting it. " +
         "Error: ${error.errorMessageOrClassName()}")
       fileManager.delete(outputFile)
+      return false
     } finally {
       responseBody.closeQuietly()
     }
   }
 
+  private class MediaFile(
+    val isThumbnail: Boolean,
+    val name: String,
+    val url: HttpUrl,
+    // Only full images with a known md5 go into the media store
+    val storeKey: String?
+  )
+
+  private class ThreadMediaDownload(
+    val journal: ThreadMediaDownloadJournal,
+    private val totalFiles: Int,
+    alreadyProcessedFiles: Int
+  ) {
+    private val processedFiles = AtomicInteger(alreadyProcessedFiles)
+    private val completion = CompletableDeferred<Unit>()
+
+    fun onFileProcessed(): Float {
+      val processed = processedFiles.incrementAndGet()
+      if (processed >= totalFiles) {
+        onFinished()
+      }
+
+      return POSTS_PROCESSED_PROGRESS + (1f - POSTS_PROCESSED_PROGRESS) * (processed.toFloat() / totalFiles)
+    }
+
+    fun onFinished() {
+      completion.complete(Unit)
+    }
+
+    suspend fun awaitCompletion() {
+      completion.await()
+    }
+  }
+
   companion object {
     private const val TAG = "ThreadDownloadingDelegate"
     private const val NO_MEDIA_FILE_NAME = ".nomedia"
     private const val POSTS_PROCESSED_PROGRESS = 0.2f
+    private const val PER_HOST_MEDIA_CONCURRENCY = 4
+    private const val MAX_GLOBAL_MEDIA_CONCURRENCY = 16
 
     fun formatDirectoryName(threadDescriptor: ChanDescriptor.ThreadDescriptor): String {
       return buildString {
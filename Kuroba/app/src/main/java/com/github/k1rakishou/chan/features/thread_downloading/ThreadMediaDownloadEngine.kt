@@ -0,0 +1,156 @@
+package com.github.k1rakishou.chan.features.thread_downloading
+
+import com.github.k1rakishou.common.errorMessageOrClassName
+import com.github.k1rakishou.core_logger.Logger
+import kotlinx.coroutines.CancellationException
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.channels.Channel
+import kotlinx.coroutines.coroutineScope
+import kotlinx.coroutines.launch
+
+/**
+ * A work queue for media downloads of all the threads that are being downloaded at the same time.
+ * At most [globalConcurrency] tasks are executed at once, and at most [perHostConcurrency] of them
+ * may go to the same host. Hosts are served in a round-robin fashion so that one thread with lots
+ * of media on one CDN doesn't block the rest of the queue.
+ *
+ * The engine is single use: start [run], [enqueue] tasks (from any thread) while it's running
+ * and then call [close]. [run] returns once the engine is closed and every enqueued task is done.
+ * */
+class ThreadMediaDownloadEngine(
+  private val globalConcurrency: Int,
+  private val perHostConcurrency: Int
+) {
+  // All of the scheduling state is only touched by the coroutine that executes run(), everything
+  // else communicates with it via this channel.
+  private val events = Channel<Event>(Channel.UNLIMITED)
+
+  init {
+    require(globalConcurrency > 0) { "Bad globalConcurrency: $globalConcurrency" }
+    require(perHostConcurrency > 0) { "Bad perHostConcurrency: $perHostConcurrency" }
+  }
+
+  fun enqueue(tasks: List<Task>) {
+    if (tasks.isEmpty()) {
+      return
+    }
+
+    events.trySend(Event.Enqueued(tasks))
+  }
+
+  fun close() {
+    events.trySend(Event.Closed)
+  }
+
+  suspend fun run() {
+    coroutineScope {
+      val pendingTasksPerHost = mutableMapOf<String, ArrayDeque<Task>>()
+      // Hosts that have pending tasks in the order they are going to be served
+      val hostsQueue = ArrayDeque<String>()
+      val inFlightPerHost = mutableMapOf<String, Int>()
+      var inFlight = 0
+      var closed = false
+
+      fun pollNextTask(): Task? {
+        repeat(hostsQueue.size) {
+          val host = hostsQueue.removeFirst()
+          val pendingTasks = pendingTasksPerHost[host]
+
+          if (pendingTasks == null || pendingTasks.isEmpty()) {
+            pendingTasksPerHost.remove(host)
+            return@repeat
+          }
+
+          if ((inFlightPerHost[host] ?: 0) >= perHostConcurrency) {
+            hostsQueue.addLast(host)
+            return@repeat
+          }
+
+          val task = pendingTasks.removeFirst()
+
+          if (pendingTasks.isEmpty()) {
+            pendingTasksPerHost.remove(host)
+          } else {
+            hostsQueue.addLast(host)
+          }
+
+          return task
+        }
+
+        return null
+      }
+
+      fun launchPendingTasks() {
+        while (inFlight < globalConcurrency) {
+          val task = pollNextTask()
+            ?: break
+
+          ++inFlight
+          inFlightPerHost[task.host] = (inFlightPerHost[task.host] ?: 0) + 1
+
+          launch(Dispatchers.IO) {
+            try {
+              task.action()
+            } catch (error: Throwable) {
+              if (error is CancellationException) {
+                throw error
+              }
+
+              Logger.e(TAG, "Task for host '${task.host}' failed, error: ${error.errorMessageOrClassName()}")
+            } finally {
+              events.trySend(Event.Completed(task.host))
+            }
+          }
+        }
+      }
+
+      for (event in events) {
+        when (event) {
+          is Event.Enqueued -> {
+            event.tasks.forEach { task ->
+              val pendingTasks = pendingTasksPerHost.getOrPut(task.host) {
+                hostsQueue.addLast(task.host)
+                ArrayDeque()
+              }
+
+              pendingTasks.addLast(task)
+            }
+          }
+          is Event.Completed -> {
+            --inFlight
+
+            val hostInFlight = (inFlightPerHost[event.host] ?: 1) - 1
+            if (hostInFlight <= 0) {
+              inFlightPerHost.remove(event.host)
+            } else {
+              inFlightPerHost[event.host] = hostInFlight
+            }
+          }
+          Event.Closed -> closed = true
+        }
+
+        launchPendingTasks()
+
+        if (closed && inFlight == 0 && pendingTasksPerHost.isEmpty()) {
+          break
+        }
+      }
+    }
+  }
+
+  class Task(
+    val host: String,
+    val action: suspend () -> Unit
+  )
+
+  private sealed class Event {
+    class Enqueued(val tasks: List<Task>) : Event()
+    class Completed(val host: String) : Event()
+    object Closed : Event()
+  }
+
+  companion object {
+    private const val TAG = "ThreadMediaDownloadEngine"
+  }
+
+}
@@ -0,0 +1,89 @@
+package com.github.k1rakishou.chan.features.thread_downloading
+
+import androidx.annotation.GuardedBy
+import com.github.k1rakishou.common.errorMessageOrClassName
+import com.github.k1rakishou.core_logger.Logger
+import java.io.File
+import java.io.FileOutputStream
+import java.io.Writer
+
+/**
+ * Append-only list of the media files of a downloaded thread that were fully downloaded. It's
+ * stored next to the media files so that an interrupted download can continue from where it
+ * stopped without checking every file on the disk. A file that is not in the journal is considered
+ * not (or partially) downloaded and will be downloaded again.
+ * */
+class ThreadMediaDownloadJournal(
+  private val journalFile: File
+) {
+  private val lock = Any()
+
+  @GuardedBy("lock")
+  private var writer: Writer? = null
+
+  /**
+   * Directories of threads that were (partially) downloaded before the journal existed do not have
+   * it, in that case the files have to be checked on the disk the old way.
+   * */
+  fun exists(): Boolean = journalFile.exists()
+
+  fun load(): Set<String> {
+    if (!journalFile.exists()) {
+      return emptySet()
+    }
+
+    try {
+      val text = journalFile.readText()
+      val lines = text.split('\n')
+
+      // The last line is incomplete if we were killed while writing it
+      val completeLines = if (text.endsWith('\n')) lines else lines.dropLast(1)
+
+      return completeLines
+        .filter { line -> line.isNotBlank() }
+        .toSet()
+    } catch (error: Throwable) {
+      Logger.e(TAG, "Failed to read journal '${journalFile.absolutePath}', error: ${error.errorMessageOrClassName()}")
+      return emptySet()
+    }
+  }
+
+  fun markCompleted(fileName: String) {
+    synchronized(lock) {
+      try {
+        var currentWriter = writer
+        if (currentWriter == null) {
+          currentWriter = FileOutputStream(journalFile, true).bufferedWriter()
+          writer = currentWriter
+        }
+
+        currentWriter.write(fileName)
+        currentWriter.write("\n")
+        currentWriter.flush()
+      } catch (error: Throwable) {
+        Logger.e(TAG, "Failed to write into journal '${journalFile.absolutePath}', " +
+          "error: ${error.errorMessageOrClassName()}")
+      }
+    }
+  }
+
+  fun close() {
+    synchronized(lock) {
+      try {
+        writer?.close()
+      } catch (error: Throwable) {
+        Logger.e(TAG, "Failed to close journal '${journalFile.absolutePath}', " +
+          "error: ${error.errorMessageOrClassName()}")
+      } finally {
+        writer = null
+      }
+    }
+  }
+
+  companion object {
+    private const val TAG = "ThreadMediaDownloadJournal"
+
+    const val FILE_NAME = ".completed_media"
+  }
+
+}
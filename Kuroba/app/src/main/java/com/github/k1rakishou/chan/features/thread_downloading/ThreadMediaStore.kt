@@ -0,0 +1,169 @@
+package com.github.k1rakishou.chan.features.thread_downloading
+
+import android.system.ErrnoException
+import android.system.Os
+import android.system.OsConstants
+import com.github.k1rakishou.chan.utils.HashingUtil
+import com.github.k1rakishou.common.AppConstants
+import com.github.k1rakishou.common.errorMessageOrClassName
+import com.github.k1rakishou.core_logger.Logger
+import java.io.File
+import java.util.*
+
+/**
+ * Content addressed storage for the full media of downloaded threads, keyed by the md5 hash the
+ * server gives us ([com.github.k1rakishou.model.data.post.ChanPostImage.fileHash]). Files in
+ * the per-thread directories are hard links to the files of this store, so an image that was
+ * reposted into multiple downloaded threads only takes the disk space once, and everything that
+ * reads the per-thread directories (media viewer, export, backups) keeps working without knowing
+ * about the store.
+ *
+ * The hard link count of a store file works as its reference count: when the last thread
+ * directory that references it is deleted only the link of the store is left and
+ * [collectGarbage] deletes the file.
+ * */
+class ThreadMediaStore(
+  private val appConstants: AppConstants
+) {
+  private val storeDir: File
+    get() = appConstants.threadDownloaderMediaStoreDir
+
+  /**
+   * Returns the name of the store file for a media file or null if the media can't be stored
+   * (no hash or it's not md5, since we only trust hashes that we can verify).
+   * */
+  fun storeKey(fileHash: String?, fileName: String): String? {
+    if (fileHash == null || !MD5_HEX_REGEX.matches(fileHash)) {
+      return null
+    }
+
+    val extension = fileName.substringAfterLast('.', missingDelimiterValue = "")
+      .lowercase(Locale.ENGLISH)
+
+    if (extension.isEmpty() || !EXTENSION_REGEX.matches(extension)) {
+      return fileHash.lowercase(Locale.ENGLISH)
+    }
+
+    return "${fileHash.lowercase(Locale.ENGLISH)}.${extension}"
+  }
+
+  /**
+   * Makes [outputFile] reference the store file of [storeKey]. Returns false if there is no such
+   * file in the store.
+   * */
+  fun linkFromStore(storeKey: String, outputFile: File): Boolean {
+    val storeFile = File(storeDir, storeKey)
+    if (!storeFile.exists()) {
+      return false
+    }
+
+    if (outputFile.exists() && !outputFile.delete()) {
+      Logger.e(TAG, "linkFromStore() failed to delete '${outputFile.absolutePath}'")
+      return false
+    }
+
+    return linkOrCopy(storeFile, outputFile)
+  }
+
+  /**
+   * Puts [sourceFile] (a fully downloaded file of a thread directory or of the file cache) into
+   * the store unless it's already there. The file is only accepted if its md5 matches the key so
+   * that a broken file never gets shared between threads.
+   * */
+  fun addToStore(storeKey: String, sourceFile: File): Boolean {
+    val storeFile = File(storeDir, storeKey)
+    if (storeFile.exists()) {
+      return true
+    }
+
+    val expectedHash = storeKey.substringBefore('.')
+
+    val actualHash = try {
+      HashingUtil.fileHash(sourceFile)
+    } catch (error: Throwable) {
+      Logger.e(TAG, "addToStore() failed to hash '${sourceFile.absolutePath}', " +
+        "error: ${error.errorMessageOrClassName()}")
+      return false
+    }
+
+    if (!expectedHash.equals(actualHash, ignoreCase = true)) {
+      Logger.e(TAG, "addToStore() hash mismatch for '${sourceFile.absolutePath}', " +
+        "expected: ${expectedHash}, actual: ${actualHash}")
+      return false
+    }
+
+    return linkOrCopy(sourceFile, storeFile)
+  }
+
+  /**
+   * Deletes the store files that are not referenced by any thread directory anymore. Must not be
+   * called while threads are being downloaded.
+   * */
+  fun collectGarbage(): Int {
+    val storeFiles = storeDir.listFiles()
+      ?: return 0
+
+    var deleted = 0
+
+    storeFiles.forEach { storeFile ->
+      val linksCount = try {
+        Os.stat(storeFile.absolutePath).st_nlink
+      } catch (error: ErrnoException) {
+        Logger.e(TAG, "collectGarbage() failed to stat '${storeFile.absolutePath}', " +
+          "error: ${error.errorMessageOrClassName()}")
+        return@forEach
+      }
+
+      if (linksCount <= 1L && storeFile.delete()) {
+        ++deleted
+      }
+    }
+
+    Logger.d(TAG, "collectGarbage() deleted ${deleted} out of ${storeFiles.size} files")
+    return deleted
+  }
+
+  private fun linkOrCopy(sourceFile: File, destinationFile: File): Boolean {
+    try {
+      Os.link(sourceFile.absolutePath, destinationFile.absolutePath)
+      return true
+    } catch (error: ErrnoException) {
+      if (error.errno == OsConstants.EEXIST) {
+        // Someone else has already linked it
+        return true
+      }
+
+      Logger.e(TAG, "Failed to link '${sourceFile.absolutePath}' to '${destinationFile.absolutePath}', " +
+        "falling back to copying, error: ${error.errorMessageOrClassName()}")
+    }
+
+    // Hard links are not supported (should never happen since everything is inside of the app's
+    // data directory), at least save the bandwidth
+    val tempFile = File(destinationFile.parentFile, "${destinationFile.name}.tmp")
+
+    try {
+      sourceFile.copyTo(tempFile, overwrite = true)
+
+      if (!tempFile.renameTo(destinationFile)) {
+        tempFile.delete()
+        return destinationFile.exists()
+      }
+
+      return true
+    } catch (error: Throwable) {
+      Logger.e(TAG, "Failed to copy '${sourceFile.absolutePath}' to '${destinationFile.absolutePath}', " +
+        "error: ${error.errorMessageOrClassName()}")
+
+      tempFile.delete()
+      return false
+    }
+  }
+
+  companion object {
+    private const val TAG = "ThreadMediaStore"
+
+    private val MD5_HEX_REGEX = Regex("[0-9a-fA-F]{32}")
+    private val EXTENSION_REGEX = Regex("[a-z0-9]{1,8}")
+  }
+
+}
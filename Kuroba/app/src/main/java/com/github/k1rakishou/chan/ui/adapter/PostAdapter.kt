@@ -34,6 +34,7 @@ import com.github.k1rakishou.chan.ui.cell.CatalogStatusCell
 import com.github.k1rakishou.chan.ui.cell.GenericPostCell
 import com.github.k1rakishou.chan.ui.cell.PostCell
 import com.github.k1rakishou.chan.ui.cell.PostCellData
+import com.github.k1rakishou.chan.ui.cell.PostCellStatistics
 import com.github.k1rakishou.chan.ui.cell.PostCellInterface.PostCellCallback
 import com.github.k1rakishou.chan.ui.cell.PreviousThreadScrollPositionData
 import com.github.k1rakishou.chan.ui.cell.ThreadCellData
@@ -50,6 +51,8 @@ import com.github.k1rakishou.model.data.post.PostIndexed
 import dagger.Lazy
 import java.util.*
 import javax.inject.Inject
+import kotlin.time.ExperimentalTime
+import kotlin.time.measureTime
 
 class PostAdapter(
   recyclerView: RecyclerView,
@@ -83,6 +86,7 @@ class PostAdapter(
    * A hack for OnDemandContentLoader see comments in [onViewRecycled]
    */
   private val updatingPosts: MutableSet<PostDescriptor> = HashSet(64)
+  private val scrollFrameTracker = PostCellStatistics.ScrollFrameTracker()
 
   val isErrorShown: Boolean
     get() = threadCellData.error != null
@@ -141,6 +145,18 @@ class PostAdapter(
     setHasStableIds(true)
   }
 
+  override fun onAttachedToRecyclerView(recyclerView: RecyclerView) {
+    super.onAttachedToRecyclerView(recyclerView)
+    recyclerView.addOnScrollListener(scrollFrameTracker)
+  }
+
+  override fun onDetachedFromRecyclerView(recyclerView: RecyclerView) {
+    super.onDetachedFromRecyclerView(recyclerView)
+
+    recyclerView.removeOnScrollListener(scrollFrameTracker)
+    scrollFrameTracker.stop()
+  }
+
   override fun onCreateViewHolder(parent: ViewGroup, viewType: Int): RecyclerView.ViewHolder {
     val inflateContext = parent.context
 
@@ -191,6 +207,7 @@ class PostAdapter(
     }
   }
 
+  @OptIn(ExperimentalTime::class)
   override fun onBindViewHolder(holder: RecyclerView.ViewHolder, position: Int) {
     when (getItemViewType(position)) {
       PostCellData.TYPE_POST_ZERO_OR_SINGLE_THUMBNAIL_LEFT_ALIGNMENT,
@@ -198,12 +215,17 @@ class PostAdapter(
       PostCellData.TYPE_POST_MULTIPLE_THUMBNAILS,
       PostCellData.TYPE_POST_STUB,
       PostCellData.TYPE_POST_CARD -> {
-        checkNotNull(threadCellData.chanDescriptor) { "chanDescriptor cannot be null" }
+        val chanDescriptor = checkNotNull(threadCellData.chanDescriptor) { "chanDescriptor cannot be null" }
 
         val postViewHolder = holder as PostViewHolder
-        val postCellData = threadCellData.getPostCellData(position)
         val postCell = postViewHolder.itemView as GenericPostCell
-        postCell.setPost(postCellData)
+
+        val bindTime = measureTime {
+          val postCellData = threadCellData.getPostCellData(position)
+          postCell.setPost(postCellData)
+        }
+
+        PostCellStatistics.onAdapterBound(chanDescriptor, bindTime)
 
         postAdapterCallback.onPostCellBound(postCell)
       }
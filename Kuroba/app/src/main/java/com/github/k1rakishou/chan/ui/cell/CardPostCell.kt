@@ -24,6 +24,7 @@ import android.widget.TextView
 import androidx.constraintlayout.widget.ConstraintLayout
 import com.github.k1rakishou.ChanSettings
 import com.github.k1rakishou.ChanSettings.BoardPostViewMode
+import com.github.k1rakishou.ChanSettingsSnapshot
 import com.github.k1rakishou.chan.R
 import com.github.k1rakishou.chan.core.base.KurobaCoroutineScope
 import com.github.k1rakishou.chan.core.image.ImageLoaderV2
@@ -122,7 +123,7 @@ class CardPostCell : ConstraintLayout,
       return false
     }
 
-    return ChanSettings.boardPostViewMode.get() == BoardPostViewMode.GRID
+    return ChanSettingsSnapshot.get().boardPostViewMode == BoardPostViewMode.GRID
       && postCellData.postCellCallback?.currentSpanCount() != 1
   }
 
@@ -332,7 +333,7 @@ class CardPostCell : ConstraintLayout,
 
     val firstPostImage = postCellData.post.firstImage()
 
-    if (firstPostImage == null || ChanSettings.textOnly.get()) {
+    if (firstPostImage == null || ChanSettingsSnapshot.get().textOnly) {
       thumbView?.visibility = GONE
       thumbView?.unbindPostImage()
       return
@@ -3,8 +3,8 @@ package com.github.k1rakishou.chan.ui.cell
 import android.content.Context
 import android.view.View
 import android.widget.FrameLayout
-import com.github.k1rakishou.ChanSettings
 import com.github.k1rakishou.ChanSettings.BoardPostViewMode
+import com.github.k1rakishou.ChanSettingsSnapshot
 import com.github.k1rakishou.chan.R
 import com.github.k1rakishou.chan.ui.view.ThumbnailView
 import com.github.k1rakishou.chan.utils.AppModuleAndroidUtils
@@ -88,8 +88,8 @@ class GenericPostCell(context: Context) : FrameLayout(context), PostCellInterfac
 
     val postAlignmentMode = when (postCellData.chanDescriptor) {
       is ChanDescriptor.CompositeCatalogDescriptor,
-      is ChanDescriptor.CatalogDescriptor -> ChanSettings.catalogPostAlignmentMode.get()
-      is ChanDescriptor.ThreadDescriptor -> ChanSettings.threadPostAlignmentMode.get()
+      is ChanDescriptor.CatalogDescriptor -> ChanSettingsSnapshot.get().catalogPostAlignmentMode
+      is ChanDescriptor.ThreadDescriptor -> ChanSettingsSnapshot.get().threadPostAlignmentMode
     }
 
     checkNotNull(postAlignmentMode) { "postAlignmentMode is null" }
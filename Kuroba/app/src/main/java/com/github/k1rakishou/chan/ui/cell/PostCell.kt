@@ -34,7 +34,7 @@ import android.widget.TextView
 import androidx.appcompat.widget.AppCompatImageView
 import androidx.core.view.GravityCompat
 import androidx.core.widget.TextViewCompat
-import com.github.k1rakishou.ChanSettings
+import com.github.k1rakishou.ChanSettingsSnapshot
 import com.github.k1rakishou.chan.R
 import com.github.k1rakishou.chan.core.base.KurobaCoroutineScope
 import com.github.k1rakishou.chan.core.image.ImageLoaderV2
@@ -110,6 +110,9 @@ class PostCell @JvmOverloads constructor(
   private var postCellHighlight: PostHighlightManager.PostHighlight? = null
   private var postTimeUpdaterJob: Job? = null
   private var blinkExecuted = false
+  // The comment TextView displays the precomputed text instance cached in PostCellData (shared by all
+  // binds of the post) instead of its own copy, see commentTextForClickSpans()
+  private var commentTextIsShared = false
 
   private val linkClickSpan: BackgroundColorIdSpan
   private val quoteClickSpan: BackgroundColorIdSpan
@@ -864,7 +867,7 @@ class PostCell @JvmOverloads constructor(
   @SuppressLint("ClickableViewAccessibility")
   private fun bindPostContent(postCellData: PostCellData) {
     val theme = postCellData.theme
-    comment.setText(postCellData.commentText, TextView.BufferType.SPANNABLE)
+    bindCommentText(postCellData)
 
     if (postCellData.isSelectionMode) {
       comment.customSelectionActionModeCallback = null
@@ -910,6 +913,46 @@ class PostCell @JvmOverloads constructor(
     comment.setEditTextCursorColor(theme)
   }
 
+  private fun bindCommentText(postCellData: PostCellData) {
+    val textSizeSp = postCellData.textSizeSp
+    val precomputedCommentText = postCellData.getPrecomputedCommentTextOrNull(
+      PostCommentTextMetrics.get(textSizeSp)
+    )
+
+    if (precomputedCommentText != null) {
+      try {
+        TextViewCompat.setPrecomputedText(comment, precomputedCommentText)
+        commentTextIsShared = true
+        return
+      } catch (error: IllegalArgumentException) {
+        // The comment TextView params have changed since we captured them
+        Logger.e(TAG, "bindCommentText() failed to use precomputed text, textSizeSp=$textSizeSp", error)
+        PostCommentTextMetrics.forget(textSizeSp)
+      }
+    }
+
+    comment.setText(postCellData.commentText, TextView.BufferType.SPANNABLE)
+    commentTextIsShared = false
+    PostCommentTextMetrics.rememberIfAbsent(comment, textSizeSp)
+  }
+
+  /**
+   * The click highlight spans must never be added to the precomputed comment text cached in
+   * PostCellData (on newer APIs TextView uses that instance as is instead of copying it) otherwise a
+   * highlight left by a cell recycled mid-press would be shown on every later bind of the post. So
+   * before the first highlight the TextView is switched to its own copy of the text.
+   * */
+  private fun commentTextForClickSpans(widget: TextView, buffer: Spannable): Spannable {
+    if (!commentTextIsShared || widget !== comment) {
+      return buffer
+    }
+
+    commentTextIsShared = false
+    comment.setText(SpannableString(buffer), TextView.BufferType.SPANNABLE)
+
+    return comment.text as Spannable
+  }
+
   private fun setPostLinkableListener(postCellData: PostCellData, bind: Boolean) {
     val postComment = postCellData.fullPostComment
     if (postComment !is Spanned) {
@@ -1144,7 +1187,7 @@ class PostCell @JvmOverloads constructor(
     }
 
     private fun clickCoordinatesHitPostComment(x: Int, lineLeft: Float, lineRight: Float): Boolean {
-      if (ChanSettings.postLinksTakeWholeHorizSpace.get()) {
+      if (ChanSettingsSnapshot.get().postLinksTakeWholeHorizSpace) {
         return true
       }
 
@@ -1230,10 +1273,12 @@ class PostCell @JvmOverloads constructor(
           else -> quoteClickSpan
         }
 
-        buffer.setSpan(
+        val commentText = commentTextForClickSpans(widget, buffer)
+
+        commentText.setSpan(
           span,
-          buffer.getSpanStart(clickableSpan1),
-          buffer.getSpanEnd(clickableSpan1),
+          commentText.getSpanStart(clickableSpan1),
+          commentText.getSpanEnd(clickableSpan1),
           0
         )
 
@@ -5,6 +5,7 @@ import android.text.SpannableStringBuilder
 import android.text.TextUtils
 import android.text.format.DateUtils
 import android.text.style.UnderlineSpan
+import androidx.core.text.PrecomputedTextCompat
 import androidx.core.text.buildSpannedString
 import com.github.k1rakishou.ChanSettings
 import com.github.k1rakishou.chan.R
@@ -13,6 +14,7 @@ import com.github.k1rakishou.chan.ui.adapter.PostsFilter
 import com.github.k1rakishou.chan.utils.AppModuleAndroidUtils
 import com.github.k1rakishou.chan.utils.AppModuleAndroidUtils.getString
 import com.github.k1rakishou.chan.utils.AppModuleAndroidUtils.sp
+import com.github.k1rakishou.chan.utils.BackgroundUtils
 import com.github.k1rakishou.chan.utils.SpannableHelper
 import com.github.k1rakishou.common.MurmurHashUtils
 import com.github.k1rakishou.common.StringUtils
@@ -84,6 +86,8 @@ data class PostCellData(
   private var postFileInfoHashPrecalculated: MurmurHashUtils.Murmur3Hash? = null
   private var commentTextPrecalculated: CharSequence? = null
   private var catalogRepliesTextPrecalculated: CharSequence? = null
+  @Volatile
+  private var precomputedCommentText: PrecomputedCommentText? = null
 
   val iconSizePx = sp(textSizeSp - 2.toFloat())
   val postStubCellTitlePaddingPx = sp((textSizeSp - 6).toFloat())
@@ -227,6 +231,55 @@ data class PostCellData(
     _catalogRepliesText.value()
   }
 
+  /**
+   * Measures the comment text glyphs on the current (background) thread so that when the post is
+   * bound the comment TextView only needs to break the text into lines. Only done for long
+   * comments, measuring short ones on the main thread is cheap enough.
+   * */
+  fun precomputeCommentText(textMetricsParams: PrecomputedTextCompat.Params) {
+    BackgroundUtils.ensureBackgroundThread()
+
+    val commentText = _commentText.value()
+    if (commentText.length < MIN_PRECOMPUTED_COMMENT_LENGTH) {
+      return
+    }
+
+    if (precomputedCommentText?.isUsableFor(commentText, textMetricsParams) == true) {
+      return
+    }
+
+    precomputedCommentText = PrecomputedCommentText(
+      sourceText = commentText,
+      textMetricsParams = textMetricsParams,
+      precomputedText = PrecomputedTextCompat.create(commentText, textMetricsParams)
+    )
+  }
+
+  fun releasePrecomputedCommentText() {
+    precomputedCommentText = null
+  }
+
+  /**
+   * Returns precomputed comment text only when it was created from the current comment text (which
+   * gets recalculated when the theme or the post changes) with the same [textMetricsParams].
+   * */
+  fun getPrecomputedCommentTextOrNull(textMetricsParams: PrecomputedTextCompat.Params?): PrecomputedTextCompat? {
+    if (textMetricsParams == null) {
+      return null
+    }
+
+    val commentText = _commentText.valueOrNull()
+      ?: return null
+    val precomputed = precomputedCommentText
+      ?: return null
+
+    if (!precomputed.isUsableFor(commentText, textMetricsParams)) {
+      return null
+    }
+
+    return precomputed.precomputedText
+  }
+
   fun fullCopy(): PostCellData {
     return PostCellData(
       chanDescriptor = chanDescriptor,
@@ -270,6 +323,7 @@ data class PostCellData(
       newPostCellData.postTitleStubPrecalculated = postTitleStubPrecalculated
       newPostCellData.commentTextPrecalculated = commentTextPrecalculated
       newPostCellData.catalogRepliesTextPrecalculated = catalogRepliesTextPrecalculated
+      newPostCellData.precomputedCommentText = precomputedCommentText
     }
   }
 
@@ -830,7 +884,19 @@ data class PostCellData(
   }
   // ^^^ When updating any of these don't forget to update the flags !!! ^^^
 
+  private class PrecomputedCommentText(
+    val sourceText: CharSequence,
+    val textMetricsParams: PrecomputedTextCompat.Params,
+    val precomputedText: PrecomputedTextCompat
+  ) {
+    fun isUsableFor(commentText: CharSequence, params: PrecomputedTextCompat.Params): Boolean {
+      return sourceText === commentText && textMetricsParams == params
+    }
+  }
+
   companion object {
+    private const val MIN_PRECOMPUTED_COMMENT_LENGTH = 128
+
     private const val COMMENT_MAX_LENGTH_LIST = 350
     private const val COMMENT_MAX_LENGTH_GRID = 200
     private const val COMMENT_MAX_LENGTH_STAGGER_MIN = 100
@@ -1,125 +1,321 @@
 package com.github.k1rakishou.chan.ui.cell
 
+import android.view.Choreographer
+import androidx.annotation.GuardedBy
+import androidx.recyclerview.widget.RecyclerView
+import com.github.k1rakishou.ChanSettingsSnapshot
 import com.github.k1rakishou.chan.utils.AppModuleAndroidUtils
 import com.github.k1rakishou.core_logger.Logger
-import java.util.concurrent.TimeUnit
+import com.github.k1rakishou.model.data.descriptor.ChanDescriptor
+import com.google.gson.stream.JsonWriter
+import java.io.StringWriter
 import kotlin.time.Duration
 import kotlin.time.DurationUnit
 import kotlin.time.ExperimentalTime
 
+/**
+ * Collects timings of the post list rendering pipeline (adapter binds, post cell binds and measures,
+ * PostCellData calculation, image requests and frame durations while scrolling) into per
+ * ChanDescriptor histograms. Collection is only done when the
+ * [com.github.k1rakishou.ChanSettings.collectPostCellStatistics] developer setting is turned on,
+ * otherwise every call is just one settings snapshot read. The collected statistics can be
+ * exported as json via [dumpJson].
+ * */
 object PostCellStatistics {
   private const val TAG = "PostCellStatistics"
   private const val LOG_ENABLED = false
 
-  private val ONE_MINUTE = TimeUnit.MINUTES.toMillis(1)
+  private val lock = Any()
 
-  private var lastMeasureResetTime = 0L
-  private var totalMeasureTime = 0.0
-  private var maxMeasureTime = 0.0
-  private var minMeasureTime = 16.0
-  private var totalMeasuredPostsCount = 0
-  private var longMeasuredPostsCount = 0
+  @GuardedBy("lock")
+  private val statistics = mutableMapOf<ChanDescriptor, DescriptorStatistics>()
 
-  private var lastBindResetTime = 0L
-  private var totalBindTime = 0.0
-  private var maxBindTime = 0.0
-  private var minBindTime = 16.0
-  private var totalBoundPostsCount = 0
-  private var longBoundPostsCount = 0
+  // The descriptor of the post list that was bound the last time. Frames and image requests are
+  // attributed to it since they are not tied to a specific post list.
+  @Volatile
+  private var currentChanDescriptor: ChanDescriptor? = null
+
+  fun isEnabled(): Boolean = ChanSettingsSnapshot.get().collectPostCellStatistics
+
+  @OptIn(ExperimentalTime::class)
+  fun onAdapterBound(chanDescriptor: ChanDescriptor, time: Duration) {
+    if (!isEnabled()) {
+      return
+    }
+
+    currentChanDescriptor = chanDescriptor
+    record(chanDescriptor, Metric.AdapterBind, time.inWholeMicroseconds)
+  }
 
   @OptIn(ExperimentalTime::class)
   fun onPostBound(postCellInterface: PostCellInterface?, time: Duration) {
-    if (!AppModuleAndroidUtils.isDevBuild() || !LOG_ENABLED) {
+    if (LOG_ENABLED && AppModuleAndroidUtils.isDevBuild()) {
+      val postNo = postCellInterface?.getPost()?.postNo()
+      Logger.d(TAG, "onPostBound() postNo: ${postNo}, took ${time.toDouble(DurationUnit.MILLISECONDS)}ms")
+    }
+
+    if (!isEnabled()) {
       return
     }
 
-    val post = postCellInterface?.getPost()
+    val chanDescriptor = currentChanDescriptor
       ?: return
 
-    if (System.currentTimeMillis() - lastBindResetTime > ONE_MINUTE) {
-      Logger.d(TAG, "onPostBound() STATS RESET")
+    record(chanDescriptor, Metric.PostCellBind, time.inWholeMicroseconds)
+  }
 
-      totalBindTime = 0.0
-      maxBindTime = 0.0
-      minBindTime = 16.0
-      totalBoundPostsCount = 0
-      longBoundPostsCount = 0
-      lastBindResetTime = System.currentTimeMillis()
+  @OptIn(ExperimentalTime::class)
+  fun onPostMeasured(postCellInterface: PostCellInterface?, time: Duration) {
+    if (LOG_ENABLED && AppModuleAndroidUtils.isDevBuild()) {
+      val postNo = postCellInterface?.getPost()?.postNo()
+      Logger.d(TAG, "onPostMeasured() postNo: ${postNo}, took ${time.toDouble(DurationUnit.MILLISECONDS)}ms")
     }
 
-    ++totalBoundPostsCount
-    val timeMs = time.toDouble(DurationUnit.MILLISECONDS)
+    if (!isEnabled()) {
+      return
+    }
 
-    if (timeMs > 10.0) {
-      ++longBoundPostsCount
+    val chanDescriptor = currentChanDescriptor
+      ?: return
+
+    record(chanDescriptor, Metric.PostCellMeasure, time.inWholeMicroseconds)
+  }
+
+  @OptIn(ExperimentalTime::class)
+  fun onPostCellDataCalculated(chanDescriptor: ChanDescriptor, time: Duration) {
+    if (!isEnabled()) {
+      return
     }
 
-    totalBindTime += timeMs
-    maxBindTime = Math.max(maxBindTime, timeMs)
-    minBindTime = Math.min(minBindTime, timeMs)
+    record(chanDescriptor, Metric.PostCellDataCalculation, time.inWholeMicroseconds)
+  }
+
+  fun onImageRequestCompleted(fromCache: Boolean, timeNanos: Long) {
+    if (!isEnabled()) {
+      return
+    }
 
-    val medianBindTime = (totalBindTime / totalBoundPostsCount.toDouble())
-    val medianBindTimeFormatted = String.format("%.2f", medianBindTime)
-    val postNo = post.postNo()
-    val imagesCount = post.postImages.size
+    val chanDescriptor = currentChanDescriptor
+      ?: return
 
-    val timeFormatted = if (timeMs < 1.0) {
-      "< 1ms"
+    val metric = if (fromCache) {
+      Metric.ImageRequestCache
     } else {
-      "${timeMs}ms"
+      Metric.ImageRequestNetwork
     }
 
-    Logger.d(TAG, "onPostBound() postNo: ${postNo}, " +
-      "imgs: $imagesCount, took ${timeFormatted} (medianBindTime: ${medianBindTimeFormatted}ms, " +
-      "maxBindTime=${maxBindTime}ms, minBindTime=${minBindTime}ms, longBoundPostsCount=${longBoundPostsCount})")
+    record(chanDescriptor, metric, timeNanos / 1000L)
   }
 
-  @OptIn(ExperimentalTime::class)
-  fun onPostMeasured(postCellInterface: PostCellInterface?, time: Duration) {
-    if (!AppModuleAndroidUtils.isDevBuild() || !LOG_ENABLED) {
-      return
+  fun reset() {
+    synchronized(lock) { statistics.clear() }
+  }
+
+  fun dumpJson(): String {
+    val stringWriter = StringWriter()
+
+    JsonWriter(stringWriter).use { writer ->
+      writer.setIndent("  ")
+      writer.beginObject()
+
+      synchronized(lock) {
+        statistics.entries
+          .sortedBy { (chanDescriptor, _) -> chanDescriptor.toString() }
+          .forEach { (chanDescriptor, descriptorStatistics) ->
+            writer.name(chanDescriptor.toString())
+            descriptorStatistics.write(writer)
+          }
+      }
+
+      writer.endObject()
     }
 
-    val post = postCellInterface?.getPost()
+    return stringWriter.toString()
+  }
+
+  private fun onFrame(frameTimeNanos: Long) {
+    val chanDescriptor = currentChanDescriptor
       ?: return
 
-    if (System.currentTimeMillis() - lastMeasureResetTime > ONE_MINUTE) {
-      Logger.d(TAG, "onPostMeasured() STATS RESET")
+    record(chanDescriptor, Metric.Frame, frameTimeNanos / 1000L)
+  }
 
-      totalMeasureTime = 0.0
-      maxMeasureTime = 0.0
-      minMeasureTime = 16.0
-      totalMeasuredPostsCount = 0
-      longMeasuredPostsCount = 0
-      lastMeasureResetTime = System.currentTimeMillis()
+  private fun record(chanDescriptor: ChanDescriptor, metric: Metric, timeMicros: Long) {
+    synchronized(lock) {
+      statistics.getOrPut(chanDescriptor) { DescriptorStatistics() }
+        .record(metric, timeMicros)
     }
+  }
+
+  /**
+   * Measures frame durations of a RecyclerView, but only while it's being scrolled so that idle
+   * frames (which are not drawn at all) don't skew the histogram.
+   * */
+  class ScrollFrameTracker : RecyclerView.OnScrollListener(), Choreographer.FrameCallback {
+    private var lastFrameTimeNanos = 0L
+    private var tracking = false
 
-    ++totalMeasuredPostsCount
-    val timeMs = time.toDouble(DurationUnit.MILLISECONDS)
+    override fun onScrollStateChanged(recyclerView: RecyclerView, newState: Int) {
+      if (newState == RecyclerView.SCROLL_STATE_IDLE) {
+        stop()
+        return
+      }
 
-    if (timeMs > 10.0) {
-      ++longMeasuredPostsCount
+      if (tracking || !isEnabled()) {
+        return
+      }
+
+      tracking = true
+      lastFrameTimeNanos = 0L
+      Choreographer.getInstance().postFrameCallback(this)
     }
 
-    totalMeasureTime += timeMs
-    maxMeasureTime = Math.max(maxMeasureTime, timeMs)
-    minMeasureTime = Math.min(minMeasureTime, timeMs)
+    override fun doFrame(frameTimeNanos: Long) {
+      if (!tracking) {
+        return
+      }
 
-    val medianMeasureTime = (totalMeasureTime / totalMeasuredPostsCount.toDouble())
-    val medianMeasureTimeFormatted = String.format("%.2f", medianMeasureTime)
-    val postNo = post.postNo()
-    val imagesCount = post.postImages.size
+      if (lastFrameTimeNanos != 0L && frameTimeNanos > lastFrameTimeNanos) {
+        onFrame(frameTimeNanos - lastFrameTimeNanos)
+      }
 
-    val timeFormatted = if (timeMs < 1.0) {
-      "< 1ms"
-    } else {
-      "${timeMs}ms"
+      lastFrameTimeNanos = frameTimeNanos
+      Choreographer.getInstance().postFrameCallback(this)
+    }
+
+    fun stop() {
+      if (!tracking) {
+        return
+      }
+
+      tracking = false
+      lastFrameTimeNanos = 0L
+      Choreographer.getInstance().removeFrameCallback(this)
     }
+  }
 
-    Logger.d(TAG, "onPostMeasured() postNo: $postNo, " +
-      "imgs: $imagesCount, took ${timeFormatted} (medianMeasureTime: ${medianMeasureTimeFormatted}ms, " +
-      "maxMeasureTime=${maxMeasureTime}ms, minMeasureTime=${minMeasureTime}ms, " +
-      "longMeasuredPostsCount=${longMeasuredPostsCount})")
+  private enum class Metric(val key: String) {
+    AdapterBind("adapter_bind"),
+    PostCellBind("post_cell_bind"),
+    PostCellMeasure("post_cell_measure"),
+    PostCellDataCalculation("post_cell_data_calculation"),
+    ImageRequestCache("image_request_cache"),
+    ImageRequestNetwork("image_request_network"),
+    Frame("frame")
   }
 
-}
\ No newline at end of file
+  private class DescriptorStatistics {
+    private val histograms = arrayOfNulls<DurationHistogram>(Metric.values().size)
+
+    fun record(metric: Metric, timeMicros: Long) {
+      var histogram = histograms[metric.ordinal]
+      if (histogram == null) {
+        histogram = DurationHistogram()
+        histograms[metric.ordinal] = histogram
+      }
+
+      histogram.record(timeMicros)
+    }
+
+    fun write(writer: JsonWriter) {
+      writer.beginObject()
+
+      Metric.values().forEach { metric ->
+        val histogram = histograms[metric.ordinal]
+          ?: return@forEach
+
+        writer.name(metric.key)
+        histogram.write(writer)
+      }
+
+      writer.endObject()
+    }
+  }
+
+  /**
+   * A histogram with exponentially growing buckets (upper bounds are in [BUCKET_UPPER_BOUNDS_MICROS],
+   * the last bucket is for everything bigger). Percentiles are approximated with the upper bound
+   * of the bucket they fall into.
+   * */
+  private class DurationHistogram {
+    private val buckets = LongArray(BUCKET_UPPER_BOUNDS_MICROS.size + 1)
+    private var count = 0L
+    private var totalMicros = 0L
+    private var maxMicros = 0L
+
+    fun record(timeMicros: Long) {
+      val value = timeMicros.coerceAtLeast(0L)
+
+      var bucketIndex = BUCKET_UPPER_BOUNDS_MICROS.indexOfFirst { upperBound -> value <= upperBound }
+      if (bucketIndex < 0) {
+        bucketIndex = BUCKET_UPPER_BOUNDS_MICROS.size
+      }
+
+      ++buckets[bucketIndex]
+      ++count
+      totalMicros += value
+      maxMicros = Math.max(maxMicros, value)
+    }
+
+    fun write(writer: JsonWriter) {
+      writer.beginObject()
+      writer.name("count").value(count)
+      writer.name("total_ms").value(toMs(totalMicros))
+      writer.name("avg_ms").value(if (count > 0) toMs(totalMicros / count) else 0.0)
+      writer.name("max_ms").value(toMs(maxMicros))
+      writer.name("p50_ms").value(toMs(percentile(0.5)))
+      writer.name("p90_ms").value(toMs(percentile(0.9)))
+      writer.name("p99_ms").value(toMs(percentile(0.99)))
+
+      writer.name("buckets")
+      writer.beginObject()
+
+      buckets.forEachIndexed { index, bucketCount ->
+        if (bucketCount == 0L) {
+          return@forEachIndexed
+        }
+
+        val bucketName = if (index < BUCKET_UPPER_BOUNDS_MICROS.size) {
+          "<=${toMs(BUCKET_UPPER_BOUNDS_MICROS[index])}ms"
+        } else {
+          ">${toMs(BUCKET_UPPER_BOUNDS_MICROS.last())}ms"
+        }
+
+        writer.name(bucketName).value(bucketCount)
+      }
+
+      writer.endObject()
+      writer.endObject()
+    }
+
+    private fun percentile(percentile: Double): Long {
+      if (count == 0L) {
+        return 0L
+      }
+
+      val threshold = Math.ceil(count * percentile).toLong()
+      var accumulated = 0L
+
+      buckets.forEachIndexed { index, bucketCount ->
+        accumulated += bucketCount
+
+        if (accumulated >= threshold) {
+          return if (index < BUCKET_UPPER_BOUNDS_MICROS.size) {
+            Math.min(BUCKET_UPPER_BOUNDS_MICROS[index], maxMicros)
+          } else {
+            maxMicros
+          }
+        }
+      }
+
+      return maxMicros
+    }
+
+    private fun toMs(micros: Long): Double = micros.toDouble() / 1000.0
+  }
+
+  private val BUCKET_UPPER_BOUNDS_MICROS = longArrayOf(
+    250, 500, 1_000, 2_000, 4_000, 8_000, 16_000, 33_000, 66_000, 133_000, 266_000, 533_000, 1_000_000
+  )
+
+}
@@ -0,0 +1,38 @@
+package com.github.k1rakishou.chan.ui.cell
+
+import android.widget.TextView
+import androidx.core.text.PrecomputedTextCompat
+import androidx.core.widget.TextViewCompat
+import java.util.concurrent.ConcurrentHashMap
+
+/**
+ * Remembers the text metrics params (paint, break strategy, hyphenation, text direction) of post
+ * comment TextViews so that the comment text can be turned into PrecomputedText on a background
+ * thread before the post is bound. The params are captured from an actual comment TextView (when
+ * it's bound for the first time) instead of being created manually because PrecomputedText can only
+ * be applied to a TextView with exactly the same params.
+ * */
+object PostCommentTextMetrics {
+  // textSizeSp -> params
+  private val textMetricsParamsMap = ConcurrentHashMap<Int, PrecomputedTextCompat.Params>()
+
+  fun get(textSizeSp: Int): PrecomputedTextCompat.Params? {
+    return textMetricsParamsMap[textSizeSp]
+  }
+
+  fun rememberIfAbsent(commentTextView: TextView, textSizeSp: Int) {
+    if (textMetricsParamsMap.containsKey(textSizeSp)) {
+      return
+    }
+
+    textMetricsParamsMap[textSizeSp] = TextViewCompat.getTextMetricsParams(commentTextView)
+  }
+
+  /**
+   * Called when the remembered params turned out to be incompatible with a comment TextView (e.g.
+   * the typeface has changed), new params will be captured on the next bind.
+   * */
+  fun forget(textSizeSp: Int) {
+    textMetricsParamsMap.remove(textSizeSp)
+  }
+}
@@ -1,6 +1,7 @@
 package com.github.k1rakishou.chan.ui.cell
 
 import com.github.k1rakishou.ChanSettings
+import com.github.k1rakishou.ChanSettingsSnapshot
 import com.github.k1rakishou.chan.core.base.KurobaCoroutineScope
 import com.github.k1rakishou.chan.core.manager.ChanThreadViewableInfoManager
 import com.github.k1rakishou.chan.core.manager.PostFilterHighlightManager
@@ -27,7 +28,9 @@ import kotlinx.coroutines.Job
 import kotlinx.coroutines.ensureActive
 import kotlinx.coroutines.launch
 import kotlinx.coroutines.withContext
+import kotlin.math.abs
 import kotlin.time.ExperimentalTime
+import kotlin.time.TimeSource
 import kotlin.time.measureTime
 
 class ThreadCellData(
@@ -201,8 +204,32 @@ class ThreadCellData(
         ensureActive()
         newPostCellDataLazy.getOrCalculate(isPrecalculating = true)
       }
+
+    // Done in a separate pass because the comment text metrics are only known after at least one
+    // post comment was bound, which most likely has already happened by now. PrecomputedText holds
+    // the measured glyphs of the whole comment so only the posts around the scroll position get
+    // it, the rest are measured on the main thread when bound (like the short comments).
+    val precomputeFrom = startingPosition.coerceIn(0, newPostCellDataLazyList.lastIndex)
+
+    newPostCellDataLazyList
+      .bidirectionalSequenceIndexed(precomputeFrom)
+      .forEach { (index, newPostCellDataLazy) ->
+        ensureActive()
+
+        val postCellData = newPostCellDataLazy.getOrCalculate(isPrecalculating = true)
+        if (abs(index - precomputeFrom) > PRECOMPUTED_COMMENTS_WINDOW) {
+          postCellData.releasePrecomputedCommentText()
+          return@forEach
+        }
+
+        val textMetricsParams = PostCommentTextMetrics.get(postCellData.textSizeSp)
+          ?: return
+
+        postCellData.precomputeCommentText(textMetricsParams)
+      }
   }
 
+  @OptIn(ExperimentalTime::class)
   private suspend fun postIndexedListToLazyPostCellDataList(
     postCellCallback: PostCellInterface.PostCellCallback,
     chanDescriptor: ChanDescriptor,
@@ -220,28 +247,29 @@ class ThreadCellData(
     val totalPostsCount = postIndexedList.size
     val resultList = mutableListWithCap<PostCellDataLazy>(totalPostsCount)
 
-    val textSizeSp = ChanSettings.fontSize.get().toInt()
+    val settingsSnapshot = ChanSettingsSnapshot.get()
+    val textSizeSp = settingsSnapshot.fontSize
     val detailsSizeSp = ChanSettings.detailsSizeSp()
-    val boardPostsSortOrder = PostsFilter.Order.find(ChanSettings.boardOrder.get())
-    val neverShowPages = ChanSettings.neverShowPages.get()
-    val tapNoReply = ChanSettings.tapNoReply.get()
-    val postFullDate = ChanSettings.postFullDate.get()
-    val shiftPostComment = ChanSettings.shiftPostComment.get()
-    val forceShiftPostComment = ChanSettings.forceShiftPostComment.get()
-    val textOnly = ChanSettings.textOnly.get()
-    val showPostFileInfo = ChanSettings.postFileInfo.get()
-    val markUnseenPosts = ChanSettings.markUnseenPosts.get() && chanDescriptor.isThreadDescriptor()
-    val markSeenThreads = ChanSettings.markSeenThreads.get() && chanDescriptor.isCatalogDescriptor()
+    val boardPostsSortOrder = PostsFilter.Order.find(settingsSnapshot.boardOrder)
+    val neverShowPages = settingsSnapshot.neverShowPages
+    val tapNoReply = settingsSnapshot.tapNoReply
+    val postFullDate = settingsSnapshot.postFullDate
+    val shiftPostComment = settingsSnapshot.shiftPostComment
+    val forceShiftPostComment = settingsSnapshot.forceShiftPostComment
+    val textOnly = settingsSnapshot.textOnly
+    val showPostFileInfo = settingsSnapshot.postFileInfo
+    val markUnseenPosts = settingsSnapshot.markUnseenPosts && chanDescriptor.isThreadDescriptor()
+    val markSeenThreads = settingsSnapshot.markSeenThreads && chanDescriptor.isCatalogDescriptor()
     val chanTheme = theme.fullCopy()
-    val postCellThumbnailSizePercents = ChanSettings.postCellThumbnailSizePercents.get()
+    val postCellThumbnailSizePercents = settingsSnapshot.postCellThumbnailSizePercents
     val boardPages = getBoardPages(chanDescriptor, neverShowPages, postCellCallback)
     val isTablet = isTablet()
     val isSplitLayout = ChanSettings.isSplitLayoutMode()
 
     val postAlignmentMode = when (chanDescriptor) {
       is ChanDescriptor.CatalogDescriptor,
-      is ChanDescriptor.CompositeCatalogDescriptor -> ChanSettings.catalogPostAlignmentMode.get()
-      is ChanDescriptor.ThreadDescriptor -> ChanSettings.threadPostAlignmentMode.get()
+      is ChanDescriptor.CompositeCatalogDescriptor -> settingsSnapshot.catalogPostAlignmentMode
+      is ChanDescriptor.ThreadDescriptor -> settingsSnapshot.threadPostAlignmentMode
     }
 
     val filterHashMap = postFilterManager.getManyFilterHashes(postDescriptors)
@@ -260,9 +288,10 @@ class ThreadCellData(
 
     postIndexedList.forEachIndexed { orderInList, postIndexed ->
       val lazyFunc = lazy {
+        val calculationStartMark = TimeSource.Monotonic.markNow()
         val postDescriptor = postIndexed.post.postDescriptor
 
-        val postMultipleImagesCompactMode = ChanSettings.postMultipleImagesCompactMode.get()
+        val postMultipleImagesCompactMode = settingsSnapshot.postMultipleImagesCompactMode
           && postViewMode != PostCellData.PostViewMode.Search
           && postIndexed.post.postImages.size > 1
 
@@ -310,6 +339,7 @@ class ThreadCellData(
         postCellData.postCellCallback = postCellCallback
         postCellData.preload()
 
+        PostCellStatistics.onPostCellDataCalculated(chanDescriptor, calculationStartMark.elapsedNow())
         return@lazy postCellData
       }
 
@@ -617,6 +647,9 @@ class ThreadCellData(
 
   companion object {
     private const val TAG = "ThreadCellData"
+
+    // How many posts on each side of the scroll position get their comment text precomputed
+    private const val PRECOMPUTED_COMMENTS_WINDOW = 32
   }
 
 }
\ No newline at end of file
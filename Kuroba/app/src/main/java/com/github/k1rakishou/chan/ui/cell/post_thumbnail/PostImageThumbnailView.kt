@@ -24,6 +24,7 @@ import android.util.AttributeSet
 import android.widget.FrameLayout
 import android.widget.TextView
 import com.github.k1rakishou.ChanSettings
+import com.github.k1rakishou.ChanSettingsSnapshot
 import com.github.k1rakishou.chan.R
 import com.github.k1rakishou.chan.core.cache.CacheFileType
 import com.github.k1rakishou.chan.core.cache.CacheHandler
@@ -84,7 +85,7 @@ class PostImageThumbnailView @JvmOverloads constructor(
       AppModuleAndroidUtils.extractActivityComponent(getContext())
         .inject(this)
       setWillNotDraw(false)
-      prefetchingEnabled = ChanSettings.prefetchMedia.get()
+      prefetchingEnabled = ChanSettingsSnapshot.get().prefetchMedia
     }
 
     inflate(context, R.layout.post_image_thumbnail_view, this)
@@ -166,8 +167,9 @@ class PostImageThumbnailView @JvmOverloads constructor(
       return
     }
 
-    showPrefetchLoadingIndicator = ChanSettings.prefetchMedia.get()
-      && ChanSettings.showPrefetchLoadingIndicator.get()
+    val settingsSnapshot = ChanSettingsSnapshot.get()
+    showPrefetchLoadingIndicator = settingsSnapshot.prefetchMedia
+      && settingsSnapshot.showPrefetchLoadingIndicator
 
     if (showPrefetchLoadingIndicator) {
       segmentedCircleDrawable = SegmentedCircleDrawable().apply {
@@ -264,7 +266,7 @@ class PostImageThumbnailView @JvmOverloads constructor(
 
       if (postImage != null && canUseHighResCells) {
         val thumbnailViewOptions = thumbnail.thumbnailViewOptions
-        val canSwapThumbnailToFullImage = postImage?.spoiler == false || ChanSettings.postThumbnailRemoveImageSpoilers.get()
+        val canSwapThumbnailToFullImage = postImage?.spoiler == false || ChanSettingsSnapshot.get().postThumbnailRemoveImageSpoilers
 
         if (canSwapThumbnailToFullImage && thumbnailViewOptions != null) {
           bindPostImage(
@@ -289,12 +291,12 @@ class PostImageThumbnailView @JvmOverloads constructor(
     var cacheFileType = CacheFileType.PostMediaThumbnail
 
     val highRes = canUseHighResCells
-      && ChanSettings.highResCells.get()
+      && ChanSettingsSnapshot.get().highResCells
       && postImage.canBeUsedAsHighResolutionThumbnail()
       && canAutoLoad(cacheHandler, postImage)
 
     val hasImageUrl = postImage.imageUrl != null
-    val prefetchingDisabledOrAlreadyPrefetched = !ChanSettings.prefetchMedia.get() || postImage.isPrefetched
+    val prefetchingDisabledOrAlreadyPrefetched = !ChanSettingsSnapshot.get().prefetchMedia || postImage.isPrefetched
 
     if (highRes
       && hasImageUrl
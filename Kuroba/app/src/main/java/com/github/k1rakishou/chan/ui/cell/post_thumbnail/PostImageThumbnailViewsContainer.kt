@@ -6,6 +6,7 @@ import android.view.View
 import android.view.ViewGroup
 import androidx.core.view.updateLayoutParams
 import com.github.k1rakishou.ChanSettings
+import com.github.k1rakishou.ChanSettingsSnapshot
 import com.github.k1rakishou.chan.R
 import com.github.k1rakishou.chan.ui.cell.PostCellData
 import com.github.k1rakishou.chan.ui.helper.KurobaViewGroup
@@ -71,7 +72,7 @@ class PostImageThumbnailViewsContainer @JvmOverloads constructor(
       return
     }
 
-    if (postCellData.postImages.isEmpty() || ChanSettings.textOnly.get()) {
+    if (postCellData.postImages.isEmpty() || ChanSettingsSnapshot.get().textOnly) {
       cachedThumbnailViewContainerInfoArray[BIND].updateFrom(postCellData)
       unbindPostImages()
       return
@@ -535,7 +536,7 @@ class PostImageThumbnailViewsContainer @JvmOverloads constructor(
 
     fun calculatePostCellSingleThumbnailSize(): Int {
       val postCellThumbnailSizePercent = CELL_POST_THUMBNAIL_SIZE_MAX / 100f
-      val newSize = ChanSettings.postCellThumbnailSizePercents.get() * postCellThumbnailSizePercent
+      val newSize = ChanSettingsSnapshot.get().postCellThumbnailSizePercents * postCellThumbnailSizePercent
 
       return newSize.toInt()
     }
@@ -22,16 +22,13 @@ import com.github.k1rakishou.chan.utils.RecyclerUtils
 import com.github.k1rakishou.chan.utils.RecyclerUtils.restoreScrollPosition
 import com.github.k1rakishou.chan.utils.awaitUntilGloballyLaidOut
 import com.github.k1rakishou.common.AndroidUtils
-import com.github.k1rakishou.common.StringUtils
-import com.github.k1rakishou.common.isNotNullNorBlank
 import com.github.k1rakishou.common.mutableListWithCap
 import com.github.k1rakishou.common.updatePaddings
 import com.github.k1rakishou.model.data.descriptor.ChanDescriptor
 import com.github.k1rakishou.model.data.descriptor.PostDescriptor
 import com.github.k1rakishou.model.data.post.ChanPost
-import com.github.k1rakishou.model.data.post.ChanPostImage
 import com.github.k1rakishou.model.data.post.PostIndexed
-import com.github.k1rakishou.model.util.ChanPostUtils
+import com.github.k1rakishou.model.data.thread.ThreadSearchIndex
 import com.github.k1rakishou.persist_state.IndexAndTop
 import kotlinx.coroutines.CoroutineScope
 import kotlinx.coroutines.Dispatchers
@@ -39,7 +36,6 @@ import kotlinx.coroutines.Job
 import kotlinx.coroutines.isActive
 import kotlinx.coroutines.launch
 import kotlinx.coroutines.withContext
-import java.util.*
 import javax.inject.Inject
 
 class PostSearchPopupController(
@@ -52,6 +48,9 @@ class PostSearchPopupController(
   private var skipDebouncer = true
   private var scrollPositionRestored = false
   private var updaterJob: Job? = null
+  // Accessed on a background thread but never concurrently (the previous job is canceled first)
+  @Volatile
+  private var lastSearchResult: ThreadSearchIndex.SearchResult? = null
 
   private lateinit var totalFoundTextView: ColorizableTextView
   private lateinit var searchLayout: SearchLayout
@@ -196,11 +195,24 @@ class PostSearchPopupController(
     postsView.awaitUntilGloballyLaidOut()
 
     val resultPosts = withContext(Dispatchers.Default) {
-      val searchQuery = query.toLowerCase(Locale.ENGLISH)
+      val descriptor = data.descriptor
+
+      if (query.length >= MIN_QUERY_LENGTH && descriptor is ChanDescriptor.ThreadDescriptor) {
+        val searchResult = chanThreadManager.searchThreadPosts(descriptor, query, lastSearchResult)
+        if (searchResult != null) {
+          val (foundPosts, threadSearchResult) = searchResult
+          lastSearchResult = threadSearchResult
+
+          return@withContext foundPosts.mapIndexed { index, chanPost -> PostIndexed(chanPost.deepCopy(), index) }
+        }
+      }
+
+      lastSearchResult = null
+
       val resultPosts = mutableListWithCap<PostIndexed>(128)
       var postIndex = 0
 
-      chanThreadManager.iteratePostsWhile(data.descriptor) { chanPost ->
+      chanThreadManager.iteratePostsWhile(descriptor) { chanPost ->
         if (!isActive) {
           return@iteratePostsWhile false
         }
@@ -210,7 +222,7 @@ class PostSearchPopupController(
           return@iteratePostsWhile true
         }
 
-        if (matchesQuery(chanPost, searchQuery)) {
+        if (matchesQuery(chanPost, query)) {
           resultPosts += PostIndexed(chanPost.deepCopy(), postIndex++)
           return@iteratePostsWhile true
         }
@@ -246,58 +258,7 @@ class PostSearchPopupController(
   }
 
   private fun matchesQuery(chanPost: ChanPost, query: String): Boolean {
-    if (chanPost.postComment.originalComment().contains(query, ignoreCase = true)) {
-      return true
-    }
-
-    if (chanPost.postDescriptor.postNo.toString().contains(query, ignoreCase = true)) {
-      return true
-    }
-
-    if (chanPost.subject?.contains(query, ignoreCase = true) == true) {
-      return true
-    }
-
-    if (chanPost.name?.contains(query, ignoreCase = true) == true) {
-      return true
-    }
-
-    if (chanPost.postImages.isNotEmpty()) {
-      for (postImage in chanPost.postImages) {
-        val filename = formatImageInfoForSearch(postImage)
-        if (filename.contains(query, ignoreCase = true)) {
-          return true
-        }
-      }
-    }
-
-    return false
-  }
-
-  private fun formatImageInfoForSearch(chanPostImage: ChanPostImage): String {
-    return buildString {
-      if (chanPostImage.serverFilename.isNotNullNorBlank()) {
-        append(chanPostImage.serverFilename)
-        append(' ')
-      }
-
-      if (chanPostImage.filename.isNotNullNorBlank()) {
-        append(chanPostImage.filename)
-        append(' ')
-      }
-
-      if (chanPostImage.extension.isNotNullNorBlank()) {
-        append(chanPostImage.extension!!.toUpperCase(Locale.ENGLISH))
-        append(' ')
-      }
-
-      append(StringUtils.UNBREAKABLE_SPACE_SYMBOL)
-      append("${chanPostImage.imageWidth}x${chanPostImage.imageHeight}")
-
-      append(StringUtils.UNBREAKABLE_SPACE_SYMBOL)
-      append(ChanPostUtils.getReadableFileSize(chanPostImage.size)
-        .replace(' ', StringUtils.UNBREAKABLE_SPACE_SYMBOL))
-    }
+    return ThreadSearchIndex.formatSearchableText(chanPost).contains(query, ignoreCase = true)
   }
 
   private fun storeScrollPosition() {
@@ -49,6 +49,7 @@ import com.github.k1rakishou.chan.core.presenter.ThreadPresenter
 import com.github.k1rakishou.chan.core.presenter.ThreadPresenter.ThreadPresenterCallback
 import com.github.k1rakishou.chan.core.site.Site
 import com.github.k1rakishou.chan.core.site.loader.ChanLoaderException
+import com.github.k1rakishou.chan.core.site.loader.LoadPipelineTimings
 import com.github.k1rakishou.chan.features.bypass.CookieResult
 import com.github.k1rakishou.chan.features.bypass.FirewallType
 import com.github.k1rakishou.chan.features.bypass.SiteFirewallBypassController
@@ -161,6 +162,8 @@ class ThreadLayout @JvmOverloads constructor(
   lateinit var _chanLoadProgressNotifier: Lazy<ChanLoadProgressNotifier>
   @Inject
   lateinit var _globalViewStateManager: Lazy<GlobalViewStateManager>
+  @Inject
+  lateinit var _loadPipelineTimings: Lazy<LoadPipelineTimings>
 
   private val themeEngine: ThemeEngine
     get() = _themeEngine.get()
@@ -184,6 +187,8 @@ class ThreadLayout @JvmOverloads constructor(
     get() = _chanLoadProgressNotifier.get()
   private val globalViewStateManager: GlobalViewStateManager
     get() = _globalViewStateManager.get()
+  private val loadPipelineTimings: LoadPipelineTimings
+    get() = _loadPipelineTimings.get()
 
   private lateinit var callback: ThreadLayoutCallback
   private lateinit var progressLayout: View
@@ -486,6 +491,7 @@ class ThreadLayout @JvmOverloads constructor(
       return
     }
 
+    loadPipelineTimings.onPostsShown(descriptor, setThreadPostsDuration.inWholeMilliseconds)
     switchVisible(Visible.THREAD)
     callback.onShowPosts()
   }
@@ -46,6 +46,7 @@ import com.github.k1rakishou.chan.core.manager.BottomNavBarVisibilityStateManage
 import com.github.k1rakishou.chan.core.manager.ChanThreadManager
 import com.github.k1rakishou.chan.core.manager.ChanThreadViewableInfoManager
 import com.github.k1rakishou.chan.core.manager.GlobalWindowInsetsManager
+import com.github.k1rakishou.chan.core.manager.OnDemandContentLoaderManager
 import com.github.k1rakishou.chan.core.manager.PostHighlightManager
 import com.github.k1rakishou.chan.core.presenter.ThreadPresenter
 import com.github.k1rakishou.chan.core.usecase.ExtractPostMapInfoHolderUseCase
@@ -138,6 +139,8 @@ class ThreadListLayout(context: Context, attrs: AttributeSet?)
   lateinit var _chanLoadProgressNotifier: Lazy<ChanLoadProgressNotifier>
   @Inject
   lateinit var _postHighlightManager: Lazy<PostHighlightManager>
+  @Inject
+  lateinit var _onDemandContentLoaderManager: Lazy<OnDemandContentLoaderManager>
 
   private val themeEngine: ThemeEngine
     get() = _themeEngine.get()
@@ -159,6 +162,8 @@ class ThreadListLayout(context: Context, attrs: AttributeSet?)
     get() = _chanLoadProgressNotifier.get()
   private val postHighlightManager: PostHighlightManager
     get() = _postHighlightManager.get()
+  private val onDemandContentLoaderManager: OnDemandContentLoaderManager
+    get() = _onDemandContentLoaderManager.get()
 
   private val chan4BirthdayDecoration = object : ItemDecoration() {
     private val paint by lazy {
@@ -231,9 +236,14 @@ class ThreadListLayout(context: Context, attrs: AttributeSet?)
   private val scrollListener: RecyclerView.OnScrollListener = object : RecyclerView.OnScrollListener() {
     override fun onScrollStateChanged(recyclerView: RecyclerView, newState: Int) {
       if (newState == RecyclerView.SCROLL_STATE_IDLE) {
+        onDemandContentLoaderManager.onListScrollStopped()
         onRecyclerViewScrolled()
       }
     }
+
+    override fun onScrolled(recyclerView: RecyclerView, dx: Int, dy: Int) {
+      onDemandContentLoaderManager.onListScrolled(dy, recyclerView.height)
+    }
   }
 
   val replyPresenter: ReplyPresenter
@@ -0,0 +1,55 @@
+package com.github.k1rakishou.chan.benchmark
+
+import com.github.k1rakishou.chan.core.site.parser.processor.AbstractChanReaderProcessor
+import com.github.k1rakishou.model.data.descriptor.ChanDescriptor
+import com.github.k1rakishou.model.data.post.ChanPostBuilder
+
+/**
+ * Collects every parsed post without checking the database for already cached ones (unlike
+ * ChanReaderProcessor) so that only the reader itself is measured.
+ * */
+internal class BenchmarkChanReaderProcessor(
+  override val chanDescriptor: ChanDescriptor
+) : AbstractChanReaderProcessor() {
+  private val postBuilders = ArrayList<ChanPostBuilder>(512)
+
+  override val page: Int?
+    get() = null
+
+  override val canUseEmptyBoardIfBoardDoesNotExist: Boolean
+    get() = true
+
+  override suspend fun setOp(op: ChanPostBuilder?) {
+    if (op != null) {
+      closed = op.closed
+      archived = op.archived
+    }
+  }
+
+  override suspend fun addPost(postBuilder: ChanPostBuilder) {
+    postBuilders.add(postBuilder)
+  }
+
+  override suspend fun addManyPosts(postBuilders: List<ChanPostBuilder>) {
+    this.postBuilders.addAll(postBuilders)
+  }
+
+  override suspend fun applyChanReadOptions() {
+    // no-op
+  }
+
+  override suspend fun getToParse(): List<ChanPostBuilder> {
+    return postBuilders
+  }
+
+  override suspend fun getThreadDescriptors(): List<ChanDescriptor.ThreadDescriptor> {
+    return postBuilders
+      .filter { postBuilder -> postBuilder.op }
+      .map { postBuilder -> postBuilder.postDescriptor.threadDescriptor() }
+  }
+
+  override suspend fun getTotalPostsCount(): Int {
+    return postBuilders.size
+  }
+
+}
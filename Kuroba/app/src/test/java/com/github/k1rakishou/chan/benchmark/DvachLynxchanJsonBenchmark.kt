@@ -0,0 +1,84 @@
+package com.github.k1rakishou.chan.benchmark
+
+import com.github.k1rakishou.benchmark.BenchmarkRule
+import com.github.k1rakishou.benchmark.fixtures.DvachJsonGenerator
+import com.github.k1rakishou.benchmark.fixtures.Fixtures
+import com.github.k1rakishou.benchmark.fixtures.LynxchanJsonGenerator
+import com.github.k1rakishou.chan.core.site.sites.dvach.DvachApiV2
+import com.github.k1rakishou.chan.core.site.sites.lynxchan.engine.LynxchanApi
+import com.squareup.moshi.JsonAdapter
+import com.squareup.moshi.Moshi
+import okio.buffer
+import okio.source
+import org.junit.Rule
+import org.junit.Test
+
+/**
+ * Deserialization of 2ch.hk and Lynxchan responses with the same Moshi adapters DvachApiV2 and
+ * LynxchanApi use.
+ * */
+class DvachLynxchanJsonBenchmark {
+
+  @get:Rule
+  val benchmarkRule = BenchmarkRule()
+
+  private val moshi = Moshi.Builder().build()
+
+  @Test
+  fun dvachThread() {
+    benchmark(Fixtures.readBytes(Fixtures.DVACH_THREAD), moshi.adapter(DvachApiV2.DvachThreadsFresh::class.java))
+  }
+
+  /**
+   * Same as [dvachThread] but with a thread a few times longer than the bump limit.
+   * */
+  @Test
+  fun dvachThread_large() {
+    val threadJson = DvachJsonGenerator.thread(postsCount = LARGE_THREAD_POSTS_COUNT).toByteArray()
+    benchmarkRule.param("posts", LARGE_THREAD_POSTS_COUNT)
+
+    benchmark(threadJson, moshi.adapter(DvachApiV2.DvachThreadsFresh::class.java))
+  }
+
+  @Test
+  fun dvachCatalog() {
+    benchmark(Fixtures.readBytes(Fixtures.DVACH_CATALOG), moshi.adapter(DvachApiV2.DvachCatalog::class.java))
+  }
+
+  @Test
+  fun lynxchanThread() {
+    benchmark(Fixtures.readBytes(Fixtures.LYNXCHAN_THREAD), moshi.adapter(LynxchanApi.LynxchanPost::class.java))
+  }
+
+  /**
+   * Same as [lynxchanThread] but with a thread a few times longer than the usual bump limit.
+   * */
+  @Test
+  fun lynxchanThread_large() {
+    val threadJson = LynxchanJsonGenerator.thread(postsCount = LARGE_THREAD_POSTS_COUNT).toByteArray()
+    benchmarkRule.param("posts", LARGE_THREAD_POSTS_COUNT)
+
+    benchmark(threadJson, moshi.adapter(LynxchanApi.LynxchanPost::class.java))
+  }
+
+  @Test
+  fun lynxchanCatalogPage() {
+    benchmark(
+      Fixtures.readBytes(Fixtures.LYNXCHAN_CATALOG_PAGE),
+      moshi.adapter(LynxchanApi.LynxchanCatalogPage::class.java)
+    )
+  }
+
+  private fun benchmark(json: ByteArray, adapter: JsonAdapter<*>) {
+    benchmarkRule.param("jsonBytes", json.size)
+
+    benchmarkRule.measureRepeated {
+      json.inputStream().source().buffer().use { bufferedSource -> adapter.fromJson(bufferedSource) }
+    }
+  }
+
+  companion object {
+    private const val LARGE_THREAD_POSTS_COUNT = 1500
+  }
+
+}
@@ -0,0 +1,111 @@
+package com.github.k1rakishou.chan.benchmark
+
+import com.github.k1rakishou.benchmark.BenchmarkRule
+import com.github.k1rakishou.benchmark.fixtures.FilterPatternsGenerator
+import com.github.k1rakishou.benchmark.fixtures.Fixtures
+import com.github.k1rakishou.chan.core.helper.FilterEngine
+import com.github.k1rakishou.chan.core.manager.ChanFilterManager
+import com.github.k1rakishou.common.AndroidUtils
+import com.github.k1rakishou.model.data.descriptor.ChanDescriptor
+import com.github.k1rakishou.model.data.filter.ChanFilter
+import com.github.k1rakishou.model.data.filter.FilterType
+import com.github.k1rakishou.model.data.post.ChanPostBuilder
+import kotlinx.coroutines.runBlocking
+import org.junit.Before
+import org.junit.Rule
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.mockito.Mockito
+import org.robolectric.RobolectricTestRunner
+import org.robolectric.RuntimeEnvironment
+
+/**
+ * Every post of every loaded thread/catalog is checked against every enabled filter.
+ * */
+@RunWith(RobolectricTestRunner::class)
+class FilterEngineBenchmark {
+
+  @get:Rule
+  val benchmarkRule = BenchmarkRule()
+
+  private lateinit var filters: List<ChanFilter>
+  private lateinit var postBuilders: List<ChanPostBuilder>
+
+  @Before
+  fun init() {
+    AndroidUtils.init(RuntimeEnvironment.application)
+
+    filters = FilterPatternsGenerator.generate(FILTERS_COUNT).map { pattern ->
+      ChanFilter(type = FilterType.COMMENT.flag or FilterType.SUBJECT.flag, pattern = pattern)
+    }
+
+    postBuilders = readPosts()
+  }
+
+  /**
+   * All the patterns are already compiled and cached (the usual case).
+   * */
+  @Test
+  fun matchAllFilters() {
+    val filterEngine = FilterEngine(Mockito.mock(ChanFilterManager::class.java))
+    benchmarkParams()
+
+    benchmarkRule.measureRepeated {
+      matchAll(filterEngine)
+    }
+  }
+
+  /**
+   * Same as [matchAllFilters] but including the compilation of the patterns (the first load after
+   * the app start or after the filters were changed).
+   * */
+  @Test
+  fun matchAllFilters_coldPatternCache() {
+    benchmarkParams()
+
+    benchmarkRule.measureRepeated {
+      matchAll(FilterEngine(Mockito.mock(ChanFilterManager::class.java)))
+    }
+  }
+
+  private fun matchAll(filterEngine: FilterEngine): Int {
+    var matched = 0
+
+    postBuilders.forEach { postBuilder ->
+      filters.forEach { filter ->
+        if (filterEngine.matches(filter, postBuilder)) {
+          ++matched
+        }
+      }
+    }
+
+    return matched
+  }
+
+  private fun benchmarkParams() {
+    benchmarkRule.param("filters", FILTERS_COUNT)
+    benchmarkRule.param("posts", postBuilders.size)
+  }
+
+  private fun readPosts(): List<ChanPostBuilder> {
+    val threadDescriptor = ChanDescriptor.ThreadDescriptor.create("4chan", "g", Fixtures.FUTABA_THREAD_NO)
+    val threadJson = Fixtures.readBytes(Fixtures.FUTABA_THREAD)
+    val chanReaderProcessor = BenchmarkChanReaderProcessor(threadDescriptor)
+    val futabaChanReader = FutabaChanReaderBenchmark.createFutabaChanReader()
+
+    return runBlocking {
+      futabaChanReader.loadThreadFresh(
+        FutabaChanReaderBenchmark.THREAD_URL,
+        threadJson.inputStream(),
+        chanReaderProcessor
+      )
+
+      chanReaderProcessor.getToParse()
+    }
+  }
+
+  companion object {
+    private const val FILTERS_COUNT = 1000
+  }
+
+}
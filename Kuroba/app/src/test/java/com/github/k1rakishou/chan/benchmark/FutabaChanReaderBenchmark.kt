@@ -0,0 +1,138 @@
+package com.github.k1rakishou.chan.benchmark
+
+import com.github.k1rakishou.benchmark.BenchmarkRule
+import com.github.k1rakishou.benchmark.fixtures.Fixtures
+import com.github.k1rakishou.benchmark.fixtures.FutabaJsonGenerator
+import com.github.k1rakishou.chan.core.manager.ArchivesManager
+import com.github.k1rakishou.chan.core.manager.BoardManager
+import com.github.k1rakishou.chan.core.manager.SiteManager
+import com.github.k1rakishou.chan.core.site.common.FutabaChanReader
+import com.github.k1rakishou.chan.core.site.sites.chan4.Chan4
+import com.github.k1rakishou.common.AndroidUtils
+import com.github.k1rakishou.model.data.descriptor.BoardDescriptor
+import com.github.k1rakishou.model.data.descriptor.ChanDescriptor
+import com.nhaarman.mockitokotlin2.any
+import com.nhaarman.mockitokotlin2.whenever
+import kotlinx.coroutines.runBlocking
+import org.junit.Before
+import org.junit.Rule
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.mockito.Mockito
+import org.robolectric.RobolectricTestRunner
+import org.robolectric.RuntimeEnvironment
+
+@RunWith(RobolectricTestRunner::class)
+class FutabaChanReaderBenchmark {
+
+  @get:Rule
+  val benchmarkRule = BenchmarkRule()
+
+  private lateinit var futabaChanReader: FutabaChanReader
+
+  private val threadDescriptor = ChanDescriptor.ThreadDescriptor.create(Chan4.SITE_NAME, BOARD_CODE, THREAD_NO)
+  private val catalogDescriptor = ChanDescriptor.CatalogDescriptor.create(Chan4.SITE_NAME, BOARD_CODE)
+
+  @Before
+  fun init() {
+    AndroidUtils.init(RuntimeEnvironment.application)
+
+    futabaChanReader = createFutabaChanReader()
+  }
+
+  @Test
+  fun readThread() {
+    benchmarkReadThread(Fixtures.readBytes(Fixtures.FUTABA_THREAD))
+  }
+
+  /**
+   * Same as [readThread] but with a thread a few times longer than the bump limit.
+   * */
+  @Test
+  fun readThread_large() {
+    val threadJson = FutabaJsonGenerator.thread(BOARD_CODE, THREAD_NO, LARGE_THREAD_POSTS_COUNT).toByteArray()
+    benchmarkReadThread(threadJson)
+  }
+
+  @Test
+  fun loadCatalog() {
+    val catalogJson = Fixtures.readBytes(Fixtures.FUTABA_CATALOG)
+    benchmarkRule.param("jsonBytes", catalogJson.size)
+
+    benchmarkRule.measureRepeated {
+      val chanReaderProcessor = BenchmarkChanReaderProcessor(catalogDescriptor)
+
+      runBlocking {
+        futabaChanReader.loadCatalog(CATALOG_URL, catalogJson.inputStream(), chanReaderProcessor)
+        chanReaderProcessor.getTotalPostsCount()
+      }
+    }
+  }
+
+  @Test
+  fun readThreadBookmarkInfoObject() {
+    val threadJson = Fixtures.readBytes(Fixtures.FUTABA_THREAD)
+    benchmarkRule.param("jsonBytes", threadJson.size)
+
+    benchmarkRule.measureRepeated {
+      runBlocking {
+        futabaChanReader.readThreadBookmarkInfoObject(
+          threadDescriptor,
+          EXPECTED_CAPACITY,
+          THREAD_URL,
+          threadJson.inputStream()
+        ).unwrap()
+      }
+    }
+  }
+
+  @Test
+  fun readFilterWatchCatalogInfoObject() {
+    val catalogJson = Fixtures.readBytes(Fixtures.FUTABA_CATALOG)
+    benchmarkRule.param("jsonBytes", catalogJson.size)
+
+    benchmarkRule.measureRepeated {
+      runBlocking {
+        futabaChanReader.readFilterWatchCatalogInfoObject(
+          BoardDescriptor.create(Chan4.SITE_NAME, BOARD_CODE),
+          CATALOG_URL,
+          catalogJson.inputStream()
+        ).unwrap()
+      }
+    }
+  }
+
+  private fun benchmarkReadThread(threadJson: ByteArray) {
+    benchmarkRule.param("jsonBytes", threadJson.size)
+
+    benchmarkRule.measureRepeated {
+      val chanReaderProcessor = BenchmarkChanReaderProcessor(threadDescriptor)
+
+      runBlocking {
+        futabaChanReader.loadThreadFresh(THREAD_URL, threadJson.inputStream(), chanReaderProcessor)
+        chanReaderProcessor.getTotalPostsCount()
+      }
+    }
+  }
+
+  companion object {
+    private const val BOARD_CODE = "g"
+    private const val THREAD_NO = Fixtures.FUTABA_THREAD_NO
+    private const val LARGE_THREAD_POSTS_COUNT = 1500
+    private const val EXPECTED_CAPACITY = 300
+    internal const val THREAD_URL = "https://a.4cdn.org/g/thread/83947612.json"
+    private const val CATALOG_URL = "https://a.4cdn.org/g/catalog.json"
+
+    internal fun createFutabaChanReader(): FutabaChanReader {
+      val siteManager = Mockito.mock(SiteManager::class.java)
+      whenever(siteManager.bySiteDescriptor(any())).thenReturn(Chan4())
+
+      return FutabaChanReader(
+        Mockito.mock(ArchivesManager::class.java),
+        siteManager,
+        Mockito.mock(BoardManager::class.java)
+      )
+    }
+  }
+
+}
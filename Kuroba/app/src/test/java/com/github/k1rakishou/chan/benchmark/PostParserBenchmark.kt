@@ -0,0 +1,173 @@
+package com.github.k1rakishou.chan.benchmark
+
+import com.github.k1rakishou.BookmarkGridViewInfo
+import com.github.k1rakishou.ChanSettings
+import com.github.k1rakishou.ChanSettingsInfo
+import com.github.k1rakishou.benchmark.BenchmarkRule
+import com.github.k1rakishou.benchmark.fixtures.Fixtures
+import com.github.k1rakishou.benchmark.fixtures.FutabaJsonGenerator
+import com.github.k1rakishou.chan.core.site.common.FutabaChanReader
+import com.github.k1rakishou.chan.core.site.parser.PostParseContext
+import com.github.k1rakishou.chan.core.site.parser.PostParser
+import com.github.k1rakishou.chan.core.site.sites.chan4.Chan4
+import com.github.k1rakishou.common.AndroidUtils
+import com.github.k1rakishou.model.data.descriptor.ChanDescriptor
+import com.github.k1rakishou.model.data.post.ChanPostBuilder
+import kotlinx.coroutines.runBlocking
+import org.junit.Before
+import org.junit.Rule
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.robolectric.RobolectricTestRunner
+import org.robolectric.RuntimeEnvironment
+
+/**
+ * Comment parsing of the posts returned by FutabaChanReader with the same parser (CommentParser
+ * with the default rules wrapped into DefaultPostParser) and the same callback as PostParseWorker
+ * use. Every comment goes through PostParseContext so this is also what measures the reused html
+ * parser, comment builder and regex matchers.
+ * */
+@RunWith(RobolectricTestRunner::class)
+class PostParserBenchmark {
+
+  @get:Rule
+  val benchmarkRule = BenchmarkRule()
+
+  private lateinit var futabaChanReader: FutabaChanReader
+  private lateinit var postParser: PostParser
+
+  private val threadDescriptor = ChanDescriptor.ThreadDescriptor.create(Chan4.SITE_NAME, BOARD_CODE, THREAD_NO)
+  private val catalogDescriptor = ChanDescriptor.CatalogDescriptor.create(Chan4.SITE_NAME, BOARD_CODE)
+
+  @Before
+  fun init() {
+    AndroidUtils.init(RuntimeEnvironment.application)
+
+    ChanSettings.init(
+      ChanSettingsInfo(
+        applicationId = "com.github.k1rakishou.chan",
+        isTablet = false,
+        defaultFilterOrderName = "bump",
+        isDevBuild = false,
+        isBetaBuild = false,
+        bookmarkGridViewInfo = BookmarkGridViewInfo(defaultWidth = 300, minWidth = 200, maxWidth = 500)
+      )
+    )
+
+    futabaChanReader = FutabaChanReaderBenchmark.createFutabaChanReader()
+    postParser = runBlocking { futabaChanReader.getParser() }
+  }
+
+  @Test
+  fun parseThread() {
+    benchmarkParseThread(Fixtures.readBytes(Fixtures.FUTABA_THREAD))
+  }
+
+  /**
+   * Same as [parseThread] but with a thread a few times longer than the bump limit.
+   * */
+  @Test
+  fun parseThread_large() {
+    benchmarkParseThread(FutabaJsonGenerator.thread(BOARD_CODE, THREAD_NO, LARGE_THREAD_POSTS_COUNT).toByteArray())
+  }
+
+  /**
+   * Same as [parseThread] but every comment is parsed with a new PostParseContext (a new html
+   * parser and comment builder), which is how comments were parsed before the context was reused.
+   * Parsing inside of an already taken context makes DefaultPostParser fall back to a temporary
+   * one. The regex matchers are still taken from the thread's context.
+   * */
+  @Test
+  fun parseThread_withoutContextReuse() {
+    val threadJson = Fixtures.readBytes(Fixtures.FUTABA_THREAD)
+    benchmarkRule.param("jsonBytes", threadJson.size)
+
+    benchmarkRule.measureRepeated {
+      val postBuilders = runWithTimingDisabled { readThreadPosts(threadJson) }
+      parseAll(postBuilders, isParsingCatalog = false, reuseContext = false)
+    }
+  }
+
+  @Test
+  fun parseCatalog() {
+    val catalogJson = Fixtures.readBytes(Fixtures.FUTABA_CATALOG)
+    benchmarkRule.param("jsonBytes", catalogJson.size)
+
+    benchmarkRule.measureRepeated {
+      // parseFull() stores the parsed comment in the builder so every iteration needs new ones
+      val postBuilders = runWithTimingDisabled { readCatalogPosts(catalogJson) }
+      parseAll(postBuilders, isParsingCatalog = true)
+    }
+  }
+
+  private fun benchmarkParseThread(threadJson: ByteArray) {
+    benchmarkRule.param("jsonBytes", threadJson.size)
+
+    benchmarkRule.measureRepeated {
+      // parseFull() stores the parsed comment in the builder so every iteration needs new ones
+      val postBuilders = runWithTimingDisabled { readThreadPosts(threadJson) }
+      parseAll(postBuilders, isParsingCatalog = false)
+    }
+  }
+
+  private fun parseAll(
+    postBuilders: List<ChanPostBuilder>,
+    isParsingCatalog: Boolean,
+    reuseContext: Boolean = true
+  ): Int {
+    val internalIds = postBuilders.mapTo(HashSet(postBuilders.size)) { postBuilder -> postBuilder.id }
+    var commentsLength = 0
+
+    postBuilders.forEach { postBuilder ->
+      val callback = BenchmarkCallback(internalIds, isParsingCatalog)
+
+      val chanPost = if (reuseContext) {
+        postParser.parseFull(postBuilder, callback)
+      } else {
+        PostParseContext.withContext { postParser.parseFull(postBuilder, callback) }
+      }
+
+      commentsLength += chanPost.postComment.comment().length
+    }
+
+    return commentsLength
+  }
+
+  private fun readThreadPosts(threadJson: ByteArray): List<ChanPostBuilder> {
+    val chanReaderProcessor = BenchmarkChanReaderProcessor(threadDescriptor)
+
+    return runBlocking {
+      futabaChanReader.loadThreadFresh(FutabaChanReaderBenchmark.THREAD_URL, threadJson.inputStream(), chanReaderProcessor)
+      chanReaderProcessor.getToParse()
+    }
+  }
+
+  private fun readCatalogPosts(catalogJson: ByteArray): List<ChanPostBuilder> {
+    val chanReaderProcessor = BenchmarkChanReaderProcessor(catalogDescriptor)
+
+    return runBlocking {
+      futabaChanReader.loadCatalog(CATALOG_URL, catalogJson.inputStream(), chanReaderProcessor)
+      chanReaderProcessor.getToParse()
+    }
+  }
+
+  /**
+   * Same as the callback of PostParseWorker minus the saved replies (there are none).
+   * */
+  private class BenchmarkCallback(
+    private val internalIds: Set<Long>,
+    private val isParsingCatalog: Boolean
+  ) : PostParser.Callback {
+    override fun isSaved(postNo: Long, postSubNo: Long): Boolean = false
+    override fun isInternal(postNo: Long): Boolean = internalIds.contains(postNo)
+    override fun isParsingCatalogPosts(): Boolean = isParsingCatalog
+  }
+
+  companion object {
+    private const val BOARD_CODE = "g"
+    private const val THREAD_NO = Fixtures.FUTABA_THREAD_NO
+    private const val LARGE_THREAD_POSTS_COUNT = 1500
+    private const val CATALOG_URL = "https://a.4cdn.org/g/catalog.json"
+  }
+
+}
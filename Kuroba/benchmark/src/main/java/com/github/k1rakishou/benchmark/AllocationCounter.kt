@@ -0,0 +1,54 @@
+package com.github.k1rakishou.benchmark
+
+import java.lang.reflect.Method
+
+/**
+ * Amount of bytes allocated by the current thread. Uses the HotSpot specific ThreadMXBean which is
+ * not a part of android.jar so it has to be accessed via reflection. When it's not available (or is
+ * disabled) allocations are just not reported.
+ * */
+internal object AllocationCounter {
+  private val threadMXBean: Any?
+  private val getThreadAllocatedBytesMethod: Method?
+
+  init {
+    var bean: Any? = null
+    var method: Method? = null
+
+    try {
+      bean = Class.forName("java.lang.management.ManagementFactory")
+        .getMethod("getThreadMXBean")
+        .invoke(null)
+
+      val threadMXBeanClass = Class.forName("com.sun.management.ThreadMXBean")
+      if (threadMXBeanClass.isInstance(bean)) {
+        val isSupported = threadMXBeanClass.getMethod("isThreadAllocatedMemorySupported").invoke(bean) as Boolean
+        if (isSupported) {
+          threadMXBeanClass.getMethod("setThreadAllocatedMemoryEnabled", Boolean::class.javaPrimitiveType)
+            .invoke(bean, true)
+
+          method = threadMXBeanClass.getMethod("getThreadAllocatedBytes", Long::class.javaPrimitiveType)
+        }
+      }
+    } catch (error: Throwable) {
+      method = null
+    }
+
+    threadMXBean = bean
+    getThreadAllocatedBytesMethod = method
+  }
+
+  val isSupported: Boolean
+    get() = getThreadAllocatedBytesMethod != null
+
+  /**
+   * Returns -1 when not supported.
+   * */
+  fun currentThreadAllocatedBytes(): Long {
+    val method = getThreadAllocatedBytesMethod
+      ?: return -1L
+
+    return method.invoke(threadMXBean, Thread.currentThread().id) as Long
+  }
+
+}
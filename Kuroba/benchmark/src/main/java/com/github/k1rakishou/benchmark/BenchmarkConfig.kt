@@ -0,0 +1,39 @@
+package com.github.k1rakishou.benchmark
+
+import java.io.File
+
+/**
+ * Benchmark settings passed by gradle as system properties (see benchmark/build.gradle). The
+ * iteration counts are taken from the project properties of the same name, e.g.
+ * `./gradlew :benchmark:testDebugUnitTest -Pbenchmark -Pbenchmark.measuredIterations=100`.
+ * */
+object BenchmarkConfig {
+  private const val ENABLED_KEY = "benchmark.enabled"
+  private const val RESULTS_DIR_KEY = "benchmark.resultsDir"
+  private const val WARMUP_ITERATIONS_KEY = "benchmark.warmupIterations"
+  private const val MEASURED_ITERATIONS_KEY = "benchmark.measuredIterations"
+
+  private const val DEFAULT_WARMUP_ITERATIONS = 20
+  private const val DEFAULT_MEASURED_ITERATIONS = 50
+
+  val enabled: Boolean
+    get() = System.getProperty(ENABLED_KEY)?.toBoolean() ?: false
+
+  val resultsDir: File
+    get() = File(System.getProperty(RESULTS_DIR_KEY) ?: "build/benchmark-results")
+
+  val warmupIterations: Int
+    get() = intProperty(WARMUP_ITERATIONS_KEY, DEFAULT_WARMUP_ITERATIONS)
+
+  val measuredIterations: Int
+    get() = intProperty(MEASURED_ITERATIONS_KEY, DEFAULT_MEASURED_ITERATIONS)
+
+  private fun intProperty(key: String, defaultValue: Int): Int {
+    val value = System.getProperty(key)?.toIntOrNull()
+      ?: return defaultValue
+
+    require(value > 0) { "Bad $key: $value" }
+    return value
+  }
+
+}
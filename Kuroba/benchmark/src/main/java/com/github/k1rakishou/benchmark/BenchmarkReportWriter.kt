@@ -0,0 +1,86 @@
+package com.github.k1rakishou.benchmark
+
+import com.google.gson.GsonBuilder
+import com.google.gson.annotations.SerializedName
+import java.io.File
+import java.text.SimpleDateFormat
+import java.util.*
+
+/**
+ * Writes the results of every benchmark class into a separate json file ("<class name>.json") in the
+ * [BenchmarkConfig.resultsDir]. The format is close to the one androidx.benchmark uses (a context
+ * object and a list of benchmarks with metrics) so the files can be fed into the same tooling when
+ * comparing two releases.
+ * */
+internal object BenchmarkReportWriter {
+  private val gson = GsonBuilder()
+    .setPrettyPrinting()
+    .serializeSpecialFloatingPointValues()
+    .create()
+
+  private val resultsByClass = mutableMapOf<String, MutableList<BenchmarkResult>>()
+
+  @Synchronized
+  fun append(result: BenchmarkResult): File {
+    val results = resultsByClass.getOrPut(result.className) { mutableListOf() }
+    results.removeAll { prevResult -> prevResult.name == result.name }
+    results += result
+
+    val report = Report(
+      context = createContext(),
+      benchmarks = results.toList()
+    )
+
+    val resultsDir = BenchmarkConfig.resultsDir
+    if (!resultsDir.exists() && !resultsDir.mkdirs()) {
+      throw IllegalStateException("Failed to create results directory: ${resultsDir.absolutePath}")
+    }
+
+    val outputFile = File(resultsDir, "${result.className}.json")
+    outputFile.writeText(gson.toJson(report))
+
+    return outputFile
+  }
+
+  private fun createContext(): Context {
+    val timestamp = SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ssZ", Locale.US).format(Date())
+
+    return Context(
+      timestamp = timestamp,
+      javaVersion = System.getProperty("java.version") ?: "unknown",
+      vmName = System.getProperty("java.vm.name") ?: "unknown",
+      osName = System.getProperty("os.name") ?: "unknown",
+      osArch = System.getProperty("os.arch") ?: "unknown",
+      availableProcessors = Runtime.getRuntime().availableProcessors(),
+      maxMemoryBytes = Runtime.getRuntime().maxMemory(),
+      allocationsSupported = AllocationCounter.isSupported
+    )
+  }
+
+  private data class Report(
+    @SerializedName("context")
+    val context: Context,
+    @SerializedName("benchmarks")
+    val benchmarks: List<BenchmarkResult>
+  )
+
+  private data class Context(
+    @SerializedName("timestamp")
+    val timestamp: String,
+    @SerializedName("javaVersion")
+    val javaVersion: String,
+    @SerializedName("vmName")
+    val vmName: String,
+    @SerializedName("osName")
+    val osName: String,
+    @SerializedName("osArch")
+    val osArch: String,
+    @SerializedName("availableProcessors")
+    val availableProcessors: Int,
+    @SerializedName("maxMemoryBytes")
+    val maxMemoryBytes: Long,
+    @SerializedName("allocationsSupported")
+    val allocationsSupported: Boolean
+  )
+
+}
@@ -0,0 +1,60 @@
+package com.github.k1rakishou.benchmark
+
+import com.google.gson.annotations.SerializedName
+
+data class BenchmarkResult(
+  @SerializedName("name")
+  val name: String,
+  @SerializedName("className")
+  val className: String,
+  @SerializedName("warmupIterations")
+  val warmupIterations: Int,
+  @SerializedName("params")
+  val params: Map<String, String>,
+  @SerializedName("metrics")
+  val metrics: Map<String, Metric>
+) {
+
+  data class Metric(
+    @SerializedName("minimum")
+    val minimum: Long,
+    @SerializedName("maximum")
+    val maximum: Long,
+    @SerializedName("median")
+    val median: Long,
+    @SerializedName("mean")
+    val mean: Double,
+    @SerializedName("runs")
+    val runs: List<Long>
+  ) {
+
+    companion object {
+      fun fromRuns(runs: LongArray): Metric {
+        require(runs.isNotEmpty()) { "runs are empty" }
+
+        val sorted = runs.sortedArray()
+        val middle = sorted.size / 2
+
+        val median = if (sorted.size % 2 == 0) {
+          (sorted[middle - 1] + sorted[middle]) / 2
+        } else {
+          sorted[middle]
+        }
+
+        return Metric(
+          minimum = sorted.first(),
+          maximum = sorted.last(),
+          median = median,
+          mean = runs.average(),
+          runs = runs.toList()
+        )
+      }
+    }
+  }
+
+  companion object {
+    const val TIME_NS_METRIC = "timeNs"
+    const val ALLOCATION_BYTES_METRIC = "allocationBytes"
+  }
+
+}
@@ -0,0 +1,204 @@
+package com.github.k1rakishou.benchmark
+
+import org.junit.AssumptionViolatedException
+import org.junit.rules.TestRule
+import org.junit.runner.Description
+import org.junit.runners.model.Statement
+import java.util.concurrent.ExecutionException
+import java.util.concurrent.Executors
+
+/**
+ * A JUnit rule for JVM microbenchmarks with an API similar to androidx.benchmark's BenchmarkRule so
+ * the benchmarks look the same as the ones that run on a device and may be moved over there without
+ * changes.
+ *
+ * ```
+ * @get:Rule
+ * val benchmarkRule = BenchmarkRule()
+ *
+ * @Test
+ * fun parse() {
+ *   benchmarkRule.measureRepeated {
+ *     val input = runWithTimingDisabled { createInput() }
+ *     parser.parse(input)
+ *   }
+ * }
+ * ```
+ *
+ * Every benchmark first runs [BenchmarkConfig.warmupIterations] times to let the JIT do its job and
+ * then [BenchmarkConfig.measuredIterations] times while recording the time (and allocations when
+ * the VM supports it) of every iteration. The value returned by the measured block is consumed so
+ * that the JIT can't throw the benchmarked code away.
+ *
+ * Benchmarks are skipped (not failed) unless [BenchmarkConfig.enabled] is set so that they don't slow
+ * down regular test runs.
+ * */
+class BenchmarkRule : TestRule {
+  private var description: Description? = null
+  private var measured = false
+  private val params = linkedMapOf<String, String>()
+
+  override fun apply(base: Statement, description: Description): Statement {
+    return object : Statement() {
+      override fun evaluate() {
+        if (!BenchmarkConfig.enabled) {
+          throw AssumptionViolatedException("Benchmarks are disabled, run the tests with -Pbenchmark")
+        }
+
+        this@BenchmarkRule.description = description
+        base.evaluate()
+
+        check(measured) { "Benchmark ${description.displayName} never called measureRepeated()" }
+      }
+    }
+  }
+
+  /**
+   * Additional info about the benchmark input (amount of posts, filters etc.) that is stored in the
+   * results file along with the metrics.
+   * */
+  fun param(name: String, value: Any) {
+    params[name] = value.toString()
+  }
+
+  /**
+   * [onBackgroundThread] is for the code that must not run on the main thread (which is the test
+   * thread when running with Robolectric).
+   * */
+  fun measureRepeated(onBackgroundThread: Boolean = false, block: Scope.() -> Any?) {
+    val currentDescription = checkNotNull(description) { "BenchmarkRule is not applied" }
+    check(!measured) { "measureRepeated() can only be called once per benchmark" }
+    measured = true
+
+    val result = if (onBackgroundThread) {
+      runOnBackgroundThread { measureRepeatedInternal(currentDescription, block) }
+    } else {
+      measureRepeatedInternal(currentDescription, block)
+    }
+
+    val outputFile = BenchmarkReportWriter.append(result)
+    println(formatResult(result) + " (results: ${outputFile.absolutePath})")
+  }
+
+  private fun measureRepeatedInternal(description: Description, block: Scope.() -> Any?): BenchmarkResult {
+    val warmupIterations = BenchmarkConfig.warmupIterations
+    val measuredIterations = BenchmarkConfig.measuredIterations
+    val scope = Scope()
+
+    repeat(warmupIterations) {
+      scope.runIteration(block)
+    }
+
+    System.gc()
+
+    val timeRuns = LongArray(measuredIterations)
+    val allocationRuns = LongArray(measuredIterations)
+
+    for (iteration in 0 until measuredIterations) {
+      scope.runIteration(block)
+
+      timeRuns[iteration] = scope.lastIterationTimeNs
+      allocationRuns[iteration] = scope.lastIterationAllocatedBytes
+    }
+
+    val metrics = linkedMapOf(BenchmarkResult.TIME_NS_METRIC to BenchmarkResult.Metric.fromRuns(timeRuns))
+    if (AllocationCounter.isSupported) {
+      metrics[BenchmarkResult.ALLOCATION_BYTES_METRIC] = BenchmarkResult.Metric.fromRuns(allocationRuns)
+    }
+
+    return BenchmarkResult(
+      name = description.methodName,
+      className = description.testClass?.simpleName ?: description.className,
+      warmupIterations = warmupIterations,
+      params = params.toMap(),
+      metrics = metrics
+    )
+  }
+
+  private fun <T> runOnBackgroundThread(func: () -> T): T {
+    val executor = Executors.newSingleThreadExecutor { runnable -> Thread(runnable, "benchmark-thread") }
+
+    try {
+      return executor.submit<T> { func() }.get()
+    } catch (error: ExecutionException) {
+      throw error.cause ?: error
+    } finally {
+      executor.shutdown()
+    }
+  }
+
+  private fun formatResult(result: BenchmarkResult): String {
+    val time = result.metrics.getValue(BenchmarkResult.TIME_NS_METRIC)
+    val allocations = result.metrics[BenchmarkResult.ALLOCATION_BYTES_METRIC]
+
+    return buildString {
+      append("${result.className}.${result.name}: ")
+      append("median=${time.median}ns, min=${time.minimum}ns, max=${time.maximum}ns")
+
+      if (allocations != null) {
+        append(", allocated(median)=${allocations.median}B")
+      }
+    }
+  }
+
+  class Scope internal constructor() {
+    private var pausedTimeNs = 0L
+    private var pausedAllocatedBytes = 0L
+    private var paused = false
+
+    internal var lastIterationTimeNs = 0L
+      private set
+    internal var lastIterationAllocatedBytes = 0L
+      private set
+
+    /**
+     * Setup/cleanup code of an iteration that must not be a part of the measurement.
+     * */
+    fun <T> runWithTimingDisabled(block: () -> T): T {
+      check(!paused) { "runWithTimingDisabled() calls can't be nested" }
+      paused = true
+
+      val startAllocatedBytes = AllocationCounter.currentThreadAllocatedBytes()
+      val startTimeNs = System.nanoTime()
+
+      try {
+        return block()
+      } finally {
+        pausedTimeNs += System.nanoTime() - startTimeNs
+        pausedAllocatedBytes += AllocationCounter.currentThreadAllocatedBytes() - startAllocatedBytes
+        paused = false
+      }
+    }
+
+    internal fun runIteration(block: Scope.() -> Any?) {
+      pausedTimeNs = 0L
+      pausedAllocatedBytes = 0L
+
+      val startAllocatedBytes = AllocationCounter.currentThreadAllocatedBytes()
+      val startTimeNs = System.nanoTime()
+
+      val result = block()
+
+      val endTimeNs = System.nanoTime()
+      val endAllocatedBytes = AllocationCounter.currentThreadAllocatedBytes()
+
+      consume(result)
+
+      lastIterationTimeNs = (endTimeNs - startTimeNs - pausedTimeNs).coerceAtLeast(0L)
+      lastIterationAllocatedBytes = (endAllocatedBytes - startAllocatedBytes - pausedAllocatedBytes).coerceAtLeast(0L)
+    }
+
+    private fun consume(value: Any?) {
+      // Practically never true but the JIT can't prove it so the value has to be computed
+      if (value != null && System.identityHashCode(value) == sink) {
+        sink = System.identityHashCode(value) + 1
+      }
+    }
+  }
+
+  companion object {
+    @Volatile
+    private var sink = 0
+  }
+
+}
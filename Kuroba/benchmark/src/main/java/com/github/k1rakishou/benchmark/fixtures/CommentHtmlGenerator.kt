@@ -0,0 +1,122 @@
+package com.github.k1rakishou.benchmark.fixtures
+
+import kotlin.random.Random
+
+/**
+ * Generates post comments the way the sites send them: html with quotes of other posts, greentext,
+ * spoilers, line breaks, html entities and plain text links (which are turned into links by the
+ * app, not by the site).
+ * */
+class CommentHtmlGenerator(
+  private val markup: Markup
+) {
+
+  /**
+   * [quotablePostNos] are the posts that the comment may quote (usually the previous posts of the
+   * same thread).
+   * */
+  fun generate(
+    random: Random,
+    boardCode: String,
+    threadNo: Long,
+    quotablePostNos: List<Long>
+  ): String {
+    val linesCount = random.nextInt(1, 8)
+
+    return buildString {
+      repeat(linesCount) { lineIndex ->
+        if (lineIndex > 0) {
+          append("<br>")
+        }
+
+        val roll = random.nextInt(100)
+
+        when {
+          roll < 25 && quotablePostNos.isNotEmpty() -> {
+            val postNo = quotablePostNos[random.nextInt(quotablePostNos.size)]
+            appendQuote(boardCode, threadNo, postNo)
+          }
+          roll < 40 -> appendGreentext(escapeHtml(">" + FixtureText.sentence(random)))
+          roll < 47 -> appendSpoiler(FixtureText.sentence(random, maxWords = 6))
+          roll < 55 -> {
+            append(escapeHtml(FixtureText.sentence(random, maxWords = 6)))
+            append(' ')
+            append(markup.wrapLink(FixtureText.link(random)))
+          }
+          roll < 60 -> append(escapeHtml("\"${FixtureText.word(random)}\" & 'stuff' <3"))
+          else -> append(escapeHtml(FixtureText.sentence(random)))
+        }
+      }
+    }
+  }
+
+  private fun StringBuilder.appendQuote(boardCode: String, threadNo: Long, postNo: Long) {
+    when (markup) {
+      Markup.Futaba -> {
+        append("<a href=\"#p").append(postNo).append("\" class=\"quotelink\">&gt;&gt;").append(postNo).append("</a>")
+      }
+      Markup.Dvach -> {
+        append("<a href=\"/").append(boardCode).append("/res/").append(threadNo).append(".html#").append(postNo)
+        append("\" class=\"post-reply-link\" data-thread=\"").append(threadNo)
+        append("\" data-num=\"").append(postNo).append("\">&gt;&gt;").append(postNo).append("</a>")
+      }
+      Markup.Lynxchan -> {
+        append("<a class=\"quoteLink\" href=\"/").append(boardCode).append("/res/").append(threadNo)
+        append(".html#").append(postNo).append("\">&gt;&gt;").append(postNo).append("</a>")
+      }
+    }
+  }
+
+  private fun StringBuilder.appendGreentext(escapedText: String) {
+    when (markup) {
+      Markup.Futaba -> append("<span class=\"quote\">").append(escapedText).append("</span>")
+      Markup.Dvach -> append("<span class=\"unkfunc\">").append(escapedText).append("</span>")
+      Markup.Lynxchan -> append("<span class=\"greenText\">").append(escapedText).append("</span>")
+    }
+  }
+
+  private fun StringBuilder.appendSpoiler(text: String) {
+    when (markup) {
+      Markup.Futaba -> append("<s>").append(escapeHtml(text)).append("</s>")
+      Markup.Dvach -> append("<span class=\"spoiler\">").append(escapeHtml(text)).append("</span>")
+      Markup.Lynxchan -> append("<span class=\"spoiler\">").append(escapeHtml(text)).append("</span>")
+    }
+  }
+
+  enum class Markup {
+    Futaba,
+    Dvach,
+    Lynxchan;
+
+    fun wrapLink(link: String): String {
+      return when (this) {
+        // 4chan breaks long words (and links) with <wbr>
+        Futaba -> link.chunked(32).joinToString(separator = "<wbr>")
+        Dvach -> "<a href=\"${link}\" target=\"_blank\" rel=\"nofollow noopener noreferrer\">${link}</a>"
+        Lynxchan -> link
+      }
+    }
+  }
+
+  companion object {
+    fun escapeHtml(text: String): String {
+      if (text.none { ch -> ch == '<' || ch == '>' || ch == '&' || ch == '"' || ch == '\'' }) {
+        return text
+      }
+
+      return buildString(text.length + 16) {
+        for (ch in text) {
+          when (ch) {
+            '<' -> append("&lt;")
+            '>' -> append("&gt;")
+            '&' -> append("&amp;")
+            '"' -> append("&quot;")
+            '\'' -> append("&#039;")
+            else -> append(ch)
+          }
+        }
+      }
+    }
+  }
+
+}
@@ -0,0 +1,147 @@
+package com.github.k1rakishou.benchmark.fixtures
+
+import com.google.gson.stream.JsonWriter
+import java.io.StringWriter
+import kotlin.random.Random
+
+/**
+ * 2ch.hk thread ("/{board}/res/{no}.json") and catalog ("/{board}/catalog.json") responses.
+ * */
+object DvachJsonGenerator {
+  private val commentGenerator = CommentHtmlGenerator(CommentHtmlGenerator.Markup.Dvach)
+
+  fun thread(
+    boardCode: String = "b",
+    threadNo: Long = 250_000_000L,
+    postsCount: Int = 500,
+    seed: Int = 0
+  ): String {
+    require(postsCount > 0) { "Bad postsCount: $postsCount" }
+
+    val random = Random(seed)
+    val stringWriter = StringWriter()
+    val postNos = ArrayList<Long>(postsCount)
+
+    JsonWriter(stringWriter).use { writer ->
+      writer.beginObject()
+      writer.name("bump_limit").value(500)
+      writer.name("unique_posters").value(postsCount / 3 + 1)
+      writer.name("threads")
+      writer.beginArray()
+      writer.beginObject()
+      writer.name("posts")
+      writer.beginArray()
+
+      var postNo = threadNo
+      repeat(postsCount) { index ->
+        val quotable = postNos.subList((index - 50).coerceAtLeast(0), index)
+        writePost(writer, random, boardCode, threadNo, postNo, quotable, postsCount)
+
+        postNos += postNo
+        postNo += random.nextLong(1, 40)
+      }
+
+      writer.endArray()
+      writer.endObject()
+      writer.endArray()
+      writer.endObject()
+    }
+
+    return stringWriter.toString()
+  }
+
+  fun catalog(
+    boardCode: String = "b",
+    threadsCount: Int = 150,
+    seed: Int = 0
+  ): String {
+    val random = Random(seed)
+    val stringWriter = StringWriter()
+    var threadNo = 250_000_000L
+
+    JsonWriter(stringWriter).use { writer ->
+      writer.beginObject()
+      writer.name("board").value(boardCode)
+      writer.name("threads")
+      writer.beginArray()
+
+      repeat(threadsCount) {
+        threadNo += random.nextLong(1, 5_000)
+        writePost(writer, random, boardCode, threadNo, threadNo, emptyList(), random.nextInt(1, 500))
+      }
+
+      writer.endArray()
+      writer.endObject()
+    }
+
+    return stringWriter.toString()
+  }
+
+  private fun writePost(
+    writer: JsonWriter,
+    random: Random,
+    boardCode: String,
+    threadNo: Long,
+    postNo: Long,
+    quotablePostNos: List<Long>,
+    postsCount: Int
+  ) {
+    val isOp = postNo == threadNo
+    val timestamp = 1_600_000_000L + (postNo - threadNo) * 5
+    val isSage = !isOp && random.nextInt(10) == 0
+
+    writer.beginObject()
+    writer.name("num").value(postNo)
+    writer.name("op").value(if (isOp) 1 else 0)
+    writer.name("parent").value(if (isOp) 0L else threadNo)
+    writer.name("banned").value(0)
+    writer.name("closed").value(0)
+    writer.name("comment").value(commentGenerator.generate(random, boardCode, threadNo, quotablePostNos))
+    writer.name("subject").value(if (isOp) FixtureText.sentence(random, maxWords = 8) else "")
+    writer.name("date").value("13/09/20 Вск 12:26:40")
+    writer.name("email").value(if (isSage) "mailto:sage" else "")
+    writer.name("name").value("Аноним")
+    writer.name("sticky").value(0)
+    writer.name("endless").value(0)
+    writer.name("timestamp").value(timestamp)
+    writer.name("trip").value("")
+    writer.name("lasthit").value(timestamp + postsCount * 5)
+
+    if (isOp) {
+      writer.name("posts_count").value(postsCount)
+      writer.name("files_count").value(postsCount / 4)
+    }
+
+    writer.name("files")
+    writer.beginArray()
+
+    val filesCount = if (isOp) 1 else if (random.nextInt(3) == 0) random.nextInt(1, 5) else 0
+    repeat(filesCount) { fileIndex ->
+      writeFile(writer, random, boardCode, timestamp, fileIndex)
+    }
+
+    writer.endArray()
+    writer.endObject()
+  }
+
+  private fun writeFile(writer: JsonWriter, random: Random, boardCode: String, timestamp: Long, fileIndex: Int) {
+    val name = "${timestamp}${fileIndex}.jpg"
+    val width = random.nextInt(200, 4000)
+    val height = random.nextInt(200, 4000)
+
+    writer.beginObject()
+    writer.name("fullname").value(FixtureText.word(random) + ".jpg")
+    writer.name("md5").value(FixtureText.hexString(random, 32))
+    writer.name("name").value(name)
+    writer.name("path").value("/${boardCode}/src/${timestamp}/${name}")
+    writer.name("size").value(random.nextLong(10, 4_000))
+    writer.name("thumbnail").value("/${boardCode}/thumb/${timestamp}/${timestamp}${fileIndex}s.jpg")
+    writer.name("tn_height").value(height.coerceAtMost(200))
+    writer.name("tn_width").value(width.coerceAtMost(200))
+    writer.name("type").value(1)
+    writer.name("width").value(width)
+    writer.name("height").value(height)
+    writer.endObject()
+  }
+
+}
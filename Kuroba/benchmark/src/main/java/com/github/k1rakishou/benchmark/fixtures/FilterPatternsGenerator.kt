@@ -0,0 +1,26 @@
+package com.github.k1rakishou.benchmark.fixtures
+
+import kotlin.random.Random
+
+/**
+ * Filter patterns in all the formats users actually write them (see RegexPatternCompiler): regex
+ * with flags, exact "quoted sentences", words with wildcards and plain lists of words. Most of them
+ * contain words from [FixtureText] so the filters do match some posts.
+ * */
+object FilterPatternsGenerator {
+
+  fun generate(count: Int, seed: Int = 0): List<String> {
+    val random = Random(seed)
+
+    return List(count) { index ->
+      when (index % 5) {
+        0 -> "/${FixtureText.word(random)}s?\\b/i"
+        1 -> "/(${FixtureText.word(random)}|${FixtureText.word(random)}|${FixtureText.word(random)})\\s+\\w+/"
+        2 -> "\"${FixtureText.word(random)} ${FixtureText.word(random)}\""
+        3 -> "${FixtureText.word(random).take(4)}*"
+        else -> "${FixtureText.word(random)} ${FixtureText.word(random)} unmatched${random.nextInt(1_000_000)}"
+      }
+    }
+  }
+
+}
@@ -0,0 +1,59 @@
+package com.github.k1rakishou.benchmark.fixtures
+
+import kotlin.random.Random
+
+/**
+ * Pseudo-random (but always the same for the same seed) post texts. The words are lowercase latin
+ * with a bit of cyrillic and japanese mixed in since that's what the real boards look like.
+ * */
+internal object FixtureText {
+  val WORDS = listOf(
+    "thread", "post", "anon", "image", "board", "reply", "kotlin", "java", "android", "phone",
+    "desktop", "linux", "windows", "compile", "build", "gradle", "memory", "cache", "thumbnail", "video",
+    "music", "anime", "manga", "game", "console", "keyboard", "monitor", "server", "network", "download",
+    "upload", "archive", "bookmark", "filter", "catalog", "sticky", "closed", "bump", "sage", "captcha",
+    "weather", "coffee", "breakfast", "weekend", "holiday", "train", "bicycle", "mountain", "river", "city",
+    "тред", "пост", "анон",
+    "スレッド", "画像"
+  )
+
+  private val DOMAINS = listOf("example.com", "youtube.com", "github.com", "streamable.com", "soundcloud.com")
+
+  fun word(random: Random): String = WORDS[random.nextInt(WORDS.size)]
+
+  fun sentence(random: Random, minWords: Int = 4, maxWords: Int = 16): String {
+    val wordsCount = random.nextInt(minWords, maxWords + 1)
+
+    return buildString {
+      repeat(wordsCount) { index ->
+        if (index > 0) {
+          append(' ')
+        }
+
+        append(word(random))
+      }
+    }
+  }
+
+  fun link(random: Random): String {
+    val domain = DOMAINS[random.nextInt(DOMAINS.size)]
+    return "https://${domain}/${word(random)}/${random.nextInt(1_000_000)}"
+  }
+
+  fun hexString(random: Random, length: Int): String {
+    val chars = "0123456789abcdef"
+
+    return buildString(length) {
+      repeat(length) { append(chars[random.nextInt(chars.length)]) }
+    }
+  }
+
+  fun base64String(random: Random, length: Int): String {
+    val chars = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/"
+
+    return buildString(length) {
+      repeat(length) { append(chars[random.nextInt(chars.length)]) }
+    }
+  }
+
+}
@@ -0,0 +1,45 @@
+package com.github.k1rakishou.benchmark.fixtures
+
+/**
+ * Site responses stored in the resources of this module. The generators in this package are only
+ * used when a benchmark needs a response of some specific size.
+ *
+ * The json responses are hand-made in the format of the respective site api, they are not captures
+ * of live responses. Replace them with real captures (keeping the post counts) when possible.
+ * */
+object Fixtures {
+  // Search result pages of FoolFuuka archives (test resources of core-parser, see build.gradle)
+  val FOOLFUUKA_PAGES = listOf(
+    "parsing/foolfuuka_search/archived_moe_search.html",
+    "parsing/foolfuuka_search/arch_b4k_co_search.html",
+    "parsing/foolfuuka_search/fireden_search.html"
+  )
+
+  // https://a.4cdn.org/{board}/thread/{no}.json (300 posts)
+  const val FUTABA_THREAD = "fixtures/4chan/g_thread.json"
+  const val FUTABA_THREAD_NO = 83_947_612L
+  // https://a.4cdn.org/{board}/catalog.json (10 pages, 150 threads)
+  const val FUTABA_CATALOG = "fixtures/4chan/g_catalog.json"
+
+  // https://2ch.hk/{board}/res/{no}.json (300 posts)
+  const val DVACH_THREAD = "fixtures/2ch/b_thread.json"
+  // https://2ch.hk/{board}/catalog.json (150 threads)
+  const val DVACH_CATALOG = "fixtures/2ch/b_catalog.json"
+
+  // https://{domain}/{board}/res/{no}.json (200 posts)
+  const val LYNXCHAN_THREAD = "fixtures/lynxchan/b_thread.json"
+  // https://{domain}/{board}/{page}.json (25 threads)
+  const val LYNXCHAN_CATALOG_PAGE = "fixtures/lynxchan/b_page_1.json"
+
+  fun readBytes(path: String): ByteArray {
+    val inputStream = Fixtures::class.java.classLoader?.getResourceAsStream(path)
+      ?: throw IllegalArgumentException("Fixture not found: $path")
+
+    return inputStream.use { stream -> stream.readBytes() }
+  }
+
+  fun readString(path: String): String {
+    return String(readBytes(path), Charsets.UTF_8)
+  }
+
+}
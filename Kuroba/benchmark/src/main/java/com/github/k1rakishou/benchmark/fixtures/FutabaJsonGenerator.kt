@@ -0,0 +1,178 @@
+package com.github.k1rakishou.benchmark.fixtures
+
+import com.google.gson.stream.JsonWriter
+import java.io.StringWriter
+import kotlin.random.Random
+
+/**
+ * 4chan (a.4cdn.org) thread ("/{board}/thread/{no}.json") and catalog ("/{board}/catalog.json")
+ * responses.
+ * */
+object FutabaJsonGenerator {
+  private val commentGenerator = CommentHtmlGenerator(CommentHtmlGenerator.Markup.Futaba)
+  private val COUNTRIES = listOf("US" to "United States", "DE" to "Germany", "JP" to "Japan", "FI" to "Finland")
+
+  fun thread(
+    boardCode: String = "g",
+    threadNo: Long = 80_000_000L,
+    postsCount: Int = 500,
+    seed: Int = 0
+  ): String {
+    require(postsCount > 0) { "Bad postsCount: $postsCount" }
+
+    val random = Random(seed)
+    val postNos = generatePostNos(random, threadNo, postsCount)
+    val stringWriter = StringWriter()
+
+    JsonWriter(stringWriter).use { writer ->
+      writer.beginObject()
+      writer.name("posts")
+      writer.beginArray()
+
+      postNos.forEachIndexed { index, postNo ->
+        val quotable = postNos.subList((index - 50).coerceAtLeast(0), index)
+        writePost(writer, random, boardCode, threadNo, postNo, quotable, postsCount)
+      }
+
+      writer.endArray()
+      writer.endObject()
+    }
+
+    return stringWriter.toString()
+  }
+
+  fun catalog(
+    boardCode: String = "g",
+    pagesCount: Int = 10,
+    threadsPerPage: Int = 15,
+    lastRepliesCount: Int = 5,
+    seed: Int = 0
+  ): String {
+    val random = Random(seed)
+    val stringWriter = StringWriter()
+    var threadNo = 80_000_000L
+
+    JsonWriter(stringWriter).use { writer ->
+      writer.beginArray()
+
+      for (page in 1..pagesCount) {
+        writer.beginObject()
+        writer.name("page").value(page)
+        writer.name("threads")
+        writer.beginArray()
+
+        repeat(threadsPerPage) {
+          threadNo += random.nextLong(1, 5_000)
+
+          val repliesCount = random.nextInt(lastRepliesCount, 500)
+          val lastReplyNos = generatePostNos(random, threadNo, lastRepliesCount + 1).drop(1)
+
+          writer.beginObject()
+          writePostFields(writer, random, boardCode, threadNo, threadNo, emptyList(), repliesCount)
+
+          writer.name("omitted_posts").value(repliesCount - lastRepliesCount)
+          writer.name("last_replies")
+          writer.beginArray()
+          lastReplyNos.forEach { postNo ->
+            writePost(writer, random, boardCode, threadNo, postNo, listOf(threadNo), repliesCount)
+          }
+          writer.endArray()
+
+          writer.endObject()
+        }
+
+        writer.endArray()
+        writer.endObject()
+      }
+
+      writer.endArray()
+    }
+
+    return stringWriter.toString()
+  }
+
+  private fun writePost(
+    writer: JsonWriter,
+    random: Random,
+    boardCode: String,
+    threadNo: Long,
+    postNo: Long,
+    quotablePostNos: List<Long>,
+    repliesCount: Int
+  ) {
+    writer.beginObject()
+    writePostFields(writer, random, boardCode, threadNo, postNo, quotablePostNos, repliesCount)
+    writer.endObject()
+  }
+
+  private fun writePostFields(
+    writer: JsonWriter,
+    random: Random,
+    boardCode: String,
+    threadNo: Long,
+    postNo: Long,
+    quotablePostNos: List<Long>,
+    repliesCount: Int
+  ) {
+    val isOp = postNo == threadNo
+    val time = 1_600_000_000L + (postNo - threadNo) * 7
+
+    writer.name("no").value(postNo)
+    writer.name("resto").value(if (isOp) 0L else threadNo)
+
+    if (isOp) {
+      writer.name("sticky").value(0)
+      writer.name("closed").value(0)
+      writer.name("sub").value(FixtureText.sentence(random, maxWords = 8))
+      writer.name("replies").value(repliesCount)
+      writer.name("images").value(repliesCount / 4)
+      writer.name("unique_ips").value(repliesCount / 3 + 1)
+      writer.name("semantic_url").value(FixtureText.word(random) + "-" + FixtureText.word(random))
+      writer.name("last_modified").value(time + repliesCount * 7)
+    }
+
+    writer.name("now").value("09/13/20(Sun)12:26:40")
+    writer.name("name").value("Anonymous")
+    writer.name("time").value(time)
+
+    if (random.nextInt(10) == 0) {
+      writer.name("id").value(FixtureText.base64String(random, 8))
+    }
+
+    if (random.nextInt(8) == 0) {
+      val (countryCode, countryName) = COUNTRIES[random.nextInt(COUNTRIES.size)]
+      writer.name("country").value(countryCode)
+      writer.name("country_name").value(countryName)
+    }
+
+    writer.name("com").value(commentGenerator.generate(random, boardCode, threadNo, quotablePostNos))
+
+    if (isOp || random.nextInt(3) == 0) {
+      val width = random.nextInt(200, 4000)
+      val height = random.nextInt(200, 4000)
+
+      writer.name("filename").value(FixtureText.word(random) + "_" + random.nextInt(10_000))
+      writer.name("ext").value(if (random.nextInt(5) == 0) ".webm" else ".jpg")
+      writer.name("w").value(width)
+      writer.name("h").value(height)
+      writer.name("tn_w").value(width.coerceAtMost(250))
+      writer.name("tn_h").value(height.coerceAtMost(250))
+      writer.name("tim").value(time * 1000 + random.nextInt(1000))
+      writer.name("md5").value(FixtureText.base64String(random, 22) + "==")
+      writer.name("fsize").value(random.nextLong(10_000, 4_000_000))
+    }
+  }
+
+  private fun generatePostNos(random: Random, threadNo: Long, postsCount: Int): List<Long> {
+    val postNos = ArrayList<Long>(postsCount)
+    var postNo = threadNo
+
+    repeat(postsCount) {
+      postNos += postNo
+      postNo += random.nextLong(1, 40)
+    }
+
+    return postNos
+  }
+
+}
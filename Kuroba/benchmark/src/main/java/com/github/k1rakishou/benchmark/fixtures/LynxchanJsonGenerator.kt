@@ -0,0 +1,151 @@
+package com.github.k1rakishou.benchmark.fixtures
+
+import com.google.gson.stream.JsonWriter
+import java.io.StringWriter
+import kotlin.random.Random
+
+/**
+ * Lynxchan thread ("/{board}/res/{no}.json") and catalog page ("/{board}/{page}.json") responses.
+ * */
+object LynxchanJsonGenerator {
+  private val commentGenerator = CommentHtmlGenerator(CommentHtmlGenerator.Markup.Lynxchan)
+
+  fun thread(
+    boardCode: String = "b",
+    threadNo: Long = 100_000L,
+    postsCount: Int = 500,
+    seed: Int = 0
+  ): String {
+    require(postsCount > 0) { "Bad postsCount: $postsCount" }
+
+    val random = Random(seed)
+    val stringWriter = StringWriter()
+
+    JsonWriter(stringWriter).use { writer ->
+      writeThread(writer, random, boardCode, threadNo, postsCount)
+    }
+
+    return stringWriter.toString()
+  }
+
+  fun catalogPage(
+    boardCode: String = "b",
+    threadsCount: Int = 25,
+    lastRepliesCount: Int = 5,
+    seed: Int = 0
+  ): String {
+    val random = Random(seed)
+    val stringWriter = StringWriter()
+    var threadNo = 100_000L
+
+    JsonWriter(stringWriter).use { writer ->
+      writer.beginObject()
+      writer.name("pageCount").value(10)
+      writer.name("maxMessageLength").value(4096)
+      writer.name("captchaMode").value(1)
+      writer.name("maxFileCount").value(5)
+      writer.name("maxFileSize").value("32.00 MB")
+      writer.name("threads")
+      writer.beginArray()
+
+      repeat(threadsCount) {
+        threadNo += random.nextLong(1, 500)
+        writeThread(writer, random, boardCode, threadNo, lastRepliesCount + 1)
+      }
+
+      writer.endArray()
+      writer.endObject()
+    }
+
+    return stringWriter.toString()
+  }
+
+  private fun writeThread(
+    writer: JsonWriter,
+    random: Random,
+    boardCode: String,
+    threadNo: Long,
+    postsCount: Int
+  ) {
+    val postNos = ArrayList<Long>(postsCount)
+    postNos += threadNo
+
+    writer.beginObject()
+    writePostFields(writer, random, boardCode, threadNo, threadNo, emptyList())
+
+    writer.name("posts")
+    writer.beginArray()
+
+    var postNo = threadNo
+    for (index in 1 until postsCount) {
+      postNo += random.nextLong(1, 10)
+
+      writer.beginObject()
+      writePostFields(writer, random, boardCode, threadNo, postNo, postNos.subList((index - 50).coerceAtLeast(0), index))
+      writer.endObject()
+
+      postNos += postNo
+    }
+
+    writer.endArray()
+    writer.endObject()
+  }
+
+  private fun writePostFields(
+    writer: JsonWriter,
+    random: Random,
+    boardCode: String,
+    threadNo: Long,
+    postNo: Long,
+    quotablePostNos: List<Long>
+  ) {
+    val isOp = postNo == threadNo
+    val minutes = ((postNo - threadNo) % 60).toString().padStart(2, '0')
+
+    writer.name("name").value("Anonymous")
+
+    if (isOp) {
+      writer.name("threadId").value(threadNo)
+      writer.name("subject").value(FixtureText.sentence(random, maxWords = 8))
+      writer.name("locked").value(false)
+      writer.name("pinned").value(false)
+      writer.name("cyclic").value(false)
+    } else {
+      writer.name("postId").value(postNo)
+    }
+
+    if (random.nextInt(10) == 0) {
+      writer.name("id").value(FixtureText.hexString(random, 6))
+    }
+
+    writer.name("markdown").value(commentGenerator.generate(random, boardCode, threadNo, quotablePostNos))
+    writer.name("creation").value("2021-11-11T13:${minutes}:46.312Z")
+
+    if (random.nextInt(8) == 0) {
+      writer.name("flag").value("/.static/flags/de.png")
+      writer.name("flagCode").value("-de")
+      writer.name("flagName").value("Germany")
+    }
+
+    writer.name("files")
+    writer.beginArray()
+
+    val filesCount = if (isOp) 1 else if (random.nextInt(3) == 0) random.nextInt(1, 4) else 0
+    repeat(filesCount) {
+      val hash = FixtureText.hexString(random, 64)
+
+      writer.beginObject()
+      writer.name("originalName").value(FixtureText.word(random) + ".png")
+      writer.name("path").value("/.media/${hash}-imagepng.png")
+      writer.name("thumb").value("/.media/t_${hash}-imagepng")
+      writer.name("mime").value("image/png")
+      writer.name("size").value(random.nextLong(10_000, 4_000_000))
+      writer.name("width").value(random.nextInt(200, 4000))
+      writer.name("height").value(random.nextInt(200, 4000))
+      writer.endObject()
+    }
+
+    writer.endArray()
+  }
+
+}
@@ -0,0 +1,29 @@
+package com.github.k1rakishou.benchmark
+
+import com.github.k1rakishou.BookmarkGridViewInfo
+import com.github.k1rakishou.ChanSettings
+import com.github.k1rakishou.ChanSettingsInfo
+import com.github.k1rakishou.common.AndroidUtils
+import org.robolectric.RuntimeEnvironment
+
+internal object BenchmarkEnvironment {
+
+  /**
+   * Must be called from a Robolectric test. Initializes the settings with the default values.
+   * */
+  fun initChanSettings() {
+    AndroidUtils.init(RuntimeEnvironment.application)
+
+    ChanSettings.init(
+      ChanSettingsInfo(
+        applicationId = "com.github.k1rakishou.chan",
+        isTablet = false,
+        defaultFilterOrderName = "bump",
+        isDevBuild = false,
+        isBetaBuild = false,
+        bookmarkGridViewInfo = BookmarkGridViewInfo(defaultWidth = 300, minWidth = 200, maxWidth = 500)
+      )
+    )
+  }
+
+}
@@ -0,0 +1,114 @@
+package com.github.k1rakishou.benchmark
+
+import com.github.k1rakishou.benchmark.fixtures.CommentHtmlGenerator
+import com.github.k1rakishou.benchmark.fixtures.FixtureText
+import com.github.k1rakishou.model.data.descriptor.ChanDescriptor
+import com.github.k1rakishou.model.data.descriptor.PostDescriptor
+import com.github.k1rakishou.model.data.post.ChanOriginalPost
+import com.github.k1rakishou.model.data.post.ChanPost
+import com.github.k1rakishou.model.data.post.PostComment
+import kotlin.random.Random
+
+/**
+ * Already parsed thread posts (the way they are stored in the ChanThreadsCache) with replies to the
+ * previous posts.
+ * */
+internal object BenchmarkPosts {
+  private val commentGenerator = CommentHtmlGenerator(CommentHtmlGenerator.Markup.Futaba)
+
+  /**
+   * [editedComment] is used to emulate thread updates where some of the posts have changed (e.g.
+   * links got their titles loaded).
+   * */
+  fun createThreadPosts(
+    threadDescriptor: ChanDescriptor.ThreadDescriptor,
+    postsCount: Int,
+    seed: Int = 0,
+    editedComment: (postIndex: Int) -> Boolean = { false }
+  ): List<ChanPost> {
+    val random = Random(seed)
+    val threadNo = threadDescriptor.threadNo
+    val postDescriptors = ArrayList<PostDescriptor>(postsCount)
+
+    return List(postsCount) { index ->
+      val postDescriptor = PostDescriptor.create(threadDescriptor, threadNo + index)
+      val repliesTo = randomReplies(random, postDescriptors)
+      postDescriptors += postDescriptor
+
+      var commentText = FixtureText.sentence(random, maxWords = 40)
+      if (editedComment(index)) {
+        commentText += " (edited)"
+      }
+
+      val postComment = PostComment(
+        originalComment = commentText,
+        originalUnparsedComment = commentGenerator.generate(
+          random,
+          threadDescriptor.boardCode(),
+          threadNo,
+          repliesTo.map { replyTo -> replyTo.postNo }
+        ),
+        linkables = emptyList()
+      )
+
+      val timestamp = 1_600_000_000L + index * 7
+
+      if (index == 0) {
+        return@List ChanOriginalPost(
+          chanPostId = 0L,
+          postDescriptor = postDescriptor,
+          postImages = emptyList(),
+          postIcons = emptyList(),
+          repliesTo = repliesTo,
+          timestamp = timestamp,
+          postComment = postComment,
+          subject = FixtureText.sentence(random, maxWords = 8),
+          name = "Anonymous",
+          isSavedReply = false,
+          catalogRepliesCount = postsCount - 1,
+          catalogImagesCount = postsCount / 4,
+          uniqueIps = postsCount / 3,
+          lastModified = timestamp,
+          sticky = false,
+          closed = false,
+          archived = false,
+          endless = false,
+          isSage = false,
+          deleted = false,
+          posterIdColor = 0
+        )
+      }
+
+      return@List ChanPost(
+        chanPostId = 0L,
+        postDescriptor = postDescriptor,
+        postImages = emptyList(),
+        postIcons = emptyList(),
+        repliesTo = repliesTo,
+        timestamp = timestamp,
+        postComment = postComment,
+        subject = null,
+        tripcode = null,
+        name = "Anonymous",
+        isSavedReply = false,
+        isSage = false,
+        deleted = false,
+        posterIdColor = 0
+      )
+    }
+  }
+
+  private fun randomReplies(random: Random, prevPostDescriptors: List<PostDescriptor>): Set<PostDescriptor> {
+    if (prevPostDescriptors.isEmpty() || random.nextInt(3) == 0) {
+      return emptySet()
+    }
+
+    val from = (prevPostDescriptors.size - 50).coerceAtLeast(0)
+    val repliesCount = random.nextInt(1, 4)
+
+    return (0 until repliesCount)
+      .map { prevPostDescriptors[random.nextInt(from, prevPostDescriptors.size)] }
+      .toSet()
+  }
+
+}
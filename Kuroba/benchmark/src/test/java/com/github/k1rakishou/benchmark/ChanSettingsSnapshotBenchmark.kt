@@ -0,0 +1,103 @@
+package com.github.k1rakishou.benchmark
+
+import com.github.k1rakishou.ChanSettings
+import com.github.k1rakishou.ChanSettingsSnapshot
+import org.junit.Before
+import org.junit.Rule
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.robolectric.RobolectricTestRunner
+
+/**
+ * Reading the settings needed to bind one post cell, directly vs via the snapshot.
+ * */
+@RunWith(RobolectricTestRunner::class)
+class ChanSettingsSnapshotBenchmark {
+
+  @get:Rule
+  val benchmarkRule = BenchmarkRule()
+
+  @Before
+  fun setUp() {
+    BenchmarkEnvironment.initChanSettings()
+  }
+
+  @Test
+  fun readSettingsDirectly() {
+    benchmarkRule.param("postCells", POST_CELLS_COUNT)
+
+    benchmarkRule.measureRepeated {
+      var hash = 0
+
+      repeat(POST_CELLS_COUNT) {
+        hash = 31 * hash + ChanSettings.textOnly.get().hashCode()
+        hash = 31 * hash + ChanSettings.prefetchMedia.get().hashCode()
+        hash = 31 * hash + ChanSettings.showPrefetchLoadingIndicator.get().hashCode()
+        hash = 31 * hash + ChanSettings.highResCells.get().hashCode()
+        hash = 31 * hash + ChanSettings.postThumbnailRemoveImageSpoilers.get().hashCode()
+        hash = 31 * hash + ChanSettings.postCellThumbnailSizePercents.get()
+        hash = 31 * hash + ChanSettings.postMultipleImagesCompactMode.get().hashCode()
+        hash = 31 * hash + ChanSettings.postLinksTakeWholeHorizSpace.get().hashCode()
+        hash = 31 * hash + ChanSettings.boardPostViewMode.get().ordinal
+        hash = 31 * hash + ChanSettings.catalogPostAlignmentMode.get().ordinal
+        hash = 31 * hash + ChanSettings.threadPostAlignmentMode.get().ordinal
+        hash = 31 * hash + ChanSettings.fontSize.get().toInt()
+        hash = 31 * hash + ChanSettings.boardOrder.get().length
+        hash = 31 * hash + ChanSettings.neverShowPages.get().hashCode()
+        hash = 31 * hash + ChanSettings.tapNoReply.get().hashCode()
+        hash = 31 * hash + ChanSettings.postFullDate.get().hashCode()
+        hash = 31 * hash + ChanSettings.shiftPostComment.get().hashCode()
+        hash = 31 * hash + ChanSettings.forceShiftPostComment.get().hashCode()
+        hash = 31 * hash + ChanSettings.postFileInfo.get().hashCode()
+        hash = 31 * hash + ChanSettings.markUnseenPosts.get().hashCode()
+        hash = 31 * hash + ChanSettings.markSeenThreads.get().hashCode()
+        hash = 31 * hash + ChanSettings.collectPostCellStatistics.get().hashCode()
+      }
+
+      return@measureRepeated hash
+    }
+  }
+
+  @Test
+  fun readSettingsSnapshot() {
+    benchmarkRule.param("postCells", POST_CELLS_COUNT)
+
+    benchmarkRule.measureRepeated {
+      var hash = 0
+
+      repeat(POST_CELLS_COUNT) {
+        val snapshot = ChanSettingsSnapshot.get()
+
+        hash = 31 * hash + snapshot.textOnly.hashCode()
+        hash = 31 * hash + snapshot.prefetchMedia.hashCode()
+        hash = 31 * hash + snapshot.showPrefetchLoadingIndicator.hashCode()
+        hash = 31 * hash + snapshot.highResCells.hashCode()
+        hash = 31 * hash + snapshot.postThumbnailRemoveImageSpoilers.hashCode()
+        hash = 31 * hash + snapshot.postCellThumbnailSizePercents
+        hash = 31 * hash + snapshot.postMultipleImagesCompactMode.hashCode()
+        hash = 31 * hash + snapshot.postLinksTakeWholeHorizSpace.hashCode()
+        hash = 31 * hash + snapshot.boardPostViewMode.ordinal
+        hash = 31 * hash + snapshot.catalogPostAlignmentMode.ordinal
+        hash = 31 * hash + snapshot.threadPostAlignmentMode.ordinal
+        hash = 31 * hash + snapshot.fontSize
+        hash = 31 * hash + snapshot.boardOrder.length
+        hash = 31 * hash + snapshot.neverShowPages.hashCode()
+        hash = 31 * hash + snapshot.tapNoReply.hashCode()
+        hash = 31 * hash + snapshot.postFullDate.hashCode()
+        hash = 31 * hash + snapshot.shiftPostComment.hashCode()
+        hash = 31 * hash + snapshot.forceShiftPostComment.hashCode()
+        hash = 31 * hash + snapshot.postFileInfo.hashCode()
+        hash = 31 * hash + snapshot.markUnseenPosts.hashCode()
+        hash = 31 * hash + snapshot.markSeenThreads.hashCode()
+        hash = 31 * hash + snapshot.collectPostCellStatistics.hashCode()
+      }
+
+      return@measureRepeated hash
+    }
+  }
+
+  companion object {
+    private const val POST_CELLS_COUNT = 10_000
+  }
+
+}
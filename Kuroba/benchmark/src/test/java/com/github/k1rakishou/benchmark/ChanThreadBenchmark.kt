@@ -0,0 +1,93 @@
+package com.github.k1rakishou.benchmark
+
+import com.github.k1rakishou.model.data.descriptor.ChanDescriptor
+import com.github.k1rakishou.model.data.thread.ChanThread
+import org.junit.Rule
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.robolectric.RobolectricTestRunner
+
+@RunWith(RobolectricTestRunner::class)
+class ChanThreadBenchmark {
+
+  @get:Rule
+  val benchmarkRule = BenchmarkRule()
+
+  private val threadDescriptor = ChanDescriptor.ThreadDescriptor.create("4chan", "g", 1_000_000L)
+
+  @Test
+  fun addOrUpdatePosts_freshThread() {
+    val posts = BenchmarkPosts.createThreadPosts(threadDescriptor, POSTS_COUNT)
+    benchmarkRule.param("posts", posts.size)
+
+    benchmarkRule.measureRepeated {
+      val chanThread = runWithTimingDisabled { createChanThread() }
+      chanThread.addOrUpdatePosts(posts, null)
+
+      return@measureRepeated chanThread
+    }
+  }
+
+  @Test
+  fun addOrUpdatePosts_threadUpdate() {
+    val initialPosts = BenchmarkPosts.createThreadPosts(threadDescriptor, POSTS_COUNT)
+    // Same posts (with every 10th post edited) plus new posts at the end of the thread
+    val updatedPosts = BenchmarkPosts.createThreadPosts(
+      threadDescriptor = threadDescriptor,
+      postsCount = POSTS_COUNT + NEW_POSTS_COUNT,
+      editedComment = { postIndex -> postIndex % 10 == 0 }
+    )
+
+    benchmarkRule.param("posts", initialPosts.size)
+    benchmarkRule.param("updatedPosts", updatedPosts.size)
+
+    benchmarkRule.measureRepeated {
+      val chanThread = runWithTimingDisabled {
+        val chanThread = createChanThread()
+        chanThread.addOrUpdatePosts(initialPosts, null)
+
+        return@runWithTimingDisabled chanThread
+      }
+
+      chanThread.addOrUpdatePosts(updatedPosts, null)
+      return@measureRepeated chanThread
+    }
+  }
+
+  @Test
+  fun addOrUpdatePosts_incrementalUpdate() {
+    val allPosts = BenchmarkPosts.createThreadPosts(threadDescriptor, POSTS_COUNT + NEW_POSTS_COUNT)
+    val initialPosts = allPosts.take(POSTS_COUNT)
+    // Incremental updates only contain the new posts
+    val newPosts = allPosts.drop(POSTS_COUNT)
+
+    benchmarkRule.param("posts", initialPosts.size)
+    benchmarkRule.param("newPosts", newPosts.size)
+
+    benchmarkRule.measureRepeated {
+      val chanThread = runWithTimingDisabled {
+        val chanThread = createChanThread()
+        chanThread.addOrUpdatePosts(initialPosts, null)
+
+        return@runWithTimingDisabled chanThread
+      }
+
+      chanThread.addOrUpdatePosts(newPosts, null)
+      return@measureRepeated chanThread
+    }
+  }
+
+  private fun createChanThread(): ChanThread {
+    return ChanThread(
+      isDevBuild = false,
+      threadDescriptor = threadDescriptor,
+      initialLastAccessTime = System.currentTimeMillis()
+    )
+  }
+
+  companion object {
+    private const val POSTS_COUNT = 1500
+    private const val NEW_POSTS_COUNT = 50
+  }
+
+}
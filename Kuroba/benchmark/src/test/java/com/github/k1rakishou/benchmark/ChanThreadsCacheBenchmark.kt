@@ -0,0 +1,150 @@
+package com.github.k1rakishou.benchmark
+
+import android.content.ComponentCallbacks2
+import com.github.k1rakishou.model.data.descriptor.ChanDescriptor
+import com.github.k1rakishou.model.data.options.ChanCacheOptions
+import com.github.k1rakishou.model.data.options.ChanCacheUpdateOptions
+import com.github.k1rakishou.model.data.post.ChanPost
+import com.github.k1rakishou.model.source.cache.ChanCatalogSnapshotCache
+import com.github.k1rakishou.model.source.cache.thread.ChanThreadsCache
+import org.junit.Rule
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.robolectric.RobolectricTestRunner
+
+@RunWith(RobolectricTestRunner::class)
+class ChanThreadsCacheBenchmark {
+
+  @get:Rule
+  val benchmarkRule = BenchmarkRule()
+
+  private val threads: List<Pair<ChanDescriptor.ThreadDescriptor, List<ChanPost>>> by lazy {
+    List(THREADS_COUNT) { index ->
+      val threadDescriptor = ChanDescriptor.ThreadDescriptor.create("4chan", "g", 1_000_000L + index * 10_000L)
+      val posts = BenchmarkPosts.createThreadPosts(threadDescriptor, POSTS_PER_THREAD, seed = index)
+
+      return@List threadDescriptor to posts
+    }
+  }
+
+  // Must be calculated after the posts were put into a cache at least once since the size of a post
+  // depends on the amount of replies to it
+  private val threadsSizeInBytes: Long by lazy {
+    val chanThreadsCache = createChanThreadsCache(
+      maxCacheSize = Int.MAX_VALUE,
+      maxCacheSizeInBytes = Long.MAX_VALUE
+    )
+
+    putThreads(chanThreadsCache, threads)
+    return@lazy chanThreadsCache.getTotalCachedPostsSizeInBytes()
+  }
+
+  /**
+   * The regular eviction that happens when new posts are put into a cache that is over the posts
+   * budget.
+   * */
+  @Test
+  fun evictByPostsCount() {
+    val (lastThreadDescriptor, lastThreadPosts) = threads.last()
+    benchmarkParams()
+
+    benchmarkRule.measureRepeated(onBackgroundThread = true) {
+      val chanThreadsCache = runWithTimingDisabled {
+        // The cache is exactly one post over the budget before the last thread is put into it
+        val chanThreadsCache = createChanThreadsCache(
+          maxCacheSize = (THREADS_COUNT - 1) * POSTS_PER_THREAD - 1,
+          maxCacheSizeInBytes = Long.MAX_VALUE
+        )
+
+        putThreads(chanThreadsCache, threads.dropLast(1))
+        return@runWithTimingDisabled chanThreadsCache
+      }
+
+      putThread(chanThreadsCache, lastThreadDescriptor, lastThreadPosts)
+      return@measureRepeated chanThreadsCache.getTotalCachedPostsCount()
+    }
+  }
+
+  @Test
+  fun evictOnTrimMemory() {
+    benchmarkParams()
+
+    benchmarkRule.measureRepeated(onBackgroundThread = true) {
+      val chanThreadsCache = runWithTimingDisabled {
+        // The cache is full but not over the budget so nothing is evicted until onTrimMemory()
+        val chanThreadsCache = createChanThreadsCache(
+          maxCacheSize = Int.MAX_VALUE,
+          maxCacheSizeInBytes = threadsSizeInBytes
+        )
+
+        putThreads(chanThreadsCache, threads)
+        return@runWithTimingDisabled chanThreadsCache
+      }
+
+      // Shrinks the cache down to a half of the budget
+      chanThreadsCache.onTrimMemory(ComponentCallbacks2.TRIM_MEMORY_MODERATE)
+      return@measureRepeated chanThreadsCache.getTotalCachedPostsCount()
+    }
+  }
+
+  @Test
+  fun estimateCachedPostsSize() {
+    benchmarkParams()
+
+    benchmarkRule.measureRepeated(onBackgroundThread = true) {
+      val chanThreadsCache = runWithTimingDisabled {
+        val chanThreadsCache = createChanThreadsCache(
+          maxCacheSize = Int.MAX_VALUE,
+          maxCacheSizeInBytes = Long.MAX_VALUE
+        )
+
+        putThreads(chanThreadsCache, threads)
+        return@runWithTimingDisabled chanThreadsCache
+      }
+
+      return@measureRepeated chanThreadsCache.getTotalCachedPostsSizeInBytes()
+    }
+  }
+
+  private fun benchmarkParams() {
+    benchmarkRule.param("threads", THREADS_COUNT)
+    benchmarkRule.param("postsPerThread", POSTS_PER_THREAD)
+  }
+
+  private fun putThreads(
+    chanThreadsCache: ChanThreadsCache,
+    threads: List<Pair<ChanDescriptor.ThreadDescriptor, List<ChanPost>>>
+  ) {
+    threads.forEach { (threadDescriptor, posts) -> putThread(chanThreadsCache, threadDescriptor, posts) }
+  }
+
+  private fun putThread(
+    chanThreadsCache: ChanThreadsCache,
+    threadDescriptor: ChanDescriptor.ThreadDescriptor,
+    posts: List<ChanPost>
+  ) {
+    chanThreadsCache.putManyThreadPostsIntoCache(
+      threadDescriptor = threadDescriptor,
+      parsedPosts = posts,
+      cacheOptions = ChanCacheOptions.onlyCacheInMemory(),
+      chanCacheUpdateOptions = ChanCacheUpdateOptions.UpdateCache,
+      postsFromServerData = null
+    )
+  }
+
+  private fun createChanThreadsCache(maxCacheSize: Int, maxCacheSizeInBytes: Long): ChanThreadsCache {
+    return ChanThreadsCache(
+      isDevBuild = false,
+      isLowRamDevice = false,
+      maxCacheSize = maxCacheSize,
+      maxCacheSizeInBytes = maxCacheSizeInBytes,
+      chanCatalogSnapshotCache = ChanCatalogSnapshotCache()
+    )
+  }
+
+  companion object {
+    private const val THREADS_COUNT = 40
+    private const val POSTS_PER_THREAD = 500
+  }
+
+}
@@ -0,0 +1,59 @@
+package com.github.k1rakishou.benchmark
+
+import com.github.k1rakishou.model.data.descriptor.ChanDescriptor
+import com.github.k1rakishou.model.data.descriptor.PostDescriptor
+import org.junit.Rule
+import org.junit.Test
+
+/**
+ * Descriptor creation the way site readers do it (from the raw site name/board code/post numbers
+ * for every post) which goes through the interning of site/board/thread descriptors.
+ * */
+class DescriptorsBenchmark {
+
+  @get:Rule
+  val benchmarkRule = BenchmarkRule()
+
+  @Test
+  fun createPostDescriptors_fromRawValues() {
+    benchmarkRule.param("posts", POSTS_COUNT)
+
+    benchmarkRule.measureRepeated {
+      List(POSTS_COUNT) { index ->
+        // New string instances every time, like the ones we get from the json readers
+        PostDescriptor.create(String(SITE_NAME.toCharArray()), String(BOARD_CODE.toCharArray()), THREAD_NO, THREAD_NO + index)
+      }
+    }
+  }
+
+  @Test
+  fun createPostDescriptors_fromThreadDescriptor() {
+    benchmarkRule.param("posts", POSTS_COUNT)
+
+    benchmarkRule.measureRepeated {
+      val threadDescriptor = ChanDescriptor.ThreadDescriptor.create(SITE_NAME, BOARD_CODE, THREAD_NO)
+      List(POSTS_COUNT) { index -> PostDescriptor.create(threadDescriptor, THREAD_NO + index) }
+    }
+  }
+
+  @Test
+  fun postDescriptors_hashSet() {
+    val postDescriptors = List(POSTS_COUNT) { index ->
+      PostDescriptor.create(SITE_NAME, BOARD_CODE, THREAD_NO, THREAD_NO + index)
+    }
+
+    benchmarkRule.param("posts", POSTS_COUNT)
+
+    benchmarkRule.measureRepeated {
+      postDescriptors.toHashSet()
+    }
+  }
+
+  companion object {
+    private const val POSTS_COUNT = 5000
+    private const val SITE_NAME = "4chan"
+    private const val BOARD_CODE = "g"
+    private const val THREAD_NO = 1_000_000L
+  }
+
+}
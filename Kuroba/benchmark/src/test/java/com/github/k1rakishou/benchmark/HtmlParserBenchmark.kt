@@ -0,0 +1,82 @@
+package com.github.k1rakishou.benchmark
+
+import com.github.k1rakishou.benchmark.fixtures.CommentHtmlGenerator
+import com.github.k1rakishou.benchmark.fixtures.Fixtures
+import com.github.k1rakishou.core_parser.comment.HtmlParser
+import org.junit.Rule
+import org.junit.Test
+import kotlin.random.Random
+
+class HtmlParserBenchmark {
+
+  @get:Rule
+  val benchmarkRule = BenchmarkRule()
+
+  @Test
+  fun parseFutabaThreadComments() {
+    parseComments(CommentHtmlGenerator.Markup.Futaba)
+  }
+
+  @Test
+  fun parseDvachThreadComments() {
+    parseComments(CommentHtmlGenerator.Markup.Dvach)
+  }
+
+  @Test
+  fun parseLynxchanThreadComments() {
+    parseComments(CommentHtmlGenerator.Markup.Lynxchan)
+  }
+
+  @Test
+  fun parseFoolFuukaPages() {
+    val pages = Fixtures.FOOLFUUKA_PAGES.map { path -> Fixtures.readString(path) }
+    val htmlParser = HtmlParser()
+
+    benchmarkRule.param("pages", pages.size)
+    benchmarkRule.param("totalLength", pages.sumOf { page -> page.length })
+
+    benchmarkRule.measureRepeated {
+      var nodesCount = 0
+
+      pages.forEach { page ->
+        nodesCount += htmlParser.parse(page).nodes.size
+      }
+
+      return@measureRepeated nodesCount
+    }
+  }
+
+  private fun parseComments(markup: CommentHtmlGenerator.Markup) {
+    val comments = generateComments(markup)
+    val htmlParser = HtmlParser()
+
+    benchmarkRule.param("comments", comments.size)
+    benchmarkRule.param("totalLength", comments.sumOf { comment -> comment.length })
+
+    benchmarkRule.measureRepeated {
+      var nodesCount = 0
+
+      comments.forEach { comment ->
+        nodesCount += htmlParser.parse(comment).nodes.size
+      }
+
+      return@measureRepeated nodesCount
+    }
+  }
+
+  private fun generateComments(markup: CommentHtmlGenerator.Markup): List<String> {
+    val random = Random(0)
+    val commentGenerator = CommentHtmlGenerator(markup)
+    val threadNo = 1_000_000L
+
+    return List(POSTS_COUNT) { index ->
+      val quotable = ((index - 50).coerceAtLeast(0) until index).map { postIndex -> threadNo + postIndex }
+      commentGenerator.generate(random, "g", threadNo, quotable)
+    }
+  }
+
+  companion object {
+    private const val POSTS_COUNT = 1000
+  }
+
+}
@@ -0,0 +1,167 @@
+package com.github.k1rakishou.benchmark
+
+import android.graphics.Typeface
+import android.text.SpannableString
+import android.text.Spanned
+import android.text.style.StrikethroughSpan
+import android.text.style.StyleSpan
+import com.github.k1rakishou.benchmark.fixtures.FixtureText
+import com.github.k1rakishou.core_spannable.AbsoluteSizeSpanHashed
+import com.github.k1rakishou.core_spannable.ForegroundColorIdSpan
+import com.github.k1rakishou.core_spannable.ParcelableSpannableString
+import com.github.k1rakishou.core_spannable.PostLinkable
+import com.github.k1rakishou.core_spannable.parcelable_spannable_string.ParcelableSpannableStringMapper
+import com.github.k1rakishou.core_themes.ChanThemeColorId
+import com.github.k1rakishou.model.entity.chan.post.ChanTextSpanEntity
+import com.github.k1rakishou.model.mapper.TextSpanMapper
+import org.junit.Before
+import org.junit.Rule
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.robolectric.RobolectricTestRunner
+import kotlin.random.Random
+
+/**
+ * Post comments go through ParcelableSpannableStringMapper (and then get marshalled into a byte
+ * array) every time a post is stored into the database and back every time a post is loaded from it.
+ * */
+@RunWith(RobolectricTestRunner::class)
+class ParcelableSpannableStringMapperBenchmark {
+
+  @get:Rule
+  val benchmarkRule = BenchmarkRule()
+
+  @Before
+  fun setUp() {
+    // PostLinkable reads a setting in the constructor
+    BenchmarkEnvironment.initChanSettings()
+  }
+
+  @Test
+  fun toParcelableSpannableString() {
+    val comments = createSpannedComments()
+    benchmarkParams(comments)
+
+    benchmarkRule.measureRepeated {
+      comments.map { comment -> ParcelableSpannableStringMapper.toParcelableSpannableString(comment) }
+    }
+  }
+
+  @Test
+  fun fromParcelableSpannableString() {
+    val parcelableComments = createSpannedComments()
+      .map { comment -> ParcelableSpannableStringMapper.toParcelableSpannableString(comment) }
+    benchmarkParams(parcelableComments)
+
+    benchmarkRule.measureRepeated {
+      parcelableComments.map { parcelableComment ->
+        ParcelableSpannableStringMapper.fromParcelableSpannableString(parcelableComment)
+      }
+    }
+  }
+
+  /**
+   * Same as [toParcelableSpannableString] plus the marshalling of the spans.
+   * */
+  @Test
+  fun toTextSpanEntity() {
+    val comments = createSpannedComments()
+    benchmarkParams(comments)
+
+    benchmarkRule.measureRepeated {
+      comments.mapIndexed { index, comment ->
+        val parcelableComment = ParcelableSpannableStringMapper.toParcelableSpannableString(comment)
+          ?: ParcelableSpannableString()
+
+        TextSpanMapper.toEntity(index.toLong(), parcelableComment, null, ChanTextSpanEntity.TextType.PostComment)
+      }
+    }
+  }
+
+  /**
+   * Same as [fromParcelableSpannableString] plus the unmarshalling of the spans.
+   * */
+  @Test
+  fun fromTextSpanEntity() {
+    val textSpanEntities = createSpannedComments().mapIndexed { index, comment ->
+      val parcelableComment = ParcelableSpannableStringMapper.toParcelableSpannableString(comment)
+        ?: ParcelableSpannableString()
+
+      TextSpanMapper.toEntity(index.toLong(), parcelableComment, null, ChanTextSpanEntity.TextType.PostComment)!!
+    }
+    benchmarkParams(textSpanEntities)
+
+    benchmarkRule.measureRepeated {
+      textSpanEntities.map { textSpanEntity ->
+        val parcelableComment = TextSpanMapper.fromEntity(listOf(textSpanEntity), ChanTextSpanEntity.TextType.PostComment)
+        ParcelableSpannableStringMapper.fromParcelableSpannableString(parcelableComment)
+      }
+    }
+  }
+
+  private fun benchmarkParams(comments: List<Any?>) {
+    benchmarkRule.param("comments", comments.size)
+  }
+
+  /**
+   * Comments with the same kinds of spans CommentParser adds: quotes, links, greentext, spoilers,
+   * bold/big text.
+   * */
+  private fun createSpannedComments(): List<Spanned> {
+    val random = Random(0)
+
+    return List(COMMENTS_COUNT) { index ->
+      val builder = StringBuilder()
+      val spans = mutableListOf<Triple<Any, Int, Int>>()
+
+      val linesCount = random.nextInt(1, 8)
+      repeat(linesCount) { lineIndex ->
+        if (lineIndex > 0) {
+          builder.append('\n')
+        }
+
+        val start = builder.length
+
+        when (random.nextInt(6)) {
+          0 -> {
+            val postNo = 1_000_000L + random.nextInt(index + 1)
+            builder.append(">>").append(postNo)
+            spans += Triple(PostLinkable(">>$postNo", PostLinkable.Value.LongValue(postNo), PostLinkable.Type.QUOTE), start, builder.length)
+            spans += Triple(StyleSpan(Typeface.BOLD), start, builder.length)
+          }
+          1 -> {
+            builder.append('>').append(FixtureText.sentence(random))
+            spans += Triple(ForegroundColorIdSpan(ChanThemeColorId.PostInlineQuoteColor), start, builder.length)
+          }
+          2 -> {
+            val link = FixtureText.link(random)
+            builder.append(link)
+            spans += Triple(PostLinkable(link, PostLinkable.Value.StringValue(link), PostLinkable.Type.LINK), start, builder.length)
+          }
+          3 -> {
+            builder.append(FixtureText.sentence(random, maxWords = 6))
+            spans += Triple(PostLinkable("", PostLinkable.Value.StringValue(""), PostLinkable.Type.SPOILER), start, builder.length)
+          }
+          4 -> {
+            builder.append(FixtureText.sentence(random, maxWords = 6))
+            spans += Triple(AbsoluteSizeSpanHashed(24), start, builder.length)
+            spans += Triple(StrikethroughSpan(), start, builder.length)
+          }
+          else -> builder.append(FixtureText.sentence(random))
+        }
+      }
+
+      val spannableString = SpannableString(builder)
+      spans.forEach { (span, start, end) ->
+        spannableString.setSpan(span, start, end, Spanned.SPAN_EXCLUSIVE_EXCLUSIVE)
+      }
+
+      return@List spannableString
+    }
+  }
+
+  companion object {
+    private const val COMMENTS_COUNT = 1000
+  }
+
+}
@@ -0,0 +1,99 @@
+package com.github.k1rakishou.benchmark
+
+import com.github.k1rakishou.common.datastructure.PostNumberMap
+import com.github.k1rakishou.model.data.descriptor.ChanDescriptor
+import com.github.k1rakishou.model.data.descriptor.PostDescriptor
+import com.github.k1rakishou.model.util.get
+import com.github.k1rakishou.model.util.set
+import org.junit.Rule
+import org.junit.Test
+
+/**
+ * PostNumberMap (what ChanThread uses to store posts by their descriptors) against the
+ * HashMap<PostDescriptor, V> it replaced.
+ * */
+class PostNumberMapBenchmark {
+
+  @get:Rule
+  val benchmarkRule = BenchmarkRule()
+
+  private val threadDescriptor = ChanDescriptor.ThreadDescriptor.create("4chan", "g", 1_000_000L)
+
+  private val postDescriptors = List(POSTS_COUNT) { index ->
+    PostDescriptor.create(threadDescriptor, threadDescriptor.threadNo + index * 3)
+  }
+
+  // Lookups use different (but equal) descriptor instances just like the real code does
+  private val lookupPostDescriptors = postDescriptors
+    .map { postDescriptor -> PostDescriptor.create(threadDescriptor, postDescriptor.postNo) }
+    .shuffled(kotlin.random.Random(0))
+
+  @Test
+  fun postNumberMap_put() {
+    benchmarkRule.param("posts", POSTS_COUNT)
+
+    benchmarkRule.measureRepeated {
+      val map = PostNumberMap<PostDescriptor>()
+      postDescriptors.forEach { postDescriptor -> map[postDescriptor] = postDescriptor }
+
+      return@measureRepeated map
+    }
+  }
+
+  @Test
+  fun hashMap_put() {
+    benchmarkRule.param("posts", POSTS_COUNT)
+
+    benchmarkRule.measureRepeated {
+      val map = HashMap<PostDescriptor, PostDescriptor>()
+      postDescriptors.forEach { postDescriptor -> map[postDescriptor] = postDescriptor }
+
+      return@measureRepeated map
+    }
+  }
+
+  @Test
+  fun postNumberMap_get() {
+    val map = PostNumberMap<PostDescriptor>()
+    postDescriptors.forEach { postDescriptor -> map[postDescriptor] = postDescriptor }
+
+    benchmarkRule.param("posts", POSTS_COUNT)
+
+    benchmarkRule.measureRepeated {
+      var found = 0
+
+      lookupPostDescriptors.forEach { postDescriptor ->
+        if (map[postDescriptor] != null) {
+          ++found
+        }
+      }
+
+      return@measureRepeated found
+    }
+  }
+
+  @Test
+  fun hashMap_get() {
+    val map = HashMap<PostDescriptor, PostDescriptor>()
+    postDescriptors.forEach { postDescriptor -> map[postDescriptor] = postDescriptor }
+
+    benchmarkRule.param("posts", POSTS_COUNT)
+
+    benchmarkRule.measureRepeated {
+      var found = 0
+
+      lookupPostDescriptors.forEach { postDescriptor ->
+        if (map[postDescriptor] != null) {
+          ++found
+        }
+      }
+
+      return@measureRepeated found
+    }
+  }
+
+  companion object {
+    private const val POSTS_COUNT = 5000
+  }
+
+}
@@ -14,9 +14,12 @@ open class AppConstants(
   private val isLowRamDevice: Boolean,
   val kurobaExCustomUserAgent: String,
   maxPostsInDatabaseSettingValue: Int,
-  maxThreadsInDatabaseSettingValue: Int
+  maxThreadsInDatabaseSettingValue: Int,
+  // When null the posts cache size is derived from the app's memory class
+  maxPostsCacheSizeInBytesOverride: Long? = null
 ) {
   val maxPostsCountInPostsCache: Int
+  val maxPostsCacheSizeInBytes: Long
   val maxAmountOfPostsInDatabase: Int = maxPostsInDatabaseSettingValue
   val maxAmountOfThreadsInDatabase: Int = maxThreadsInDatabaseSettingValue
   val userAgent: String
@@ -90,6 +93,26 @@ open class AppConstants(
       return field
     }
 
+  val threadDownloaderMediaStoreDir: File
+    get() {
+      if (field.exists()) {
+        return field
+      }
+
+      check(field.mkdir()) { "Failed to create ThreadDownloader media store directory! threadDownloaderMediaStoreDir=${field.absolutePath}" }
+      return field
+    }
+
+  val imageSaverTempDir: File
+    get() {
+      if (field.exists()) {
+        return field
+      }
+
+      check(field.mkdir()) { "Failed to create image saver temp directory! imageSaverTempDir=${field.absolutePath}" }
+      return field
+    }
+
   val crashLogsDir: File
     get() {
       if (field.exists()) {
@@ -147,6 +170,9 @@ open class AppConstants(
 
     mpvDemuxerCacheMaxSize = calculateMpvDemuxerCacheSize(activityManager)
     maxPostsCountInPostsCache = calculatePostsCountForPostsCacheDependingOnDeviceRam(activityManager).toInt()
+    maxPostsCacheSizeInBytes = maxPostsCacheSizeInBytesOverride
+      ?.coerceAtLeast(MINIMUM_POSTS_CACHE_SIZE_BYTES)
+      ?: calculatePostsCacheSizeInBytesDependingOnDeviceRam(activityManager)
 
     userAgent = try {
       WebSettings.getDefaultUserAgent(context)
@@ -165,6 +191,7 @@ open class AppConstants(
     attachFilesMetaDir = File(context.filesDir, ATTACH_FILES_META_DIR_NAME)
     mediaPreviewsDir = File(context.filesDir, MEDIA_PREVIEWS_DIR_NAME)
     threadDownloaderCacheDir = File(context.filesDir, THREAD_DOWNLOADER_DIR_NAME)
+    threadDownloaderMediaStoreDir = File(context.filesDir, THREAD_DOWNLOADER_MEDIA_STORE_DIR_NAME)
 
     mpvNativeLibsDir = File(context.filesDir, MPV_NATIVE_LIBS_DIR_NAME)
     mpvCertDir = File(context.filesDir, MPV_CERT_DIR_NAME)
@@ -189,6 +216,7 @@ open class AppConstants(
     }
 
     exoPlayerCacheDir = File(context.cacheDir, EXO_PLAYER_CACHE_DIR_NAME)
+    imageSaverTempDir = File(context.cacheDir, IMAGE_SAVER_TEMP_DIR_NAME)
   }
 
   private fun calculateMpvDemuxerCacheSize(activityManager: ActivityManager?): Long {
@@ -210,6 +238,15 @@ open class AppConstants(
     return cachePostsCount.coerceIn(MINIMUM_POSTS_CACHE_POSTS_COUNT, MAX_POSTS_CACHE_COUNT)
   }
 
+  private fun calculatePostsCacheSizeInBytesDependingOnDeviceRam(activityManager: ActivityManager?): Long {
+    if (isLowRamDevice || activityManager == null) {
+      return MINIMUM_POSTS_CACHE_SIZE_BYTES
+    }
+
+    val memoryChunk = ((activityManager.memoryClass * ONE_MEGABYTE) / 100) * RAM_PERCENT_FOR_POSTS_CACHE
+    return memoryChunk.coerceAtLeast(MINIMUM_POSTS_CACHE_SIZE_BYTES)
+  }
+
   companion object {
     private const val TAG = "AppConstants"
 
@@ -222,6 +259,7 @@ open class AppConstants(
 
     private const val MINIMUM_POSTS_CACHE_POSTS_COUNT = 5000L
     private const val MAX_POSTS_CACHE_COUNT = 16000L
+    private const val MINIMUM_POSTS_CACHE_SIZE_BYTES = 8 * ONE_MEGABYTE
 
     private const val USER_AGENT_FORMAT =
       "Mozilla/5.0 (Linux; Android %s; %s) AppleWebKit/537.36 (KHTML, like Gecko) Chrome/85.0.4183.127 Mobile Safari/537.36"
@@ -232,6 +270,8 @@ open class AppConstants(
     private const val ATTACH_FILES_META_DIR_NAME = "attach_files_meta"
     private const val MEDIA_PREVIEWS_DIR_NAME = "media_previews"
     private const val THREAD_DOWNLOADER_DIR_NAME = "thread_downloader_storage"
+    private const val THREAD_DOWNLOADER_MEDIA_STORE_DIR_NAME = "thread_downloader_media_store"
+    private const val IMAGE_SAVER_TEMP_DIR_NAME = "image_saver_temp"
     private const val MPV_NATIVE_LIBS_DIR_NAME = "mpv_native_libs"
     private const val MPV_CERT_DIR_NAME = "certs/mpv"
     private const val EXO_PLAYER_CACHE_DIR_NAME = "exo_player_cache"
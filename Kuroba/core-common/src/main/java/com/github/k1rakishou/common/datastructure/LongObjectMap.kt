@@ -0,0 +1,309 @@
+package com.github.k1rakishou.common.datastructure
+
+/**
+ * Open-addressing (linear probing) hash map with primitive long keys. Does not box the keys and
+ * does not allocate an entry object per mapping, which makes it a lot cheaper than HashMap<Long, V>
+ * (or HashMap<PostDescriptor, V>) for maps with lots of lookups, like the ones keyed by post numbers.
+ *
+ * Removal uses backward shift deletion so there are no tombstones and lookups never degrade after
+ * lots of removals.
+ *
+ * Not thread-safe, use external synchronization.
+ * */
+class LongObjectMap<V>(
+  initialCapacity: Int = DEFAULT_CAPACITY
+) {
+  private var keys: LongArray
+  private var values: Array<Any?>
+  private var mask: Int
+  private var threshold: Int
+
+  // Zero key is used as the marker of a free slot so it's stored separately
+  private var hasFreeKey = false
+  private var freeKeyValue: V? = null
+
+  // Does not include the free key mapping
+  private var usedSlots = 0
+
+  init {
+    require(initialCapacity >= 0) { "Bad initialCapacity: $initialCapacity" }
+
+    val capacity = tableSizeFor(initialCapacity)
+    keys = LongArray(capacity)
+    values = arrayOfNulls(capacity)
+    mask = capacity - 1
+    threshold = (capacity * LOAD_FACTOR).toInt()
+  }
+
+  val size: Int
+    get() = usedSlots + (if (hasFreeKey) 1 else 0)
+
+  fun isEmpty(): Boolean = size == 0
+  fun isNotEmpty(): Boolean = size > 0
+
+  fun containsKey(key: Long): Boolean {
+    if (key == FREE_KEY) {
+      return hasFreeKey
+    }
+
+    return indexOf(key) >= 0
+  }
+
+  @Suppress("UNCHECKED_CAST")
+  operator fun get(key: Long): V? {
+    if (key == FREE_KEY) {
+      return freeKeyValue
+    }
+
+    val index = indexOf(key)
+    if (index < 0) {
+      return null
+    }
+
+    return values[index] as V
+  }
+
+  operator fun set(key: Long, value: V) {
+    put(key, value)
+  }
+
+  /**
+   * Returns the previous value associated with the [key] or null if there was none.
+   * */
+  @Suppress("UNCHECKED_CAST")
+  fun put(key: Long, value: V): V? {
+    if (key == FREE_KEY) {
+      val prev = freeKeyValue
+      hasFreeKey = true
+      freeKeyValue = value
+      return prev
+    }
+
+    var index = slotOf(key)
+
+    while (true) {
+      val k = keys[index]
+
+      if (k == FREE_KEY) {
+        keys[index] = key
+        values[index] = value
+
+        if (++usedSlots >= threshold) {
+          rehash(keys.size * 2)
+        }
+
+        return null
+      }
+
+      if (k == key) {
+        val prev = values[index] as V
+        values[index] = value
+        return prev
+      }
+
+      index = (index + 1) and mask
+    }
+  }
+
+  inline fun getOrPut(key: Long, defaultValue: () -> V): V {
+    val value = get(key)
+    if (value != null) {
+      return value
+    }
+
+    val newValue = defaultValue()
+    put(key, newValue)
+    return newValue
+  }
+
+  /**
+   * Returns the removed value or null if there was no mapping for the [key].
+   * */
+  @Suppress("UNCHECKED_CAST")
+  fun remove(key: Long): V? {
+    if (key == FREE_KEY) {
+      if (!hasFreeKey) {
+        return null
+      }
+
+      val prev = freeKeyValue
+      hasFreeKey = false
+      freeKeyValue = null
+      return prev
+    }
+
+    val index = indexOf(key)
+    if (index < 0) {
+      return null
+    }
+
+    val prev = values[index] as V
+    shiftKeys(index)
+    --usedSlots
+
+    return prev
+  }
+
+  fun clear() {
+    if (isEmpty()) {
+      return
+    }
+
+    keys.fill(FREE_KEY)
+    values.fill(null)
+    usedSlots = 0
+    hasFreeKey = false
+    freeKeyValue = null
+  }
+
+  @Suppress("UNCHECKED_CAST")
+  fun forEach(action: (key: Long, value: V) -> Unit) {
+    if (hasFreeKey) {
+      action(FREE_KEY, freeKeyValue as V)
+    }
+
+    val keys = keys
+    val values = values
+
+    for (index in keys.indices) {
+      val k = keys[index]
+      if (k != FREE_KEY) {
+        action(k, values[index] as V)
+      }
+    }
+  }
+
+  /**
+   * Removes all the mappings matching the [predicate]. Returns the amount of removed mappings.
+   * */
+  fun removeIf(predicate: (key: Long, value: V) -> Boolean): Int {
+    var keysToRemove: LongArray? = null
+    var count = 0
+
+    forEach { key, value ->
+      if (!predicate(key, value)) {
+        return@forEach
+      }
+
+      if (keysToRemove == null) {
+        keysToRemove = LongArray(size)
+      }
+
+      keysToRemove!![count++] = key
+    }
+
+    for (index in 0 until count) {
+      remove(keysToRemove!![index])
+    }
+
+    return count
+  }
+
+  fun values(): List<V> {
+    val result = ArrayList<V>(size)
+    forEach { _, value -> result.add(value) }
+    return result
+  }
+
+  private fun indexOf(key: Long): Int {
+    var index = slotOf(key)
+
+    while (true) {
+      val k = keys[index]
+
+      if (k == FREE_KEY) {
+        return -1
+      }
+
+      if (k == key) {
+        return index
+      }
+
+      index = (index + 1) and mask
+    }
+  }
+
+  private fun slotOf(key: Long): Int {
+    return mix(key) and mask
+  }
+
+  /**
+   * Backward shift deletion. Moves the following entries of the same cluster into the freed slot
+   * when the freed slot is closer to (or is) their ideal position.
+   * */
+  private fun shiftKeys(removedIndex: Int) {
+    var gap = removedIndex
+    var next = (gap + 1) and mask
+
+    while (true) {
+      val k = keys[next]
+      if (k == FREE_KEY) {
+        break
+      }
+
+      val ideal = slotOf(k)
+      if (((next - ideal) and mask) >= ((next - gap) and mask)) {
+        keys[gap] = k
+        values[gap] = values[next]
+        gap = next
+      }
+
+      next = (next + 1) and mask
+    }
+
+    keys[gap] = FREE_KEY
+    values[gap] = null
+  }
+
+  private fun rehash(newCapacity: Int) {
+    val oldKeys = keys
+    val oldValues = values
+
+    keys = LongArray(newCapacity)
+    values = arrayOfNulls(newCapacity)
+    mask = newCapacity - 1
+    threshold = (newCapacity * LOAD_FACTOR).toInt()
+
+    for (oldIndex in oldKeys.indices) {
+      val k = oldKeys[oldIndex]
+      if (k == FREE_KEY) {
+        continue
+      }
+
+      var index = slotOf(k)
+      while (keys[index] != FREE_KEY) {
+        index = (index + 1) and mask
+      }
+
+      keys[index] = k
+      values[index] = oldValues[oldIndex]
+    }
+  }
+
+  override fun toString(): String {
+    return "LongObjectMap(size=$size, capacity=${keys.size})"
+  }
+
+  companion object {
+    private const val FREE_KEY = 0L
+    private const val DEFAULT_CAPACITY = 16
+    private const val LOAD_FACTOR = 0.5f
+    private const val MAX_CAPACITY = 1 shl 30
+
+    // Post numbers are sequential so we need to scramble the bits, otherwise neighbouring posts
+    // will end up forming long clusters.
+    private fun mix(key: Long): Int {
+      val h = key * -0x61c8864680b583ebL
+      return (h xor (h ushr 32)).toInt()
+    }
+
+    private fun tableSizeFor(expectedSize: Int): Int {
+      val minCapacity = (expectedSize / LOAD_FACTOR).toLong().coerceAtLeast(2L)
+      if (minCapacity >= MAX_CAPACITY) {
+        return MAX_CAPACITY
+      }
+
+      return Integer.highestOneBit((minCapacity - 1).toInt()) shl 1
+    }
+  }
+}
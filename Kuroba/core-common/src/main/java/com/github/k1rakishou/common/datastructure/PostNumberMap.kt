@@ -0,0 +1,151 @@
+package com.github.k1rakishou.common.datastructure
+
+/**
+ * A map keyed by a pair of (postNo, postSubNo) meant to be used for storing per-thread (or
+ * per-catalog) post data instead of HashMap<PostDescriptor, V>. Inside a single thread the post
+ * number together with the sub number is enough to identify a post.
+ *
+ * Posts with non-zero sub numbers only exist on a couple of archives (ghost posts) so they are
+ * stored in a separate, lazily created, side table to keep the main table a plain [LongObjectMap].
+ *
+ * Not thread-safe, use external synchronization.
+ * */
+class PostNumberMap<V>(
+  initialCapacity: Int = DEFAULT_CAPACITY
+) {
+  private val mainTable = LongObjectMap<V>(initialCapacity)
+  // postNo -> (postSubNo -> value)
+  private var subNoTable: LongObjectMap<LongObjectMap<V>>? = null
+  private var subNoEntriesCount = 0
+
+  val size: Int
+    get() = mainTable.size + subNoEntriesCount
+
+  fun isEmpty(): Boolean = size == 0
+  fun isNotEmpty(): Boolean = size > 0
+
+  fun containsKey(postNo: Long, postSubNo: Long): Boolean {
+    if (postSubNo == 0L) {
+      return mainTable.containsKey(postNo)
+    }
+
+    return subNoTable?.get(postNo)?.containsKey(postSubNo) ?: false
+  }
+
+  fun get(postNo: Long, postSubNo: Long): V? {
+    if (postSubNo == 0L) {
+      return mainTable[postNo]
+    }
+
+    return subNoTable?.get(postNo)?.get(postSubNo)
+  }
+
+  /**
+   * Returns the previous value associated with the key or null if there was none.
+   * */
+  fun put(postNo: Long, postSubNo: Long, value: V): V? {
+    if (postSubNo == 0L) {
+      return mainTable.put(postNo, value)
+    }
+
+    var table = subNoTable
+    if (table == null) {
+      table = LongObjectMap(SUB_NO_TABLE_CAPACITY)
+      subNoTable = table
+    }
+
+    val prev = table.getOrPut(postNo) { LongObjectMap(SUB_NO_TABLE_CAPACITY) }
+      .put(postSubNo, value)
+
+    if (prev == null) {
+      ++subNoEntriesCount
+    }
+
+    return prev
+  }
+
+  inline fun getOrPut(postNo: Long, postSubNo: Long, defaultValue: () -> V): V {
+    val value = get(postNo, postSubNo)
+    if (value != null) {
+      return value
+    }
+
+    val newValue = defaultValue()
+    put(postNo, postSubNo, newValue)
+    return newValue
+  }
+
+  /**
+   * Returns the removed value or null if there was no mapping for the key.
+   * */
+  fun remove(postNo: Long, postSubNo: Long): V? {
+    if (postSubNo == 0L) {
+      return mainTable.remove(postNo)
+    }
+
+    val table = subNoTable
+      ?: return null
+    val innerTable = table[postNo]
+      ?: return null
+
+    val prev = innerTable.remove(postSubNo)
+      ?: return null
+
+    --subNoEntriesCount
+
+    if (innerTable.isEmpty()) {
+      table.remove(postNo)
+    }
+
+    return prev
+  }
+
+  fun clear() {
+    mainTable.clear()
+    subNoTable = null
+    subNoEntriesCount = 0
+  }
+
+  fun forEach(action: (postNo: Long, postSubNo: Long, value: V) -> Unit) {
+    mainTable.forEach { postNo, value -> action(postNo, 0L, value) }
+
+    subNoTable?.forEach { postNo, innerTable ->
+      innerTable.forEach { postSubNo, value -> action(postNo, postSubNo, value) }
+    }
+  }
+
+  /**
+   * Removes all the mappings matching the [predicate]. Returns the amount of removed mappings.
+   * */
+  fun removeIf(predicate: (postNo: Long, postSubNo: Long, value: V) -> Boolean): Int {
+    var removed = mainTable.removeIf { postNo, value -> predicate(postNo, 0L, value) }
+
+    val table = subNoTable
+    if (table != null) {
+      table.removeIf { postNo, innerTable ->
+        val removedInner = innerTable.removeIf { postSubNo, value -> predicate(postNo, postSubNo, value) }
+        removed += removedInner
+        subNoEntriesCount -= removedInner
+
+        return@removeIf innerTable.isEmpty()
+      }
+    }
+
+    return removed
+  }
+
+  fun values(): List<V> {
+    val result = ArrayList<V>(size)
+    forEach { _, _, value -> result.add(value) }
+    return result
+  }
+
+  override fun toString(): String {
+    return "PostNumberMap(size=$size, subNoEntriesCount=$subNoEntriesCount)"
+  }
+
+  companion object {
+    private const val DEFAULT_CAPACITY = 16
+    private const val SUB_NO_TABLE_CAPACITY = 4
+  }
+}
@@ -0,0 +1,91 @@
+package com.github.k1rakishou.common.datastructure
+
+import junit.framework.Assert.assertEquals
+import junit.framework.Assert.assertFalse
+import junit.framework.Assert.assertNull
+import junit.framework.Assert.assertTrue
+import org.junit.Test
+import kotlin.random.Random
+
+class LongObjectMapTest {
+
+  @Test
+  fun `test put get remove`() {
+    val map = LongObjectMap<String>()
+
+    assertTrue(map.isEmpty())
+    assertNull(map.put(1, "1"))
+    assertEquals("1", map.put(1, "11"))
+    assertEquals("11", map[1])
+    assertEquals(1, map.size)
+
+    assertEquals("11", map.remove(1))
+    assertNull(map.remove(1))
+    assertNull(map[1])
+    assertTrue(map.isEmpty())
+  }
+
+  @Test
+  fun `test zero and negative keys`() {
+    val map = LongObjectMap<String>()
+
+    map[0] = "0"
+    map[-1] = "-1"
+    map[Long.MIN_VALUE] = "min"
+
+    assertEquals(3, map.size)
+    assertTrue(map.containsKey(0))
+    assertEquals("0", map[0])
+    assertEquals("-1", map[-1])
+    assertEquals("min", map[Long.MIN_VALUE])
+
+    assertEquals("0", map.remove(0))
+    assertFalse(map.containsKey(0))
+    assertEquals(2, map.size)
+  }
+
+  @Test
+  fun `test removeIf`() {
+    val map = LongObjectMap<Long>()
+    for (key in 0L until 1000L) {
+      map[key] = key
+    }
+
+    assertEquals(500, map.removeIf { key, _ -> key % 2L == 0L })
+    assertEquals(500, map.size)
+
+    for (key in 0L until 1000L) {
+      assertEquals(key % 2L != 0L, map.containsKey(key))
+    }
+  }
+
+  @Test
+  fun `test must behave the same way as HashMap`() {
+    val random = Random(1234)
+    val map = LongObjectMap<Long>(4)
+    val expected = HashMap<Long, Long>()
+
+    repeat(100_000) {
+      // Small key range so that there are lots of collisions, updates and removals
+      val key = random.nextLong(0, 4096) + 100_000_000L
+
+      when (random.nextInt(3)) {
+        0, 1 -> assertEquals(expected.put(key, it.toLong()), map.put(key, it.toLong()))
+        2 -> assertEquals(expected.remove(key), map.remove(key))
+      }
+
+      assertEquals(expected.size, map.size)
+    }
+
+    expected.forEach { (key, value) -> assertEquals(value, map[key]) }
+
+    var count = 0
+    map.forEach { key, value ->
+      assertEquals(expected[key], value)
+      ++count
+    }
+
+    assertEquals(expected.size, count)
+  }
+
+}
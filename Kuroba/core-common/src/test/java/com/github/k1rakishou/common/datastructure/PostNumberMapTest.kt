@@ -0,0 +1,48 @@
+package com.github.k1rakishou.common.datastructure
+
+import junit.framework.Assert.assertEquals
+import junit.framework.Assert.assertFalse
+import junit.framework.Assert.assertNull
+import junit.framework.Assert.assertTrue
+import org.junit.Test
+
+class PostNumberMapTest {
+
+  @Test
+  fun `test posts with and without sub numbers do not clash`() {
+    val map = PostNumberMap<String>()
+
+    map.put(100, 0, "100")
+    map.put(100, 1, "100,1")
+    map.put(100, 2, "100,2")
+
+    assertEquals(3, map.size)
+    assertEquals("100", map.get(100, 0))
+    assertEquals("100,1", map.get(100, 1))
+    assertEquals("100,2", map.get(100, 2))
+    assertNull(map.get(100, 3))
+
+    assertEquals("100,1", map.remove(100, 1))
+    assertFalse(map.containsKey(100, 1))
+    assertTrue(map.containsKey(100, 2))
+    assertEquals(2, map.size)
+  }
+
+  @Test
+  fun `test removeIf keeps only original post`() {
+    val map = PostNumberMap<String>()
+
+    map.put(1, 0, "OP")
+    for (postNo in 2L..100L) {
+      map.put(postNo, 0, postNo.toString())
+      map.put(postNo, 1, "$postNo,1")
+    }
+
+    val removed = map.removeIf { postNo, postSubNo, _ -> postNo != 1L || postSubNo != 0L }
+
+    assertEquals(198, removed)
+    assertEquals(1, map.size)
+    assertEquals(listOf("OP"), map.values())
+  }
+
+}
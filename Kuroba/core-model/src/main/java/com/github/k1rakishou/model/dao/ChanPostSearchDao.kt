@@ -0,0 +1,152 @@
+package com.github.k1rakishou.model.dao
+
+import androidx.room.Dao
+import androidx.room.Query
+import com.github.k1rakishou.model.entity.chan.board.ChanBoardIdEntity
+import com.github.k1rakishou.model.entity.chan.post.ChanPostEntity
+import com.github.k1rakishou.model.entity.chan.post.ChanPostIdEntity
+import com.github.k1rakishou.model.entity.chan.post.ChanPostSearchEntity
+import com.github.k1rakishou.model.entity.chan.post.ChanPostSearchFoundPostDto
+import com.github.k1rakishou.model.entity.chan.post.ChanPostSearchMatchDto
+import com.github.k1rakishou.model.entity.chan.post.ChanTextSpanEntity
+import com.github.k1rakishou.model.entity.chan.thread.ChanThreadEntity
+
+@Dao
+abstract class ChanPostSearchDao {
+
+  /**
+   * Text types: 1 is [ChanTextSpanEntity.TextType.Subject], 0 is
+   * [ChanTextSpanEntity.TextType.PostComment].
+   * */
+  @Query("""
+    INSERT INTO ${ChanPostSearchEntity.TABLE_NAME} (
+        ${ChanPostSearchEntity.ROW_ID_COLUMN_NAME},
+        ${ChanPostSearchEntity.SUBJECT_COLUMN_NAME},
+        ${ChanPostSearchEntity.COMMENT_COLUMN_NAME}
+    )
+    SELECT
+        cpe.${ChanPostEntity.CHAN_POST_ID_COLUMN_NAME},
+        (
+            SELECT cts.${ChanTextSpanEntity.PARSED_TEXT_COLUMN_NAME}
+            FROM ${ChanTextSpanEntity.TABLE_NAME} cts
+            WHERE cts.${ChanTextSpanEntity.OWNER_POST_ID_COLUMN_NAME} = cpe.${ChanPostEntity.CHAN_POST_ID_COLUMN_NAME}
+            AND cts.${ChanTextSpanEntity.TEXT_TYPE_COLUMN_NAME} = 1
+        ),
+        (
+            SELECT cts.${ChanTextSpanEntity.PARSED_TEXT_COLUMN_NAME}
+            FROM ${ChanTextSpanEntity.TABLE_NAME} cts
+            WHERE cts.${ChanTextSpanEntity.OWNER_POST_ID_COLUMN_NAME} = cpe.${ChanPostEntity.CHAN_POST_ID_COLUMN_NAME}
+            AND cts.${ChanTextSpanEntity.TEXT_TYPE_COLUMN_NAME} = 0
+        )
+    FROM ${ChanPostEntity.TABLE_NAME} cpe
+    WHERE cpe.${ChanPostEntity.CHAN_POST_ID_COLUMN_NAME} IN (:postIds)
+  """)
+  abstract suspend fun insertFromPosts(postIds: Collection<Long>)
+
+  @Query("""
+    DELETE FROM ${ChanPostSearchEntity.TABLE_NAME}
+    WHERE ${ChanPostSearchEntity.ROW_ID_COLUMN_NAME} IN (:postIds)
+  """)
+  abstract suspend fun deleteMany(postIds: Collection<Long>)
+
+  @Query("""
+    DELETE FROM ${ChanPostSearchEntity.TABLE_NAME}
+    WHERE ${ChanPostSearchEntity.ROW_ID_COLUMN_NAME} IN (
+        SELECT ${ChanPostSearchEntity.ROW_ID_COLUMN_NAME}
+        FROM ${ChanPostSearchEntity.TABLE_NAME}
+        ORDER BY ${ChanPostSearchEntity.ROW_ID_COLUMN_NAME} ASC
+        LIMIT :count
+    )
+  """)
+  abstract suspend fun deleteOldest(count: Int): Int
+
+  @Query("""
+    DELETE FROM ${ChanPostSearchEntity.TABLE_NAME}
+    WHERE ${ChanPostSearchEntity.ROW_ID_COLUMN_NAME} NOT IN (
+        SELECT ${ChanPostEntity.CHAN_POST_ID_COLUMN_NAME}
+        FROM ${ChanPostEntity.TABLE_NAME}
+    )
+  """)
+  abstract suspend fun deleteOrphaned(): Int
+
+  @Query("SELECT COUNT(*) FROM ${ChanPostSearchEntity.TABLE_NAME}")
+  abstract suspend fun count(): Int
+
+  @Query("SELECT MIN(${ChanPostSearchEntity.ROW_ID_COLUMN_NAME}) FROM ${ChanPostSearchEntity.TABLE_NAME}")
+  abstract suspend fun selectOldestRowId(): Long?
+
+  /**
+   * Newest posts first. Rowid lookups are cheap in FTS tables so NOT EXISTS doesn't scan the index.
+   * */
+  @Query("""
+    SELECT cpe.${ChanPostEntity.CHAN_POST_ID_COLUMN_NAME}
+    FROM ${ChanPostEntity.TABLE_NAME} cpe
+    WHERE cpe.${ChanPostEntity.CHAN_POST_ID_COLUMN_NAME} < :beforePostId
+    AND cpe.${ChanPostEntity.CHAN_POST_ID_COLUMN_NAME} >= :floorPostId
+    AND NOT EXISTS (
+        SELECT 1
+        FROM ${ChanPostSearchEntity.TABLE_NAME}
+        WHERE ${ChanPostSearchEntity.TABLE_NAME}.${ChanPostSearchEntity.ROW_ID_COLUMN_NAME} = cpe.${ChanPostEntity.CHAN_POST_ID_COLUMN_NAME}
+    )
+    ORDER BY cpe.${ChanPostEntity.CHAN_POST_ID_COLUMN_NAME} DESC
+    LIMIT :count
+  """)
+  abstract suspend fun selectNotIndexedPostIds(beforePostId: Long, floorPostId: Long, count: Int): List<Long>
+
+  /**
+   * Newest posts first so that when there are more than [limit] matches we drop the oldest ones.
+   * Filters are optional (null means any), [threadNo] only makes sense together with a board.
+   * */
+  @Query("""
+    SELECT
+        ${ChanPostSearchEntity.TABLE_NAME}.${ChanPostSearchEntity.ROW_ID_COLUMN_NAME} AS ${ChanPostIdEntity.POST_ID_COLUMN_NAME},
+        matchinfo(${ChanPostSearchEntity.TABLE_NAME}, 'pcnalx') AS ${ChanPostSearchMatchDto.MATCH_INFO_COLUMN_NAME}
+    FROM ${ChanPostSearchEntity.TABLE_NAME}
+    INNER JOIN ${ChanPostIdEntity.TABLE_NAME} cp_id
+        ON cp_id.${ChanPostIdEntity.POST_ID_COLUMN_NAME} = ${ChanPostSearchEntity.TABLE_NAME}.${ChanPostSearchEntity.ROW_ID_COLUMN_NAME}
+    INNER JOIN ${ChanThreadEntity.TABLE_NAME} ct
+        ON ct.${ChanThreadEntity.THREAD_ID_COLUMN_NAME} = cp_id.${ChanPostIdEntity.OWNER_THREAD_ID_COLUMN_NAME}
+    INNER JOIN ${ChanBoardIdEntity.TABLE_NAME} cbi
+        ON cbi.${ChanBoardIdEntity.BOARD_ID_COLUMN_NAME} = ct.${ChanThreadEntity.OWNER_BOARD_ID_COLUMN_NAME}
+    WHERE ${ChanPostSearchEntity.TABLE_NAME} MATCH :matchExpression
+    AND (:siteName IS NULL OR cbi.${ChanBoardIdEntity.OWNER_SITE_NAME_COLUMN_NAME} = :siteName)
+    AND (:boardCode IS NULL OR cbi.${ChanBoardIdEntity.BOARD_CODE_COLUMN_NAME} = :boardCode)
+    AND (:threadNo IS NULL OR ct.${ChanThreadEntity.THREAD_NO_COLUMN_NAME} = :threadNo)
+    ORDER BY ${ChanPostSearchEntity.TABLE_NAME}.${ChanPostSearchEntity.ROW_ID_COLUMN_NAME} DESC
+    LIMIT :limit
+  """)
+  abstract suspend fun selectMatches(
+    matchExpression: String,
+    siteName: String?,
+    boardCode: String?,
+    threadNo: Long?,
+    limit: Int
+  ): List<ChanPostSearchMatchDto>
+
+  @Query("""
+    SELECT
+        cp_id.${ChanPostIdEntity.POST_ID_COLUMN_NAME} AS ${ChanPostIdEntity.POST_ID_COLUMN_NAME},
+        cp_id.${ChanPostIdEntity.POST_NO_COLUMN_NAME} AS ${ChanPostIdEntity.POST_NO_COLUMN_NAME},
+        cp_id.${ChanPostIdEntity.POST_SUB_NO_COLUMN_NAME} AS ${ChanPostIdEntity.POST_SUB_NO_COLUMN_NAME},
+        ct.${ChanThreadEntity.THREAD_NO_COLUMN_NAME} AS ${ChanPostSearchFoundPostDto.THREAD_NO_COLUMN_NAME},
+        cbi.${ChanBoardIdEntity.OWNER_SITE_NAME_COLUMN_NAME} AS ${ChanPostSearchFoundPostDto.SITE_NAME_COLUMN_NAME},
+        cbi.${ChanBoardIdEntity.BOARD_CODE_COLUMN_NAME} AS ${ChanPostSearchFoundPostDto.BOARD_CODE_COLUMN_NAME},
+        cpe.${ChanPostEntity.IS_OP_COLUMN_NAME} AS ${ChanPostEntity.IS_OP_COLUMN_NAME},
+        cpe.${ChanPostEntity.NAME_COLUMN_NAME} AS ${ChanPostEntity.NAME_COLUMN_NAME},
+        cpe.${ChanPostEntity.TIMESTAMP_SECONDS_COLUMN_NAME} AS ${ChanPostEntity.TIMESTAMP_SECONDS_COLUMN_NAME},
+        cps.${ChanPostSearchEntity.SUBJECT_COLUMN_NAME} AS ${ChanPostSearchEntity.SUBJECT_COLUMN_NAME},
+        cps.${ChanPostSearchEntity.COMMENT_COLUMN_NAME} AS ${ChanPostSearchEntity.COMMENT_COLUMN_NAME}
+    FROM ${ChanPostIdEntity.TABLE_NAME} cp_id
+    INNER JOIN ${ChanPostEntity.TABLE_NAME} cpe
+        ON cpe.${ChanPostEntity.CHAN_POST_ID_COLUMN_NAME} = cp_id.${ChanPostIdEntity.POST_ID_COLUMN_NAME}
+    INNER JOIN ${ChanThreadEntity.TABLE_NAME} ct
+        ON ct.${ChanThreadEntity.THREAD_ID_COLUMN_NAME} = cp_id.${ChanPostIdEntity.OWNER_THREAD_ID_COLUMN_NAME}
+    INNER JOIN ${ChanBoardIdEntity.TABLE_NAME} cbi
+        ON cbi.${ChanBoardIdEntity.BOARD_ID_COLUMN_NAME} = ct.${ChanThreadEntity.OWNER_BOARD_ID_COLUMN_NAME}
+    INNER JOIN ${ChanPostSearchEntity.TABLE_NAME} cps
+        ON cps.${ChanPostSearchEntity.ROW_ID_COLUMN_NAME} = cp_id.${ChanPostIdEntity.POST_ID_COLUMN_NAME}
+    WHERE cp_id.${ChanPostIdEntity.POST_ID_COLUMN_NAME} IN (:postIds)
+  """)
+  abstract suspend fun selectFoundPosts(postIds: Collection<Long>): List<ChanPostSearchFoundPostDto>
+
+}
@@ -14,6 +14,9 @@ abstract class MediaServiceLinkExtraContentDao {
   @Insert(onConflict = OnConflictStrategy.IGNORE)
   abstract suspend fun insert(mediaServiceLinkExtraContentEntity: MediaServiceLinkExtraContentEntity)
 
+  @Insert(onConflict = OnConflictStrategy.REPLACE)
+  abstract suspend fun insertOrReplaceMany(mediaServiceLinkExtraContentEntities: List<MediaServiceLinkExtraContentEntity>)
+
   @Query("""
         SELECT * 
         FROM ${MediaServiceLinkExtraContentEntity.TABLE_NAME} 
@@ -21,12 +24,43 @@ abstract class MediaServiceLinkExtraContentDao {
             ${MediaServiceLinkExtraContentEntity.VIDEO_ID_COLUMN_NAME} = :videoId
         AND
             ${MediaServiceLinkExtraContentEntity.MEDIA_SERVICE_TYPE} = :mediaServiceType
+        AND
+            ${MediaServiceLinkExtraContentEntity.INSERTED_AT_COLUMN_NAME} >= :insertedAfter
     """)
   abstract suspend fun select(
     videoId: String,
-    mediaServiceType: MediaServiceType
+    mediaServiceType: MediaServiceType,
+    insertedAfter: DateTime
   ): MediaServiceLinkExtraContentEntity?
 
+  @Query("""
+        SELECT * 
+        FROM ${MediaServiceLinkExtraContentEntity.TABLE_NAME} 
+        WHERE 
+            ${MediaServiceLinkExtraContentEntity.VIDEO_ID_COLUMN_NAME} IN (:videoIds)
+        AND
+            ${MediaServiceLinkExtraContentEntity.MEDIA_SERVICE_TYPE} = :mediaServiceType
+        AND
+            ${MediaServiceLinkExtraContentEntity.INSERTED_AT_COLUMN_NAME} >= :insertedAfter
+    """)
+  abstract suspend fun selectMany(
+    videoIds: Collection<String>,
+    mediaServiceType: MediaServiceType,
+    insertedAfter: DateTime
+  ): List<MediaServiceLinkExtraContentEntity>
+
+  @Query("""
+        DELETE 
+        FROM ${MediaServiceLinkExtraContentEntity.TABLE_NAME}
+        WHERE ${MediaServiceLinkExtraContentEntity.VIDEO_ID_COLUMN_NAME} IN (
+            SELECT ${MediaServiceLinkExtraContentEntity.VIDEO_ID_COLUMN_NAME}
+            FROM ${MediaServiceLinkExtraContentEntity.TABLE_NAME}
+            ORDER BY ${MediaServiceLinkExtraContentEntity.INSERTED_AT_COLUMN_NAME} DESC
+            LIMIT -1 OFFSET :maxCount
+        )
+    """)
+  abstract suspend fun deleteOverLimit(maxCount: Int): Int
+
   @Query("""
         DELETE 
         FROM ${MediaServiceLinkExtraContentEntity.TABLE_NAME}
@@ -27,8 +27,10 @@ class ChanCompositeCatalogSnapshot(
     get() = true
   override val catalogThreadDescriptorList: List<ChanDescriptor.ThreadDescriptor>
     get() = lock.read {
-      chanCatalogSnapshots.values.flatMap { chanCatalogSnapshot ->
-        chanCatalogSnapshot.catalogThreadDescriptorList
+      // Catalogs may be loaded concurrently and get merged in any order so use the order of the
+      // composite catalog instead of the insertion order.
+      catalogDescriptor.catalogDescriptors.flatMap { catalogDescriptor ->
+        chanCatalogSnapshots[catalogDescriptor]?.catalogThreadDescriptorList ?: emptyList()
       }
     }
   override val catalogThreadDescriptorSet: Set<ChanDescriptor.ThreadDescriptor>
@@ -5,6 +5,15 @@ class BoardDescriptor private constructor(
   val boardCode: String
 ) {
 
+  // Canonical CatalogDescriptor of this board (see CatalogDescriptor.create())
+  @Volatile
+  internal var catalogDescriptor: ChanDescriptor.CatalogDescriptor? = null
+
+  // Canonical ThreadDescriptors of this board (see ThreadDescriptor.create())
+  internal val threadDescriptors = WeakDescriptorCache<Long, ChanDescriptor.ThreadDescriptor>()
+
+  private var hash = 0
+
   fun siteName(): String = siteDescriptor.siteName
 
   fun userReadableString(): String {
@@ -22,8 +31,14 @@ class BoardDescriptor private constructor(
   }
 
   override fun hashCode(): Int {
+    if (hash != 0) {
+      return hash
+    }
+
     var result = siteDescriptor.hashCode()
     result = 31 * result + boardCode.hashCode()
+
+    hash = result
     return result
   }
 
@@ -32,16 +47,28 @@ class BoardDescriptor private constructor(
   }
 
   companion object {
+    /**
+     * Returns the canonical BoardDescriptor instance (as long as someone still references it)
+     * so that in most cases descriptors can be compared by reference.
+     * */
     @JvmStatic
-    fun create(siteDescriptor: SiteDescriptor, boardCode: String): BoardDescriptor {
-      return create(siteDescriptor.siteName, boardCode)
+    fun create(siteDescriptor: SiteDescriptor, boardCodeInput: String): BoardDescriptor {
+      // SiteDescriptors are canonical for as long as they are referenced (and the caller
+      // references this one)
+      val canonical = siteDescriptor.boardDescriptors.get(boardCodeInput)
+      if (canonical != null) {
+        return canonical
+      }
+
+      val boardCode = boardCodeInput.intern()
+      val boardDescriptor = BoardDescriptor(siteDescriptor, boardCode)
+
+      return siteDescriptor.boardDescriptors.putIfAbsent(boardCode, boardDescriptor)
     }
 
     @JvmStatic
     fun create(siteName: String, boardCodeInput: String): BoardDescriptor {
-      val boardCode = boardCodeInput.intern()
-
-      return BoardDescriptor(SiteDescriptor.create(siteName), boardCode)
+      return create(SiteDescriptor.create(siteName), boardCodeInput)
     }
   }
 }
\ No newline at end of file
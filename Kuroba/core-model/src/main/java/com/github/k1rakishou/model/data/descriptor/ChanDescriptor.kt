@@ -62,6 +62,7 @@ sealed class ChanDescriptor {
     val boardDescriptor: BoardDescriptor,
     val threadNo: Long
   ) : ChanDescriptor() {
+    private var hash = 0
 
     override fun isThreadDescriptor(): Boolean = true
     override fun isCatalogDescriptor(): Boolean = false
@@ -97,8 +98,14 @@ sealed class ChanDescriptor {
     }
 
     override fun hashCode(): Int {
+      if (hash != 0) {
+        return hash
+      }
+
       var result = boardDescriptor.hashCode()
       result = 31 * result + threadNo.hashCode()
+
+      hash = result
       return result
     }
 
@@ -123,11 +130,24 @@ sealed class ChanDescriptor {
         return create(chanDescriptor.boardDescriptor(), threadNo)
       }
 
+      /**
+       * Returns the canonical ThreadDescriptor instance (as long as someone still references it)
+       * so that in most cases descriptors can be compared by reference.
+       * */
       @JvmStatic
       fun create(boardDescriptor: BoardDescriptor, threadNo: Long): ThreadDescriptor {
         require(threadNo > 0) { "Bad threadId: $threadNo" }
 
-        return ThreadDescriptor(boardDescriptor, threadNo)
+        // BoardDescriptors are canonical for as long as they are referenced (and the caller
+        // references this one)
+        val threadDescriptors = boardDescriptor.threadDescriptors
+
+        val canonical = threadDescriptors.get(threadNo)
+        if (canonical != null) {
+          return canonical
+        }
+
+        return threadDescriptors.putIfAbsent(threadNo, ThreadDescriptor(boardDescriptor, threadNo))
       }
 
       fun fromDescriptorParcelable(descriptorParcelable: DescriptorParcelable): ThreadDescriptor {
@@ -201,17 +221,28 @@ sealed class ChanDescriptor {
         )
       }
 
+      /**
+       * Returns the canonical CatalogDescriptor instance so that in most cases descriptors can be
+       * compared by reference.
+       * */
       @JvmStatic
       fun create(boardDescriptor: BoardDescriptor): CatalogDescriptor {
-        return create(boardDescriptor.siteName(), boardDescriptor.boardCode)
+        // BoardDescriptors are canonical while referenced. There may be a race here but it's harmless,
+        // we will just create an extra instance which is still equal to the canonical one.
+        val canonical = boardDescriptor.catalogDescriptor
+        if (canonical != null) {
+          return canonical
+        }
+
+        val catalogDescriptor = CatalogDescriptor(boardDescriptor)
+        boardDescriptor.catalogDescriptor = catalogDescriptor
+
+        return catalogDescriptor
       }
 
       @JvmStatic
       fun create(siteNameInput: String, boardCodeInput: String): CatalogDescriptor {
-        val siteName = siteNameInput.intern()
-        val boardCode = boardCodeInput.intern()
-
-        return CatalogDescriptor(BoardDescriptor.create(siteName, boardCode))
+        return create(BoardDescriptor.create(siteNameInput, boardCodeInput))
       }
 
       /**
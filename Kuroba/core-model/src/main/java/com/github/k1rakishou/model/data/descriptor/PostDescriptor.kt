@@ -12,6 +12,11 @@ open class PostDescriptor protected constructor(
   val postNo: Long,
   open val postSubNo: Long = 0L
 ) {
+  // Only used when descriptor is a CatalogDescriptor (otherwise the descriptor itself is returned),
+  // so that we don't have to look up the canonical ThreadDescriptor every time.
+  @Volatile
+  private var cachedThreadDescriptor: ChanDescriptor.ThreadDescriptor? = null
+  private var hash = 0
 
   fun isOP(): Boolean {
     return when (descriptor) {
@@ -26,7 +31,15 @@ open class PostDescriptor protected constructor(
   fun threadDescriptor(): ChanDescriptor.ThreadDescriptor {
     return when (descriptor) {
       is ChanDescriptor.ThreadDescriptor -> descriptor
-      is ChanDescriptor.CatalogDescriptor -> descriptor.toThreadDescriptor(postNo)
+      is ChanDescriptor.CatalogDescriptor -> {
+        val threadDescriptor = cachedThreadDescriptor
+        if (threadDescriptor != null) {
+          return threadDescriptor
+        }
+
+        descriptor.toThreadDescriptor(postNo)
+          .also { newThreadDescriptor -> cachedThreadDescriptor = newThreadDescriptor }
+      }
       is ChanDescriptor.CompositeCatalogDescriptor -> {
         error("Cannot convert CompositeCatalogDescriptor into ThreadDescriptor")
       }
@@ -95,9 +108,15 @@ open class PostDescriptor protected constructor(
   }
 
   override fun hashCode(): Int {
+    if (hash != 0) {
+      return hash
+    }
+
     var result = descriptor.hashCode()
     result = 31 * result + postNo.hashCode()
     result = 31 * result + postSubNo.hashCode()
+
+    hash = result
     return result
   }
 
@@ -158,12 +177,7 @@ open class PostDescriptor protected constructor(
       }
 
       return when (chanDescriptor) {
-        is ChanDescriptor.ThreadDescriptor -> create(
-          siteName = chanDescriptor.siteName(),
-          boardCode = chanDescriptor.boardCode(),
-          threadNo = chanDescriptor.threadNo,
-          postNo = postNo
-        )
+        is ChanDescriptor.ThreadDescriptor -> create(chanDescriptor, postNo)
         is ChanDescriptor.CatalogDescriptor -> create(
           siteName = chanDescriptor.siteName(),
           boardCode = chanDescriptor.boardCode(),
@@ -187,7 +201,9 @@ open class PostDescriptor protected constructor(
 
     @JvmStatic
     fun create(boardDescriptor: BoardDescriptor, threadNo: Long, postNo: Long, postSubNo: Long = 0L): PostDescriptor {
-      return create(boardDescriptor.siteName(), boardDescriptor.boardCode, threadNo, postNo, postSubNo)
+      require(threadNo > 0) { "Bad threadNo: $threadNo" }
+
+      return fromThreadDescriptor(ChanDescriptor.ThreadDescriptor.create(boardDescriptor, threadNo), postNo, postSubNo)
     }
 
     @JvmStatic
@@ -196,12 +212,27 @@ open class PostDescriptor protected constructor(
         "Cannot use ChanDescriptor.CompositeCatalogDescriptor for PostDescriptors"
       }
 
-      return create(chanDescriptor.siteName(), chanDescriptor.boardCode(), threadNo, postNo, postSubNo)
+      if (chanDescriptor is ChanDescriptor.ThreadDescriptor && chanDescriptor.threadNo == threadNo) {
+        return fromThreadDescriptor(chanDescriptor, postNo, postSubNo)
+      }
+
+      return create(chanDescriptor.boardDescriptor(), threadNo, postNo, postSubNo)
     }
 
     @JvmStatic
     fun create(threadDescriptor: ChanDescriptor.ThreadDescriptor, postNo: Long): PostDescriptor {
-      return create(threadDescriptor.siteName(), threadDescriptor.boardCode(), threadDescriptor.threadNo, postNo, 0)
+      return fromThreadDescriptor(threadDescriptor, postNo, 0L)
+    }
+
+    private fun fromThreadDescriptor(
+      threadDescriptor: ChanDescriptor.ThreadDescriptor,
+      postNo: Long,
+      postSubNo: Long
+    ): PostDescriptor {
+      require(postNo > 0) { "Bad postNo: $postNo" }
+
+      // No need to look up the canonical ThreadDescriptor since we already have one
+      return PostDescriptor(threadDescriptor, postNo, postSubNo)
     }
 
     @JvmOverloads
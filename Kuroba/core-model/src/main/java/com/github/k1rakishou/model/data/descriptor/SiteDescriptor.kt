@@ -3,6 +3,9 @@ package com.github.k1rakishou.model.data.descriptor
 class SiteDescriptor private constructor(
   val siteName: String
 ) {
+  // Canonical BoardDescriptors of this site (see BoardDescriptor.create())
+  internal val boardDescriptors = WeakDescriptorCache<String, BoardDescriptor>()
+
   fun is4chan(): Boolean {
     // Kinda bad, but Chan4 file is located in another module so for now it's impossible to use
     // it
@@ -39,10 +42,24 @@ class SiteDescriptor private constructor(
   }
 
   companion object {
+    // Site names come from the network too (archives, imported settings, etc) so the cache must
+    // not keep descriptors of sites that are no longer used in memory forever
+    private val siteDescriptors = WeakDescriptorCache<String, SiteDescriptor>()
+
+    /**
+     * Returns the canonical SiteDescriptor instance for [siteNameInput] (as long as someone still
+     * references it) so that in most cases descriptors can be compared by reference.
+     * */
     fun create(siteNameInput: String): SiteDescriptor {
+      val canonical = siteDescriptors.get(siteNameInput)
+      if (canonical != null) {
+        return canonical
+      }
+
       val siteName = siteNameInput.intern()
+      val siteDescriptor = SiteDescriptor(siteName)
 
-      return SiteDescriptor(siteName)
+      return siteDescriptors.putIfAbsent(siteName, siteDescriptor)
     }
   }
 
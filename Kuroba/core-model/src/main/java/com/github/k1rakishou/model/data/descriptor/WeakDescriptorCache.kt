@@ -0,0 +1,60 @@
+package com.github.k1rakishou.model.data.descriptor
+
+import androidx.annotation.GuardedBy
+import java.lang.ref.ReferenceQueue
+import java.lang.ref.WeakReference
+
+/**
+ * Holds canonical instances of descriptors (sites, boards of a site, threads of a board).
+ * Descriptors are only weakly referenced so they are removed from the cache once nothing else
+ * references them anymore.
+ * */
+internal class WeakDescriptorCache<K : Any, V : Any> {
+  private val referenceQueue = ReferenceQueue<V>()
+
+  @GuardedBy("this")
+  private val descriptors = HashMap<K, DescriptorReference<K, V>>()
+
+  @Synchronized
+  fun get(key: K): V? {
+    return descriptors[key]?.get()
+  }
+
+  /**
+   * Returns the already cached canonical instance (if there is one) or [descriptor] after
+   * storing it as the canonical instance.
+   * */
+  @Synchronized
+  fun putIfAbsent(key: K, descriptor: V): V {
+    purgeCollectedReferences()
+
+    val canonical = descriptors[key]?.get()
+    if (canonical != null) {
+      return canonical
+    }
+
+    descriptors[key] = DescriptorReference(key, descriptor, referenceQueue)
+    return descriptor
+  }
+
+  @GuardedBy("this")
+  private fun purgeCollectedReferences() {
+    while (true) {
+      @Suppress("UNCHECKED_CAST")
+      val reference = referenceQueue.poll() as? DescriptorReference<K, V>
+        ?: break
+
+      // The entry may have already been replaced with a new instance
+      if (descriptors[reference.key] === reference) {
+        descriptors.remove(reference.key)
+      }
+    }
+  }
+
+  private class DescriptorReference<K, V>(
+    val key: K,
+    descriptor: V,
+    referenceQueue: ReferenceQueue<V>
+  ) : WeakReference<V>(descriptor, referenceQueue)
+
+}
@@ -69,6 +69,9 @@ open class ChanPost(
   val boardDescriptor: BoardDescriptor
     get() = postDescriptor.boardDescriptor()
 
+  @Volatile
+  private var cachedEstimatedSizeInBytes = -1L
+
   init {
     this.posterIdColor = posterIdColor
 
@@ -103,6 +106,38 @@ open class ChanPost(
     }
   }
 
+  /**
+   * Rough estimation of how much memory this post occupies. Posts are replaced with new objects
+   * when updated so everything except for the replies is calculated only once.
+   * */
+  fun estimateSizeInBytes(): Long {
+    var baseSize = cachedEstimatedSizeInBytes
+    if (baseSize < 0L) {
+      baseSize = calculateBaseSizeInBytes()
+      cachedEstimatedSizeInBytes = baseSize
+    }
+
+    return baseSize + (repliesFromCount * POST_DESCRIPTOR_SIZE_BYTES)
+  }
+
+  private fun calculateBaseSizeInBytes(): Long {
+    var size = POST_OBJECT_SIZE_BYTES
+
+    size += postComment.estimateSizeInBytes()
+    size += (subject?.length ?: 0) * CHAR_SIZE_BYTES
+    size += (tripcode?.length ?: 0) * CHAR_SIZE_BYTES
+    size += (name?.length ?: 0) * CHAR_SIZE_BYTES
+    size += (posterId?.length ?: 0) * CHAR_SIZE_BYTES
+    size += repliesTo.size * POST_DESCRIPTOR_SIZE_BYTES
+    size += postIcons.size * POST_ICON_SIZE_BYTES
+
+    for (postImage in postImages) {
+      size += postImage.estimateSizeInBytes()
+    }
+
+    return size
+  }
+
   @Synchronized
   open fun isContentLoadedForLoader(loaderType: LoaderType): Boolean {
     return onDemandContentLoadedArray[loaderType.arrayIndex]
@@ -267,4 +302,11 @@ open class ChanPost(
       '}'
   }
 
-}
\ No newline at end of file
+  companion object {
+    private const val CHAR_SIZE_BYTES = 2L
+    private const val POST_OBJECT_SIZE_BYTES = 256L
+    private const val POST_DESCRIPTOR_SIZE_BYTES = 48L
+    private const val POST_ICON_SIZE_BYTES = 192L
+  }
+
+}
@@ -45,6 +45,33 @@ class ChanPostImage(
   @set:Synchronized
   var isPrefetched = false
 
+  /**
+   * Rough estimation of how much memory this image info object occupies (not the image itself).
+   * */
+  fun estimateSizeInBytes(): Long {
+    var size = IMAGE_OBJECT_SIZE_BYTES
+
+    size += serverFilename.length * CHAR_SIZE_BYTES
+    size += (filename?.length ?: 0) * CHAR_SIZE_BYTES
+    size += (extension?.length ?: 0) * CHAR_SIZE_BYTES
+    size += (fileHash?.length ?: 0) * CHAR_SIZE_BYTES
+
+    size += estimateHttpUrlSizeInBytes(actualThumbnailUrl)
+    size += estimateHttpUrlSizeInBytes(spoilerThumbnailUrl)
+    size += estimateHttpUrlSizeInBytes(imageUrl)
+
+    return size
+  }
+
+  private fun estimateHttpUrlSizeInBytes(httpUrl: HttpUrl?): Long {
+    if (httpUrl == null) {
+      return 0L
+    }
+
+    // HttpUrl stores the whole url string as well as its separate parts
+    return HTTP_URL_OBJECT_SIZE_BYTES + (httpUrl.toString().length * CHAR_SIZE_BYTES * 2)
+  }
+
   @Synchronized
   fun setSize(newSize: Long) {
     _loadedFileSize = newSize
@@ -250,5 +277,9 @@ class ChanPostImage(
     const val MAX_PREFETCH_FILE_SIZE = 5 * (1024 * 1024).toLong()
 
     const val MAX_IMAGE_SIZE = 4096
+
+    private const val CHAR_SIZE_BYTES = 2L
+    private const val IMAGE_OBJECT_SIZE_BYTES = 128L
+    private const val HTTP_URL_OBJECT_SIZE_BYTES = 160L
   }
 }
\ No newline at end of file
@@ -0,0 +1,43 @@
+package com.github.k1rakishou.model.data.post
+
+import com.github.k1rakishou.model.data.descriptor.BoardDescriptor
+import com.github.k1rakishou.model.data.descriptor.PostDescriptor
+import okhttp3.HttpUrl
+
+/**
+ * Search over the posts that are stored in the database (posts of the threads that were visited
+ * recently, bookmarked or downloaded). [threadNo] is only used together with [boardDescriptor].
+ * */
+data class ChanPostSearchQuery(
+  val query: String,
+  val boardDescriptor: BoardDescriptor?,
+  val threadNo: Long?,
+  val page: Int,
+  val pageSize: Int
+)
+
+data class ChanPostSearchResult(
+  val foundPosts: List<FoundPost>,
+  /**
+   * The amount of found posts, capped to some value since ranking every single post that contains a
+   * common word would take too much time.
+   * */
+  val totalFound: Int,
+  val hasMorePages: Boolean
+) {
+
+  data class FoundPost(
+    val postDescriptor: PostDescriptor,
+    val isOp: Boolean,
+    val name: String?,
+    val subject: String?,
+    val comment: String?,
+    val timestampSeconds: Long,
+    val thumbnailUrls: List<HttpUrl>
+  )
+
+  companion object {
+    val EMPTY = ChanPostSearchResult(emptyList(), 0, false)
+  }
+
+}
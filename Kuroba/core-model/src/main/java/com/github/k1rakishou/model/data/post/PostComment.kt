@@ -2,6 +2,7 @@ package com.github.k1rakishou.model.data.post
 
 import android.text.Spannable
 import android.text.SpannableString
+import android.text.Spanned
 import androidx.core.text.getSpans
 import com.github.k1rakishou.common.MurmurHashUtils
 import com.github.k1rakishou.core_spannable.PostLinkable
@@ -89,6 +90,38 @@ class PostComment(
     return linkables.contains(postLinkable)
   }
 
+  /**
+   * Rough estimation of how much memory this comment occupies (chars of both the original and
+   * updated comments, their spans and the linkables).
+   * */
+  @Synchronized
+  fun estimateSizeInBytes(): Long {
+    var size = estimateCharSequenceSizeInBytes(originalComment)
+
+    val updatedComment = _updatedComment
+    if (updatedComment != null && updatedComment !== originalComment) {
+      size += estimateCharSequenceSizeInBytes(updatedComment)
+    }
+
+    if (originalUnparsedComment != null) {
+      size += originalUnparsedComment.length * CHAR_SIZE_BYTES
+    }
+
+    size += linkables.size * LINKABLE_SIZE_BYTES
+    return size
+  }
+
+  private fun estimateCharSequenceSizeInBytes(charSequence: CharSequence): Long {
+    var size = charSequence.length * CHAR_SIZE_BYTES
+
+    if (charSequence is Spanned) {
+      // Every span is an object + an entry in the span start/end/flags arrays
+      size += charSequence.getSpans(0, charSequence.length, Any::class.java).size * SPAN_SIZE_BYTES
+    }
+
+    return size
+  }
+
   fun getThemeJsonSpannables(): Array<out ThemeJsonSpannable> {
     val spannableComment = comment() as? Spannable
       ?: return emptyArray()
@@ -136,4 +169,10 @@ class PostComment(
     return originalComment.hashCode()
   }
 
+  companion object {
+    private const val CHAR_SIZE_BYTES = 2L
+    private const val SPAN_SIZE_BYTES = 64L
+    private const val LINKABLE_SIZE_BYTES = 96L
+  }
+
 }
\ No newline at end of file
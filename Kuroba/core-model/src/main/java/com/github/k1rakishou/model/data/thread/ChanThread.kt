@@ -2,6 +2,7 @@ package com.github.k1rakishou.model.data.thread
 
 import androidx.annotation.GuardedBy
 import com.github.k1rakishou.common.MurmurHashUtils
+import com.github.k1rakishou.common.datastructure.PostNumberMap
 import com.github.k1rakishou.common.hashSetWithCap
 import com.github.k1rakishou.common.mutableIteration
 import com.github.k1rakishou.common.mutableListWithCap
@@ -16,6 +17,10 @@ import com.github.k1rakishou.model.data.post.ChanPostImage
 import com.github.k1rakishou.model.data.post.LoaderType
 import com.github.k1rakishou.model.data.post.PostComment
 import com.github.k1rakishou.model.util.ChanPostUtils
+import com.github.k1rakishou.model.util.containsKey
+import com.github.k1rakishou.model.util.get
+import com.github.k1rakishou.model.util.remove
+import com.github.k1rakishou.model.util.set
 import okhttp3.HttpUrl
 import java.util.*
 import java.util.concurrent.locks.ReentrantReadWriteLock
@@ -39,7 +44,8 @@ class ChanThread(
   @GuardedBy("lock")
   private val threadPosts = mutableListOf<ChanPost>()
   @GuardedBy("lock")
-  private val postsByPostDescriptors = mutableMapOf<PostDescriptor, ChanPost>()
+  // Keyed by postNo/postSubNo only, use getPostInternal() for lookups by foreign descriptors.
+  private val postsByPostDescriptors = PostNumberMap<ChanPost>()
   @GuardedBy("lock")
   // Stores hashes of unparsed post comments, the way we got the from the server, without any spans added yet.
   private val rawPostHashesMap = mutableMapOf<PostDescriptor, MurmurHashUtils.Murmur3Hash>()
@@ -47,6 +53,9 @@ class ChanThread(
   private var lastAccessTime = initialLastAccessTime
   @GuardedBy("lock")
   private var lastUpdateTime = 0L
+  @GuardedBy("lock")
+  // Built on the first search in this thread, kept up to date after that
+  private var searchIndex = ThreadSearchIndex()
 
   // All the ***forUi variables/flags are used to display one-shot snackbar messages like
   // This thread is now sticky/no longer sticky/closed/archived/deleted etc
@@ -77,6 +86,18 @@ class ChanThread(
   val imagesCount: Int
     get() = lock.read { threadPosts.sumBy { post -> post.postImages.size } }
 
+  fun estimateSizeInBytes(): Long {
+    return lock.read {
+      var totalSize = 0L
+
+      for (threadPost in threadPosts) {
+        totalSize += threadPost.estimateSizeInBytes()
+      }
+
+      return@read totalSize
+    }
+  }
+
   fun getAndConsumeDeletedPostsForUi(): Int {
     return lock.write {
       val deletedPosts = deletedPostsForUi
@@ -140,7 +161,7 @@ class ChanThread(
 
   fun getPostImage(postDescriptor: PostDescriptor, imageUrl: HttpUrl): ChanPostImage? {
     return lock.read {
-      return@read postsByPostDescriptors[postDescriptor]
+      return@read getPostInternal(postDescriptor)
         ?.firstPostImageOrNull { chanPostImage -> chanPostImage.imageUrl == imageUrl }
     }
   }
@@ -150,7 +171,7 @@ class ChanThread(
       val posts = mutableListWithCap<ChanPost>(postDescriptors.size)
 
       postDescriptors.forEach { postDescriptor ->
-        posts += postsByPostDescriptors[postDescriptor]
+        posts += getPostInternal(postDescriptor)
           ?: return@forEach
       }
 
@@ -261,6 +282,14 @@ class ChanThread(
       deletedPostsForUi += deletedPostsCount
       checkPostsConsistency()
 
+      if (addedOrUpdatedOrDeletedPosts && searchIndex.isBuilt) {
+        val updatedEntries = newChanPosts.mapNotNull { newChanPost ->
+          getPostInternal(newChanPost.postDescriptor)?.let { chanPost -> ThreadSearchIndex.entry(chanPost) }
+        }
+
+        searchIndex.addOrUpdate(updatedEntries)
+      }
+
       Logger.d(TAG, "Thread cache (${threadDescriptor}) Added ${addedPostsCount} new posts, " +
         "updated ${updatedPostsCount} posts, marked as deleted ${deletedPostsCount} posts. " +
         "sortAndRecalculationDuration=$sortAndRecalculationDuration")
@@ -316,6 +345,12 @@ class ChanThread(
       }
 
       checkPostsConsistency()
+
+      if (searchIndex.isBuilt) {
+        threadPosts.firstOrNull()?.let { chanOriginalPost ->
+          searchIndex.addOrUpdate(listOf(ThreadSearchIndex.entry(chanOriginalPost)))
+        }
+      }
     }
   }
 
@@ -443,7 +478,7 @@ class ChanThread(
   }
 
   fun getPost(postDescriptor: PostDescriptor): ChanPost? {
-    return lock.read { postsByPostDescriptors[postDescriptor] }
+    return lock.read { getPostInternal(postDescriptor) }
   }
 
   fun <T> iteratePostIndexes(
@@ -476,6 +511,30 @@ class ChanThread(
     }
   }
 
+  /**
+   * Returns timestamps (in seconds) of up to [count] last posts of this thread, OP excluded, in
+   * ascending order. Posts with unknown timestamps are skipped.
+   * */
+  fun getLastPostsTimestamps(count: Int): LongArray {
+    return lock.read {
+      if (threadPosts.size <= 1 || count <= 0) {
+        return@read LongArray(0)
+      }
+
+      val fromIndex = (threadPosts.size - count).coerceAtLeast(1)
+      val timestamps = mutableListWithCap<Long>(threadPosts.size - fromIndex)
+
+      for (index in fromIndex until threadPosts.size) {
+        val timestamp = threadPosts[index].timestamp
+        if (timestamp > 0L) {
+          timestamps += timestamp
+        }
+      }
+
+      return@read timestamps.toLongArray()
+    }
+  }
+
   fun getNewPostsCount(lastPostNo: Long): Int {
     return lock.read { threadPosts.count { chanPost -> chanPost.postNo() > lastPostNo } }
   }
@@ -528,16 +587,38 @@ class ChanThread(
 
         if (postIndex >= 0) {
           threadPosts.removeAt(postIndex)
+          postsByPostDescriptors.remove(postDescriptor)
         }
 
         rawPostHashesMap.remove(postDescriptor)
-        postsByPostDescriptors.remove(postDescriptor)
       }
 
+      searchIndex.remove(postDescriptors)
       checkPostsConsistency()
     }
   }
 
+  /**
+   * Returns posts that contain [query] (ignoring case) in their comment, number, subject, name or
+   * image info, in the thread order. The search index is built on the first call. Pass the
+   * previous result when the user keeps typing the same query so that only its posts are checked.
+   * */
+  fun searchPosts(
+    query: String,
+    previousResult: ThreadSearchIndex.SearchResult?
+  ): Pair<List<ChanPost>, ThreadSearchIndex.SearchResult> {
+    return lock.read {
+      if (!searchIndex.isBuilt) {
+        searchIndex.build(threadPosts.map { chanPost -> ThreadSearchIndex.entry(chanPost) })
+      }
+
+      val searchResult = searchIndex.search(query, previousResult)
+      val posts = searchResult.postDescriptors.mapNotNull { postDescriptor -> getPostInternal(postDescriptor) }
+
+      return@read posts to searchResult
+    }
+  }
+
   fun iteratePostsOrdered(iterator: (ChanPost) -> Unit) {
     iteratePostsOrderedWhile { chanPost ->
       iterator(chanPost)
@@ -643,7 +724,7 @@ class ChanThread(
     iterator: (ChanPostImage) -> Unit
   ): Boolean {
     return lock.read {
-      val post = postsByPostDescriptors[postDescriptor]
+      val post = getPostInternal(postDescriptor)
         ?: return@read false
 
       post.iteratePostImages { postImage -> iterator(postImage) }
@@ -666,7 +747,7 @@ class ChanThread(
 
   fun postHasImages(postDescriptor: PostDescriptor): Boolean {
     return lock.read {
-      return@read postsByPostDescriptors[postDescriptor]?.postImages?.isNotEmpty()
+      return@read getPostInternal(postDescriptor)?.postImages?.isNotEmpty()
         ?: false
     }
   }
@@ -678,6 +759,8 @@ class ChanThread(
   fun cleanup() {
     lock.write {
       val chanOriginalPost = threadPosts.firstOrNull()
+      searchIndex = ThreadSearchIndex()
+
       if (chanOriginalPost == null) {
         threadPosts.clear()
         postsByPostDescriptors.clear()
@@ -699,14 +782,7 @@ class ChanThread(
         return@mutableIteration true
       }
 
-      postsByPostDescriptors.mutableIteration { mutableIterator, entry ->
-        val chanPost = entry.value
-        if (chanPost !== chanOriginalPost) {
-          mutableIterator.remove()
-        }
-
-        return@mutableIteration true
-      }
+      postsByPostDescriptors.removeIf { _, _, chanPost -> chanPost !== chanOriginalPost }
 
       rawPostHashesMap.mutableIteration { mutableIterator, entry ->
         val postDescriptor = entry.key
@@ -901,17 +977,28 @@ class ChanThread(
     }
   }
 
+  @GuardedBy("lock")
+  private fun getPostInternal(postDescriptor: PostDescriptor): ChanPost? {
+    // postsByPostDescriptors doesn't know anything about descriptors so we need to make sure the post
+    // belongs to this thread first (it may be a catalog post or a post from a different thread).
+    if (postDescriptor.descriptor != threadDescriptor) {
+      return null
+    }
+
+    return postsByPostDescriptors[postDescriptor]
+  }
+
   private fun recalculatePostReplies(newChanPosts: List<ChanPost>) {
     require(lock.isWriteLocked) { "Lock must be write locked!" }
 
     val replies = HashMap<PostDescriptor, MutableList<PostDescriptor>>(threadPosts.size)
 
     for (newChanPost in newChanPosts) {
-      val sourcePost = postsByPostDescriptors[newChanPost.postDescriptor]
+      val sourcePost = getPostInternal(newChanPost.postDescriptor)
         ?: continue
 
       for (replyTo in sourcePost.repliesTo) {
-        if (postsByPostDescriptors[replyTo]?.repliesFrom?.contains(sourcePost.postDescriptor) == true) {
+        if (getPostInternal(replyTo)?.repliesFrom?.contains(sourcePost.postDescriptor) == true) {
           // Already processed
           continue
         }
@@ -928,7 +1015,7 @@ class ChanThread(
     }
 
     for ((postNo, replyList) in replies) {
-      val subject = postsByPostDescriptors[postNo]
+      val subject = getPostInternal(postNo)
 
       subject?.repliesFrom?.addAll(replyList)
     }
@@ -946,7 +1033,7 @@ class ChanThread(
       }
 
       threadPosts.forEach { chanPost1 ->
-        val chanPost2 = postsByPostDescriptors[chanPost1.postDescriptor]
+        val chanPost2 = getPostInternal(chanPost1.postDescriptor)
 
         if (chanPost1 is ChanOriginalPost) {
           check(chanPost1.lastModified >= 0L) { "Bad lastModified" }
@@ -1024,7 +1111,7 @@ class ChanThread(
 
   fun getPostWithRepliesToThisPost(postDescriptor: PostDescriptor): List<PostDescriptor> {
     return lock.read {
-      val chanPost = postsByPostDescriptors[postDescriptor]
+      val chanPost = getPostInternal(postDescriptor)
         ?: return@read emptyList()
 
       val resultPosts = mutableListOf<PostDescriptor>()
@@ -0,0 +1,390 @@
+package com.github.k1rakishou.model.data.thread
+
+import androidx.annotation.GuardedBy
+import com.github.k1rakishou.common.StringUtils
+import com.github.k1rakishou.common.isNotNullNorBlank
+import com.github.k1rakishou.model.data.descriptor.PostDescriptor
+import com.github.k1rakishou.model.data.post.ChanPost
+import com.github.k1rakishou.model.data.post.ChanPostImage
+import com.github.k1rakishou.model.util.ChanPostUtils
+import java.util.*
+
+/**
+ * Case-insensitive substring search over the posts of one thread. Searchable text of every post
+ * (comment, post number, subject, name and image info) is case folded and split into trigrams,
+ * every trigram has a posting list of the documents that contain it. A query is answered by
+ * checking only the documents from the shortest posting lists of its trigrams (queries shorter
+ * than a trigram check every document, but without building the searchable text again).
+ *
+ * The index is built lazily on the first search ([build]) and after that it's updated
+ * incrementally. An updated post gets a new document id (the old one is just marked as dead and
+ * skipped) so that posting lists are only ever appended to and stay sorted. Dead documents are
+ * compacted away once there are too many of them.
+ *
+ * Thread safe.
+ * */
+class ThreadSearchIndex {
+  private val lock = Any()
+
+  @GuardedBy("lock")
+  private var built = false
+  @GuardedBy("lock")
+  private val documents = ArrayList<Document?>()
+  @GuardedBy("lock")
+  private val documentIds = HashMap<PostDescriptor, Int>()
+  @GuardedBy("lock")
+  private val postings = HashMap<Long, Postings>()
+  @GuardedBy("lock")
+  private var deadDocuments = 0
+  // Incremented on every change of the index, a search result can only be narrowed down if the
+  // index didn't change since it was created.
+  @GuardedBy("lock")
+  private var version = 0L
+
+  val isBuilt: Boolean
+    get() = synchronized(lock) { built }
+
+  fun build(entries: Collection<Entry>) {
+    synchronized(lock) {
+      if (built) {
+        return
+      }
+
+      entries.forEach { entry -> addDocument(entry.postDescriptor, fold(entry.text)) }
+
+      built = true
+      ++version
+    }
+  }
+
+  /**
+   * Does nothing if the index was not built yet (it will be built from the actual posts on the
+   * first search anyway).
+   * */
+  fun addOrUpdate(entries: Collection<Entry>) {
+    synchronized(lock) {
+      if (!built) {
+        return
+      }
+
+      var changed = false
+
+      entries.forEach { entry ->
+        val foldedText = fold(entry.text)
+
+        val oldDocumentId = documentIds[entry.postDescriptor]
+        if (oldDocumentId != null) {
+          if (documents[oldDocumentId]?.foldedText == foldedText) {
+            return@forEach
+          }
+
+          removeDocument(oldDocumentId)
+        }
+
+        addDocument(entry.postDescriptor, foldedText)
+        changed = true
+      }
+
+      if (changed) {
+        ++version
+        compactIfNeeded()
+      }
+    }
+  }
+
+  fun remove(postDescriptors: Collection<PostDescriptor>) {
+    synchronized(lock) {
+      if (!built) {
+        return
+      }
+
+      var changed = false
+
+      postDescriptors.forEach { postDescriptor ->
+        val documentId = documentIds.remove(postDescriptor)
+          ?: return@forEach
+
+        removeDocument(documentId)
+        changed = true
+      }
+
+      if (changed) {
+        ++version
+        compactIfNeeded()
+      }
+    }
+  }
+
+  /**
+   * Returns descriptors of the posts that contain [query] (ignoring case) sorted the same way as
+   * posts of a thread are. If [previousResult] was created by this index for a query that is a part
+   * of [query] and the index didn't change since then, only the posts of [previousResult] are
+   * checked.
+   * */
+  fun search(query: String, previousResult: SearchResult?): SearchResult {
+    val foldedQuery = fold(query)
+
+    return synchronized(lock) {
+      check(built) { "Index is not built yet" }
+
+      val candidates = when {
+        previousResult != null
+          && previousResult.index === this
+          && previousResult.version == version
+          && foldedQuery.contains(previousResult.foldedQuery) -> previousResult.documentIds
+        foldedQuery.length >= TRIGRAM_LENGTH -> findCandidates(foldedQuery)
+        else -> null
+      }
+
+      val matchedDocumentIds = if (candidates != null) {
+        candidates.filter { documentId -> matches(documentId, foldedQuery) }
+      } else {
+        documents.indices.filter { documentId -> matches(documentId, foldedQuery) }
+      }
+
+      val matchedDocuments = matchedDocumentIds
+        .mapNotNull { documentId -> documents[documentId] }
+        .sortedWith(DOCUMENTS_COMPARATOR)
+
+      return@synchronized SearchResult(
+        index = this,
+        foldedQuery = foldedQuery,
+        version = version,
+        documentIds = matchedDocumentIds.toIntArray(),
+        postDescriptors = matchedDocuments.map { document -> document.postDescriptor }
+      )
+    }
+  }
+
+  @GuardedBy("lock")
+  private fun matches(documentId: Int, foldedQuery: String): Boolean {
+    val document = documents[documentId]
+      ?: return false
+
+    return document.foldedText.contains(foldedQuery)
+  }
+
+  /**
+   * Intersects the posting lists of the query trigrams starting with the shortest ones. Two lists
+   * are usually enough to get a small number of candidates that are then checked directly.
+   * */
+  @GuardedBy("lock")
+  private fun findCandidates(foldedQuery: String): IntArray {
+    val queryPostings = mutableListOf<Postings>()
+
+    for (index in 0..foldedQuery.length - TRIGRAM_LENGTH) {
+      val queryPosting = postings[trigram(foldedQuery, index)]
+        ?: return IntArray(0)
+
+      queryPostings += queryPosting
+    }
+
+    queryPostings.sortBy { queryPosting -> queryPosting.size }
+
+    var candidates = queryPostings.first().toIntArray()
+
+    for (index in 1 until minOf(queryPostings.size, MAX_INTERSECTED_POSTINGS)) {
+      if (candidates.isEmpty()) {
+        break
+      }
+
+      val queryPosting = queryPostings[index]
+      candidates = candidates
+        .filter { documentId -> queryPosting.contains(documentId) }
+        .toIntArray()
+    }
+
+    return candidates
+  }
+
+  @GuardedBy("lock")
+  private fun addDocument(postDescriptor: PostDescriptor, foldedText: String) {
+    val documentId = documents.size
+
+    documents += Document(postDescriptor, foldedText)
+    documentIds[postDescriptor] = documentId
+
+    if (foldedText.length < TRIGRAM_LENGTH) {
+      return
+    }
+
+    val documentTrigrams = HashSet<Long>(foldedText.length)
+
+    for (index in 0..foldedText.length - TRIGRAM_LENGTH) {
+      val trigram = trigram(foldedText, index)
+      if (!documentTrigrams.add(trigram)) {
+        continue
+      }
+
+      postings.getOrPut(trigram) { Postings() }.add(documentId)
+    }
+  }
+
+  @GuardedBy("lock")
+  private fun removeDocument(documentId: Int) {
+    if (documents[documentId] == null) {
+      return
+    }
+
+    documents[documentId] = null
+    ++deadDocuments
+  }
+
+  @GuardedBy("lock")
+  private fun compactIfNeeded() {
+    if (deadDocuments < MIN_DEAD_DOCUMENTS_TO_COMPACT || deadDocuments < documents.size / 2) {
+      return
+    }
+
+    val liveDocuments = documents.filterNotNull()
+
+    documents.clear()
+    documentIds.clear()
+    postings.clear()
+    deadDocuments = 0
+
+    liveDocuments.forEach { document -> addDocument(document.postDescriptor, document.foldedText) }
+  }
+
+  private class Document(
+    val postDescriptor: PostDescriptor,
+    val foldedText: String
+  )
+
+  /**
+   * Sorted (document ids only ever grow) list of document ids.
+   * */
+  private class Postings {
+    private var documentIds = IntArray(4)
+    var size = 0
+      private set
+
+    fun add(documentId: Int) {
+      if (size == documentIds.size) {
+        documentIds = documentIds.copyOf(size * 2)
+      }
+
+      documentIds[size++] = documentId
+    }
+
+    fun contains(documentId: Int): Boolean {
+      return Arrays.binarySearch(documentIds, 0, size, documentId) >= 0
+    }
+
+    fun toIntArray(): IntArray = documentIds.copyOf(size)
+  }
+
+  class Entry(
+    val postDescriptor: PostDescriptor,
+    val text: String
+  )
+
+  /**
+   * [documentIds] only make sense for the [index] that created the result (versions of different
+   * indexes may be the same, e.g. after ChanThread.cleanup() replaces the index).
+   * */
+  class SearchResult(
+    internal val index: ThreadSearchIndex,
+    internal val foldedQuery: String,
+    internal val version: Long,
+    internal val documentIds: IntArray,
+    val postDescriptors: List<PostDescriptor>
+  )
+
+  companion object {
+    private const val TRIGRAM_LENGTH = 3
+    private const val MAX_INTERSECTED_POSTINGS = 3
+    private const val MIN_DEAD_DOCUMENTS_TO_COMPACT = 256
+
+    private val DOCUMENTS_COMPARATOR = Comparator<Document> { document1, document2 ->
+      val postDescriptor1 = document1.postDescriptor
+      val postDescriptor2 = document2.postDescriptor
+
+      val result = postDescriptor1.postNo.compareTo(postDescriptor2.postNo)
+      if (result != 0) {
+        return@Comparator result
+      }
+
+      return@Comparator postDescriptor1.postSubNo.compareTo(postDescriptor2.postSubNo)
+    }
+
+    fun entry(chanPost: ChanPost): Entry {
+      return Entry(chanPost.postDescriptor, formatSearchableText(chanPost))
+    }
+
+    /**
+     * Everything that a post can be found by, separated with new lines so that a query can't match
+     * across two different fields.
+     * */
+    fun formatSearchableText(chanPost: ChanPost): String {
+      return buildString {
+        append(chanPost.postComment.originalComment())
+        append('\n')
+        append(chanPost.postDescriptor.postNo)
+        append('\n')
+
+        chanPost.subject?.let { subject ->
+          append(subject)
+          append('\n')
+        }
+
+        chanPost.name?.let { name ->
+          append(name)
+          append('\n')
+        }
+
+        chanPost.postImages.forEach { postImage ->
+          append(formatImageInfoForSearch(postImage))
+          append('\n')
+        }
+      }
+    }
+
+    private fun formatImageInfoForSearch(chanPostImage: ChanPostImage): String {
+      return buildString {
+        if (chanPostImage.serverFilename.isNotNullNorBlank()) {
+          append(chanPostImage.serverFilename)
+          append(' ')
+        }
+
+        if (chanPostImage.filename.isNotNullNorBlank()) {
+          append(chanPostImage.filename)
+          append(' ')
+        }
+
+        if (chanPostImage.extension.isNotNullNorBlank()) {
+          append(chanPostImage.extension!!.uppercase(Locale.ENGLISH))
+          append(' ')
+        }
+
+        append(StringUtils.UNBREAKABLE_SPACE_SYMBOL)
+        append("${chanPostImage.imageWidth}x${chanPostImage.imageHeight}")
+
+        append(StringUtils.UNBREAKABLE_SPACE_SYMBOL)
+        append(ChanPostUtils.getReadableFileSize(chanPostImage.size)
+          .replace(' ', StringUtils.UNBREAKABLE_SPACE_SYMBOL))
+      }
+    }
+
+    /**
+     * Same char by char case folding that String.contains(ignoreCase = true) does, so the result
+     * has the same length as the input.
+     * */
+    private fun fold(text: String): String {
+      val chars = CharArray(text.length)
+
+      for (index in text.indices) {
+        chars[index] = Character.toLowerCase(Character.toUpperCase(text[index]))
+      }
+
+      return String(chars)
+    }
+
+    private fun trigram(foldedText: String, index: Int): Long {
+      return (foldedText[index].code.toLong() shl 32) or
+        (foldedText[index + 1].code.toLong() shl 16) or
+        foldedText[index + 2].code.toLong()
+    }
+  }
+
+}
@@ -12,6 +12,7 @@ import com.github.k1rakishou.model.repository.ChanFilterWatchRepository
 import com.github.k1rakishou.model.repository.ChanPostHideRepository
 import com.github.k1rakishou.model.repository.ChanPostImageRepository
 import com.github.k1rakishou.model.repository.ChanPostRepository
+import com.github.k1rakishou.model.repository.ChanPostSearchRepository
 import com.github.k1rakishou.model.repository.ChanSavedReplyRepository
 import com.github.k1rakishou.model.repository.ChanThreadViewableInfoRepository
 import com.github.k1rakishou.model.repository.CompositeCatalogRepository
@@ -44,6 +45,7 @@ interface ModelComponent {
   fun getMediaServiceLinkExtraContentRepository(): MediaServiceLinkExtraContentRepository
   fun getSeenPostRepository(): SeenPostRepository
   fun getChanPostRepository(): ChanPostRepository
+  fun getChanPostSearchRepository(): ChanPostSearchRepository
   fun getHistoryNavigationRepository(): HistoryNavigationRepository
   fun getBookmarksRepository(): BookmarksRepository
   fun getChanThreadViewableInfoRepository(): ChanThreadViewableInfoRepository
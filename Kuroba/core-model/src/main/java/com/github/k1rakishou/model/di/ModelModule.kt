@@ -15,6 +15,7 @@ import com.github.k1rakishou.model.repository.ChanFilterWatchRepository
 import com.github.k1rakishou.model.repository.ChanPostHideRepository
 import com.github.k1rakishou.model.repository.ChanPostImageRepository
 import com.github.k1rakishou.model.repository.ChanPostRepository
+import com.github.k1rakishou.model.repository.ChanPostSearchRepository
 import com.github.k1rakishou.model.repository.ChanSavedReplyRepository
 import com.github.k1rakishou.model.repository.ChanThreadViewableInfoRepository
 import com.github.k1rakishou.model.repository.CompositeCatalogRepository
@@ -38,6 +39,7 @@ import com.github.k1rakishou.model.source.local.ChanFilterWatchLocalSource
 import com.github.k1rakishou.model.source.local.ChanPostHideLocalSource
 import com.github.k1rakishou.model.source.local.ChanPostImageLocalSource
 import com.github.k1rakishou.model.source.local.ChanPostLocalSource
+import com.github.k1rakishou.model.source.local.ChanPostSearchLocalSource
 import com.github.k1rakishou.model.source.local.ChanSavedReplyLocalSource
 import com.github.k1rakishou.model.source.local.ChanThreadViewableInfoLocalSource
 import com.github.k1rakishou.model.source.local.CompositeCatalogLocalSource
@@ -122,6 +124,7 @@ class ModelModule {
       dependencies.isDevFlavor,
       dependencies.isLowRamDevice,
       dependencies.appConstants.maxPostsCountInPostsCache,
+      dependencies.appConstants.maxPostsCacheSizeInBytes,
       chanCatalogSnapshotCache
     )
   }
@@ -153,9 +156,21 @@ class ModelModule {
   @Singleton
   @Provides
   fun provideChanPostLocalSource(
-    database: KurobaDatabase
+    database: KurobaDatabase,
+    chanPostSearchLocalSource: ChanPostSearchLocalSource
   ): ChanPostLocalSource {
     return ChanPostLocalSource(
+      database,
+      chanPostSearchLocalSource
+    )
+  }
+
+  @Singleton
+  @Provides
+  fun provideChanPostSearchLocalSource(
+    database: KurobaDatabase
+  ): ChanPostSearchLocalSource {
+    return ChanPostSearchLocalSource(
       database
     )
   }
@@ -417,6 +432,21 @@ class ModelModule {
     )
   }
 
+  @Singleton
+  @Provides
+  fun provideChanPostSearchRepository(
+    dependencies: ModelComponent.Dependencies,
+    database: KurobaDatabase,
+    chanPostSearchLocalSource: ChanPostSearchLocalSource
+  ): ChanPostSearchRepository {
+    return ChanPostSearchRepository(
+      database,
+      dependencies.coroutineScope,
+      dependencies.appConstants,
+      chanPostSearchLocalSource
+    )
+  }
+
   @Singleton
   @Provides
   fun provideHistoryNavigationRepository(
@@ -0,0 +1,49 @@
+package com.github.k1rakishou.model.entity.chan.post
+
+import androidx.room.ColumnInfo
+
+class ChanPostSearchMatchDto(
+  @ColumnInfo(name = ChanPostIdEntity.POST_ID_COLUMN_NAME)
+  val postId: Long,
+  @ColumnInfo(name = MATCH_INFO_COLUMN_NAME, typeAffinity = ColumnInfo.BLOB)
+  val matchInfo: ByteArray
+) {
+
+  companion object {
+    const val MATCH_INFO_COLUMN_NAME = "match_info"
+  }
+
+}
+
+data class ChanPostSearchFoundPostDto(
+  @ColumnInfo(name = ChanPostIdEntity.POST_ID_COLUMN_NAME)
+  val postId: Long,
+  @ColumnInfo(name = ChanPostIdEntity.POST_NO_COLUMN_NAME)
+  val postNo: Long,
+  @ColumnInfo(name = ChanPostIdEntity.POST_SUB_NO_COLUMN_NAME)
+  val postSubNo: Long,
+  @ColumnInfo(name = THREAD_NO_COLUMN_NAME)
+  val threadNo: Long,
+  @ColumnInfo(name = SITE_NAME_COLUMN_NAME)
+  val siteName: String,
+  @ColumnInfo(name = BOARD_CODE_COLUMN_NAME)
+  val boardCode: String,
+  @ColumnInfo(name = ChanPostEntity.IS_OP_COLUMN_NAME)
+  val isOp: Boolean,
+  @ColumnInfo(name = ChanPostEntity.NAME_COLUMN_NAME)
+  val name: String?,
+  @ColumnInfo(name = ChanPostEntity.TIMESTAMP_SECONDS_COLUMN_NAME)
+  val timestamp: Long,
+  @ColumnInfo(name = ChanPostSearchEntity.SUBJECT_COLUMN_NAME)
+  val subject: String?,
+  @ColumnInfo(name = ChanPostSearchEntity.COMMENT_COLUMN_NAME)
+  val comment: String?
+) {
+
+  companion object {
+    const val THREAD_NO_COLUMN_NAME = "thread_no"
+    const val SITE_NAME_COLUMN_NAME = "site_name"
+    const val BOARD_CODE_COLUMN_NAME = "board_code"
+  }
+
+}
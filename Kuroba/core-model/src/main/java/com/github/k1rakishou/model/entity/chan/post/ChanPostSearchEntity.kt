@@ -0,0 +1,40 @@
+package com.github.k1rakishou.model.entity.chan.post
+
+import androidx.room.ColumnInfo
+import androidx.room.Entity
+import androidx.room.Fts4
+import androidx.room.FtsOptions
+import androidx.room.PrimaryKey
+
+/**
+ * Full-text index of the posts that are stored in the database. The rowid of a row is the
+ * [ChanPostEntity.chanPostId] of the post it was created from. There are no foreign keys (virtual
+ * tables can't have them) so rows of deleted posts are left behind until the index is cleaned up,
+ * which is why every query must join this table with the post tables.
+ * */
+@Fts4(tokenizer = FtsOptions.TOKENIZER_UNICODE61)
+@Entity(tableName = ChanPostSearchEntity.TABLE_NAME)
+data class ChanPostSearchEntity(
+  @PrimaryKey
+  @ColumnInfo(name = ROW_ID_COLUMN_NAME)
+  val rowId: Long,
+  @ColumnInfo(name = SUBJECT_COLUMN_NAME)
+  val subject: String?,
+  @ColumnInfo(name = COMMENT_COLUMN_NAME)
+  val comment: String?
+) {
+
+  companion object {
+    const val TABLE_NAME = "chan_post_search"
+
+    const val ROW_ID_COLUMN_NAME = "rowid"
+    const val SUBJECT_COLUMN_NAME = "subject"
+    const val COMMENT_COLUMN_NAME = "comment"
+
+    // The order of the indexed columns, matchinfo() reports the stats of the columns in this order
+    const val SUBJECT_COLUMN_INDEX = 0
+    const val COMMENT_COLUMN_INDEX = 1
+    const val INDEXED_COLUMNS_COUNT = 2
+  }
+
+}
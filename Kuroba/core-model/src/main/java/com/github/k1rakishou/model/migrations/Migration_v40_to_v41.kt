@@ -0,0 +1,14 @@
+package com.github.k1rakishou.model.migrations
+
+import androidx.room.migration.Migration
+import androidx.sqlite.db.SupportSQLiteDatabase
+
+class Migration_v40_to_v41 : Migration(40, 41) {
+
+  override fun migrate(database: SupportSQLiteDatabase) {
+    // The index is empty after the migration, ChanPostSearchRepository fills it up with the posts
+    // that are already in the database in the background.
+    database.execSQL("CREATE VIRTUAL TABLE IF NOT EXISTS `chan_post_search` USING FTS4(`subject` TEXT, `comment` TEXT, tokenize=unicode61)")
+  }
+
+}
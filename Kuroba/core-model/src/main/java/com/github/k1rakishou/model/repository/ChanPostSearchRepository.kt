@@ -0,0 +1,186 @@
+package com.github.k1rakishou.model.repository
+
+import com.github.k1rakishou.common.AppConstants
+import com.github.k1rakishou.common.ModularResult
+import com.github.k1rakishou.core_logger.Logger
+import com.github.k1rakishou.model.KurobaDatabase
+import com.github.k1rakishou.model.data.post.ChanPostSearchQuery
+import com.github.k1rakishou.model.data.post.ChanPostSearchResult
+import com.github.k1rakishou.model.source.local.ChanPostSearchLocalSource
+import com.github.k1rakishou.persist_state.PersistableChanState
+import kotlinx.coroutines.CoroutineScope
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.delay
+import kotlinx.coroutines.launch
+
+/**
+ * Full-text search over the posts that are stored in the database. Posts are added into the index
+ * in batches some time after they were inserted into the database (see
+ * [ChanPostSearchLocalSource.enqueuePostsForIndexing]) and the index is kept under
+ * [maxIndexedPosts] posts by deleting the oldest ones.
+ * */
+class ChanPostSearchRepository(
+  database: KurobaDatabase,
+  private val applicationScope: CoroutineScope,
+  private val appConstants: AppConstants,
+  private val localSource: ChanPostSearchLocalSource
+) : AbstractRepository(database) {
+  private val TAG = "ChanPostSearchRepository"
+
+  private val maxIndexedPosts: Int
+    get() = appConstants.maxAmountOfPostsInDatabase.coerceIn(MIN_INDEXED_POSTS, MAX_INDEXED_POSTS)
+
+  // Only accessed by the indexing coroutine
+  private var indexedSinceLastMaintenance = 0
+
+  fun initialize() {
+    Logger.d(TAG, "ChanPostSearchRepository.initialize()")
+
+    applicationScope.launch(Dispatchers.IO) {
+      maintainIndex()
+
+      ModularResult.Try { indexNotIndexedPosts() }
+        .peekError { error -> Logger.e(TAG, "indexNotIndexedPosts() error", error) }
+        .ignore()
+
+      for (signal in localSource.pendingPostsSignal) {
+        // Give the thread loading/downloading code some time to persist more posts so that we can
+        // index them all at once (and don't compete with it for the database)
+        delay(INDEXING_DELAY_MS)
+        indexPendingPosts()
+      }
+    }
+  }
+
+  suspend fun search(searchQuery: ChanPostSearchQuery): ModularResult<ChanPostSearchResult> {
+    return applicationScope.dbCall {
+      return@dbCall tryWithTransaction {
+        return@tryWithTransaction localSource.search(searchQuery)
+      }
+    }
+  }
+
+  private suspend fun indexPendingPosts() {
+    while (true) {
+      val postIds = localSource.takePendingPostIds(POSTS_PER_BATCH)
+      if (postIds.isEmpty()) {
+        break
+      }
+
+      indexPosts(postIds)
+    }
+
+    if (indexedSinceLastMaintenance >= INDEXED_POSTS_BETWEEN_MAINTENANCES) {
+      maintainIndex()
+    }
+  }
+
+  /**
+   * Posts that were inserted before the index existed (or while the indexing was not running).
+   * Newest first, until the index is full. Posts older than the ones that were trimmed away by
+   * [maintainIndex] are skipped, otherwise they would be indexed and then deleted again on every
+   * start.
+   * */
+  private suspend fun indexNotIndexedPosts() {
+    val floorPostId = PersistableChanState.postSearchIndexBackfillFloor.get()
+    var beforePostId = Long.MAX_VALUE
+    var indexedCount = applicationScope.dbCall { localSource.countIndexedPosts() }
+    var totalIndexed = 0
+
+    while (indexedCount < maxIndexedPosts) {
+      val postIds = applicationScope.dbCall {
+        localSource.selectNotIndexedPostIds(beforePostId, floorPostId, POSTS_PER_BATCH)
+      }
+
+      if (postIds.isEmpty()) {
+        break
+      }
+
+      indexPosts(postIds)
+
+      beforePostId = postIds.last()
+      indexedCount += postIds.size
+      totalIndexed += postIds.size
+    }
+
+    if (totalIndexed > 0) {
+      Logger.d(TAG, "indexNotIndexedPosts() indexed ${totalIndexed} posts")
+    }
+  }
+
+  private suspend fun indexPosts(postIds: List<Long>) {
+    val result = applicationScope.dbCall {
+      return@dbCall tryWithTransaction { localSource.indexPosts(postIds) }
+    }
+
+    if (result is ModularResult.Error) {
+      Logger.e(TAG, "indexPosts() failed to index ${postIds.size} posts", result.error)
+      return
+    }
+
+    indexedSinceLastMaintenance += postIds.size
+  }
+
+  /**
+   * Removes the posts that were deleted from the database and then the oldest posts if the index is
+   * over the budget.
+   * */
+  private suspend fun maintainIndex() {
+    indexedSinceLastMaintenance = 0
+
+    val result = applicationScope.dbCall {
+      return@dbCall tryWithTransaction {
+        val orphanedDeleted = localSource.deleteOrphanedPosts()
+
+        val indexedCount = localSource.countIndexedPosts()
+        var oldestDeleted = 0
+
+        if (indexedCount > maxIndexedPosts) {
+          // Delete a little bit more than needed so that we don't have to do this after every batch
+          val toDelete = (indexedCount - maxIndexedPosts) + (maxIndexedPosts / 10)
+          oldestDeleted = localSource.deleteOldestPosts(toDelete)
+
+          val oldestIndexedPostId = localSource.selectOldestIndexedPostId()
+          if (oldestIndexedPostId != null) {
+            val currentFloor = PersistableChanState.postSearchIndexBackfillFloor.get()
+            PersistableChanState.postSearchIndexBackfillFloor.set(maxOf(currentFloor, oldestIndexedPostId))
+          }
+        }
+
+        return@tryWithTransaction orphanedDeleted + oldestDeleted
+      }
+    }
+
+    val deleted = when (result) {
+      is ModularResult.Error -> {
+        Logger.e(TAG, "maintainIndex() error", result.error)
+        return
+      }
+      is ModularResult.Value -> result.value
+    }
+
+    if (deleted <= 0) {
+      return
+    }
+
+    Logger.d(TAG, "maintainIndex() deleted ${deleted} posts from the index")
+
+    val optimizeResult = applicationScope.dbCall {
+      return@dbCall ModularResult.Try { localSource.optimize() }
+    }
+
+    if (optimizeResult is ModularResult.Error) {
+      Logger.e(TAG, "maintainIndex() optimize error", optimizeResult.error)
+    }
+  }
+
+  companion object {
+    private const val POSTS_PER_BATCH = 500
+    private const val INDEXING_DELAY_MS = 3_000L
+    private const val INDEXED_POSTS_BETWEEN_MAINTENANCES = 10_000
+
+    private const val MIN_INDEXED_POSTS = 10_000
+    private const val MAX_INDEXED_POSTS = 200_000
+  }
+
+}
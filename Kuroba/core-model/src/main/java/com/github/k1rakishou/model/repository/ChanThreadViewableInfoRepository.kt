@@ -30,4 +30,17 @@ class ChanThreadViewableInfoRepository(
     }
   }
 
+  /**
+   * Persists infos of any number of threads using one transaction.
+   * */
+  suspend fun persistMany(chanThreadViewableInfos: Collection<ChanThreadViewableInfo>): ModularResult<Unit> {
+    return applicationScope.dbCall {
+      return@dbCall tryWithTransaction {
+        chanThreadViewableInfos.forEach { chanThreadViewableInfo ->
+          localSource.persist(chanThreadViewableInfo)
+        }
+      }
+    }
+  }
+
 }
\ No newline at end of file
@@ -1,6 +1,9 @@
 package com.github.k1rakishou.model.repository
 
+import androidx.annotation.GuardedBy
 import com.github.k1rakishou.common.ModularResult
+import com.github.k1rakishou.common.errorMessageOrClassName
+import com.github.k1rakishou.core_logger.Logger
 import com.github.k1rakishou.model.KurobaDatabase
 import com.github.k1rakishou.model.data.media.GenericVideoId
 import com.github.k1rakishou.model.data.video_service.MediaServiceLinkExtraContent
@@ -9,7 +12,13 @@ import com.github.k1rakishou.model.source.cache.GenericSuspendableCacheSource
 import com.github.k1rakishou.model.source.local.MediaServiceLinkExtraContentLocalSource
 import com.github.k1rakishou.model.source.remote.MediaServiceLinkExtraContentRemoteSource
 import com.github.k1rakishou.model.util.ensureBackgroundThread
+import kotlinx.coroutines.CompletableDeferred
 import kotlinx.coroutines.CoroutineScope
+import kotlinx.coroutines.async
+import kotlinx.coroutines.awaitAll
+import kotlinx.coroutines.coroutineScope
+import kotlinx.coroutines.sync.Semaphore
+import kotlinx.coroutines.sync.withPermit
 import java.util.concurrent.atomic.AtomicBoolean
 
 class MediaServiceLinkExtraContentRepository(
@@ -22,6 +31,10 @@ class MediaServiceLinkExtraContentRepository(
   private val TAG = "MediaServiceLinkExtraContentRepository"
   private val alreadyExecuted = AtomicBoolean(false)
 
+  private val fetchSemaphore = Semaphore(MAX_CONCURRENT_FETCHES)
+  @GuardedBy("inFlightFetches")
+  private val inFlightFetches = HashMap<MediaServiceKey, CompletableDeferred<MediaServiceLinkExtraContent?>>()
+
   suspend fun getLinkExtraContent(
     mediaServiceType: MediaServiceType,
     requestUrl: String,
@@ -39,7 +52,8 @@ class MediaServiceLinkExtraContentRepository(
           tryWithTransaction {
             mediaServiceLinkExtraContentLocalSource.selectByMediaServiceKey(
               videoId,
-              mediaServiceKey
+              mediaServiceKey,
+              MediaServiceLinkExtraContentLocalSource.expirationDate()
             )
           }
         },
@@ -63,7 +77,8 @@ class MediaServiceLinkExtraContentRepository(
         storeIntoLocalSourceFunc = { mediaServiceLinkExtraContent ->
           if (mediaServiceLinkExtraContent.isValid()) {
             tryWithTransaction {
-              mediaServiceLinkExtraContentLocalSource.insert(mediaServiceLinkExtraContent)
+              // Replaces the expired entry (if there is one)
+              mediaServiceLinkExtraContentLocalSource.insertOrReplaceMany(listOf(mediaServiceLinkExtraContent))
             }
           } else {
             ModularResult.value(Unit)
@@ -74,6 +89,63 @@ class MediaServiceLinkExtraContentRepository(
     }
   }
 
+  /**
+   * Batch version of [getLinkExtraContent] for all the links that are displayed at the same time.
+   * Every unique link is looked up only once: first in the memory cache, then the misses in the
+   * database (one query per media service type) and only whatever is still missing is fetched from
+   * the network, at most [MAX_CONCURRENT_FETCHES] requests at a time. Links that couldn't be fetched
+   * are not in the result.
+   * */
+  suspend fun getLinkExtraContentBatch(
+    requests: Collection<LinkExtraContentRequest>
+  ): ModularResult<Map<MediaServiceKey, MediaServiceLinkExtraContent>> {
+    ensureBackgroundThread()
+
+    // The same video may be linked by lots of posts
+    val uniqueRequests = requests.associateBy { request -> request.mediaServiceKey }
+    if (uniqueRequests.isEmpty()) {
+      return ModularResult.value(emptyMap())
+    }
+
+    mediaServiceLinkExtraContentRepositoryCleanup().ignore()
+
+    return ModularResult.Try {
+      val result = HashMap(cache.getMany(uniqueRequests.keys.toList()))
+
+      val notCachedKeys = uniqueRequests.keys.filter { mediaServiceKey -> !result.containsKey(mediaServiceKey) }
+      if (notCachedKeys.isEmpty()) {
+        return@Try result
+      }
+
+      val fromLocalSource = applicationScope.dbCall {
+        return@dbCall tryWithTransaction {
+          return@tryWithTransaction mediaServiceLinkExtraContentLocalSource.selectManyByMediaServiceKeys(
+            notCachedKeys,
+            MediaServiceLinkExtraContentLocalSource.expirationDate()
+          )
+        }
+      }
+        .unwrap()
+        .associateBy { content -> MediaServiceKey(content.videoId, content.mediaServiceType) }
+
+      if (fromLocalSource.isNotEmpty()) {
+        cache.storeMany(fromLocalSource)
+        result.putAll(fromLocalSource)
+      }
+
+      val requestsToFetch = notCachedKeys
+        .filter { mediaServiceKey -> !fromLocalSource.containsKey(mediaServiceKey) }
+        .map { mediaServiceKey -> uniqueRequests[mediaServiceKey]!! }
+
+      if (requestsToFetch.isEmpty()) {
+        return@Try result
+      }
+
+      result.putAll(fetchMany(requestsToFetch))
+      return@Try result
+    }
+  }
+
   suspend fun isCached(videoId: GenericVideoId, mediaServiceType: MediaServiceType): ModularResult<Boolean> {
     ensureBackgroundThread()
     val mediaServiceKey = MediaServiceKey(videoId, mediaServiceType)
@@ -87,7 +159,8 @@ class MediaServiceLinkExtraContentRepository(
 
         val linkContent = mediaServiceLinkExtraContentLocalSource.selectByMediaServiceKey(
           videoId,
-          mediaServiceKey
+          mediaServiceKey,
+          MediaServiceLinkExtraContentLocalSource.expirationDate()
         )
 
         return@tryWithTransaction linkContent != null
@@ -111,6 +184,93 @@ class MediaServiceLinkExtraContentRepository(
     }
   }
 
+  private suspend fun fetchMany(
+    requests: List<LinkExtraContentRequest>
+  ): Map<MediaServiceKey, MediaServiceLinkExtraContent> {
+    val fetched = coroutineScope {
+      return@coroutineScope requests
+        .map { request -> async { request.mediaServiceKey to fetchDeduplicated(request) } }
+        .awaitAll()
+    }
+
+    val result = mutableMapOf<MediaServiceKey, MediaServiceLinkExtraContent>()
+    fetched.forEach { (mediaServiceKey, content) ->
+      if (content != null) {
+        result[mediaServiceKey] = content
+      }
+    }
+
+    if (result.isEmpty()) {
+      return result
+    }
+
+    val validContents = result.values.filter { content -> content.isValid() }
+    if (validContents.isNotEmpty()) {
+      applicationScope.dbCall {
+        return@dbCall tryWithTransaction {
+          mediaServiceLinkExtraContentLocalSource.insertOrReplaceMany(validContents)
+        }
+      }.peekError { error -> Logger.e(TAG, "Failed to store ${validContents.size} contents", error) }
+        .ignore()
+    }
+
+    cache.storeMany(result)
+    return result
+  }
+
+  /**
+   * When the same link is already being fetched (by another batch) waits for that fetch instead of
+   * sending another request.
+   * */
+  private suspend fun fetchDeduplicated(request: LinkExtraContentRequest): MediaServiceLinkExtraContent? {
+    val mediaServiceKey = request.mediaServiceKey
+    var isOwner = false
+
+    val deferred = synchronized(inFlightFetches) {
+      return@synchronized inFlightFetches.getOrPut(mediaServiceKey) {
+        isOwner = true
+        return@getOrPut CompletableDeferred()
+      }
+    }
+
+    if (!isOwner) {
+      return deferred.await()
+    }
+
+    var content: MediaServiceLinkExtraContent? = null
+
+    try {
+      val fetchResult = fetchSemaphore.withPermit {
+        mediaServiceLinkExtraContentRemoteSource.fetchFromNetwork(
+          request.requestUrl,
+          request.videoId,
+          request.mediaServiceType
+        )
+      }
+
+      content = when (fetchResult) {
+        is ModularResult.Error -> {
+          Logger.e(TAG, "Failed to fetch (requestUrl=${request.requestUrl}): " +
+            "error = ${fetchResult.error.errorMessageOrClassName()}")
+          null
+        }
+        is ModularResult.Value -> {
+          MediaServiceLinkExtraContent(
+            request.videoId,
+            request.mediaServiceType,
+            fetchResult.value.videoTitle,
+            fetchResult.value.videoDuration
+          )
+        }
+      }
+    } finally {
+      synchronized(inFlightFetches) { inFlightFetches.remove(mediaServiceKey) }
+      deferred.complete(content)
+    }
+
+    return content
+  }
+
   private suspend fun mediaServiceLinkExtraContentRepositoryCleanup(): ModularResult<Int> {
     return applicationScope.dbCall {
       return@dbCall tryWithTransaction {
@@ -118,9 +278,11 @@ class MediaServiceLinkExtraContentRepository(
           return@tryWithTransaction 0
         }
 
-        return@tryWithTransaction mediaServiceLinkExtraContentLocalSource.deleteOlderThan(
+        val deletedOld = mediaServiceLinkExtraContentLocalSource.deleteOlderThan(
           MediaServiceLinkExtraContentLocalSource.ONE_WEEK_AGO
         )
+
+        return@tryWithTransaction deletedOld + mediaServiceLinkExtraContentLocalSource.deleteOverLimit()
       }
     }
   }
@@ -130,4 +292,17 @@ class MediaServiceLinkExtraContentRepository(
     val mediaServiceType: MediaServiceType
   )
 
+  data class LinkExtraContentRequest(
+    val requestUrl: String,
+    val videoId: GenericVideoId,
+    val mediaServiceType: MediaServiceType
+  ) {
+    val mediaServiceKey: MediaServiceKey
+      get() = MediaServiceKey(videoId, mediaServiceType)
+  }
+
+  companion object {
+    private const val MAX_CONCURRENT_FETCHES = 4
+  }
+
 }
\ No newline at end of file
@@ -18,15 +18,19 @@ class SeenPostRepository(
   private val TAG = "SeenPostRepository"
   private val alreadyExecuted = AtomicBoolean(false)
 
-  suspend fun insertMany(
-    threadDescriptor: ChanDescriptor.ThreadDescriptor,
-    seenPosts: Collection<SeenPost>
-  ): ModularResult<Unit> {
+  /**
+   * Inserts seen posts of any number of threads using one transaction.
+   * */
+  suspend fun insertMany(seenPosts: Collection<SeenPost>): ModularResult<Unit> {
     return applicationScope.dbCall {
       return@dbCall tryWithTransaction {
         seenPostLocalRepositoryCleanup()
 
-        return@tryWithTransaction seenPostLocalSource.insertMany(threadDescriptor, seenPosts)
+        seenPosts
+          .groupBy { seenPost -> seenPost.postDescriptor.threadDescriptor() }
+          .forEach { (threadDescriptor, threadSeenPosts) ->
+            seenPostLocalSource.insertMany(threadDescriptor, threadSeenPosts)
+          }
       }
     }
   }
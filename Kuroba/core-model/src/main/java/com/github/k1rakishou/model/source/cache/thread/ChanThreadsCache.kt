@@ -1,5 +1,6 @@
 package com.github.k1rakishou.model.source.cache.thread
 
+import android.content.ComponentCallbacks2
 import com.github.k1rakishou.common.MurmurHashUtils
 import com.github.k1rakishou.common.hashSetWithCap
 import com.github.k1rakishou.common.linkedMapWithCap
@@ -29,6 +30,7 @@ class ChanThreadsCache(
   private val isDevBuild: Boolean,
   private val isLowRamDevice: Boolean,
   private val maxCacheSize: Int,
+  private val maxCacheSizeInBytes: Long,
   private val chanCatalogSnapshotCache: ChanCatalogSnapshotCache
 ) {
   private val chanThreads = ConcurrentHashMap<ChanDescriptor.ThreadDescriptor, ChanThread>(128)
@@ -237,6 +239,16 @@ class ChanThreadsCache(
     return chanThreads.values.sumBy { chanThread -> chanThread.postsCount }
   }
 
+  fun getTotalCachedPostsSizeInBytes(): Long {
+    var totalSize = 0L
+
+    chanThreads.values.forEach { chanThread ->
+      totalSize += chanThread.estimateSizeInBytes()
+    }
+
+    return totalSize
+  }
+
   fun getLastPost(threadDescriptor: ChanDescriptor.ThreadDescriptor): ChanPost? {
     return chanThreads[threadDescriptor]?.lastPost()
   }
@@ -365,6 +377,58 @@ class ChanThreadsCache(
     return now - oneYearPeriodMillis
   }
 
+  /**
+   * Called when the system asks us to trim memory (Application.onTrimMemory). Unlike the regular
+   * eviction routine this one ignores the eviction timeout and shrinks the cache down to a
+   * fraction of [maxCacheSizeInBytes] that depends on how bad the memory situation is. Must not be
+   * called on the main thread because size estimation may take some time for huge caches.
+   * */
+  @OptIn(ExperimentalTime::class)
+  fun onTrimMemory(trimMemoryLevel: Int) {
+    ensureBackgroundThread()
+
+    val budgetFraction = when {
+      trimMemoryLevel >= ComponentCallbacks2.TRIM_MEMORY_COMPLETE -> 0.25f
+      trimMemoryLevel >= ComponentCallbacks2.TRIM_MEMORY_MODERATE -> 0.5f
+      trimMemoryLevel >= ComponentCallbacks2.TRIM_MEMORY_BACKGROUND -> 0.75f
+      // TRIM_MEMORY_UI_HIDDEN, nothing to do here
+      trimMemoryLevel >= ComponentCallbacks2.TRIM_MEMORY_UI_HIDDEN -> return
+      trimMemoryLevel >= ComponentCallbacks2.TRIM_MEMORY_RUNNING_CRITICAL -> 0.25f
+      trimMemoryLevel >= ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW -> 0.5f
+      trimMemoryLevel >= ComponentCallbacks2.TRIM_MEMORY_RUNNING_MODERATE -> 0.75f
+      else -> return
+    }
+
+    val targetSizeInBytes = (maxCacheSizeInBytes * budgetFraction).toLong()
+    val currentTotalSizeInBytes = getTotalCachedPostsSizeInBytes()
+    if (currentTotalSizeInBytes <= targetSizeInBytes) {
+      return
+    }
+
+    // When the memory situation is critical we only keep the currently opened thread
+    val immuneThreadsCount = if (budgetFraction <= 0.25f) {
+      1
+    } else {
+      immuneThreadsCount(isLowRamDevice)
+    }
+
+    Logger.d(TAG, "onTrimMemory($trimMemoryLevel) start (immuneThreadsCount=${immuneThreadsCount}, " +
+      "currentTotalSizeInBytes: ${currentTotalSizeInBytes} / target:${targetSizeInBytes})")
+
+    val time = measureTime {
+      evictOld(
+        immuneThreadsCount = immuneThreadsCount,
+        amountOfPostsToEvictParam = 0,
+        amountOfBytesToEvictParam = currentTotalSizeInBytes - targetSizeInBytes
+      )
+    }
+
+    Logger.d(TAG, "onTrimMemory($trimMemoryLevel) end, " +
+      "currentTotalSizeInBytes: ${getTotalCachedPostsSizeInBytes()} / target:${targetSizeInBytes}, took $time")
+
+    lastEvictInvokeTime.set(System.currentTimeMillis())
+  }
+
   @OptIn(ExperimentalTime::class)
   private fun runOldPostEvictionRoutineIfNeeded() {
     val delta = System.currentTimeMillis() - lastEvictInvokeTime.get()
@@ -373,7 +437,9 @@ class ChanThreadsCache(
     }
 
     val currentTotalPostsCount = getTotalCachedPostsCount()
-    if (currentTotalPostsCount <= maxCacheSize) {
+    val currentTotalSizeInBytes = getTotalCachedPostsSizeInBytes()
+
+    if (currentTotalPostsCount <= maxCacheSize && currentTotalSizeInBytes <= maxCacheSizeInBytes) {
       return
     }
 
@@ -384,18 +450,37 @@ class ChanThreadsCache(
       return
     }
 
-    val amountToEvict = (currentTotalPostsCount - maxCacheSize) + (maxCacheSize / 2)
-    if (amountToEvict > 0) {
+    // A thread full of huge comments may weigh way more than the same amount of regular posts so
+    // we evict both by posts count and by the estimated size, whichever budget is exceeded.
+    val amountOfPostsToEvict = if (currentTotalPostsCount > maxCacheSize) {
+      (currentTotalPostsCount - maxCacheSize) + (maxCacheSize / 2)
+    } else {
+      0
+    }
+
+    val amountOfBytesToEvict = if (currentTotalSizeInBytes > maxCacheSizeInBytes) {
+      (currentTotalSizeInBytes - maxCacheSizeInBytes) + (maxCacheSizeInBytes / 2)
+    } else {
+      0L
+    }
+
+    if (amountOfPostsToEvict > 0 || amountOfBytesToEvict > 0) {
       Logger.d(TAG, "evictOld start (immuneThreadsCount=${actualImmuneThreadsCount}, " +
         "currentTotalPostsCount: ${currentTotalPostsCount} / max:${maxCacheSize}, " +
+        "currentTotalSizeInBytes: ${currentTotalSizeInBytes} / max:${maxCacheSizeInBytes}, " +
         "threads with posts: ${amountOfThreadsWithMoreThanOnPost} / total threads: ${getCachedThreadsCount()})")
 
       val time = measureTime {
-        evictOld(immuneThreadsCount = actualImmuneThreadsCount, amountToEvictParam = amountToEvict)
+        evictOld(
+          immuneThreadsCount = actualImmuneThreadsCount,
+          amountOfPostsToEvictParam = amountOfPostsToEvict,
+          amountOfBytesToEvictParam = amountOfBytesToEvict
+        )
       }
 
       Logger.d(TAG, "evictOld end (immuneThreadsCount=${actualImmuneThreadsCount}, " +
         "currentTotalPostsCount: ${getTotalCachedPostsCount()} / max:${maxCacheSize}), " +
+        "currentTotalSizeInBytes: ${getTotalCachedPostsSizeInBytes()} / max:${maxCacheSizeInBytes}, " +
         "threads with posts: ${getThreadsWithMoreThanOnePostCount()}) / total threads: ${getCachedThreadsCount()} " +
         "took ${time}")
     }
@@ -403,8 +488,16 @@ class ChanThreadsCache(
     lastEvictInvokeTime.set(System.currentTimeMillis())
   }
 
-  private fun evictOld(immuneThreadsCount: Int, amountToEvictParam: Int) {
-    require(amountToEvictParam > 0) { "amountToEvictParam is too small: $amountToEvictParam" }
+  @Synchronized
+  private fun evictOld(
+    immuneThreadsCount: Int,
+    amountOfPostsToEvictParam: Int,
+    amountOfBytesToEvictParam: Long
+  ) {
+    require(amountOfPostsToEvictParam > 0 || amountOfBytesToEvictParam > 0) {
+      "Nothing to evict: amountOfPostsToEvictParam=$amountOfPostsToEvictParam, " +
+        "amountOfBytesToEvictParam=$amountOfBytesToEvictParam"
+    }
 
     val accessTimes = chanThreads.entries
       .map { (threadDescriptor, chanThread) -> threadDescriptor to chanThread.getLastAccessTime() }
@@ -426,21 +519,26 @@ class ChanThreadsCache(
         "totalPostsCount=${totalPostsCount}")
 
     val threadDescriptorsToClean = mutableListOf<ChanDescriptor.ThreadDescriptor>()
-    var amountOfPostsToEvict = amountToEvictParam
+    var amountOfPostsToEvict = amountOfPostsToEvictParam
+    var amountOfBytesToEvict = amountOfBytesToEvictParam
 
     for (threadDescriptor in threadDescriptorsSorted) {
-      if (amountOfPostsToEvict <= 0) {
+      if (amountOfPostsToEvict <= 0 && amountOfBytesToEvict <= 0) {
         break
       }
 
-      val count = chanThreads[threadDescriptor]?.postsCount ?: 0
+      val chanThread = chanThreads[threadDescriptor]
+      val count = chanThread?.postsCount ?: 0
+      val sizeInBytes = chanThread?.estimateSizeInBytes() ?: 0L
 
       threadDescriptorsToClean += threadDescriptor
       amountOfPostsToEvict -= count
+      amountOfBytesToEvict -= sizeInBytes
     }
 
     Logger.d(TAG, "Evicting ${threadDescriptorsToClean.size} threads, " +
-        "postsToEvict=${amountToEvictParam - amountOfPostsToEvict}")
+        "postsToEvict=${amountOfPostsToEvictParam - amountOfPostsToEvict}, " +
+        "bytesToEvict=${amountOfBytesToEvictParam - amountOfBytesToEvict}")
 
     if (threadDescriptorsToClean.isEmpty()) {
       Logger.d(TAG, "threadDescriptorsToDelete is empty")
@@ -27,7 +27,8 @@ import com.github.k1rakishou.model.mapper.TextSpanMapper
 import java.util.concurrent.TimeUnit
 
 class ChanPostLocalSource(
-  database: KurobaDatabase
+  database: KurobaDatabase,
+  private val chanPostSearchLocalSource: ChanPostSearchLocalSource
 ) : AbstractLocalSource(database) {
   private val TAG = "ChanPostLocalSource"
   private val chanBoardDao = database.chanBoardDao()
@@ -215,6 +216,10 @@ class ChanPostLocalSource(
         }.toList()
       }
     )
+
+    chanPostSearchLocalSource.enqueuePostsForIndexing(
+      chanPostIdEntities.map { chanPostIdEntity -> chanPostIdEntity.postId }
+    )
   }
 
   private suspend fun insertPostSpannables(
@@ -0,0 +1,198 @@
+package com.github.k1rakishou.model.source.local
+
+import androidx.annotation.GuardedBy
+import com.github.k1rakishou.model.KurobaDatabase
+import com.github.k1rakishou.model.data.descriptor.PostDescriptor
+import com.github.k1rakishou.model.data.post.ChanPostSearchQuery
+import com.github.k1rakishou.model.data.post.ChanPostSearchResult
+import com.github.k1rakishou.model.entity.chan.post.ChanPostSearchEntity
+import com.github.k1rakishou.model.util.PostSearchUtils
+import kotlinx.coroutines.channels.Channel
+import kotlinx.coroutines.channels.ReceiveChannel
+
+class ChanPostSearchLocalSource(
+  database: KurobaDatabase
+) : AbstractLocalSource(database) {
+  private val TAG = "ChanPostSearchLocalSource"
+  private val chanPostSearchDao = database.chanPostSearchDao()
+  private val chanPostImageDao = database.chanPostImageDao()
+
+  private val pendingPostIdsLock = Any()
+  @GuardedBy("pendingPostIdsLock")
+  private val pendingPostIds = LinkedHashSet<Long>()
+  private val pendingPostIdsChannel = Channel<Unit>(Channel.CONFLATED)
+
+  /**
+   * Receives an element every time new posts are added into the queue of posts to index. Multiple
+   * additions may be merged into one element.
+   * */
+  val pendingPostsSignal: ReceiveChannel<Unit>
+    get() = pendingPostIdsChannel
+
+  /**
+   * Called when posts are inserted into the database. The posts are not indexed right away (that
+   * would make every thread persistence transaction slower), instead they are indexed later in
+   * batches by ChanPostSearchRepository.
+   * */
+  fun enqueuePostsForIndexing(postIds: Collection<Long>) {
+    if (postIds.isEmpty()) {
+      return
+    }
+
+    synchronized(pendingPostIdsLock) {
+      pendingPostIds.addAll(postIds)
+    }
+
+    pendingPostIdsChannel.trySend(Unit)
+  }
+
+  fun takePendingPostIds(maxCount: Int): List<Long> {
+    return synchronized(pendingPostIdsLock) {
+      val postIds = pendingPostIds.take(maxCount)
+      pendingPostIds.removeAll(postIds)
+
+      return@synchronized postIds
+    }
+  }
+
+  /**
+   * (Re)indexes the posts with the text that is currently stored in the database. Posts that don't
+   * exist anymore are skipped.
+   * */
+  suspend fun indexPosts(postIds: Collection<Long>) {
+    ensureInTransaction()
+
+    postIds
+      .chunked(KurobaDatabase.SQLITE_IN_OPERATOR_MAX_BATCH_SIZE)
+      .forEach { postIdsChunk ->
+        chanPostSearchDao.deleteMany(postIdsChunk)
+        chanPostSearchDao.insertFromPosts(postIdsChunk)
+      }
+  }
+
+  suspend fun countIndexedPosts(): Int {
+    return chanPostSearchDao.count()
+  }
+
+  suspend fun selectNotIndexedPostIds(beforePostId: Long, floorPostId: Long, count: Int): List<Long> {
+    return chanPostSearchDao.selectNotIndexedPostIds(beforePostId, floorPostId, count)
+  }
+
+  suspend fun selectOldestIndexedPostId(): Long? {
+    return chanPostSearchDao.selectOldestRowId()
+  }
+
+  suspend fun deleteOrphanedPosts(): Int {
+    ensureInTransaction()
+
+    return chanPostSearchDao.deleteOrphaned()
+  }
+
+  suspend fun deleteOldestPosts(count: Int): Int {
+    ensureInTransaction()
+
+    return chanPostSearchDao.deleteOldest(count)
+  }
+
+  /**
+   * Merges the index segments so that the space of the deleted rows is actually freed.
+   * */
+  suspend fun optimize() {
+    ensureNotInTransaction()
+
+    val tableName = ChanPostSearchEntity.TABLE_NAME
+    database.openHelper.writableDatabase.execSQL("INSERT INTO ${tableName}(${tableName}) VALUES('optimize')")
+  }
+
+  /**
+   * Finds at most [MAX_RANKED_MATCHES] of the newest matching posts, ranks them and returns the
+   * requested page.
+   * */
+  suspend fun search(searchQuery: ChanPostSearchQuery): ChanPostSearchResult {
+    ensureInTransaction()
+
+    val matchExpression = PostSearchUtils.toMatchExpression(searchQuery.query)
+      ?: return ChanPostSearchResult.EMPTY
+
+    val boardDescriptor = searchQuery.boardDescriptor
+
+    val matches = chanPostSearchDao.selectMatches(
+      matchExpression = matchExpression,
+      siteName = boardDescriptor?.siteName(),
+      boardCode = boardDescriptor?.boardCode,
+      threadNo = if (boardDescriptor != null) searchQuery.threadNo else null,
+      limit = MAX_RANKED_MATCHES
+    )
+
+    if (matches.isEmpty()) {
+      return ChanPostSearchResult.EMPTY
+    }
+
+    // Ties (which are pretty common for short posts) go to the newer post
+    val rankedPostIds = matches
+      .map { match -> RankedPost(match.postId, PostSearchUtils.score(match.matchInfo, COLUMN_WEIGHTS)) }
+      .sortedWith(compareByDescending<RankedPost> { it.score }.thenByDescending { it.postId })
+      .map { rankedPost -> rankedPost.postId }
+
+    val pageStart = searchQuery.page * searchQuery.pageSize
+    val pagePostIds = rankedPostIds.drop(pageStart).take(searchQuery.pageSize)
+
+    if (pagePostIds.isEmpty()) {
+      return ChanPostSearchResult(emptyList(), rankedPostIds.size, false)
+    }
+
+    val foundPostDtoMap = chanPostSearchDao.selectFoundPosts(pagePostIds)
+      .associateBy { foundPostDto -> foundPostDto.postId }
+
+    val thumbnailUrlsMap = chanPostImageDao.selectByOwnerPostIdList(pagePostIds)
+      .groupBy { chanPostImageEntity -> chanPostImageEntity.ownerPostId }
+      .mapValues { (_, chanPostImageEntities) ->
+        chanPostImageEntities.mapNotNull { chanPostImageEntity -> chanPostImageEntity.thumbnailUrl }
+      }
+
+    val foundPosts = pagePostIds.mapNotNull { postId ->
+      val foundPostDto = foundPostDtoMap[postId]
+        ?: return@mapNotNull null
+
+      val postDescriptor = PostDescriptor.create(
+        siteName = foundPostDto.siteName,
+        boardCode = foundPostDto.boardCode,
+        threadNo = foundPostDto.threadNo,
+        postNo = foundPostDto.postNo,
+        postSubNo = foundPostDto.postSubNo
+      )
+
+      return@mapNotNull ChanPostSearchResult.FoundPost(
+        postDescriptor = postDescriptor,
+        isOp = foundPostDto.isOp,
+        name = foundPostDto.name,
+        subject = foundPostDto.subject,
+        comment = foundPostDto.comment,
+        timestampSeconds = foundPostDto.timestamp,
+        thumbnailUrls = thumbnailUrlsMap[postId] ?: emptyList()
+      )
+    }
+
+    return ChanPostSearchResult(
+      foundPosts = foundPosts,
+      totalFound = rankedPostIds.size,
+      hasMorePages = pageStart + searchQuery.pageSize < rankedPostIds.size
+    )
+  }
+
+  private class RankedPost(
+    val postId: Long,
+    val score: Double
+  )
+
+  companion object {
+    private const val MAX_RANKED_MATCHES = 1000
+
+    // A match in the subject is worth more than a match in the comment
+    private val COLUMN_WEIGHTS = DoubleArray(ChanPostSearchEntity.INDEXED_COLUMNS_COUNT).apply {
+      this[ChanPostSearchEntity.SUBJECT_COLUMN_INDEX] = 2.0
+      this[ChanPostSearchEntity.COMMENT_COLUMN_INDEX] = 1.0
+    }
+  }
+
+}
@@ -24,9 +24,62 @@ open class MediaServiceLinkExtraContentLocalSource(
     )
   }
 
+  open suspend fun insertOrReplaceMany(mediaServiceLinkExtraContentList: Collection<MediaServiceLinkExtraContent>) {
+    ensureInTransaction()
+
+    if (mediaServiceLinkExtraContentList.isEmpty()) {
+      return
+    }
+
+    val now = DateTime.now()
+
+    val entities = mediaServiceLinkExtraContentList.map { mediaServiceLinkExtraContent ->
+      MediaServiceLinkExtraContentMapper.toEntity(mediaServiceLinkExtraContent, now)
+    }
+
+    mediaServiceLinkExtraContentDao.insertOrReplaceMany(entities)
+    mediaServiceLinkExtraContentDao.deleteOverLimit(MAX_ENTRIES_COUNT)
+  }
+
+  /**
+   * Selects the entries that are not older than [insertedAfter], one query per media service type.
+   * */
+  open suspend fun selectManyByMediaServiceKeys(
+    mediaServiceKeys: Collection<MediaServiceLinkExtraContentRepository.MediaServiceKey>,
+    insertedAfter: DateTime
+  ): List<MediaServiceLinkExtraContent> {
+    ensureInTransaction()
+
+    if (mediaServiceKeys.isEmpty()) {
+      return emptyList()
+    }
+
+    val result = mutableListOf<MediaServiceLinkExtraContent>()
+
+    mediaServiceKeys
+      .groupBy { mediaServiceKey -> mediaServiceKey.mediaServiceType }
+      .forEach { (mediaServiceType, keys) ->
+        keys
+          .map { mediaServiceKey -> mediaServiceKey.videoId.id }
+          .chunked(KurobaDatabase.SQLITE_IN_OPERATOR_MAX_BATCH_SIZE)
+          .forEach { videoIdsChunk ->
+            mediaServiceLinkExtraContentDao.selectMany(videoIdsChunk, mediaServiceType, insertedAfter)
+              .mapNotNullTo(result) { entity ->
+                MediaServiceLinkExtraContentMapper.fromEntity(GenericVideoId(entity.videoId), entity)
+              }
+          }
+      }
+
+    return result
+  }
+
+  /**
+   * Selects the entry only when it is not older than [insertedAfter].
+   * */
   open suspend fun selectByMediaServiceKey(
     videoId: GenericVideoId,
-    mediaServiceKey: MediaServiceLinkExtraContentRepository.MediaServiceKey
+    mediaServiceKey: MediaServiceLinkExtraContentRepository.MediaServiceKey,
+    insertedAfter: DateTime
   ): MediaServiceLinkExtraContent? {
     ensureInTransaction()
 
@@ -34,7 +87,8 @@ open class MediaServiceLinkExtraContentLocalSource(
       videoId,
       mediaServiceLinkExtraContentDao.select(
         mediaServiceKey.videoId.id,
-        mediaServiceKey.mediaServiceType
+        mediaServiceKey.mediaServiceType,
+        insertedAfter
       )
     )
   }
@@ -45,6 +99,15 @@ open class MediaServiceLinkExtraContentLocalSource(
     return mediaServiceLinkExtraContentDao.deleteOlderThan(dateTime)
   }
 
+  /**
+   * Deletes the oldest entries so that there are at most [maxCount] entries left.
+   * */
+  open suspend fun deleteOverLimit(maxCount: Int = MAX_ENTRIES_COUNT): Int {
+    ensureInTransaction()
+
+    return mediaServiceLinkExtraContentDao.deleteOverLimit(maxCount)
+  }
+
   open suspend fun deleteAll(): Int {
     ensureInTransaction()
 
@@ -59,5 +122,10 @@ open class MediaServiceLinkExtraContentLocalSource(
 
   companion object {
     val ONE_WEEK_AGO = DateTime.now().minusWeeks(1)
+
+    const val MAX_ENTRIES_COUNT = 10_000
+
+    // Titles may get edited and videos may get deleted
+    fun expirationDate(): DateTime = DateTime.now().minusWeeks(1)
   }
 }
\ No newline at end of file
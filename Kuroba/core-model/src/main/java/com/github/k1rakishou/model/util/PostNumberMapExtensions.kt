@@ -0,0 +1,23 @@
+package com.github.k1rakishou.model.util
+
+import com.github.k1rakishou.common.datastructure.PostNumberMap
+import com.github.k1rakishou.model.data.descriptor.PostDescriptor
+
+// Only the post number and the sub number are used as the key so these must only be used on maps
+// where all the posts belong to the same thread (or catalog).
+
+operator fun <V> PostNumberMap<V>.get(postDescriptor: PostDescriptor): V? {
+  return get(postDescriptor.postNo, postDescriptor.postSubNo)
+}
+
+fun <V> PostNumberMap<V>.containsKey(postDescriptor: PostDescriptor): Boolean {
+  return containsKey(postDescriptor.postNo, postDescriptor.postSubNo)
+}
+
+operator fun <V> PostNumberMap<V>.set(postDescriptor: PostDescriptor, value: V) {
+  put(postDescriptor.postNo, postDescriptor.postSubNo, value)
+}
+
+fun <V> PostNumberMap<V>.remove(postDescriptor: PostDescriptor): V? {
+  return remove(postDescriptor.postNo, postDescriptor.postSubNo)
+}
@@ -0,0 +1,105 @@
+package com.github.k1rakishou.model.util
+
+import java.nio.ByteBuffer
+import java.nio.ByteOrder
+import kotlin.math.ln
+
+object PostSearchUtils {
+  private const val MAX_QUERY_TOKENS = 16
+
+  // BM25 parameters, the usual defaults
+  private const val K1 = 1.2
+  private const val B = 0.75
+
+  /**
+   * Converts a user query into an FTS MATCH expression. Every word of the query must be present in
+   * a post (the order doesn't matter) and the last word is matched as a prefix, unless the query
+   * ends with a space, so that results show up while the word is still being typed. Everything that
+   * is not a letter or a digit is treated as a separator so that the user can't accidentally use
+   * the FTS query syntax. Returns null if there is nothing to search for.
+   * */
+  fun toMatchExpression(query: String): String? {
+    val tokens = mutableListOf<String>()
+    val currentToken = StringBuilder()
+
+    for (char in query) {
+      if (Character.isLetterOrDigit(char)) {
+        currentToken.append(char)
+        continue
+      }
+
+      if (currentToken.isNotEmpty()) {
+        tokens += currentToken.toString()
+        currentToken.setLength(0)
+      }
+    }
+
+    val lastTokenIsComplete = currentToken.isEmpty()
+    if (currentToken.isNotEmpty()) {
+      tokens += currentToken.toString()
+    }
+
+    if (tokens.isEmpty()) {
+      return null
+    }
+
+    val usedTokens = tokens.take(MAX_QUERY_TOKENS)
+
+    return usedTokens
+      .mapIndexed { index, token ->
+        val isPrefix = index == usedTokens.lastIndex && !lastTokenIsComplete && usedTokens.size == tokens.size
+        if (isPrefix) "\"${token}\"*" else "\"${token}\""
+      }
+      .joinToString(separator = " ")
+  }
+
+  /**
+   * BM25 score of one row calculated from the result of matchinfo(table, 'pcnalx'). The higher the
+   * better. [columnWeights] must have a weight for every indexed column of the table.
+   * */
+  fun score(matchInfo: ByteArray, columnWeights: DoubleArray): Double {
+    val buffer = ByteBuffer.wrap(matchInfo)
+      .order(ByteOrder.nativeOrder())
+      .asIntBuffer()
+
+    // All values are unsigned 32-bit integers
+    fun value(index: Int): Long = buffer.get(index).toLong() and 0xFFFFFFFFL
+
+    val phrasesCount = value(0).toInt()
+    val columnsCount = value(1).toInt()
+    val rowsCount = value(2).toDouble()
+
+    require(columnsCount == columnWeights.size) {
+      "Bad columnWeights size: ${columnWeights.size}, columnsCount: ${columnsCount}"
+    }
+
+    val averageLengthOffset = 3
+    val lengthOffset = averageLengthOffset + columnsCount
+    val hitsOffset = lengthOffset + columnsCount
+
+    var score = 0.0
+
+    for (phrase in 0 until phrasesCount) {
+      for (column in 0 until columnsCount) {
+        val hitsIndex = hitsOffset + 3 * (phrase * columnsCount + column)
+
+        val hitsInRow = value(hitsIndex).toDouble()
+        if (hitsInRow <= 0.0) {
+          continue
+        }
+
+        val rowsWithHits = value(hitsIndex + 2).toDouble()
+        val averageLength = value(averageLengthOffset + column).coerceAtLeast(1L).toDouble()
+        val length = value(lengthOffset + column).toDouble()
+
+        val idf = ln((rowsCount - rowsWithHits + 0.5) / (rowsWithHits + 0.5) + 1.0)
+        val lengthNorm = K1 * (1.0 - B + B * (length / averageLength))
+
+        score += columnWeights[column] * idf * (hitsInRow * (K1 + 1.0)) / (hitsInRow + lengthNorm)
+      }
+    }
+
+    return score
+  }
+
+}
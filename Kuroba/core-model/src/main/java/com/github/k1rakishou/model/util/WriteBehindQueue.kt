@@ -0,0 +1,175 @@
+package com.github.k1rakishou.model.util
+
+import androidx.annotation.GuardedBy
+import com.github.k1rakishou.common.ModularResult
+import com.github.k1rakishou.core_logger.Logger
+import kotlinx.coroutines.CoroutineScope
+import kotlinx.coroutines.Job
+import kotlinx.coroutines.delay
+import kotlinx.coroutines.launch
+import kotlinx.coroutines.sync.Mutex
+import kotlinx.coroutines.sync.withLock
+import kotlin.coroutines.coroutineContext
+
+/**
+ * Buffers small writes that happen very often (a post got bound, a thread got scrolled, etc.)
+ * instead of persisting every one of them in a separate transaction. Values are merged by key (by
+ * default the newest value of a key wins, see [mergeFunc]) and the whole batch is handed to
+ * [flushFunc], which is supposed to persist it using one transaction.
+ *
+ * A flush happens [flushDelayMs] after the first value was added into an empty queue, right away
+ * when there are [maxPendingCount] pending values or when [flush]/[flushAsync] is called (e.g. when
+ * the app goes to the background). Flushes never run concurrently. When [flushFunc] fails the
+ * batch is put back into the queue and retried later, up to [MAX_FLUSH_ATTEMPTS] times.
+ * */
+class WriteBehindQueue<K : Any, V : Any>(
+  private val tag: String,
+  private val scope: CoroutineScope,
+  private val flushDelayMs: Long,
+  private val maxPendingCount: Int,
+  private val mergeFunc: (oldValue: V, newValue: V) -> V = { _, newValue -> newValue },
+  private val flushFunc: suspend (Map<K, V>) -> ModularResult<Unit>
+) {
+  private val lock = Any()
+  @GuardedBy("lock")
+  private var pending = LinkedHashMap<K, V>()
+  @GuardedBy("lock")
+  private var scheduledFlushJob: Job? = null
+  @GuardedBy("lock")
+  private var failedFlushAttempts = 0
+
+  private val flushMutex = Mutex()
+
+  init {
+    require(flushDelayMs > 0L) { "Bad flushDelayMs: $flushDelayMs" }
+    require(maxPendingCount > 0) { "Bad maxPendingCount: $maxPendingCount" }
+  }
+
+  val pendingCount: Int
+    get() = synchronized(lock) { pending.size }
+
+  fun enqueue(key: K, value: V) {
+    val flushNow = synchronized(lock) {
+      putPendingLocked(key, value)
+      return@synchronized onEnqueuedLocked()
+    }
+
+    if (flushNow) {
+      flushAsync()
+    }
+  }
+
+  fun enqueueAll(values: Map<K, V>) {
+    if (values.isEmpty()) {
+      return
+    }
+
+    val flushNow = synchronized(lock) {
+      values.forEach { (key, value) -> putPendingLocked(key, value) }
+      return@synchronized onEnqueuedLocked()
+    }
+
+    if (flushNow) {
+      flushAsync()
+    }
+  }
+
+  fun flushAsync() {
+    scope.launch { flush() }
+  }
+
+  /**
+   * Persists everything that is currently in the queue. Suspends until the values are persisted (or
+   * the persistence fails).
+   * */
+  suspend fun flush() {
+    val currentJob = coroutineContext[Job]
+
+    flushMutex.withLock {
+      val toFlush = synchronized(lock) {
+        val flushJob = scheduledFlushJob
+        scheduledFlushJob = null
+
+        if (flushJob != null && flushJob !== currentJob) {
+          flushJob.cancel()
+        }
+
+        if (pending.isEmpty()) {
+          return
+        }
+
+        val toFlush = pending
+        pending = LinkedHashMap()
+
+        return@synchronized toFlush
+      }
+
+      val result = ModularResult.Try { flushFunc(toFlush).unwrap() }
+      if (result is ModularResult.Value) {
+        synchronized(lock) { failedFlushAttempts = 0 }
+        return
+      }
+
+      val error = (result as ModularResult.Error).error
+
+      synchronized(lock) {
+        ++failedFlushAttempts
+
+        if (failedFlushAttempts >= MAX_FLUSH_ATTEMPTS) {
+          Logger.e(tag, "flush() failed ${failedFlushAttempts} times in a row, " +
+            "dropping ${toFlush.size} values", error)
+
+          failedFlushAttempts = 0
+          return
+        }
+
+        Logger.e(tag, "flush() failed to persist ${toFlush.size} values, will retry later", error)
+
+        // Values that were enqueued while we were flushing are newer so they go on top
+        toFlush.forEach { (key, oldValue) ->
+          val newValue = pending[key]
+          pending[key] = if (newValue == null) oldValue else mergeFunc(oldValue, newValue)
+        }
+
+        scheduleFlushLocked()
+      }
+    }
+  }
+
+  @GuardedBy("lock")
+  private fun putPendingLocked(key: K, value: V) {
+    val prevValue = pending[key]
+    pending[key] = if (prevValue == null) value else mergeFunc(prevValue, value)
+  }
+
+  /**
+   * Returns true when the queue must be flushed right away.
+   * */
+  @GuardedBy("lock")
+  private fun onEnqueuedLocked(): Boolean {
+    // Don't hammer the database with immediate flushes while it's failing, wait for the retry
+    if (pending.size >= maxPendingCount && failedFlushAttempts == 0) {
+      return true
+    }
+
+    scheduleFlushLocked()
+    return false
+  }
+
+  @GuardedBy("lock")
+  private fun scheduleFlushLocked() {
+    if (scheduledFlushJob != null) {
+      return
+    }
+
+    scheduledFlushJob = scope.launch {
+      delay(flushDelayMs)
+      flush()
+    }
+  }
+
+  companion object {
+    const val MAX_FLUSH_ATTEMPTS = 3
+  }
+
+}
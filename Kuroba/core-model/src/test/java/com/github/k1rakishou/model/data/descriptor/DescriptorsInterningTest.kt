@@ -0,0 +1,49 @@
+package com.github.k1rakishou.model.data.descriptor
+
+import junit.framework.Assert.assertEquals
+import junit.framework.Assert.assertSame
+import org.junit.Test
+
+class DescriptorsInterningTest {
+
+  @Test
+  fun `site and board descriptors must be canonical`() {
+    val siteDescriptor1 = SiteDescriptor.create("test_site")
+    val siteDescriptor2 = SiteDescriptor.create(String(charArrayOf('t', 'e', 's', 't', '_', 's', 'i', 't', 'e')))
+    assertSame(siteDescriptor1, siteDescriptor2)
+
+    val boardDescriptor1 = BoardDescriptor.create("test_site", "g")
+    val boardDescriptor2 = BoardDescriptor.create(siteDescriptor2, "g")
+    assertSame(boardDescriptor1, boardDescriptor2)
+    assertSame(siteDescriptor1, boardDescriptor1.siteDescriptor)
+  }
+
+  @Test
+  fun `catalog and thread descriptors must be canonical`() {
+    val catalogDescriptor1 = ChanDescriptor.CatalogDescriptor.create("test_site", "g")
+    val catalogDescriptor2 = ChanDescriptor.CatalogDescriptor.create(BoardDescriptor.create("test_site", "g"))
+    assertSame(catalogDescriptor1, catalogDescriptor2)
+
+    val threadDescriptor1 = ChanDescriptor.ThreadDescriptor.create("test_site", "g", 12345L)
+    val threadDescriptor2 = ChanDescriptor.ThreadDescriptor.create(catalogDescriptor1, 12345L)
+    assertSame(threadDescriptor1, threadDescriptor2)
+    assertSame(catalogDescriptor1, threadDescriptor1.catalogDescriptor())
+  }
+
+  @Test
+  fun `post descriptors must reuse canonical thread descriptors`() {
+    val threadDescriptor = ChanDescriptor.ThreadDescriptor.create("test_site", "g", 12345L)
+
+    val postDescriptor1 = PostDescriptor.create(threadDescriptor, 12346L)
+    val postDescriptor2 = PostDescriptor.create("test_site", "g", 12345L, 12346L)
+    assertSame(threadDescriptor, postDescriptor1.threadDescriptor())
+    assertSame(threadDescriptor, postDescriptor2.threadDescriptor())
+    assertEquals(postDescriptor1, postDescriptor2)
+    assertEquals(postDescriptor1.hashCode(), postDescriptor2.hashCode())
+
+    val catalogPostDescriptor = PostDescriptor.create("test_site", "g", 12345L)
+    assertSame(threadDescriptor, catalogPostDescriptor.threadDescriptor())
+    assertSame(catalogPostDescriptor.threadDescriptor(), catalogPostDescriptor.threadDescriptor())
+  }
+
+}
@@ -0,0 +1,103 @@
+package com.github.k1rakishou.model.data.thread
+
+import com.github.k1rakishou.model.data.descriptor.ChanDescriptor
+import com.github.k1rakishou.model.data.descriptor.PostDescriptor
+import junit.framework.Assert.assertEquals
+import org.junit.Test
+
+class ThreadSearchIndexTest {
+  private val threadDescriptor = ChanDescriptor.ThreadDescriptor.create("test_site", "g", 1L)
+
+  @Test
+  fun `search must return the same posts as a case insensitive contains`() {
+    val texts = mapOf(
+      1L to "Original post about Kotlin",
+      2L to "kotlin coroutines are nice",
+      3L to "I prefer JAVA",
+      4L to "KoTlIn again",
+      5L to "ko",
+    )
+
+    val index = buildIndex(texts)
+
+    listOf("kotlin", "KOTLIN", "ko", "java", "again", "nothing", "tlin a", "n").forEach { query ->
+      val expected = texts
+        .filter { (_, text) -> text.contains(query, ignoreCase = true) }
+        .keys
+        .toList()
+
+      assertEquals(query, expected, postNos(index.search(query, null)))
+    }
+  }
+
+  @Test
+  fun `narrowed query must reuse the previous result and give the same posts`() {
+    val index = buildIndex(mapOf(1L to "abcdef", 2L to "abcxyz", 3L to "xyz"))
+
+    val result1 = index.search("abc", null)
+    assertEquals(listOf(1L, 2L), postNos(result1))
+
+    val result2 = index.search("abcd", result1)
+    assertEquals(listOf(1L), postNos(result2))
+
+    // Not a narrowing of the previous query, the previous result must be ignored
+    val result3 = index.search("xyz", result2)
+    assertEquals(listOf(2L, 3L), postNos(result3))
+  }
+
+  @Test
+  fun `result of a replaced index must not be reused by the new index`() {
+    // ChanThread.cleanup() replaces the index, the new one starts with the same version
+    val oldIndex = buildIndex((1L..10L).associateWith { postNo -> "abc post $postNo" })
+    val oldResult = oldIndex.search("abc", null)
+    assertEquals((1L..10L).toList(), postNos(oldResult))
+
+    val newIndex = buildIndex(mapOf(20L to "abcd", 21L to "xyz"))
+    assertEquals(listOf(20L), postNos(newIndex.search("abcd", oldResult)))
+  }
+
+  @Test
+  fun `index must be updated incrementally`() {
+    val index = buildIndex(mapOf(1L to "first post", 2L to "second post"))
+
+    val result1 = index.search("post", null)
+    assertEquals(listOf(1L, 2L), postNos(result1))
+
+    index.addOrUpdate(listOf(entry(2L, "edited"), entry(3L, "third post")))
+    // The index has changed so the previous result can't be used even though the query is narrowed
+    assertEquals(listOf(1L, 3L), postNos(index.search("post", result1)))
+    assertEquals(listOf(2L), postNos(index.search("edit", null)))
+
+    index.remove(listOf(PostDescriptor.create(threadDescriptor, 1L)))
+    assertEquals(listOf(3L), postNos(index.search("post", null)))
+  }
+
+  @Test
+  fun `index must survive compaction`() {
+    val index = buildIndex((1L..10L).associateWith { postNo -> "post $postNo" })
+
+    repeat(100) { iteration ->
+      index.addOrUpdate((1L..10L).map { postNo -> entry(postNo, "post $postNo iteration $iteration") })
+    }
+
+    assertEquals((1L..10L).toList(), postNos(index.search("iteration 99", null)))
+    assertEquals(emptyList<Long>(), postNos(index.search("iteration 98", null)))
+    assertEquals(listOf(10L), postNos(index.search("post 10", null)))
+  }
+
+  private fun buildIndex(texts: Map<Long, String>): ThreadSearchIndex {
+    val index = ThreadSearchIndex()
+    index.build(texts.map { (postNo, text) -> entry(postNo, text) })
+
+    return index
+  }
+
+  private fun entry(postNo: Long, text: String): ThreadSearchIndex.Entry {
+    return ThreadSearchIndex.Entry(PostDescriptor.create(threadDescriptor, postNo), text)
+  }
+
+  private fun postNos(searchResult: ThreadSearchIndex.SearchResult): List<Long> {
+    return searchResult.postDescriptors.map { postDescriptor -> postDescriptor.postNo }
+  }
+
+}
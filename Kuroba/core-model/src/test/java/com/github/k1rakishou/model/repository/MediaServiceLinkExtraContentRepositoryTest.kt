@@ -10,6 +10,7 @@ import com.github.k1rakishou.model.source.cache.GenericSuspendableCacheSource
 import com.github.k1rakishou.model.source.local.MediaServiceLinkExtraContentLocalSource
 import com.github.k1rakishou.model.source.remote.MediaServiceLinkExtraContentRemoteSource
 import com.nhaarman.mockitokotlin2.any
+import com.nhaarman.mockitokotlin2.eq
 import com.nhaarman.mockitokotlin2.mock
 import com.nhaarman.mockitokotlin2.times
 import com.nhaarman.mockitokotlin2.verify
@@ -89,7 +90,7 @@ class MediaServiceLinkExtraContentRepositoryTest {
 
       whenever(cache.get(any())).thenReturn(null)
       whenever(localSource.deleteOlderThan(any())).thenReturn(1)
-      whenever(localSource.selectByMediaServiceKey(videoId, mediaServiceKey)).thenReturn(content)
+      whenever(localSource.selectByMediaServiceKey(eq(videoId), eq(mediaServiceKey), any())).thenReturn(content)
 
       val linkExtraContent = repository.getLinkExtraContent(serviceType, requestUrl, videoId).unwrap()
       assertEquals(videoId, linkExtraContent.videoId)
@@ -98,7 +99,7 @@ class MediaServiceLinkExtraContentRepositoryTest {
       assertEquals(duration, linkExtraContent.videoDuration)
 
       verify(localSource, times(1)).deleteOlderThan(any())
-      verify(localSource, times(1)).selectByMediaServiceKey(videoId, mediaServiceKey)
+      verify(localSource, times(1)).selectByMediaServiceKey(eq(videoId), eq(mediaServiceKey), any())
       verifyZeroInteractions(remoteSource)
     }
   }
@@ -117,9 +118,9 @@ class MediaServiceLinkExtraContentRepositoryTest {
 
       whenever(cache.get(any())).thenReturn(null)
       whenever(localSource.deleteOlderThan(any())).thenReturn(1)
-      whenever(localSource.selectByMediaServiceKey(videoId, mediaServiceKey)).thenReturn(null)
+      whenever(localSource.selectByMediaServiceKey(eq(videoId), eq(mediaServiceKey), any())).thenReturn(null)
       whenever(remoteSource.fetchFromNetwork(requestUrl, videoId, serviceType)).thenReturn(ModularResult.value(info))
-      whenever(localSource.insert(content)).thenReturn(Unit)
+      whenever(localSource.insertOrReplaceMany(listOf(content))).thenReturn(Unit)
 
       val linkExtraContent = repository.getLinkExtraContent(serviceType, requestUrl, videoId).unwrap()
       assertEquals(videoId, linkExtraContent.videoId)
@@ -128,9 +129,77 @@ class MediaServiceLinkExtraContentRepositoryTest {
       assertEquals(duration, linkExtraContent.videoDuration)
 
       verify(localSource, times(1)).deleteOlderThan(any())
-      verify(localSource, times(1)).selectByMediaServiceKey(videoId, mediaServiceKey)
-      verify(localSource, times(1)).insert(content)
+      verify(localSource, times(1)).selectByMediaServiceKey(eq(videoId), eq(mediaServiceKey), any())
+      verify(localSource, times(1)).insertOrReplaceMany(listOf(content))
       verify(remoteSource, times(1)).fetchFromNetwork(requestUrl, videoId, serviceType)
     }
   }
-}
\ No newline at end of file
+
+  @Test
+  fun `test batch when the same video is linked many times should fetch it only once`() {
+    runBlocking(Dispatchers.Default) {
+      val requestUrl = "youtube.com/test_url"
+      val videoId = GenericVideoId("testVideoId234234234")
+      val serviceType = MediaServiceType.Youtube
+      val mediaServiceKey = MediaServiceLinkExtraContentRepository.MediaServiceKey(videoId, serviceType)
+      val duration = Period.parse("P1M")
+      val title = "title"
+      val info = MediaServiceLinkExtraInfo(title, duration)
+
+      val requests = (0 until 200).map {
+        MediaServiceLinkExtraContentRepository.LinkExtraContentRequest(requestUrl, videoId, serviceType)
+      }
+
+      whenever(cache.getMany(any())).thenReturn(emptyMap())
+      whenever(localSource.selectManyByMediaServiceKeys(any(), any())).thenReturn(emptyList())
+      whenever(remoteSource.fetchFromNetwork(requestUrl, videoId, serviceType)).thenReturn(ModularResult.value(info))
+
+      val contents = repository.getLinkExtraContentBatch(requests).unwrap()
+      assertEquals(1, contents.size)
+      assertEquals(title, contents[mediaServiceKey]!!.videoTitle)
+
+      verify(cache, times(1)).getMany(listOf(mediaServiceKey))
+      verify(localSource, times(1)).selectManyByMediaServiceKeys(any(), any())
+      verify(remoteSource, times(1)).fetchFromNetwork(requestUrl, videoId, serviceType)
+    }
+  }
+
+  @Test
+  fun `test batch should only fetch the videos that are neither in the cache nor in the local source`() {
+    runBlocking(Dispatchers.Default) {
+      val serviceType = MediaServiceType.Youtube
+      val duration = Period.parse("P1M")
+
+      val cachedRequest = MediaServiceLinkExtraContentRepository.LinkExtraContentRequest(
+        "youtube.com/1", GenericVideoId("1"), serviceType
+      )
+      val storedRequest = MediaServiceLinkExtraContentRepository.LinkExtraContentRequest(
+        "youtube.com/2", GenericVideoId("2"), serviceType
+      )
+      val missingRequest = MediaServiceLinkExtraContentRepository.LinkExtraContentRequest(
+        "youtube.com/3", GenericVideoId("3"), serviceType
+      )
+
+      val cachedContent = MediaServiceLinkExtraContent(cachedRequest.videoId, serviceType, "1", duration)
+      val storedContent = MediaServiceLinkExtraContent(storedRequest.videoId, serviceType, "2", duration)
+
+      whenever(cache.getMany(any())).thenReturn(mapOf(cachedRequest.mediaServiceKey to cachedContent))
+      whenever(localSource.selectManyByMediaServiceKeys(any(), any())).thenReturn(listOf(storedContent))
+      whenever(remoteSource.fetchFromNetwork(missingRequest.requestUrl, missingRequest.videoId, serviceType))
+        .thenReturn(ModularResult.value(MediaServiceLinkExtraInfo("3", duration)))
+
+      val contents = repository.getLinkExtraContentBatch(
+        listOf(cachedRequest, storedRequest, missingRequest)
+      ).unwrap()
+
+      assertEquals(3, contents.size)
+      assertEquals("1", contents[cachedRequest.mediaServiceKey]!!.videoTitle)
+      assertEquals("2", contents[storedRequest.mediaServiceKey]!!.videoTitle)
+      assertEquals("3", contents[missingRequest.mediaServiceKey]!!.videoTitle)
+
+      verify(remoteSource, times(1)).fetchFromNetwork(missingRequest.requestUrl, missingRequest.videoId, serviceType)
+      verify(remoteSource, times(0)).fetchFromNetwork(cachedRequest.requestUrl, cachedRequest.videoId, serviceType)
+      verify(remoteSource, times(0)).fetchFromNetwork(storedRequest.requestUrl, storedRequest.videoId, serviceType)
+    }
+  }
+}
@@ -8,6 +8,7 @@ import com.github.k1rakishou.model.data.media.GenericVideoId
 import com.github.k1rakishou.model.data.video_service.MediaServiceLinkExtraContent
 import com.github.k1rakishou.model.data.video_service.MediaServiceType
 import com.github.k1rakishou.model.entity.MediaServiceLinkExtraContentEntity
+import com.github.k1rakishou.model.repository.MediaServiceLinkExtraContentRepository
 import kotlinx.coroutines.Dispatchers
 import kotlinx.coroutines.runBlocking
 import org.joda.time.DateTime
@@ -109,4 +110,52 @@ class MediaServiceLinkExtraContentLocalSourceTest {
       assertEquals("title2", allEntities.last().videoTitle)
     }
   }
+  @Test
+  fun `test expired entry is not returned by the single key select`() {
+    runBlocking(Dispatchers.Default) {
+      val videoId = GenericVideoId("id123")
+      val mediaServiceKey = MediaServiceLinkExtraContentRepository.MediaServiceKey(videoId, MediaServiceType.Youtube)
+
+      val selected = database.withTransaction {
+        dao.insert(
+          MediaServiceLinkExtraContentEntity(
+            "id123",
+            MediaServiceType.Youtube,
+            "title1",
+            Period.seconds(90),
+            DateTime.now().minusWeeks(2)
+          )
+        )
+
+        localSource.selectByMediaServiceKey(
+          videoId,
+          mediaServiceKey,
+          MediaServiceLinkExtraContentLocalSource.expirationDate()
+        )
+      }
+
+      assertEquals(null, selected)
+    }
+  }
+
+  @Test
+  fun `test insertOrReplaceMany keeps at most MAX_ENTRIES_COUNT entries`() {
+    runBlocking(Dispatchers.Default) {
+      val contents = (0..MediaServiceLinkExtraContentLocalSource.MAX_ENTRIES_COUNT).map { index ->
+        MediaServiceLinkExtraContent(
+          GenericVideoId("id$index"),
+          MediaServiceType.Youtube,
+          "title$index",
+          Period.seconds(90)
+        )
+      }
+
+      val count = database.withTransaction {
+        localSource.insertOrReplaceMany(contents)
+        localSource.count()
+      }
+
+      assertEquals(MediaServiceLinkExtraContentLocalSource.MAX_ENTRIES_COUNT, count)
+    }
+  }
 }
\ No newline at end of file
@@ -0,0 +1,85 @@
+package com.github.k1rakishou.model.util
+
+import junit.framework.Assert.assertEquals
+import junit.framework.Assert.assertNull
+import junit.framework.Assert.assertTrue
+import org.junit.Test
+import java.nio.ByteBuffer
+import java.nio.ByteOrder
+
+class PostSearchUtilsTest {
+  private val columnWeights = doubleArrayOf(2.0, 1.0)
+
+  @Test
+  fun `last word must be matched as a prefix unless the query ends with a separator`() {
+    assertEquals("\"hello\" \"wor\"*", PostSearchUtils.toMatchExpression("hello wor"))
+    assertEquals("\"hello\" \"world\"", PostSearchUtils.toMatchExpression("hello world "))
+  }
+
+  @Test
+  fun `fts query syntax must be treated as separators`() {
+    assertEquals("\"foo\" \"OR\" \"bar\"", PostSearchUtils.toMatchExpression("\"foo\" OR-bar*)"))
+    assertEquals("\"NEAR\" \"x\"*", PostSearchUtils.toMatchExpression("NEAR x"))
+    assertNull(PostSearchUtils.toMatchExpression(" >>* \"\" "))
+  }
+
+  @Test
+  fun `amount of query words must be limited`() {
+    val query = (1..20).joinToString(separator = " ") { "w$it" }
+    val matchExpression = PostSearchUtils.toMatchExpression(query)!!
+
+    assertEquals(16, matchExpression.split(' ').size)
+    // The dropped words were complete so the last used one is not a prefix
+    assertTrue(matchExpression.endsWith("\"w16\""))
+  }
+
+  @Test
+  fun `subject match must be ranked higher than comment match`() {
+    // 1 phrase, 10 rows, 2 of which contain the phrase, same lengths
+    val subjectHit = matchInfo(rows = 10, lengths = intArrayOf(10, 10), hits = intArrayOf(1, 0), rowsWithHits = 2)
+    val commentHit = matchInfo(rows = 10, lengths = intArrayOf(10, 10), hits = intArrayOf(0, 1), rowsWithHits = 2)
+
+    assertTrue(PostSearchUtils.score(subjectHit, columnWeights) > PostSearchUtils.score(commentHit, columnWeights))
+  }
+
+  @Test
+  fun `more hits and shorter texts must be ranked higher`() {
+    val oneHit = matchInfo(rows = 10, lengths = intArrayOf(0, 50), hits = intArrayOf(0, 1), rowsWithHits = 2)
+    val twoHits = matchInfo(rows = 10, lengths = intArrayOf(0, 50), hits = intArrayOf(0, 2), rowsWithHits = 2)
+    val shortText = matchInfo(rows = 10, lengths = intArrayOf(0, 5), hits = intArrayOf(0, 1), rowsWithHits = 2)
+
+    assertTrue(PostSearchUtils.score(twoHits, columnWeights) > PostSearchUtils.score(oneHit, columnWeights))
+    assertTrue(PostSearchUtils.score(shortText, columnWeights) > PostSearchUtils.score(oneHit, columnWeights))
+  }
+
+  @Test
+  fun `row without hits must have zero score`() {
+    val noHits = matchInfo(rows = 10, lengths = intArrayOf(10, 10), hits = intArrayOf(0, 0), rowsWithHits = 2)
+    assertEquals(0.0, PostSearchUtils.score(noHits, columnWeights))
+  }
+
+  /**
+   * matchinfo(table, 'pcnalx') for one phrase and two columns with average lengths of 10.
+   * */
+  private fun matchInfo(rows: Int, lengths: IntArray, hits: IntArray, rowsWithHits: Int): ByteArray {
+    val values = mutableListOf<Int>()
+    values += 1 // p
+    values += 2 // c
+    values += rows // n
+    values += listOf(10, 10) // a
+    values += lengths.toList() // l
+
+    // x: hits in this row, hits in all rows, rows with hits
+    hits.forEach { hitsInRow ->
+      values += hitsInRow
+      values += rowsWithHits
+      values += rowsWithHits
+    }
+
+    val buffer = ByteBuffer.allocate(values.size * Int.SIZE_BYTES).order(ByteOrder.nativeOrder())
+    values.forEach { value -> buffer.putInt(value) }
+
+    return buffer.array()
+  }
+
+}
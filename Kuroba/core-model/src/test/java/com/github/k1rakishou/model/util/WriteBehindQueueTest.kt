@@ -0,0 +1,112 @@
+package com.github.k1rakishou.model.util
+
+import com.github.k1rakishou.common.ModularResult
+import junit.framework.Assert.assertEquals
+import kotlinx.coroutines.CoroutineScope
+import kotlinx.coroutines.ExperimentalCoroutinesApi
+import kotlinx.coroutines.test.runBlockingTest
+import org.junit.Test
+
+@OptIn(ExperimentalCoroutinesApi::class)
+class WriteBehindQueueTest {
+
+  @Test
+  fun `values must be merged by key and flushed once after the delay`() {
+    runBlockingTest {
+      val flushes = mutableListOf<Map<Int, String>>()
+      val queue = createQueue(this, flushes, maxPendingCount = 100)
+
+      queue.enqueue(1, "a")
+      queue.enqueue(2, "b")
+      queue.enqueue(1, "c")
+
+      advanceTimeBy(500L)
+      assertEquals(0, flushes.size)
+
+      advanceTimeBy(600L)
+      assertEquals(listOf(mapOf(1 to "c", 2 to "b")), flushes)
+      assertEquals(0, queue.pendingCount)
+    }
+  }
+
+  @Test
+  fun `custom merge function must be used for values with the same key`() {
+    runBlockingTest {
+      val flushes = mutableListOf<Map<Int, String>>()
+      val queue = createQueue(this, flushes, maxPendingCount = 100) { oldValue, _ -> oldValue }
+
+      queue.enqueue(1, "first")
+      queue.enqueue(1, "second")
+      queue.flush()
+
+      assertEquals(listOf(mapOf(1 to "first")), flushes)
+    }
+  }
+
+  @Test
+  fun `queue must be flushed right away when it is full`() {
+    runBlockingTest {
+      val flushes = mutableListOf<Map<Int, String>>()
+      val queue = createQueue(this, flushes, maxPendingCount = 3)
+
+      queue.enqueueAll(mapOf(1 to "a", 2 to "b"))
+      assertEquals(0, flushes.size)
+
+      queue.enqueue(3, "c")
+      assertEquals(listOf(mapOf(1 to "a", 2 to "b", 3 to "c")), flushes)
+
+      // The delayed flush must not flush anything else
+      advanceTimeBy(2000L)
+      assertEquals(1, flushes.size)
+    }
+  }
+
+  @Test
+  fun `manual flush must persist everything and cancel the delayed flush`() {
+    runBlockingTest {
+      val flushes = mutableListOf<Map<Int, String>>()
+      val queue = createQueue(this, flushes, maxPendingCount = 100)
+
+      queue.enqueue(1, "a")
+      queue.flush()
+      assertEquals(listOf(mapOf(1 to "a")), flushes)
+
+      queue.enqueue(2, "b")
+      advanceTimeBy(1100L)
+      assertEquals(listOf(mapOf(1 to "a"), mapOf(2 to "b")), flushes)
+    }
+  }
+
+  @Test
+  fun `flush of empty queue must do nothing`() {
+    runBlockingTest {
+      val flushes = mutableListOf<Map<Int, String>>()
+      val queue = createQueue(this, flushes, maxPendingCount = 100)
+
+      queue.flush()
+      advanceTimeBy(2000L)
+
+      assertEquals(0, flushes.size)
+    }
+  }
+
+  private fun createQueue(
+    scope: CoroutineScope,
+    flushes: MutableList<Map<Int, String>>,
+    maxPendingCount: Int,
+    mergeFunc: (String, String) -> String = { _, newValue -> newValue }
+  ): WriteBehindQueue<Int, String> {
+    return WriteBehindQueue(
+      tag = "WriteBehindQueueTest",
+      scope = scope,
+      flushDelayMs = 1000L,
+      maxPendingCount = maxPendingCount,
+      mergeFunc = mergeFunc,
+      flushFunc = { values ->
+        flushes += values.toMap()
+        ModularResult.value(Unit)
+      }
+    )
+  }
+
+}
@@ -4,9 +4,12 @@ import com.github.k1rakishou.common.mutableListWithCap
 import org.jsoup.parser.Parser
 
 /**
- * Not thread safe!
+ * Not thread safe! An instance is supposed to be reused by one thread to parse many comments, the
+ * parser keeps buffers that are reused between [parse] calls.
  * */
 class HtmlParser {
+  // Only used by splitIntoPartsBySeparator() which is not reentrant
+  private val tagPartBuffer = StringBuilder(32)
 
   fun parse(html: String): HtmlDocument {
     try {
@@ -22,18 +25,19 @@ class HtmlParser {
     var tagIndex = 0
 
     val outNodes = mutableListWithCap<HtmlNode>(4)
-    val currentBuffer = mutableListWithCap<Char>(32)
+    // Text between tags is always a contiguous part of the html so instead of copying it char by
+    // char into a buffer we only remember where it starts.
+    var textStart = localOffset
 
     while (localOffset < html.length) {
       val currChar = html[localOffset]
 
       if (currChar == '<') {
-        if (currentBuffer.size > 0) {
-          val text = String(currentBuffer.toCharArray())
+        if (localOffset > textStart) {
+          val text = html.substring(textStart, localOffset)
           val textUnescaped = Parser.unescapeEntities(text, false)
 
           addNewTextNode(parentNode, outNodes, textUnescaped)
-          currentBuffer.clear()
         }
 
         ++localOffset
@@ -61,19 +65,18 @@ class HtmlParser {
           }
         }
 
+        textStart = localOffset
         continue
       }
 
-      currentBuffer.add(currChar)
       ++localOffset
     }
 
-    if (currentBuffer.size > 0) {
-      val text = String(currentBuffer.toCharArray())
+    if (localOffset > textStart) {
+      val text = html.substring(textStart, localOffset)
       val textUnescaped = Parser.unescapeEntities(text, false)
 
       addNewTextNode(parentNode, outNodes, textUnescaped)
-      currentBuffer.clear()
     }
 
     return ParseResult(outNodes, localOffset)
@@ -91,7 +94,6 @@ class HtmlParser {
 
   private fun parseNode(parentNode: HtmlNode?, html: String, start: Int, tagIndex: Int): ParseNodeResult {
     var localOffset = start
-    val tagRaw = mutableListWithCap<Char>(32)
 
     while (localOffset < html.length) {
       val ch = html[localOffset]
@@ -99,14 +101,15 @@ class HtmlParser {
         break
       }
 
-      tagRaw.add(ch)
       ++localOffset
     }
 
+    val tagRaw = html.toCharArray(start, localOffset)
+
     // Skip the ">"
     ++localOffset
 
-    val htmlNodeTag = createHtmlTag(parentNode, tagRaw.toCharArray(), tagIndex)
+    val htmlNodeTag = createHtmlTag(parentNode, tagRaw, tagIndex)
     if (htmlNodeTag.htmlTag.isVoidElement) {
       return ParseNodeResult(htmlNodeTag, localOffset)
     }
@@ -199,7 +202,8 @@ class HtmlParser {
     var isInsideString = false
     var offset = 0
     val tagParts = mutableListWithCap<CharArray>(4)
-    val currentTagPart = mutableListWithCap<Char>(32)
+    val currentTagPart = tagPartBuffer
+    currentTagPart.setLength(0)
 
     while (offset < tagRaw.size) {
       val prevCh = tagRaw.getOrNull(offset - 1)
@@ -213,8 +217,8 @@ class HtmlParser {
       }
 
       if (currentCh == separator && !isInsideString && nextCh != '/') {
-        tagParts.add(currentTagPart.toCharArray())
-        currentTagPart.clear()
+        tagParts.add(currentTagPart.toCharArrayCopy())
+        currentTagPart.setLength(0)
 
         ++offset
         continue
@@ -225,18 +229,24 @@ class HtmlParser {
         continue
       }
 
-      currentTagPart.add(currentCh)
+      currentTagPart.append(currentCh)
       ++offset
     }
 
-    if (currentTagPart.size > 0) {
-      tagParts.add(currentTagPart.toCharArray())
-      currentTagPart.clear()
+    if (currentTagPart.isNotEmpty()) {
+      tagParts.add(currentTagPart.toCharArrayCopy())
+      currentTagPart.setLength(0)
     }
 
     return tagParts
   }
 
+  private fun StringBuilder.toCharArrayCopy(): CharArray {
+    val chars = CharArray(length)
+    getChars(0, length, chars, 0)
+    return chars
+  }
+
   private fun skipTagEnd(html: String, start: Int): Int {
     var localOffset = start
 
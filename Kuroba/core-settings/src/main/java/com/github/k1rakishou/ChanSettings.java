@@ -407,6 +407,7 @@ public class ChanSettings {
     public static BooleanSetting forceHalloweenMode;
     public static BooleanSetting forceSnowMode;
     public static BooleanSetting forceChristmasMode;
+    public static BooleanSetting collectPostCellStatistics;
     //endregion
 
     //region DATA
@@ -653,6 +654,7 @@ public class ChanSettings {
             forceHalloweenMode = new BooleanSetting(provider, "force_halloween_mode", false);
             forceSnowMode = new BooleanSetting(provider, "force_snow_mode", false);
             forceChristmasMode = new BooleanSetting(provider, "force_christmas_mode", false);
+            collectPostCellStatistics = new BooleanSetting(provider, "collect_post_cell_statistics", false);
             //endregion
 
             //region DATA
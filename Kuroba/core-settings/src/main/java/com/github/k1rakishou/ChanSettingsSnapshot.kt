@@ -0,0 +1,94 @@
+package com.github.k1rakishou
+
+/**
+ * An immutable snapshot of the settings that are read on hot paths (post cell data calculation,
+ * post cell binding, etc.). Reading a setting directly may take a monitor (BooleanSetting) and
+ * returns a boxed value, while reading a snapshot is one volatile read plus plain field reads. All
+ * the values of one snapshot are consistent with each other.
+ *
+ * The snapshot is tagged with the [Setting.currentSettingsVersion] it was built with and is rebuilt
+ * on the first [get] call after any setting changes.
+ * */
+class ChanSettingsSnapshot private constructor(
+  val version: Long,
+  val textOnly: Boolean,
+  val prefetchMedia: Boolean,
+  val showPrefetchLoadingIndicator: Boolean,
+  val highResCells: Boolean,
+  val postThumbnailRemoveImageSpoilers: Boolean,
+  val postCellThumbnailSizePercents: Int,
+  val postMultipleImagesCompactMode: Boolean,
+  val postLinksTakeWholeHorizSpace: Boolean,
+  val boardPostViewMode: ChanSettings.BoardPostViewMode,
+  val catalogPostAlignmentMode: ChanSettings.PostAlignmentMode,
+  val threadPostAlignmentMode: ChanSettings.PostAlignmentMode,
+  val fontSize: Int,
+  val boardOrder: String,
+  val neverShowPages: Boolean,
+  val tapNoReply: Boolean,
+  val postFullDate: Boolean,
+  val shiftPostComment: Boolean,
+  val forceShiftPostComment: Boolean,
+  val postFileInfo: Boolean,
+  val markUnseenPosts: Boolean,
+  val markSeenThreads: Boolean,
+  val diskCacheCleanupRemovePercent: Int,
+  val collectPostCellStatistics: Boolean
+) {
+
+  override fun toString(): String {
+    return "ChanSettingsSnapshot(version=$version)"
+  }
+
+  companion object {
+    @Volatile
+    private var current: ChanSettingsSnapshot? = null
+
+    @JvmStatic
+    fun get(): ChanSettingsSnapshot {
+      val snapshot = current
+      val version = Setting.currentSettingsVersion()
+
+      if (snapshot != null && snapshot.version == version) {
+        return snapshot
+      }
+
+      // The version is read before reading the settings so if any setting changes while we are
+      // building the snapshot it will just get rebuilt once again on the next call.
+      val newSnapshot = create(version)
+      current = newSnapshot
+
+      return newSnapshot
+    }
+
+    private fun create(version: Long): ChanSettingsSnapshot {
+      return ChanSettingsSnapshot(
+        version = version,
+        textOnly = ChanSettings.textOnly.get(),
+        prefetchMedia = ChanSettings.prefetchMedia.get(),
+        showPrefetchLoadingIndicator = ChanSettings.showPrefetchLoadingIndicator.get(),
+        highResCells = ChanSettings.highResCells.get(),
+        postThumbnailRemoveImageSpoilers = ChanSettings.postThumbnailRemoveImageSpoilers.get(),
+        postCellThumbnailSizePercents = ChanSettings.postCellThumbnailSizePercents.get(),
+        postMultipleImagesCompactMode = ChanSettings.postMultipleImagesCompactMode.get(),
+        postLinksTakeWholeHorizSpace = ChanSettings.postLinksTakeWholeHorizSpace.get(),
+        boardPostViewMode = ChanSettings.boardPostViewMode.get(),
+        catalogPostAlignmentMode = ChanSettings.catalogPostAlignmentMode.get(),
+        threadPostAlignmentMode = ChanSettings.threadPostAlignmentMode.get(),
+        fontSize = ChanSettings.fontSize.get().toInt(),
+        boardOrder = ChanSettings.boardOrder.get(),
+        neverShowPages = ChanSettings.neverShowPages.get(),
+        tapNoReply = ChanSettings.tapNoReply.get(),
+        postFullDate = ChanSettings.postFullDate.get(),
+        shiftPostComment = ChanSettings.shiftPostComment.get(),
+        forceShiftPostComment = ChanSettings.forceShiftPostComment.get(),
+        postFileInfo = ChanSettings.postFileInfo.get(),
+        markUnseenPosts = ChanSettings.markUnseenPosts.get(),
+        markSeenThreads = ChanSettings.markSeenThreads.get(),
+        diskCacheCleanupRemovePercent = ChanSettings.diskCacheCleanupRemovePercent.get(),
+        collectPostCellStatistics = ChanSettings.collectPostCellStatistics.get()
+      )
+    }
+  }
+
+}
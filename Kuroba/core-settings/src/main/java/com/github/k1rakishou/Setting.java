@@ -16,7 +16,13 @@
  */
 package com.github.k1rakishou;
 
+import java.util.concurrent.atomic.AtomicLong;
+
 public abstract class Setting<T> {
+    // Incremented every time any of the preference settings (see prefs package) changes. Used by
+    // ChanSettingsSnapshot to figure out whether the current snapshot is stale.
+    private static final AtomicLong settingsVersion = new AtomicLong(0);
+
     protected final SettingProvider settingProvider;
     protected final String key;
     protected final T def;
@@ -51,4 +57,12 @@ public abstract class Setting<T> {
     public String getKey() {
         return key;
     }
+
+    public static long currentSettingsVersion() {
+        return settingsVersion.get();
+    }
+
+    protected static void onSettingChanged() {
+        settingsVersion.incrementAndGet();
+    }
 }
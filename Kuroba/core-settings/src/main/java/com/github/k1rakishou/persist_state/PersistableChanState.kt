@@ -72,6 +72,8 @@ object PersistableChanState {
   lateinit var searxLastUsedInstanceUrl: StringSetting
   @JvmStatic
   lateinit var dontKeepActivitiesWarningShown: BooleanSetting
+  @JvmStatic
+  lateinit var postSearchIndexBackfillFloor: LongSetting
 
   fun init(persistableChanStateInfo: PersistableChanStateInfo) {
     PersistableChanState.persistableChanStateInfo = persistableChanStateInfo
@@ -146,6 +148,7 @@ object PersistableChanState {
       threadDownloaderArchiveWarningShown = BooleanSetting(provider, "thread_downloader_archive_warning_shown", false)
       searxLastUsedInstanceUrl = StringSetting(provider, "searx_last_used_instance_url", "")
       dontKeepActivitiesWarningShown = BooleanSetting(provider, "dont_keep_activities_warning_shown", false)
+      postSearchIndexBackfillFloor = LongSetting(provider, "post_search_index_backfill_floor", 0L)
     } catch (e: Exception) {
       Logger.e(TAG, "Error while initializing the state", e)
       throw e
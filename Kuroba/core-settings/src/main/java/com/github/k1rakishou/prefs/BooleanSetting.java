@@ -48,6 +48,7 @@ public class BooleanSetting extends Setting<Boolean> {
             cached = value;
             settingProvider.putBoolean(key, value);
             settingState.onNext(value);
+            onSettingChanged();
         }
     }
 
@@ -56,6 +57,7 @@ public class BooleanSetting extends Setting<Boolean> {
             cached = value;
             settingProvider.putBooleanSync(key, value);
             settingState.onNext(value);
+            onSettingChanged();
         }
     }
 
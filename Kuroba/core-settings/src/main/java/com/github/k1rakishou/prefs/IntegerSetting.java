@@ -49,6 +49,7 @@ public class IntegerSetting extends Setting<Integer> {
             settingProvider.putInt(key, value);
             cached = value;
             settingState.onNext(value);
+            onSettingChanged();
         }
     }
 
@@ -58,6 +59,7 @@ public class IntegerSetting extends Setting<Integer> {
             settingProvider.putIntSync(key, value);
             cached = value;
             settingState.onNext(value);
+            onSettingChanged();
         }
     }
 
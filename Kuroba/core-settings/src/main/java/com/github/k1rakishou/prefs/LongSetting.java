@@ -42,6 +42,7 @@ public class LongSetting
         if (!value.equals(get())) {
             settingProvider.putLong(key, value);
             cached = value;
+            onSettingChanged();
         }
     }
 
@@ -49,6 +50,7 @@ public class LongSetting
         if (!value.equals(get())) {
             settingProvider.putLongSync(key, value);
             cached = value;
+            onSettingChanged();
         }
     }
 }
@@ -64,6 +64,7 @@ public class OptionsSetting<T extends Enum & OptionSettingItem>
         if (!value.equals(get())) {
             settingProvider.putString(key, value.getKey());
             cached = value;
+            onSettingChanged();
         }
     }
 
@@ -72,6 +73,7 @@ public class OptionsSetting<T extends Enum & OptionSettingItem>
         if (!value.equals(get())) {
             settingProvider.putStringSync(key, value.getKey());
             cached = value;
+            onSettingChanged();
         }
     }
 }
@@ -41,6 +41,7 @@ public class StringSetting extends Setting<String> {
         if (!value.equals(get())) {
             settingProvider.putString(key, value);
             cached = value;
+            onSettingChanged();
         }
     }
 
@@ -48,17 +49,20 @@ public class StringSetting extends Setting<String> {
         if (!value.equals(get())) {
             settingProvider.putStringSync(key, value);
             cached = value;
+            onSettingChanged();
         }
     }
 
     public void setSyncNoCheck(String value) {
         settingProvider.putStringSync(key, value);
         cached = value;
+        onSettingChanged();
     }
 
     public void remove() {
         settingProvider.removeSync(key);
         hasCached = false;
         cached = null;
+        onSettingChanged();
     }
 }